@@ -0,0 +1,367 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import intervalstore.api.IntervalStoreI;
+import intervalstore.impl.ConcurrentIntervalStore;
+import intervalstore.impl.CopyOnWriteIntervalStore;
+import intervalstore.impl.FrozenIntervalStore;
+import intervalstore.impl.IntervalStore;
+import intervalstore.impl.MappedIntervalStore;
+import intervalstore.impl.NCList;
+import intervalstore.impl.OffHeapIntervalStore;
+import intervalstore.impl.Range;
+import intervalstore.impl.ReadWriteIntervalStore;
+import intervalstore.impl.StripedNCList;
+import intervalstore.impl.SynchronizedIntervalStore;
+
+/**
+ * A wrapper around each of the data structures compared by benchmarks, giving
+ * them a common set of operations. A 'naive' list (an ArrayList searched
+ * exhaustively) provides a baseline for comparison.
+ * 
+ * @author gmcarstairs
+ */
+abstract class BenchmarkStore
+{
+  /**
+   * Answers a new, empty, store of the given type (one of "IntervalStore",
+   * "SynchronizedIntervalStore", "ReadWriteIntervalStore",
+   * "CopyOnWriteIntervalStore", "ConcurrentIntervalStore",
+   * "FrozenIntervalStore", "NCList", "StripedNCList", "NaiveList"). A
+   * FrozenIntervalStore is read-only, so only supports <code>load</code> and
+   * <code>findOverlaps</code>.
+   * 
+   * @param type
+   * @return
+   * @throws IllegalArgumentException
+   *           if the type is not recognised
+   */
+  static BenchmarkStore create(String type)
+  {
+    switch (type)
+    {
+    case "IntervalStore":
+      return new StoreWrapper(IntervalStore<Range>::new);
+    case "SynchronizedIntervalStore":
+      return new StoreWrapper(SynchronizedIntervalStore<Range>::new);
+    case "ReadWriteIntervalStore":
+      return new StoreWrapper(ReadWriteIntervalStore<Range>::new);
+    case "CopyOnWriteIntervalStore":
+      return new StoreWrapper(CopyOnWriteIntervalStore<Range>::new);
+    case "ConcurrentIntervalStore":
+      return new StoreWrapper(ConcurrentIntervalStore<Range>::new);
+    case "FrozenIntervalStore":
+      return new FrozenWrapper();
+    case "MappedIntervalStore":
+      return new MappedWrapper();
+    case "OffHeapIntervalStore":
+      return new StoreWrapper(intervals -> OffHeapIntervalStore
+              .of(new IntervalStore<>(intervals).freeze()));
+    case "NCList":
+      return new NCListWrapper();
+    case "StripedNCList":
+      return new StoreWrapper(StripedNCList<Range>::new);
+    case "NaiveList":
+      return new NaiveList();
+    default:
+      throw new IllegalArgumentException("Unknown store type " + type);
+    }
+  }
+
+  /**
+   * Replaces the contents of the store with the given intervals, using the
+   * bulk load constructor (if there is one). The list may get sorted.
+   * 
+   * @param intervals
+   */
+  abstract void load(List<Range> intervals);
+
+  /**
+   * Adds one interval. If <code>allowDuplicates</code> is false, the interval
+   * is only added if the store does not already contain it.
+   * 
+   * @param interval
+   * @param allowDuplicates
+   */
+  abstract void add(Range interval, boolean allowDuplicates);
+
+  /**
+   * Adds intervals overlapping from-to to the result list
+   * 
+   * @param from
+   * @param to
+   * @param result
+   */
+  abstract void findOverlaps(long from, long to, List<Range> result);
+
+  /**
+   * Removes one instance of the interval, answering true if found, else false
+   * 
+   * @param interval
+   * @return
+   */
+  abstract boolean remove(Range interval);
+
+  abstract int size();
+
+  /**
+   * A wrapper for any IntervalStoreI, given its bulk load constructor
+   */
+  static class StoreWrapper extends BenchmarkStore
+  {
+    final Function<List<Range>, IntervalStoreI<Range>> constructor;
+
+    IntervalStoreI<Range> store;
+
+    StoreWrapper(Function<List<Range>, IntervalStoreI<Range>> constructor)
+    {
+      this.constructor = constructor;
+      store = constructor.apply(new ArrayList<>());
+    }
+
+    @Override
+    void load(List<Range> intervals)
+    {
+      store = constructor.apply(intervals);
+    }
+
+    @Override
+    void add(Range interval, boolean allowDuplicates)
+    {
+      store.add(interval, allowDuplicates);
+    }
+
+    @Override
+    void findOverlaps(long from, long to, List<Range> result)
+    {
+      store.findOverlaps(from, to, result);
+    }
+
+    @Override
+    boolean remove(Range interval)
+    {
+      return store.remove(interval);
+    }
+
+    @Override
+    int size()
+    {
+      return store.size();
+    }
+  }
+
+  static class FrozenWrapper extends BenchmarkStore
+  {
+    FrozenIntervalStore<Range> store = new IntervalStore<Range>().freeze();
+
+    @Override
+    void load(List<Range> intervals)
+    {
+      store = new IntervalStore<>(intervals).freeze();
+    }
+
+    @Override
+    void add(Range interval, boolean allowDuplicates)
+    {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    void findOverlaps(long from, long to, List<Range> result)
+    {
+      store.findOverlaps(from, to, result);
+    }
+
+    @Override
+    boolean remove(Range interval)
+    {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    int size()
+    {
+      return store.size();
+    }
+  }
+
+  /**
+   * Loads by writing a frozen store to a temporary file and mapping it; ids
+   * are resolved to the intervals in the frozen store
+   */
+  static class MappedWrapper extends BenchmarkStore
+  {
+    MappedIntervalStore<Range> store;
+
+    MappedWrapper()
+    {
+      load(new ArrayList<>());
+    }
+
+    @Override
+    void load(List<Range> intervals)
+    {
+      try
+      {
+        FrozenIntervalStore<Range> frozen = new IntervalStore<>(intervals)
+                .freeze();
+        Path file = Files.createTempFile("intervals", ".bin");
+        file.toFile().deleteOnExit();
+        try (OutputStream out = Files.newOutputStream(file))
+        {
+          frozen.write(out, Range.CODEC);
+        }
+        Range[] byId = frozen.toArray(new Range[frozen.size()]);
+        store = MappedIntervalStore.open(file, id -> byId[id]);
+      } catch (IOException e)
+      {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    void add(Range interval, boolean allowDuplicates)
+    {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    void findOverlaps(long from, long to, List<Range> result)
+    {
+      store.findOverlaps(from, to, result);
+    }
+
+    @Override
+    boolean remove(Range interval)
+    {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    int size()
+    {
+      return store.size();
+    }
+  }
+
+  static class NCListWrapper extends BenchmarkStore
+  {
+    NCList<Range> ncList = new NCList<>();
+
+    @Override
+    void load(List<Range> intervals)
+    {
+      ncList = new NCList<>(intervals);
+    }
+
+    @Override
+    void add(Range interval, boolean allowDuplicates)
+    {
+      if (allowDuplicates || !ncList.contains(interval))
+      {
+        ncList.add(interval);
+      }
+    }
+
+    @Override
+    void findOverlaps(long from, long to, List<Range> result)
+    {
+      ncList.forEachOverlap(from, to, result::add);
+    }
+
+    @Override
+    boolean remove(Range interval)
+    {
+      return ncList.remove(interval);
+    }
+
+    @Override
+    int size()
+    {
+      return ncList.size();
+    }
+  }
+
+  static class NaiveList extends BenchmarkStore
+  {
+    List<Range> list = new ArrayList<>();
+
+    @Override
+    void load(List<Range> intervals)
+    {
+      list = new ArrayList<>(intervals);
+    }
+
+    @Override
+    void add(Range interval, boolean allowDuplicates)
+    {
+      if (allowDuplicates || !list.contains(interval))
+      {
+        list.add(interval);
+      }
+    }
+
+    @Override
+    void findOverlaps(long from, long to, List<Range> result)
+    {
+      for (Range r : list)
+      {
+        if (r.start <= to && r.end >= from)
+        {
+          result.add(r);
+        }
+      }
+    }
+
+    @Override
+    boolean remove(Range interval)
+    {
+      return list.remove(interval);
+    }
+
+    @Override
+    int size()
+    {
+      return list.size();
+    }
+  }
+}
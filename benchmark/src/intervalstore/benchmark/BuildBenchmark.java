@@ -0,0 +1,254 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import intervalstore.api.IntervalI;
+import intervalstore.impl.FrozenIntervalStore;
+import intervalstore.impl.IntervalStore;
+import intervalstore.impl.MappedIntervalStore;
+import intervalstore.impl.NCList;
+import intervalstore.impl.Range;
+
+/**
+ * Measures the time to construct an NCList or IntervalStore from a list of
+ * intervals (bulk load), including loading in parallel. The intervals are
+ * <ul>
+ * <li>the human gene loci in <code>humanGenes.csv.zip</code>, with one NCList
+ * built per chromosome</li>
+ * <li>randomly generated, of length 1-50 in the range [1, 4*count]; as such
+ * intervals are seldom nested, the maximum length may be set with
+ * <code>-p maxLength=...</code></li>
+ * <li>one million generated intervals which are already sorted</li>
+ * </ul>
+ * For comparison, it also measures reading a frozen store of the sorted
+ * intervals from its binary form (held in memory), and opening it as a
+ * memory-mapped store (from a temporary file).
+ * Each operation builds from a fresh copy of the intervals, as the
+ * constructor may sort the list it is given.
+ * 
+ * @author gmcarstairs
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuildBenchmark
+{
+  /*
+   * use a fixed random seed for repeatable benchmarks
+   */
+  static final int RANDOM_SEED = 732;
+
+  /**
+   * The human gene loci, as a list for each chromosome
+   */
+  @State(Scope.Benchmark)
+  public static class Genes
+  {
+    List<List<Range>> genesByChromosome;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+      genesByChromosome = new ArrayList<>(
+              GenomeData.Dataset.GENES.read().values());
+    }
+  }
+
+  /**
+   * Randomly generated intervals of length 1-maxLength in the range [1,
+   * 4*count]
+   */
+  @State(Scope.Benchmark)
+  public static class Generated
+  {
+    @Param({ "100000", "500000" })
+    int count;
+
+    @Param({ "50" })
+    int maxLength;
+
+    List<Range> intervals;
+
+    @Setup
+    public void setUp()
+    {
+      Random random = new Random(RANDOM_SEED);
+      intervals = new ArrayList<>(count);
+      int maxPos = 4 * count;
+      for (int i = 0; i < count; i++)
+      {
+        int from = 1 + random.nextInt(maxPos);
+        intervals.add(new Range(from, from + random.nextInt(maxLength)));
+      }
+    }
+  }
+
+  /**
+   * One million randomly generated intervals, as for <code>Generated</code>,
+   * already sorted by start ascending, length descending, as when read from
+   * a position-sorted file
+   */
+  @State(Scope.Benchmark)
+  public static class Sorted
+  {
+    List<Range> intervals;
+
+    @Setup
+    public void setUp()
+    {
+      Generated generated = new Generated();
+      generated.count = 1000000;
+      generated.maxLength = 50;
+      generated.setUp();
+      intervals = generated.intervals;
+      Collections.sort(intervals, IntervalI.COMPARE_BEGIN_ASC_END_DESC);
+    }
+  }
+
+  /**
+   * The sorted intervals, as a frozen IntervalStore written in binary form
+   */
+  @State(Scope.Benchmark)
+  public static class Written
+  {
+    byte[] bytes;
+
+    Path file;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+      Sorted sorted = new Sorted();
+      sorted.setUp();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      new IntervalStore<>(sorted.intervals).freeze().write(out,
+              Range.CODEC);
+      bytes = out.toByteArray();
+      file = Files.createTempFile("intervals", ".bin");
+      file.toFile().deleteOnExit();
+      Files.write(file, bytes);
+    }
+  }
+
+  /**
+   * The number of threads to load with in parallel
+   */
+  @State(Scope.Benchmark)
+  public static class Threads
+  {
+    @Param({ "1", "2", "4" })
+    int parallelism;
+  }
+
+  @Benchmark
+  public void buildNCList_genes(Genes genes, Blackhole bh)
+  {
+    for (List<Range> chromosome : genes.genesByChromosome)
+    {
+      bh.consume(new NCList<>(new ArrayList<>(chromosome)));
+    }
+  }
+
+  @Benchmark
+  public NCList<Range> buildNCList_generated(Generated generated)
+  {
+    return new NCList<>(new ArrayList<>(generated.intervals));
+  }
+
+  @Benchmark
+  public IntervalStore<Range> buildIntervalStore_generated(
+          Generated generated)
+  {
+    return new IntervalStore<>(new ArrayList<>(generated.intervals));
+  }
+
+  @Benchmark
+  public NCList<Range> buildNCList_sorted(Sorted sorted)
+  {
+    return new NCList<>(new ArrayList<>(sorted.intervals));
+  }
+
+  @Benchmark
+  public IntervalStore<Range> buildIntervalStore_sorted(Sorted sorted)
+  {
+    return new IntervalStore<>(new ArrayList<>(sorted.intervals));
+  }
+
+  @Benchmark
+  public FrozenIntervalStore<Range> readFrozenIntervalStore_sorted(
+          Written written) throws IOException
+  {
+    return FrozenIntervalStore.read(new ByteArrayInputStream(written.bytes),
+            Range.CODEC);
+  }
+
+  @Benchmark
+  public MappedIntervalStore<Range> openMappedIntervalStore_sorted(
+          Written written) throws IOException
+  {
+    return MappedIntervalStore.open(written.file, id -> null);
+  }
+
+  @Benchmark
+  public IntervalStore<Range> buildIntervalStore_parallel(
+          Generated generated, Threads threads)
+  {
+    return new IntervalStore<>(new ArrayList<>(generated.intervals),
+            threads.parallelism);
+  }
+}
@@ -0,0 +1,304 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.benchmark;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import intervalstore.impl.IntervalStore;
+import intervalstore.impl.Range;
+
+/**
+ * Measures concurrent reads and writes of a store. Reader threads query for
+ * overlaps while writer threads add and remove intervals. The number of
+ * readers and writers defaults to 3 and 1, and may be set with JMH option
+ * <code>-tg readers,writers</code>.
+ * <p>
+ * Throughput is reported, and also (with <code>-bm sample</code>) latency
+ * percentiles for each of the read and write operations.
+ * <p>
+ * The store is loaded with <code>n</code> 'stable' intervals, which are never
+ * removed; writers only add and remove 'churn' intervals of their own.
+ * Correctness violations are counted (as the <code>violations</code>
+ * secondary result) when
+ * <ul>
+ * <li>a query throws an exception</li>
+ * <li>a query returns an interval that does not overlap the query range</li>
+ * <li>a query does not find all of the stable intervals that overlap it</li>
+ * <li>an add or remove throws an exception</li>
+ * <li>a writer fails to remove an interval it added</li>
+ * </ul>
+ * A store that is not safe for concurrent use may report violations, or may
+ * fail in other ways (for example, never completing an operation).
+ * 
+ * @author gmcarstairs
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentionBenchmark
+{
+  /*
+   * the number of churn intervals each writer keeps in the store
+   */
+  static final int CHURN_SIZE = 1000;
+
+  /**
+   * An interval added (and later removed) by a writer thread. Churn intervals
+   * are equal only to themselves, and are never given the same position as a
+   * stable interval, so that removing one can't remove any other interval.
+   */
+  static class ChurnRange extends Range
+  {
+    ChurnRange(int from, int to)
+    {
+      super(from, to);
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+      return this == o;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return System.identityHashCode(this);
+    }
+  }
+
+  /**
+   * The store shared by the readers and writers, with the queries to run and
+   * the number of stable intervals that each should find
+   */
+  @State(Scope.Group)
+  public static class SharedStore
+  {
+    @Param({ "IntervalStore", "NCList", "SynchronizedIntervalStore",
+        "ReadWriteIntervalStore", "CopyOnWriteIntervalStore",
+        "StripedNCList", "ConcurrentIntervalStore" })
+    String store;
+
+    @Param({ "100000" })
+    int n;
+
+    /*
+     * the proportion of intervals that are generated nested in another
+     */
+    @Param({ "0.1" })
+    double nestingRatio;
+
+    @Param({ "1000" })
+    int queryWidth;
+
+    BenchmarkStore intervals;
+
+    Range[] queries;
+
+    int[] expected;
+
+    Set<Range> stablePositions;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+      Random random = new Random(Intervals.RANDOM_SEED);
+      List<Range> stable = Intervals.generate(n, nestingRatio, random);
+      queries = Intervals.queries(n, queryWidth, random);
+
+      IntervalStore<Range> reference = new IntervalStore<>(
+              new ArrayList<>(stable));
+      expected = new int[queries.length];
+      for (int i = 0; i < queries.length; i++)
+      {
+        expected[i] = reference.countOverlaps(queries[i].start,
+                queries[i].end);
+      }
+
+      stablePositions = new HashSet<>(stable);
+      intervals = BenchmarkStore.create(store);
+      intervals.load(stable);
+    }
+  }
+
+  /**
+   * Per-thread state of a reader, counting violations seen
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Reader
+  {
+    public long violations;
+
+    int next;
+
+    List<Range> result = new ArrayList<>();
+
+    @Setup(Level.Iteration)
+    public void reset()
+    {
+      violations = 0;
+    }
+  }
+
+  /**
+   * Per-thread state of a writer, counting violations seen, and holding the
+   * churn intervals it has added
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Writer
+  {
+    public long violations;
+
+    Random random = new Random();
+
+    ArrayDeque<Range> added = new ArrayDeque<>();
+
+    @Setup(Level.Iteration)
+    public void reset()
+    {
+      violations = 0;
+    }
+  }
+
+  /**
+   * Queries for the overlaps of the next query range, and checks the result
+   * 
+   * @param shared
+   * @param reader
+   * @return
+   */
+  @Benchmark
+  @Group("readWrite")
+  @GroupThreads(3)
+  public int read(SharedStore shared, Reader reader)
+  {
+    int i = reader.next;
+    reader.next = i == shared.queries.length - 1 ? 0 : i + 1;
+    Range query = shared.queries[i];
+    reader.result.clear();
+    try
+    {
+      shared.intervals.findOverlaps(query.start, query.end, reader.result);
+    } catch (RuntimeException e)
+    {
+      reader.violations++;
+      return -1;
+    }
+
+    int stable = 0;
+    boolean valid = true;
+    for (Range r : reader.result)
+    {
+      if (r == null || r.start > query.end || r.end < query.start)
+      {
+        valid = false;
+      }
+      else if (!(r instanceof ChurnRange))
+      {
+        stable++;
+      }
+    }
+    if (!valid || stable != shared.expected[i])
+    {
+      reader.violations++;
+    }
+    return stable;
+  }
+
+  /**
+   * Adds a new churn interval, or (once the writer has added its quota)
+   * removes the oldest one it added
+   * 
+   * @param shared
+   * @param writer
+   * @return
+   */
+  @Benchmark
+  @Group("readWrite")
+  @GroupThreads(1)
+  public boolean write(SharedStore shared, Writer writer)
+  {
+    try
+    {
+      if (writer.added.size() < CHURN_SIZE)
+      {
+        int from;
+        int to;
+        do
+        {
+          from = 1 + writer.random.nextInt(4 * shared.n);
+          to = from + writer.random.nextInt(Intervals.MAX_LENGTH);
+        } while (shared.stablePositions.contains(new Range(from, to)));
+        Range r = new ChurnRange(from, to);
+        shared.intervals.add(r, true);
+        writer.added.add(r);
+        return true;
+      }
+      if (!shared.intervals.remove(writer.added.poll()))
+      {
+        writer.violations++;
+        return false;
+      }
+      return true;
+    } catch (RuntimeException e)
+    {
+      writer.violations++;
+      return false;
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import intervalstore.benchmark.GenomeData.Dataset;
+import intervalstore.impl.Range;
+
+/**
+ * Benchmarks of the real-world datasets (human genes, and variants on the
+ * BRAF gene), measuring the time to load a store for each chromosome, and to
+ * replay genome browser style queries (see <code>QueryPattern</code>) against
+ * them
+ * 
+ * @author gmcarstairs
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GenomeBenchmark
+{
+  /*
+   * the number of queries generated for each chromosome
+   */
+  static final int QUERIES_PER_CHROMOSOME = 1000;
+
+  /**
+   * A scenario of stores to query, and the queries to run
+   */
+  @State(Scope.Thread)
+  public static class Queries
+  {
+    @Param({ "GENES", "VARIANTS" })
+    Dataset dataset;
+
+    @Param({ "PAN", "ZOOM", "POINT", "SCAN" })
+    QueryPattern pattern;
+
+    @Param({ "IntervalStore", "FrozenIntervalStore", "NCList",
+        "NaiveList" })
+    String store;
+
+    Scenario scenario;
+
+    List<Range> result = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws IOException
+    {
+      scenario = new Scenario(dataset, pattern, store,
+              QUERIES_PER_CHROMOSOME, new Random(Intervals.RANDOM_SEED));
+    }
+  }
+
+  /**
+   * The data to load a store for each chromosome from
+   */
+  @State(Scope.Benchmark)
+  public static class Data
+  {
+    @Param({ "GENES", "VARIANTS" })
+    Dataset dataset;
+
+    @Param({ "IntervalStore", "NCList" })
+    String store;
+
+    Map<String, List<Range>> intervals;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+      intervals = dataset.read();
+    }
+  }
+
+  @Benchmark
+  public List<Range> query(Queries queries)
+  {
+    queries.result.clear();
+    queries.scenario.nextQuery(queries.result);
+    return queries.result;
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public void load(Data data, Blackhole bh)
+  {
+    for (List<Range> chromosome : data.intervals.values())
+    {
+      BenchmarkStore s = BenchmarkStore.create(data.store);
+      s.load(new ArrayList<>(chromosome));
+      bh.consume(s);
+    }
+  }
+}
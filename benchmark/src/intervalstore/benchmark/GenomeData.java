@@ -0,0 +1,183 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipInputStream;
+
+import intervalstore.impl.Range;
+
+/**
+ * Reads the real-world datasets bundled (as zip files) with the tests. The
+ * zip files are read directly, so need not be unzipped first. The folder
+ * holding them defaults to <code>test/intervalstore/impl</code> (relative to
+ * the root folder of the project), and may be set with system property
+ * <code>intervalstore.data</code>.
+ * 
+ * @author gmcarstairs
+ */
+public final class GenomeData
+{
+  /**
+   * The bundled datasets
+   */
+  public enum Dataset
+  {
+    /*
+     * coding, non-coding and pseudo-gene loci on each human chromosome
+     */
+    GENES("humanGenes.csv.zip"),
+
+    /*
+     * Ensembl and gnomAD variants on the human BRAF gene 
+     */
+    VARIANTS("brafVariants.csv.zip");
+
+    private final String fileName;
+
+    Dataset(String fileName)
+    {
+      this.fileName = fileName;
+    }
+
+    /**
+     * Reads the dataset and answers its intervals, as a list for each
+     * chromosome, keyed by chromosome name, in the order they are read
+     * 
+     * @return
+     * @throws IOException
+     */
+    public Map<String, List<Range>> read() throws IOException
+    {
+      File file = new File(System.getProperty("intervalstore.data",
+              DEFAULT_FOLDER), fileName);
+      return this == GENES ? readGenes(file) : readVariants(file);
+    }
+  }
+
+  static final String DEFAULT_FOLDER = "test/intervalstore/impl";
+
+  private GenomeData()
+  {
+  }
+
+  /**
+   * Reads the zipped csv file of gene loci (with start, end, chromosome in
+   * columns 2-4)
+   * 
+   * @param file
+   * @return
+   * @throws IOException
+   */
+  static Map<String, List<Range>> readGenes(File file) throws IOException
+  {
+    Map<String, List<Range>> genes = new LinkedHashMap<>();
+    try (BufferedReader br = openZipped(file))
+    {
+      String line;
+      while ((line = br.readLine()) != null)
+      {
+        if (line.startsWith("#"))
+        {
+          continue;
+        }
+        String[] tokens = line.split("\\,");
+        genes.computeIfAbsent(tokens[3], k -> new ArrayList<>())
+                .add(new Range(Integer.parseInt(tokens[1]),
+                        Integer.parseInt(tokens[2])));
+      }
+    }
+    return genes;
+  }
+
+  /**
+   * Reads the zipped csv file of variants (with start, end in the first two
+   * columns, in BED format i.e. with end exclusive). All variants are on
+   * chromosome 7.
+   * 
+   * @param file
+   * @return
+   * @throws IOException
+   */
+  static Map<String, List<Range>> readVariants(File file) throws IOException
+  {
+    List<Range> variants = new ArrayList<>();
+    try (BufferedReader br = openZipped(file))
+    {
+      String line;
+      while ((line = br.readLine()) != null)
+      {
+        if (line.startsWith("#"))
+        {
+          continue;
+        }
+        String[] tokens = line.split("\\,");
+        int from = Integer.parseInt(tokens[0]);
+        int to = Integer.parseInt(tokens[1]);
+        if (to > from)
+        {
+          to--;
+        }
+        variants.add(new Range(from, to));
+      }
+    }
+    Map<String, List<Range>> result = new LinkedHashMap<>();
+    result.put("7", variants);
+    return result;
+  }
+
+  /**
+   * Answers a reader of the (single) file in a zip archive
+   * 
+   * @param file
+   * @return
+   * @throws IOException
+   */
+  static BufferedReader openZipped(File file) throws IOException
+  {
+    ZipInputStream zis = new ZipInputStream(new FileInputStream(file));
+    if (zis.getNextEntry() == null)
+    {
+      zis.close();
+      throw new IOException(file + " is empty");
+    }
+    return new BufferedReader(new InputStreamReader(zis));
+  }
+}
@@ -0,0 +1,152 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import intervalstore.impl.IntIntervalStore;
+import intervalstore.impl.IntervalStore;
+import intervalstore.impl.Range;
+
+/**
+ * Compares an IntIntervalStore, holding an int id for each interval, with an
+ * IntervalStore of Range objects, for the time to load <code>n</code>
+ * intervals (one at a time, then build by querying), and to find the
+ * intervals overlapping a query range of width <code>queryWidth</code>
+ * 
+ * @author gmcarstairs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IntIntervalStoreBenchmark
+{
+  @Param({ "IntervalStore", "IntIntervalStore" })
+  String store;
+
+  @Param({ "100000", "1000000" })
+  int n;
+
+  /*
+   * the proportion of intervals that are generated nested in another
+   */
+  @Param({ "0.1" })
+  double nestingRatio;
+
+  @Param({ "100" })
+  int queryWidth;
+
+  List<Range> intervals;
+
+  Range[] queries;
+
+  int next;
+
+  IntervalStore<Range> objectStore;
+
+  IntIntervalStore intStore;
+
+  List<Range> result = new ArrayList<>();
+
+  int[] ids = new int[1024];
+
+  @Setup
+  public void setUp()
+  {
+    Random random = new Random(Intervals.RANDOM_SEED);
+    intervals = Intervals.generate(n, nestingRatio, random);
+    queries = Intervals.queries(n, queryWidth, random);
+    objectStore = new IntervalStore<>(intervals);
+    intStore = new IntIntervalStore();
+    for (int i = 0; i < n; i++)
+    {
+      Range r = intervals.get(i);
+      intStore.add(r.start, r.end, i);
+    }
+    intStore.getDepth();
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public Object load()
+  {
+    if ("IntIntervalStore".equals(store))
+    {
+      IntIntervalStore s = new IntIntervalStore();
+      for (int i = 0; i < n; i++)
+      {
+        Range r = intervals.get(i);
+        s.add(r.start, r.end, i);
+      }
+      s.getDepth();
+      return s;
+    }
+    IntervalStore<Range> s = new IntervalStore<>();
+    for (Range r : intervals)
+    {
+      s.add(r);
+    }
+    return s;
+  }
+
+  @Benchmark
+  public int findOverlaps()
+  {
+    Range query = queries[next];
+    next = next == queries.length - 1 ? 0 : next + 1;
+    if ("IntIntervalStore".equals(store))
+    {
+      return intStore.findOverlaps(query.start, query.end, ids);
+    }
+    result.clear();
+    objectStore.findOverlaps(query.start, query.end, result);
+    return result.size();
+  }
+}
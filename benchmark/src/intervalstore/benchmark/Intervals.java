@@ -0,0 +1,140 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import intervalstore.impl.Range;
+
+/**
+ * Generates pseudo-random intervals and queries for benchmarks
+ * 
+ * @author gmcarstairs
+ */
+public final class Intervals
+{
+  /*
+   * use a fixed random seed for repeatable benchmarks
+   */
+  static final int RANDOM_SEED = 732;
+
+  /*
+   * the maximum length of intervals that are not generated nested
+   */
+  static final int MAX_LENGTH = 100;
+
+  private Intervals()
+  {
+  }
+
+  /**
+   * Generates <code>count</code> intervals in the range [1, 4*count]. A
+   * proportion <code>nestingRatio</code> of them are each generated inside a
+   * randomly chosen interval generated earlier (provided one can be found
+   * that is long enough to properly contain it); the remainder have length
+   * 1-100. The order of the intervals is random.
+   * 
+   * @param count
+   * @param nestingRatio
+   *          a value between 0 and 1
+   * @param random
+   * @return
+   */
+  public static List<Range> generate(int count, double nestingRatio,
+          Random random)
+  {
+    int maxPos = 4 * count;
+    List<Range> ranges = new ArrayList<>(count);
+    for (int i = 0; i < count; i++)
+    {
+      Range range = null;
+      if (i > 0 && random.nextDouble() < nestingRatio)
+      {
+        range = generateNested(ranges, random);
+      }
+      if (range == null)
+      {
+        int from = 1 + random.nextInt(maxPos);
+        range = new Range(from, from + random.nextInt(MAX_LENGTH));
+      }
+      ranges.add(range);
+    }
+    return ranges;
+  }
+
+  /**
+   * Answers an interval properly contained by one of the given ranges, chosen
+   * at random, or null if a few attempts fail to find one long enough
+   * 
+   * @param ranges
+   * @param random
+   * @return
+   */
+  private static Range generateNested(List<Range> ranges, Random random)
+  {
+    for (int attempt = 0; attempt < 5; attempt++)
+    {
+      Range parent = ranges.get(random.nextInt(ranges.size()));
+      int length = parent.end - parent.start;
+      if (length > 2)
+      {
+        int from = parent.start + 1 + random.nextInt(length - 2);
+        int to = from + random.nextInt(parent.end - from);
+        return new Range(from, to);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Generates <code>count</code> query ranges of the given width, in the range
+   * of positions of intervals generated by <code>generate(count, ...)</code>
+   * 
+   * @param count
+   * @param width
+   * @param random
+   * @return
+   */
+  public static Range[] queries(int count, int width, Random random)
+  {
+    int maxPos = 4 * count;
+    Range[] queries = new Range[count];
+    for (int i = 0; i < count; i++)
+    {
+      int from = 1 + random.nextInt(maxPos);
+      queries[i] = new Range(from, from + width - 1);
+    }
+    return queries;
+  }
+}
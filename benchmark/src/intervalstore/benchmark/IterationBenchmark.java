@@ -0,0 +1,136 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.benchmark;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import intervalstore.impl.IntervalStore;
+import intervalstore.impl.NCList;
+import intervalstore.impl.Range;
+
+/**
+ * Measures the cost of a full scan of an IntervalStore or NCList by its
+ * iterator. Run with the GC profiler (<code>-prof gc</code>) to report
+ * allocation; the <code>gc.alloc.rate.norm</code> figure (bytes per
+ * operation) should be a small constant, independent of the number of
+ * intervals, showing that no objects are created per interval visited.
+ * 
+ * @author gmcarstairs
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IterationBenchmark
+{
+  /*
+   * use a fixed random seed for repeatable benchmarks
+   */
+  static final int RANDOM_SEED = 732;
+
+  @Param({ "10000", "1000000" })
+  int size;
+
+  /*
+   * the maximum length of interval generated; the longer the intervals,
+   * the more of them are nested
+   */
+  @Param({ "100", "10000" })
+  int maxLength;
+
+  IntervalStore<Range> store;
+
+  NCList<Range> ncList;
+
+  /**
+   * Generates random intervals spread over a region ten times the number of
+   * intervals, and loads them into an IntervalStore and an NCList
+   */
+  @Setup
+  public void setUp()
+  {
+    Random random = new Random(RANDOM_SEED);
+    List<Range> ranges = new ArrayList<>(size);
+    for (int i = 0; i < size; i++)
+    {
+      int begin = random.nextInt(10 * size);
+      ranges.add(new Range(begin, begin + random.nextInt(maxLength)));
+    }
+    store = new IntervalStore<>(new ArrayList<>(ranges));
+    ncList = new NCList<>(new ArrayList<>(ranges));
+  }
+
+  @Benchmark
+  public void iterateIntervalStore(Blackhole bh)
+  {
+    Iterator<Range> it = store.iterator();
+    while (it.hasNext())
+    {
+      bh.consume(it.next());
+    }
+  }
+
+  @Benchmark
+  public void iterateNCList(Blackhole bh)
+  {
+    Iterator<Range> it = ncList.iterator();
+    while (it.hasNext())
+    {
+      bh.consume(it.next());
+    }
+  }
+
+  @Benchmark
+  public Object[] toArray()
+  {
+    return store.toArray();
+  }
+}
@@ -0,0 +1,168 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import intervalstore.api.IntervalI;
+import intervalstore.impl.Range;
+
+/**
+ * Measures the time to load <code>n</code> intervals into each type of store,
+ * either in bulk (by constructor), or one at a time (in the order generated,
+ * shuffled, or sorted), with or without a check for duplicates.
+ * <p>
+ * Note that adding without duplicates to a NaiveList takes time O(n^2), so
+ * should only be run for small <code>n</code>.
+ * 
+ * @author gmcarstairs
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark
+{
+  @Param({ "IntervalStore", "NCList", "NaiveList" })
+  String store;
+
+  @Param({ "10000", "100000" })
+  int n;
+
+  /*
+   * the proportion of intervals that are generated nested in another
+   */
+  @Param({ "0.0", "0.1", "0.5" })
+  double nestingRatio;
+
+  List<Range> intervals;
+
+  /*
+   * the same intervals in start position order, as when read from a sorted file
+   */
+  List<Range> sortedIntervals;
+
+  /*
+   * the same intervals shuffled, so that enclosed intervals are as likely
+   * to be added before as after the intervals that enclose them
+   */
+  List<Range> shuffledIntervals;
+
+  @Setup
+  public void setUp()
+  {
+    intervals = Intervals.generate(n, nestingRatio,
+            new Random(Intervals.RANDOM_SEED));
+    sortedIntervals = new ArrayList<>(intervals);
+    sortedIntervals.sort(IntervalI.COMPARE_BEGIN_ASC_END_DESC);
+    shuffledIntervals = new ArrayList<>(intervals);
+    Collections.shuffle(shuffledIntervals,
+            new Random(Intervals.RANDOM_SEED));
+  }
+
+  @Benchmark
+  public BenchmarkStore bulkLoad()
+  {
+    BenchmarkStore s = BenchmarkStore.create(store);
+    s.load(new ArrayList<>(intervals));
+    return s;
+  }
+
+  @Benchmark
+  public BenchmarkStore addIncremental()
+  {
+    BenchmarkStore s = BenchmarkStore.create(store);
+    for (Range r : intervals)
+    {
+      s.add(r, true);
+    }
+    return s;
+  }
+
+  /**
+   * Adds the intervals in random order, so that most are inserted between
+   * (rather than appended to) those already added, and some enclose
+   * intervals already added
+   * 
+   * @return
+   */
+  @Benchmark
+  public BenchmarkStore addRandom()
+  {
+    BenchmarkStore s = BenchmarkStore.create(store);
+    for (Range r : shuffledIntervals)
+    {
+      s.add(r, true);
+    }
+    return s;
+  }
+
+  @Benchmark
+  public BenchmarkStore addSorted()
+  {
+    BenchmarkStore s = BenchmarkStore.create(store);
+    for (Range r : sortedIntervals)
+    {
+      s.add(r, true);
+    }
+    return s;
+  }
+
+  @Benchmark
+  public BenchmarkStore addNoDuplicates()
+  {
+    BenchmarkStore s = BenchmarkStore.create(store);
+    for (Range r : intervals)
+    {
+      s.add(r, false);
+    }
+    return s;
+  }
+}
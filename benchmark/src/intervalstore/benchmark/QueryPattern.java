@@ -0,0 +1,216 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.benchmark;
+
+import java.util.List;
+import java.util.Random;
+
+import intervalstore.impl.Range;
+
+/**
+ * Patterns of queries such as are made by a genome browser or annotation
+ * service, for replaying against intervals on one chromosome
+ * 
+ * @author gmcarstairs
+ */
+public enum QueryPattern
+{
+  /**
+   * A viewport panning along the chromosome, a quarter of its width at a time,
+   * from a random start, and reversing direction at either end
+   */
+  PAN
+  {
+    @Override
+    Range[] queries(List<Range> intervals, int count, Random random)
+    {
+      int min = min(intervals);
+      int max = max(intervals);
+      int width = viewportWidth(min, max);
+      int step = Math.max(1, width / 4);
+      int start = min + random.nextInt(Math.max(1, max - min - width + 1));
+      int direction = 1;
+      Range[] queries = new Range[count];
+      for (int i = 0; i < count; i++)
+      {
+        queries[i] = new Range(start, start + width - 1);
+        if (start + direction * step + width - 1 > max
+                || start + direction * step < min)
+        {
+          direction = -direction;
+        }
+        start = Math.max(min, start + direction * step);
+      }
+      return queries;
+    }
+  },
+
+  /**
+   * A viewport zooming out from a single position (doubling its width each
+   * time) until it shows the whole chromosome, then zooming back in; each
+   * cycle is centred on a random position
+   */
+  ZOOM
+  {
+    @Override
+    Range[] queries(List<Range> intervals, int count, Random random)
+    {
+      int min = min(intervals);
+      int max = max(intervals);
+      Range[] queries = new Range[count];
+      int i = 0;
+      while (i < count)
+      {
+        int centre = min + random.nextInt(max - min + 1);
+        int width = 1;
+        while (i < count && width / 2 <= max - min)
+        {
+          queries[i++] = centred(centre, width, min, max);
+          width *= 2;
+        }
+        while (i < count && width > 1)
+        {
+          width /= 2;
+          queries[i++] = centred(centre, width, min, max);
+        }
+      }
+      return queries;
+    }
+  },
+
+  /**
+   * Lookups of single positions; half are the start positions of intervals
+   * (a known feature), half are random positions
+   */
+  POINT
+  {
+    @Override
+    Range[] queries(List<Range> intervals, int count, Random random)
+    {
+      int min = min(intervals);
+      int max = max(intervals);
+      Range[] queries = new Range[count];
+      for (int i = 0; i < count; i++)
+      {
+        int pos = i % 2 == 0
+                ? intervals.get(random.nextInt(intervals.size())).start
+                : min + random.nextInt(max - min + 1);
+        queries[i] = new Range(pos, pos);
+      }
+      return queries;
+    }
+  },
+
+  /**
+   * A scan of the whole chromosome (one query, whatever the count requested)
+   */
+  SCAN
+  {
+    @Override
+    Range[] queries(List<Range> intervals, int count, Random random)
+    {
+      return new Range[] { new Range(min(intervals), max(intervals)) };
+    }
+  };
+
+  /*
+   * the width of the 'viewport' for panning, as a fraction of the extent 
+   * of the intervals on the chromosome
+   */
+  static final int VIEWPORT_FRACTION = 1000;
+
+  /**
+   * Answers queries in this pattern, over the extent of the given intervals
+   * (which should not be empty)
+   * 
+   * @param intervals
+   * @param count
+   *          the number of queries wanted
+   * @param random
+   * @return
+   */
+  abstract Range[] queries(List<Range> intervals, int count, Random random);
+
+  /**
+   * Answers the least start position of the intervals
+   * 
+   * @param intervals
+   * @return
+   */
+  static int min(List<Range> intervals)
+  {
+    int min = Integer.MAX_VALUE;
+    for (Range r : intervals)
+    {
+      min = Math.min(min, r.start);
+    }
+    return min;
+  }
+
+  /**
+   * Answers the greatest end position of the intervals
+   * 
+   * @param intervals
+   * @return
+   */
+  static int max(List<Range> intervals)
+  {
+    int max = Integer.MIN_VALUE;
+    for (Range r : intervals)
+    {
+      max = Math.max(max, r.end);
+    }
+    return max;
+  }
+
+  static int viewportWidth(int min, int max)
+  {
+    return Math.max(1, (max - min + 1) / VIEWPORT_FRACTION);
+  }
+
+  /**
+   * Answers a range of the given width centred on a position, and limited to
+   * min-max
+   * 
+   * @param centre
+   * @param width
+   * @param min
+   * @param max
+   * @return
+   */
+  static Range centred(int centre, int width, int min, int max)
+  {
+    int from = Math.max(min, centre - width / 2);
+    int to = Math.min(max, from + width - 1);
+    return new Range(from, to);
+  }
+}
@@ -0,0 +1,118 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import intervalstore.impl.Range;
+
+/**
+ * Measures the time to remove intervals from a store of <code>n</code>
+ * intervals. Each iteration starts with a freshly loaded store, and times the
+ * removal of a batch of 1000 of its intervals, chosen at random; the score
+ * reported is the time for the whole batch.
+ * 
+ * @author gmcarstairs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = RemoveBenchmark.BATCH_SIZE)
+@Measurement(iterations = 10, batchSize = RemoveBenchmark.BATCH_SIZE)
+@Fork(1)
+public class RemoveBenchmark
+{
+  static final int BATCH_SIZE = 1000;
+
+  @Param({ "IntervalStore", "NCList", "NaiveList" })
+  String store;
+
+  @Param({ "100000", "1000000" })
+  int n;
+
+  /*
+   * the proportion of intervals that are generated nested in another
+   */
+  @Param({ "0.0", "0.1", "0.5" })
+  double nestingRatio;
+
+  List<Range> intervals;
+
+  BenchmarkStore intervalStore;
+
+  List<Range> toRemove;
+
+  int next;
+
+  @Setup
+  public void setUp()
+  {
+    intervals = Intervals.generate(n, nestingRatio,
+            new Random(Intervals.RANDOM_SEED));
+    toRemove = new ArrayList<>(intervals);
+    Collections.shuffle(toRemove, new Random(Intervals.RANDOM_SEED));
+  }
+
+  /**
+   * Loads a fresh store before each iteration (batch of removals)
+   */
+  @Setup(Level.Iteration)
+  public void loadStore()
+  {
+    intervalStore = BenchmarkStore.create(store);
+    intervalStore.load(new ArrayList<>(intervals));
+    next = 0;
+  }
+
+  @Benchmark
+  public boolean remove()
+  {
+    return intervalStore.remove(toRemove.get(next++));
+  }
+}
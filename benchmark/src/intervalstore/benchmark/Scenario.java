@@ -0,0 +1,124 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import intervalstore.benchmark.GenomeData.Dataset;
+import intervalstore.impl.Range;
+
+/**
+ * A reusable benchmark scenario: one of the bundled datasets, loaded into a
+ * store (of a given type) for each chromosome, and a sequence of queries in a
+ * given pattern to replay against them. The queries visit each chromosome in
+ * turn.
+ * 
+ * @author gmcarstairs
+ */
+public class Scenario
+{
+  private final BenchmarkStore[] stores;
+
+  private final int[] storeIndices;
+
+  private final Range[] queries;
+
+  private int next;
+
+  /**
+   * Constructor reads the dataset, builds a store for each chromosome, and
+   * generates <code>queriesPerChromosome</code> queries (just one for a
+   * SCAN) for each one
+   * 
+   * @param dataset
+   * @param pattern
+   * @param storeType
+   *          one of the types supported by BenchmarkStore
+   * @param queriesPerChromosome
+   * @param random
+   * @throws IOException
+   */
+  public Scenario(Dataset dataset, QueryPattern pattern, String storeType,
+          int queriesPerChromosome, Random random) throws IOException
+  {
+    Map<String, List<Range>> data = dataset.read();
+    stores = new BenchmarkStore[data.size()];
+    List<Integer> indices = new ArrayList<>();
+    List<Range> allQueries = new ArrayList<>();
+    int i = 0;
+    for (List<Range> intervals : data.values())
+    {
+      for (Range query : pattern.queries(intervals, queriesPerChromosome,
+              random))
+      {
+        allQueries.add(query);
+        indices.add(i);
+      }
+      stores[i] = BenchmarkStore.create(storeType);
+      stores[i].load(new ArrayList<>(intervals));
+      i++;
+    }
+    queries = allQueries.toArray(new Range[allQueries.size()]);
+    storeIndices = new int[indices.size()];
+    for (int j = 0; j < storeIndices.length; j++)
+    {
+      storeIndices[j] = indices.get(j);
+    }
+  }
+
+  /**
+   * Performs the next query in the sequence (returning to the start after the
+   * last one), adding the overlaps found to the result list
+   * 
+   * @param result
+   */
+  public void nextQuery(List<Range> result)
+  {
+    Range query = queries[next];
+    stores[storeIndices[next]].findOverlaps(query.start, query.end, result);
+    next = next == queries.length - 1 ? 0 : next + 1;
+  }
+
+  /**
+   * Answers the number of queries in the sequence
+   * 
+   * @return
+   */
+  public int getQueryCount()
+  {
+    return queries.length;
+  }
+}
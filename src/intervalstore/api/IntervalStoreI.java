@@ -32,7 +32,13 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package intervalstore.api;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * An interface describing a store of (possibly overlapping) features which may
@@ -71,6 +77,113 @@ public interface IntervalStoreI<T extends IntervalI> extends Collection<T>
    */
   List<T> findOverlaps(long from, long to, List<T> result);
 
+  /**
+   * Performs the given action for each item whose extent overlaps the given
+   * range, in the same order as they would be returned by
+   * {@code findOverlaps}. Implementations should override the default method
+   * (which collects the items in a list) to visit the items in place, so that
+   * a query creates no objects.
+   * 
+   * @param from
+   *          start of overlap range (inclusive)
+   * @param to
+   *          end of overlap range (inclusive)
+   * @param action
+   */
+  default void forEachOverlap(long from, long to, Consumer<? super T> action)
+  {
+    for (T t : findOverlaps(from, to))
+    {
+      action.accept(t);
+    }
+  }
+
+  /**
+   * Calls the visitor for each item whose extent overlaps the given range, in
+   * the same order as they would be returned by {@code findOverlaps}, until
+   * either all items have been visited or the visitor returns false. Answers
+   * true if all overlapping items were visited, false if the search was
+   * stopped by the visitor. Implementations should override the default method
+   * (which collects the items in a list) to visit the items in place, so that
+   * a query creates no objects.
+   * 
+   * @param from
+   *          start of overlap range (inclusive)
+   * @param to
+   *          end of overlap range (inclusive)
+   * @param visitor
+   *          returns true to continue the search, false to stop
+   * @return
+   */
+  default boolean visitOverlaps(long from, long to,
+          Predicate<? super T> visitor)
+  {
+    for (T t : findOverlaps(from, to))
+    {
+      if (!visitor.test(t))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Answers an iterator over the items whose extent overlaps the given range,
+   * in the same order as they would be returned by {@code findOverlaps}.
+   * Implementations should override the default method (which collects the
+   * items in a list) to find each item only as it is requested, so that a
+   * caller that stops early does not pay for finding all overlaps. The
+   * behaviour of the iterator is undefined if the store is modified while it
+   * is in use. The iterator does not support the optional {@code remove}
+   * operation.
+   * 
+   * @param from
+   *          start of overlap range (inclusive)
+   * @param to
+   *          end of overlap range (inclusive)
+   * @return
+   */
+  default Iterator<T> overlapIterator(long from, long to)
+  {
+    return Collections.unmodifiableList(findOverlaps(from, to)).iterator();
+  }
+
+  /**
+   * Answers a spliterator over the items whose extent overlaps the given range,
+   * that finds each item only as it is requested, as for
+   * {@link #overlapIterator(long, long)}. This may be used to create a
+   * (sequential) stream of overlaps with
+   * {@code StreamSupport.stream(spliterator, false)}.
+   * 
+   * @param from
+   *          start of overlap range (inclusive)
+   * @param to
+   *          end of overlap range (inclusive)
+   * @return
+   */
+  default Spliterator<T> overlapSpliterator(long from, long to)
+  {
+    return Spliterators.spliteratorUnknownSize(overlapIterator(from, to),
+            Spliterator.ORDERED | Spliterator.NONNULL);
+  }
+
+  /**
+   * Answers the number of items whose extent overlaps the given range.
+   * Implementations should override the default method (which collects the
+   * items in a list) to count the items without creating a list of them.
+   * 
+   * @param from
+   *          start of overlap range (inclusive)
+   * @param to
+   *          end of overlap range (inclusive)
+   * @return
+   */
+  default int countOverlaps(long from, long to)
+  {
+    return findOverlaps(from, to).size();
+  }
+
   /**
    * Adds the entry to the store, unless {@code allowDuplicates} is false and
    * the entry is already contained in the store. The test for containment
@@ -31,6 +31,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package intervalstore.impl;
 
+import java.nio.IntBuffer;
 import java.util.List;
 
 import intervalstore.api.IntervalI;
@@ -120,6 +121,156 @@ public final class BinarySearcher
     return matched;
   }
 
+  /**
+   * Performs a binary search of the array values from {@code fromIndex}
+   * (inclusive) to {@code toIndex} (exclusive), to find the index of the first
+   * value for which the test returns true. Answers {@code toIndex} if there is
+   * no such value.
+   * <p>
+   * As for {@link #findFirst(List, boolean, Compare, int)}, the values must be
+   * ordered consistent with the test, that is, any values returning false must
+   * precede any values returning true.
+   * 
+   * @param values
+   *          the values to be searched
+   * @param fromIndex
+   *          the first index to search
+   * @param toIndex
+   *          the index after the last one to search
+   * @param comp
+   *          the comparison to apply to (value, compareTo)
+   * @param compareTo
+   *          the value to compare to
+   * @return
+   */
+  public static int findFirst(int[] values, int fromIndex, int toIndex,
+          Compare comp, long compareTo)
+  {
+    int start = fromIndex;
+    int end = toIndex - 1;
+    int matched = toIndex;
+
+    while (start <= end)
+    {
+      int mid = (start + end) >>> 1;
+      if (compare(values[mid], comp, compareTo))
+      {
+        matched = mid;
+        end = mid - 1;
+      }
+      else
+      {
+        start = mid + 1;
+      }
+    }
+
+    return matched;
+  }
+
+  /**
+   * Performs a binary search of the buffer of (ascending ordered) values from
+   * {@code fromIndex} (inclusive) to {@code toIndex} (exclusive), as for
+   * {@link #findFirst(int[], int, int, Compare, long)}, reading the values by
+   * absolute position (so the buffer's position is not changed)
+   * 
+   * @param values
+   * @param fromIndex
+   * @param toIndex
+   * @param comp
+   * @param compareTo
+   * @return
+   */
+  public static int findFirst(IntBuffer values, int fromIndex, int toIndex,
+          Compare comp, long compareTo)
+  {
+    int start = fromIndex;
+    int end = toIndex - 1;
+    int matched = toIndex;
+
+    while (start <= end)
+    {
+      int mid = (start + end) >>> 1;
+      if (compare(values.get(mid), comp, compareTo))
+      {
+        matched = mid;
+        end = mid - 1;
+      }
+      else
+      {
+        start = mid + 1;
+      }
+    }
+
+    return matched;
+  }
+
+  /**
+   * Performs a binary search of the array of intervals from {@code fromIndex}
+   * (inclusive) to {@code toIndex} (exclusive), to find the index of the first
+   * one for which the test returns true. Answers {@code toIndex} if there is no
+   * such interval.
+   * 
+   * @param intervals
+   * @param fromIndex
+   * @param toIndex
+   * @param compareBegin
+   *          if true, test start positions, else end positions
+   * @param comp
+   * @param compareTo
+   * @return
+   * @see #findFirst(List, boolean, Compare, int)
+   */
+  public static int findFirst(IntervalI[] intervals, int fromIndex,
+          int toIndex, boolean compareBegin, Compare comp, int compareTo)
+  {
+    int start = fromIndex;
+    int end = toIndex - 1;
+    int matched = toIndex;
+
+    while (start <= end)
+    {
+      int mid = (start + end) >>> 1;
+      if (compare(intervals[mid], compareBegin, comp, compareTo))
+      {
+        matched = mid;
+        end = mid - 1;
+      }
+      else
+      {
+        start = mid + 1;
+      }
+    }
+
+    return matched;
+  }
+
+  /**
+   * Applies the comparison specified by {@code comp} to the value and the
+   * {@code compareTo} value, and returns the result of the comparison
+   * 
+   * @param val
+   * @param comp
+   * @param compareTo
+   * @return
+   */
+  private static boolean compare(int val, Compare comp, long compareTo)
+  {
+    switch (comp)
+    {
+    case LT:
+      return val < compareTo;
+    case LE:
+      return val <= compareTo;
+    case EQ:
+      return val == compareTo;
+    case GE:
+      return val >= compareTo;
+    case GT:
+    default:
+      return val > compareTo;
+    }
+  }
+
   /**
    * Applies the comparison specified by {@code comp} to either the
    * {@code begin} value of {@code entry} (if {@code compareBegin} is true) or
@@ -0,0 +1,624 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import java.nio.IntBuffer;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+import intervalstore.api.IntervalI;
+import intervalstore.api.IntervalStoreI;
+import intervalstore.impl.BinarySearcher.Compare;
+
+/**
+ * A base class for read-only stores whose start and end positions and nesting
+ * structure are held in {@code IntBuffer}s, in the same layout as the arrays of
+ * {@code FrozenIntervalStore} and {@code FrozenNCList}, and are queried in
+ * place. The buffers may be views of a memory-mapped file, or of off-heap
+ * memory.
+ * <p>
+ * Each stored interval is identified by its position in the iteration order of
+ * the frozen store from which the buffers were made (non-nested intervals in
+ * start position order, then nested intervals), and is obtained, when it is
+ * found by a query, by calling the {@code resolver} function with this id.
+ * <p>
+ * Queries return the same results, in the same order, as the frozen store.
+ * Methods that would modify the collection throw
+ * {@code UnsupportedOperationException}.
+ * 
+ * @param <T>
+ *          any type providing <code>getBegin()</code> and <code>getEnd()</code>
+ */
+abstract class BufferIntervalStore<T extends IntervalI>
+        extends AbstractCollection<T> implements IntervalStoreI<T>
+{
+  /**
+   * An iterator over the stored intervals, in id order. The iterator does not
+   * support the optional <code>remove</code> operation.
+   */
+  private class BufferIterator implements Iterator<T>
+  {
+    int next = 0;
+
+    @Override
+    public boolean hasNext()
+    {
+      return next < size();
+    }
+
+    @Override
+    public T next()
+    {
+      if (next >= size())
+      {
+        throw new NoSuchElementException();
+      }
+      return resolver.apply(next++);
+    }
+  }
+
+  /**
+   * An iterator over the intervals that overlap a given range, in the same
+   * order as they are found by <code>findOverlaps</code>, finding each one only
+   * when it is requested. The iterator does not support the optional
+   * <code>remove</code> operation.
+   */
+  private class OverlapIterator implements Iterator<T>
+  {
+    final long from;
+
+    final long to;
+
+    /*
+     * position of the next non-nested interval (if any)
+     */
+    int next;
+
+    /*
+     * null until the non-nested overlaps have all been returned
+     */
+    NCListLayout.OverlapCursor nestedCursor;
+
+    /**
+     * Constructor given the range to find overlaps for
+     * 
+     * @param from
+     * @param to
+     */
+    OverlapIterator(long from, long to)
+    {
+      this.from = from;
+      this.to = to;
+      next = BinarySearcher.findFirst(nonNestedEnds, 0, nonNestedCount,
+              Compare.GE, from);
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+      if (nestedCursor == null)
+      {
+        if (next < nonNestedCount && nonNestedBegins.get(next) <= to)
+        {
+          return true;
+        }
+        nestedCursor = nested.new OverlapCursor(from, to);
+      }
+      return nestedCursor.hasNext();
+    }
+
+    @Override
+    public T next()
+    {
+      if (!hasNext())
+      {
+        throw new NoSuchElementException();
+      }
+      if (nestedCursor == null)
+      {
+        return resolver.apply(next++);
+      }
+      return resolver.apply(nonNestedCount + nestedCursor.next());
+    }
+  }
+
+  static final IntBuffer EMPTY = IntBuffer.allocate(0);
+
+  /*
+   * the function that answers the stored interval with a given id
+   * (all fields are cleared by release)
+   */
+  private IntFunction<? extends T> resolver;
+
+  /*
+   * start and end positions of the non-nested intervals
+   * (both in ascending order, as there is no containment)
+   */
+  private int nonNestedCount;
+
+  private IntBuffer nonNestedBegins;
+
+  private IntBuffer nonNestedEnds;
+
+  /*
+   * the nested intervals, in blocks of siblings as for FrozenNCList
+   */
+  private NCListLayout nested;
+
+  /*
+   * receivers of the nested intervals found by each kind of query, given
+   * the caller's list, action, visitor or entry; they are created once, so
+   * that queries allocate no callback
+   */
+  private final NCListLayout.Hits<List<T>> adder = (i, count, list) -> {
+    list.add(getNested(i));
+    return true;
+  };
+
+  private final NCListLayout.Hits<Consumer<? super T>> acceptor = (i,
+          count, action) -> {
+    action.accept(getNested(i));
+    return true;
+  };
+
+  private final NCListLayout.Hits<Predicate<? super T>> visitor = (i,
+          count, test) -> test.test(getNested(i));
+
+  private final NCListLayout.Hits<Object> matcher = (i, count,
+          entry) -> entry.equals(getNested(i));
+
+  /*
+   * true when the store has been released
+   */
+  private boolean released;
+
+  /**
+   * Constructor given the buffers of positions of the non-nested intervals, the
+   * layout of the nested intervals, and the function that answers the interval
+   * for each id. The number of non-nested intervals is given by the limit of
+   * their buffers.
+   * 
+   * @param resolver
+   * @param nonNestedBegins
+   * @param nonNestedEnds
+   * @param nested
+   */
+  BufferIntervalStore(IntFunction<? extends T> resolver,
+          IntBuffer nonNestedBegins, IntBuffer nonNestedEnds,
+          NCListLayout nested)
+  {
+    this.resolver = resolver;
+    this.nonNestedCount = nonNestedBegins.limit();
+    this.nonNestedBegins = nonNestedBegins;
+    this.nonNestedEnds = nonNestedEnds;
+    this.nested = nested;
+  }
+
+  /**
+   * Drops all references to the buffers and the resolver, after which any
+   * query throws {@code IllegalStateException}. This should not be called
+   * while the store is in use by other threads.
+   */
+  void release()
+  {
+    released = true;
+    resolver = null;
+    nonNestedCount = 0;
+    nonNestedBegins = nonNestedEnds = EMPTY;
+    nested = NCListLayout.EMPTY;
+  }
+
+  /**
+   * Throws {@code IllegalStateException} if the store has been released
+   */
+  void checkOpen()
+  {
+    if (released)
+    {
+      throw new IllegalStateException(
+              getClass().getSimpleName() + " is closed");
+    }
+  }
+
+  @Override
+  public List<T> findOverlaps(long from, long to)
+  {
+    return findOverlaps(from, to, new ArrayList<>());
+  }
+
+  @Override
+  public List<T> findOverlaps(long from, long to, List<T> result)
+  {
+    checkOpen();
+    if (result == null)
+    {
+      result = new ArrayList<>();
+    }
+    findNonNestedOverlaps(from, to, result, null, null);
+    findNestedOverlaps(from, to, result, null, null);
+    return result;
+  }
+
+  @Override
+  public void forEachOverlap(long from, long to,
+          Consumer<? super T> action)
+  {
+    checkOpen();
+    findNonNestedOverlaps(from, to, null, action, null);
+    findNestedOverlaps(from, to, null, action, null);
+  }
+
+  @Override
+  public boolean visitOverlaps(long from, long to,
+          Predicate<? super T> visitor)
+  {
+    checkOpen();
+    return findNonNestedOverlaps(from, to, null, null, visitor)
+            && findNestedOverlaps(from, to, null, null, visitor);
+  }
+
+  @Override
+  public Iterator<T> overlapIterator(long from, long to)
+  {
+    checkOpen();
+    return new OverlapIterator(from, to);
+  }
+
+  /**
+   * Passes the interval to {@code result}, {@code action} or {@code visitor}
+   * (whichever is not null), answering false if the visitor returns false, else
+   * true
+   * 
+   * @param interval
+   * @param result
+   * @param action
+   * @param visitor
+   * @return
+   */
+  private static <T> boolean accept(T interval, List<T> result,
+          Consumer<? super T> action, Predicate<? super T> visitor)
+  {
+    if (result != null)
+    {
+      result.add(interval);
+    }
+    else if (action != null)
+    {
+      action.accept(interval);
+    }
+    else
+    {
+      return visitor.test(interval);
+    }
+    return true;
+  }
+
+  /**
+   * Searches for non-nested intervals that overlap the target range, and either
+   * adds them to {@code result}, or passes them to {@code action}, or to
+   * {@code visitor} until it returns false (exactly one of these should be
+   * non-null). Answers false if the visitor stopped the search, else true.
+   * 
+   * @param from
+   * @param to
+   * @param result
+   * @param action
+   * @param visitor
+   * @return
+   */
+  private boolean findNonNestedOverlaps(long from, long to, List<T> result,
+          Consumer<? super T> action, Predicate<? super T> visitor)
+  {
+    int i = BinarySearcher.findFirst(nonNestedEnds, 0, nonNestedCount,
+            Compare.GE, from);
+    while (i < nonNestedCount && nonNestedBegins.get(i) <= to)
+    {
+      if (!accept(resolver.apply(i), result, action, visitor))
+      {
+        return false;
+      }
+      i++;
+    }
+    return true;
+  }
+
+  /**
+   * Searches for nested intervals that overlap the from-to range, in the same
+   * (depth-first) order as {@code FrozenNCList}, and either adds them to
+   * {@code result}, or passes them to {@code action}, or to {@code visitor}
+   * until it returns false (exactly one of these should be non-null). Answers
+   * false if the visitor stopped the search, else true.
+   * 
+   * @param from
+   * @param to
+   * @param result
+   * @param action
+   * @param visitor
+   * @return
+   */
+  private boolean findNestedOverlaps(long from, long to, List<T> result,
+          Consumer<? super T> action, Predicate<? super T> visitor)
+  {
+    if (result != null)
+    {
+      return nested.findOverlaps(from, to, adder, result, 0) >= 0;
+    }
+    if (action != null)
+    {
+      return nested.findOverlaps(from, to, acceptor, action, 0) >= 0;
+    }
+    return nested.findOverlaps(from, to, this.visitor, visitor, 0) >= 0;
+  }
+
+  /**
+   * Answers the number of stored intervals that overlap the given range. No
+   * intervals are resolved; nested intervals that lie wholly within the range
+   * are counted together with those they enclose, as for
+   * {@code FrozenNCList}.
+   */
+  @Override
+  public int countOverlaps(long from, long to)
+  {
+    checkOpen();
+    int first = BinarySearcher.findFirst(nonNestedEnds, 0, nonNestedCount,
+            Compare.GE, from);
+    int last = BinarySearcher.findFirst(nonNestedBegins, first,
+            nonNestedCount, Compare.GT, to);
+    return last - first + nested.countOverlaps(from, to);
+  }
+
+  /**
+   * Answers true if the store contains an interval equal to the given entry
+   * (by object equals test), else false. Only intervals with the same start and
+   * end position as the entry are resolved.
+   */
+  @Override
+  public boolean contains(Object entry)
+  {
+    checkOpen();
+    if (!(entry instanceof IntervalI))
+    {
+      return false;
+    }
+    IntervalI interval = (IntervalI) entry;
+    int from = interval.getBegin();
+    int to = interval.getEnd();
+
+    /*
+     * search the non-nested intervals with the same start position
+     */
+    int i = BinarySearcher.findFirst(nonNestedBegins, 0, nonNestedCount,
+            Compare.GE, from);
+    while (i < nonNestedCount && nonNestedBegins.get(i) == from)
+    {
+      if (nonNestedEnds.get(i) == to && entry.equals(resolver.apply(i)))
+      {
+        return true;
+      }
+      i++;
+    }
+
+    /*
+     * search nested blocks enclosed by intervals that contain the entry
+     */
+    return nested.contains(from, to, matcher, entry);
+  }
+
+  @Override
+  public int size()
+  {
+    checkOpen();
+    return nonNestedCount + nested.size();
+  }
+
+  /**
+   * Answers 0 if the store is empty, 1 if there are only top level intervals,
+   * else 1 plus the depth of the nested intervals
+   */
+  @Override
+  public int getDepth()
+  {
+    checkOpen();
+    if (size() == 0)
+    {
+      return 0;
+    }
+    return (nonNestedCount == 0 ? 0 : 1) + nested.depth;
+  }
+
+  /**
+   * Answers an iterator over the stored intervals, in id order. The iterator
+   * does not support the optional <code>remove</code> operation (throws
+   * <code>UnsupportedOperationException</code> if attempted).
+   */
+  @Override
+  public Iterator<T> iterator()
+  {
+    checkOpen();
+    return new BufferIterator();
+  }
+
+  /**
+   * Throws UnsupportedOperationException as this collection is read-only
+   */
+  @Override
+  public boolean add(T entry)
+  {
+    throw new UnsupportedOperationException(
+            getClass().getSimpleName() + " is read-only");
+  }
+
+  /**
+   * Throws UnsupportedOperationException as this collection is read-only
+   */
+  @Override
+  public boolean add(T entry, boolean allowDuplicates)
+  {
+    throw new UnsupportedOperationException(
+            getClass().getSimpleName() + " is read-only");
+  }
+
+  /**
+   * Throws UnsupportedOperationException as this collection is read-only
+   */
+  @Override
+  public boolean addAll(Collection<? extends T> c)
+  {
+    throw new UnsupportedOperationException(
+            getClass().getSimpleName() + " is read-only");
+  }
+
+  /**
+   * Throws UnsupportedOperationException as this collection is read-only
+   */
+  @Override
+  public boolean remove(Object o)
+  {
+    throw new UnsupportedOperationException(
+            getClass().getSimpleName() + " is read-only");
+  }
+
+  /**
+   * Throws UnsupportedOperationException as this collection is read-only
+   */
+  @Override
+  public void clear()
+  {
+    throw new UnsupportedOperationException(
+            getClass().getSimpleName() + " is read-only");
+  }
+
+  /**
+   * Answers the stored intervals in the same format as
+   * {@code FrozenIntervalStore.prettyPrint()}
+   */
+  @Override
+  public String prettyPrint()
+  {
+    checkOpen();
+    StringBuilder sb = new StringBuilder(512);
+    appendNonNested(sb);
+    if (nested.topLevelCount > 0)
+    {
+      sb.append(System.lineSeparator());
+      nested.prettyPrint(sb, this::getNested);
+      sb.append(System.lineSeparator());
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Answers the stored intervals in the same format as
+   * {@code FrozenIntervalStore.toString()}
+   */
+  @Override
+  public String toString()
+  {
+    checkOpen();
+    StringBuilder sb = new StringBuilder(10 * size() + 4);
+    appendNonNested(sb);
+    if (nested.topLevelCount > 0)
+    {
+      sb.append(System.lineSeparator());
+      nested.appendTo(sb, this::getNested);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Appends the non-nested intervals to the string builder, as a bracketed
+   * list
+   * 
+   * @param sb
+   */
+  private void appendNonNested(StringBuilder sb)
+  {
+    sb.append("[");
+    for (int i = 0; i < nonNestedCount; i++)
+    {
+      if (i > 0)
+      {
+        sb.append(", ");
+      }
+      sb.append(resolver.apply(i).toString());
+    }
+    sb.append("]");
+  }
+
+  /**
+   * Answers the nested interval at the given index of the nested buffers
+   * 
+   * @param i
+   * @return
+   */
+  private T getNested(int i)
+  {
+    return resolver.apply(nonNestedCount + i);
+  }
+
+  /**
+   * Answers true if the buffers satisfy the rules of construction of the
+   * store, and each resolved interval has the start and end position held for
+   * it, else false. For use in testing and debugging.
+   * 
+   * @return
+   */
+  public boolean isValid()
+  {
+    checkOpen();
+    for (int i = 0; i < nonNestedCount; i++)
+    {
+      IntervalI interval = resolver.apply(i);
+      if (interval.getBegin() != nonNestedBegins.get(i)
+              || interval.getEnd() != nonNestedEnds.get(i))
+      {
+        System.err.println("nonNested mismatch : " + interval.toString());
+        return false;
+      }
+      if (i > 0 && (nonNestedBegins.get(i) < nonNestedBegins.get(i - 1)
+              || nonNestedEnds.get(i) < nonNestedEnds.get(i - 1)))
+      {
+        System.err.println(
+                "nonNested wrong order or nested : " + interval.toString());
+        return false;
+      }
+    }
+    return nested.isValid(this::getNested);
+  }
+}
@@ -0,0 +1,663 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import intervalstore.api.IntervalI;
+import intervalstore.impl.BinarySearcher.Compare;
+
+/**
+ * A list of intervals, held in a sequence of small arrays ('chunks'), so that
+ * inserting or removing an interval only shifts the entries in one chunk,
+ * rather than all those after it. The start and end positions of the entries
+ * of each chunk are held alongside it in arrays of <code>int</code>. A summary
+ * index holds, for each chunk, the list position of its first entry, and the
+ * start and end position of its last entry.
+ * <p>
+ * This is used for the non-nested intervals of an {@code IntervalStore}, which
+ * are ordered by start position, and (as none contains another) also by end
+ * position. {@code BinarySearcher.findFirst} searches the summary index to find
+ * the chunk, then the chunk's start or end positions, so reads only contiguous
+ * <code>int</code> values (rather than an interval object for each step of a
+ * binary search). The methods for finding overlaps also rely on this ordering,
+ * and read only the intervals that overlap.
+ * 
+ * @param <T>
+ */
+class ChunkedIntervalList<T extends IntervalI> extends AbstractList<T>
+{
+  /*
+   * the maximum number of entries in a chunk; a full chunk is 
+   * split in two when an entry is inserted into it
+   */
+  static final int MAX_CHUNK_SIZE = 512;
+
+  /*
+   * the capacity of a new chunk appended to the list; chunk arrays grow
+   * as entries are added, up to MAX_CHUNK_SIZE, so that small lists
+   * (of which there may be very many) stay small
+   */
+  private static final int INITIAL_CHUNK_CAPACITY = 4;
+
+  private static final IntervalI[][] NO_CHUNKS = new IntervalI[0][];
+
+  private static final int[][] NO_CHUNK_POSITIONS = new int[0][];
+
+  private static final int[] NO_VALUES = new int[0];
+
+  /*
+   * the arrays below are allocated (with one element) when the 
+   * first chunk is added
+   */
+  private IntervalI[][] chunks = NO_CHUNKS;
+
+  /*
+   * the start and end positions of the entries in each chunk
+   */
+  private int[][] chunkBegins = NO_CHUNK_POSITIONS;
+
+  private int[][] chunkEnds = NO_CHUNK_POSITIONS;
+
+  /*
+   * the number of entries in each chunk
+   */
+  private int[] counts = NO_VALUES;
+
+  /*
+   * the list position of the first entry in each chunk
+   */
+  private int[] offsets = NO_VALUES;
+
+  /*
+   * the start and end positions of the last entry in each chunk
+   */
+  private int[] lastBegins = NO_VALUES;
+
+  private int[] lastEnds = NO_VALUES;
+
+  private int chunkCount;
+
+  private int size;
+
+  /**
+   * An iterator over the list, from a given position, that reads through each
+   * chunk in turn
+   */
+  private class ChunkIterator implements Iterator<T>
+  {
+    int chunk;
+
+    int index;
+
+    ChunkIterator(int fromIndex)
+    {
+      if (fromIndex < size)
+      {
+        chunk = chunkFor(fromIndex);
+        index = fromIndex - offsets[chunk];
+      }
+      else
+      {
+        chunk = chunkCount;
+      }
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+      return chunk < chunkCount;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T next()
+    {
+      if (chunk >= chunkCount)
+      {
+        throw new NoSuchElementException();
+      }
+      T t = (T) chunks[chunk][index++];
+      if (index == counts[chunk])
+      {
+        chunk++;
+        index = 0;
+      }
+      return t;
+    }
+  }
+
+  /**
+   * Answers the index of the chunk holding the entry at the given position
+   * (which must be in the range 0 to size-1)
+   * 
+   * @param index
+   * @return
+   */
+  private int chunkFor(int index)
+  {
+    return BinarySearcher.findFirst(offsets, 1, chunkCount, Compare.GT,
+            index) - 1;
+  }
+
+  @Override
+  public int size()
+  {
+    return size;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public T get(int index)
+  {
+    if (index < 0 || index >= size)
+    {
+      throw new IndexOutOfBoundsException(
+              "Index " + index + " out of bounds for length " + size);
+    }
+    int chunk = chunkFor(index);
+    return (T) chunks[chunk][index - offsets[chunk]];
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public T set(int index, T element)
+  {
+    if (index < 0 || index >= size)
+    {
+      throw new IndexOutOfBoundsException(
+              "Index " + index + " out of bounds for length " + size);
+    }
+    int chunk = chunkFor(index);
+    int pos = index - offsets[chunk];
+    T old = (T) chunks[chunk][pos];
+    chunks[chunk][pos] = element;
+    chunkBegins[chunk][pos] = element.getBegin();
+    chunkEnds[chunk][pos] = element.getEnd();
+    updateSummary(chunk);
+    return old;
+  }
+
+  @Override
+  public boolean add(T element)
+  {
+    add(size, element);
+    return true;
+  }
+
+  /**
+   * Inserts the element at the given position, shifting up any entries after
+   * it in the same chunk. If the chunk is full, it is first split in two;
+   * otherwise its arrays are grown if needed.
+   */
+  @Override
+  public void add(int index, T element)
+  {
+    if (index < 0 || index > size)
+    {
+      throw new IndexOutOfBoundsException(
+              "Index " + index + " out of bounds for length " + size);
+    }
+    int chunk;
+    if (index == size)
+    {
+      /*
+       * append to the last chunk (or a new one if it is full)
+       */
+      if (chunkCount == 0 || counts[chunkCount - 1] == MAX_CHUNK_SIZE)
+      {
+        insertChunk(chunkCount, new IntervalI[INITIAL_CHUNK_CAPACITY],
+                new int[INITIAL_CHUNK_CAPACITY],
+                new int[INITIAL_CHUNK_CAPACITY], 0, size);
+      }
+      chunk = chunkCount - 1;
+    }
+    else
+    {
+      chunk = chunkFor(index);
+      if (counts[chunk] == MAX_CHUNK_SIZE)
+      {
+        splitChunk(chunk);
+        if (index >= offsets[chunk + 1])
+        {
+          chunk++;
+        }
+      }
+    }
+
+    ensureCapacity(chunk, counts[chunk] + 1);
+    IntervalI[] entries = chunks[chunk];
+    int[] begins = chunkBegins[chunk];
+    int[] ends = chunkEnds[chunk];
+    int pos = index - offsets[chunk];
+    int moved = counts[chunk] - pos;
+    System.arraycopy(entries, pos, entries, pos + 1, moved);
+    System.arraycopy(begins, pos, begins, pos + 1, moved);
+    System.arraycopy(ends, pos, ends, pos + 1, moved);
+    entries[pos] = element;
+    begins[pos] = element.getBegin();
+    ends[pos] = element.getEnd();
+    counts[chunk]++;
+    if (pos == counts[chunk] - 1)
+    {
+      updateSummary(chunk);
+    }
+    for (int c = chunk + 1; c < chunkCount; c++)
+    {
+      offsets[c]++;
+    }
+    size++;
+    modCount++;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public T remove(int index)
+  {
+    if (index < 0 || index >= size)
+    {
+      throw new IndexOutOfBoundsException(
+              "Index " + index + " out of bounds for length " + size);
+    }
+    int chunk = chunkFor(index);
+    IntervalI[] entries = chunks[chunk];
+    int pos = index - offsets[chunk];
+    T old = (T) entries[pos];
+    int count = --counts[chunk];
+    System.arraycopy(entries, pos + 1, entries, pos, count - pos);
+    System.arraycopy(chunkBegins[chunk], pos + 1, chunkBegins[chunk], pos,
+            count - pos);
+    System.arraycopy(chunkEnds[chunk], pos + 1, chunkEnds[chunk], pos,
+            count - pos);
+    entries[count] = null;
+    for (int c = chunk + 1; c < chunkCount; c++)
+    {
+      offsets[c]--;
+    }
+    size--;
+    modCount++;
+
+    if (count == 0)
+    {
+      removeChunk(chunk);
+    }
+    else
+    {
+      if (pos == count)
+      {
+        updateSummary(chunk);
+      }
+      if (chunk + 1 < chunkCount
+              && count + counts[chunk + 1] <= MAX_CHUNK_SIZE / 2)
+      {
+        mergeChunks(chunk);
+      }
+    }
+    return old;
+  }
+
+  @Override
+  public void clear()
+  {
+    chunks = NO_CHUNKS;
+    chunkBegins = NO_CHUNK_POSITIONS;
+    chunkEnds = NO_CHUNK_POSITIONS;
+    counts = NO_VALUES;
+    offsets = NO_VALUES;
+    lastBegins = NO_VALUES;
+    lastEnds = NO_VALUES;
+    chunkCount = 0;
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  public Iterator<T> iterator()
+  {
+    return new ChunkIterator(0);
+  }
+
+  /**
+   * Answers an iterator over the list starting at the given position
+   * 
+   * @param fromIndex
+   * @return
+   */
+  Iterator<T> iterator(int fromIndex)
+  {
+    return new ChunkIterator(fromIndex);
+  }
+
+  /**
+   * Answers the position of the first entry for which the test is true, or the
+   * size of the list if there is none. The list must be ordered consistent with
+   * the test, as for {@link BinarySearcher#findFirst(List, boolean, Compare, int)}.
+   * 
+   * @param compareBegin
+   *          if true, test start positions, else end positions
+   * @param comp
+   * @param compareTo
+   * @return
+   */
+  int findFirst(boolean compareBegin, Compare comp, int compareTo)
+  {
+    /*
+     * find the first chunk whose last entry passes the test
+     */
+    int chunk = BinarySearcher.findFirst(
+            compareBegin ? lastBegins : lastEnds, 0, chunkCount, comp,
+            compareTo);
+    if (chunk == chunkCount)
+    {
+      return size;
+    }
+    return offsets[chunk] + BinarySearcher.findFirst(
+            compareBegin ? chunkBegins[chunk] : chunkEnds[chunk], 0,
+            counts[chunk], comp, compareTo);
+  }
+
+  /**
+   * Adds entries that overlap the range to the result list. This assumes that
+   * entries are ordered by both start and end position.
+   * 
+   * @param from
+   * @param to
+   * @param result
+   */
+  @SuppressWarnings("unchecked")
+  void findOverlaps(long from, long to, List<T> result)
+  {
+    int first = findFirstEnding(from);
+    if (first == size)
+    {
+      return;
+    }
+    int chunk = chunkFor(first);
+    int index = first - offsets[chunk];
+    for (; chunk < chunkCount; chunk++, index = 0)
+    {
+      IntervalI[] entries = chunks[chunk];
+      int[] begins = chunkBegins[chunk];
+      int count = counts[chunk];
+      for (; index < count; index++)
+      {
+        if (begins[index] > to)
+        {
+          return;
+        }
+        result.add((T) entries[index]);
+      }
+    }
+  }
+
+  /**
+   * Performs the action for each entry that overlaps the range. This assumes
+   * that entries are ordered by both start and end position.
+   * 
+   * @param from
+   * @param to
+   * @param action
+   */
+  @SuppressWarnings("unchecked")
+  void forEachOverlap(long from, long to, Consumer<? super T> action)
+  {
+    int first = findFirstEnding(from);
+    if (first == size)
+    {
+      return;
+    }
+    int chunk = chunkFor(first);
+    int index = first - offsets[chunk];
+    for (; chunk < chunkCount; chunk++, index = 0)
+    {
+      IntervalI[] entries = chunks[chunk];
+      int[] begins = chunkBegins[chunk];
+      int count = counts[chunk];
+      for (; index < count; index++)
+      {
+        if (begins[index] > to)
+        {
+          return;
+        }
+        action.accept((T) entries[index]);
+      }
+    }
+  }
+
+  /**
+   * Calls the visitor for each entry that overlaps the range, until it returns
+   * false. Answers false if the visitor stopped the search, else true. This
+   * assumes that entries are ordered by both start and end position.
+   * 
+   * @param from
+   * @param to
+   * @param visitor
+   * @return
+   */
+  @SuppressWarnings("unchecked")
+  boolean visitOverlaps(long from, long to, Predicate<? super T> visitor)
+  {
+    int first = findFirstEnding(from);
+    if (first == size)
+    {
+      return true;
+    }
+    int chunk = chunkFor(first);
+    int index = first - offsets[chunk];
+    for (; chunk < chunkCount; chunk++, index = 0)
+    {
+      IntervalI[] entries = chunks[chunk];
+      int[] begins = chunkBegins[chunk];
+      int count = counts[chunk];
+      for (; index < count; index++)
+      {
+        if (begins[index] > to)
+        {
+          return true;
+        }
+        if (!visitor.test((T) entries[index]))
+        {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Answers the position of the first entry that ends at or after the given
+   * position, or the size of the list if there is none. Positions outside the
+   * range of <code>int</code> are clamped to it, rather than cast.
+   * 
+   * @param from
+   * @return
+   */
+  int findFirstEnding(long from)
+  {
+    if (from > Integer.MAX_VALUE)
+    {
+      return size;
+    }
+    return findFirst(false, Compare.GE,
+            (int) Math.max(from, Integer.MIN_VALUE));
+  }
+
+  /**
+   * Inserts a chunk at the given chunk index, growing the arrays if needed
+   * 
+   * @param chunk
+   * @param entries
+   * @param begins
+   * @param ends
+   * @param count
+   * @param offset
+   */
+  private void insertChunk(int chunk, IntervalI[] entries, int[] begins,
+          int[] ends, int count, int offset)
+  {
+    if (chunkCount == chunks.length)
+    {
+      int newLength = chunkCount == 0 ? 1 : chunkCount * 2;
+      chunks = Arrays.copyOf(chunks, newLength);
+      chunkBegins = Arrays.copyOf(chunkBegins, newLength);
+      chunkEnds = Arrays.copyOf(chunkEnds, newLength);
+      counts = Arrays.copyOf(counts, newLength);
+      offsets = Arrays.copyOf(offsets, newLength);
+      lastBegins = Arrays.copyOf(lastBegins, newLength);
+      lastEnds = Arrays.copyOf(lastEnds, newLength);
+    }
+    int moved = chunkCount - chunk;
+    System.arraycopy(chunks, chunk, chunks, chunk + 1, moved);
+    System.arraycopy(chunkBegins, chunk, chunkBegins, chunk + 1, moved);
+    System.arraycopy(chunkEnds, chunk, chunkEnds, chunk + 1, moved);
+    System.arraycopy(counts, chunk, counts, chunk + 1, moved);
+    System.arraycopy(offsets, chunk, offsets, chunk + 1, moved);
+    System.arraycopy(lastBegins, chunk, lastBegins, chunk + 1, moved);
+    System.arraycopy(lastEnds, chunk, lastEnds, chunk + 1, moved);
+    chunks[chunk] = entries;
+    chunkBegins[chunk] = begins;
+    chunkEnds[chunk] = ends;
+    counts[chunk] = count;
+    offsets[chunk] = offset;
+    chunkCount++;
+    if (count > 0)
+    {
+      updateSummary(chunk);
+    }
+  }
+
+  /**
+   * Removes an (empty) chunk
+   * 
+   * @param chunk
+   */
+  private void removeChunk(int chunk)
+  {
+    int moved = chunkCount - chunk - 1;
+    System.arraycopy(chunks, chunk + 1, chunks, chunk, moved);
+    System.arraycopy(chunkBegins, chunk + 1, chunkBegins, chunk, moved);
+    System.arraycopy(chunkEnds, chunk + 1, chunkEnds, chunk, moved);
+    System.arraycopy(counts, chunk + 1, counts, chunk, moved);
+    System.arraycopy(offsets, chunk + 1, offsets, chunk, moved);
+    System.arraycopy(lastBegins, chunk + 1, lastBegins, chunk, moved);
+    System.arraycopy(lastEnds, chunk + 1, lastEnds, chunk, moved);
+    chunkCount--;
+    chunks[chunkCount] = null;
+    chunkBegins[chunkCount] = null;
+    chunkEnds[chunkCount] = null;
+  }
+
+  /**
+   * Splits a full chunk into two, each half full (the new chunk's arrays are
+   * full size, as the chunk split is likely to be filled again)
+   * 
+   * @param chunk
+   */
+  private void splitChunk(int chunk)
+  {
+    IntervalI[] entries = chunks[chunk];
+    int half = counts[chunk] / 2;
+    int moved = counts[chunk] - half;
+    IntervalI[] upper = new IntervalI[MAX_CHUNK_SIZE];
+    int[] upperBegins = new int[MAX_CHUNK_SIZE];
+    int[] upperEnds = new int[MAX_CHUNK_SIZE];
+    System.arraycopy(entries, half, upper, 0, moved);
+    System.arraycopy(chunkBegins[chunk], half, upperBegins, 0, moved);
+    System.arraycopy(chunkEnds[chunk], half, upperEnds, 0, moved);
+    Arrays.fill(entries, half, counts[chunk], null);
+    counts[chunk] = half;
+    updateSummary(chunk);
+    insertChunk(chunk + 1, upper, upperBegins, upperEnds, moved,
+            offsets[chunk] + half);
+  }
+
+  /**
+   * Moves the entries of the chunk after the given one into it, and removes
+   * the (now empty) following chunk
+   * 
+   * @param chunk
+   */
+  private void mergeChunks(int chunk)
+  {
+    int count = counts[chunk];
+    int moved = counts[chunk + 1];
+    ensureCapacity(chunk, count + moved);
+    System.arraycopy(chunks[chunk + 1], 0, chunks[chunk], count, moved);
+    System.arraycopy(chunkBegins[chunk + 1], 0, chunkBegins[chunk], count,
+            moved);
+    System.arraycopy(chunkEnds[chunk + 1], 0, chunkEnds[chunk], count,
+            moved);
+    counts[chunk] = count + moved;
+    removeChunk(chunk + 1);
+    updateSummary(chunk);
+  }
+
+  /**
+   * Grows the arrays of the chunk, if needed, to hold at least the given
+   * number of entries (at most MAX_CHUNK_SIZE), by at least half their length
+   * each time
+   * 
+   * @param chunk
+   * @param capacity
+   */
+  private void ensureCapacity(int chunk, int capacity)
+  {
+    int length = chunks[chunk].length;
+    if (capacity > length)
+    {
+      int newLength = Math.min(MAX_CHUNK_SIZE,
+              Math.max(capacity, length + (length >> 1)));
+      chunks[chunk] = Arrays.copyOf(chunks[chunk], newLength);
+      chunkBegins[chunk] = Arrays.copyOf(chunkBegins[chunk], newLength);
+      chunkEnds[chunk] = Arrays.copyOf(chunkEnds[chunk], newLength);
+    }
+  }
+
+  /**
+   * Updates the summary index with the start and end of the last entry of the
+   * (non-empty) chunk
+   * 
+   * @param chunk
+   */
+  private void updateSummary(int chunk)
+  {
+    int last = counts[chunk] - 1;
+    lastBegins[chunk] = chunkBegins[chunk][last];
+    lastEnds[chunk] = chunkEnds[chunk][last];
+  }
+}
@@ -0,0 +1,151 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import intervalstore.api.IntervalI;
+import intervalstore.api.IntervalStoreI;
+
+/**
+ * The ways in which an interval store may be made safe (or not) for use by
+ * multiple threads. Each policy creates a store with its own implementation,
+ * so a store created for single-threaded use does no locking at all.
+ * 
+ * <pre>
+ * IntervalStoreI&lt;Feature&gt; store = ConcurrencyPolicy.READ_WRITE_LOCK
+ *         .createStore(features);
+ * </pre>
+ */
+public enum ConcurrencyPolicy
+{
+  /**
+   * No locking; the store is for use by a single thread (or for concurrent
+   * queries, once loaded, if it is not modified)
+   */
+  UNSYNCHRONIZED
+  {
+    @Override
+    public <T extends IntervalI> IntervalStoreI<T> createStore(
+            List<T> intervals)
+    {
+      return new IntervalStore<>(intervals);
+    }
+  },
+
+  /**
+   * Every query and modification holds a single lock, so only one thread at a
+   * time uses the store
+   * 
+   * @see SynchronizedIntervalStore
+   */
+  COARSE_LOCK
+  {
+    @Override
+    public <T extends IntervalI> IntervalStoreI<T> createStore(
+            List<T> intervals)
+    {
+      return new SynchronizedIntervalStore<>(intervals);
+    }
+  },
+
+  /**
+   * Modifications hold a write lock; queries try an optimistic read first,
+   * falling back to a shared read lock
+   * 
+   * @see ReadWriteIntervalStore
+   */
+  READ_WRITE_LOCK
+  {
+    @Override
+    public <T extends IntervalI> IntervalStoreI<T> createStore(
+            List<T> intervals)
+    {
+      return new ReadWriteIntervalStore<>(intervals);
+    }
+  },
+
+  /**
+   * Queries are made on an immutable snapshot, and never block; each
+   * modification (or batch of modifications) publishes a new snapshot
+   * 
+   * @see CopyOnWriteIntervalStore
+   */
+  COPY_ON_WRITE
+  {
+    @Override
+    public <T extends IntervalI> IntervalStoreI<T> createStore(
+            List<T> intervals)
+    {
+      return new CopyOnWriteIntervalStore<>(intervals);
+    }
+  },
+
+  /**
+   * Top level intervals are held in a concurrent skip list, and queried without
+   * locking; nested intervals are held in an NCList with a lock for each top
+   * level subrange
+   * 
+   * @see ConcurrentIntervalStore
+   */
+  CONCURRENT
+  {
+    @Override
+    public <T extends IntervalI> IntervalStoreI<T> createStore(
+            List<T> intervals)
+    {
+      return new ConcurrentIntervalStore<>(intervals);
+    }
+  };
+
+  /**
+   * Answers a new, empty store with this concurrency policy
+   * 
+   * @return
+   */
+  public <T extends IntervalI> IntervalStoreI<T> createStore()
+  {
+    return createStore(new ArrayList<>());
+  }
+
+  /**
+   * Answers a new store with this concurrency policy, loaded with the given
+   * intervals. Note that the list may get sorted as a side-effect of calling
+   * this method.
+   * 
+   * @param intervals
+   * @return
+   */
+  public abstract <T extends IntervalI> IntervalStoreI<T> createStore(
+          List<T> intervals);
+}
@@ -0,0 +1,538 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import intervalstore.api.IntervalI;
+import intervalstore.api.IntervalStoreI;
+
+/**
+ * A thread-safe store, for concurrent adding and querying of intervals by
+ * multiple threads, in which queries of the top level intervals never block.
+ * <p>
+ * As for {@code IntervalStore}, intervals are held in two layers: top level
+ * intervals, none of which contains another, and the remaining ('nested')
+ * intervals. Here the top level is a {@code ConcurrentSkipListSet}, ordered by
+ * end position, then start position, then the order in which the intervals
+ * were added (so co-located intervals are returned in the order added). As no
+ * top level interval contains another, this is also their order by start
+ * position. Queries find the first top level interval that ends at or after
+ * the query start, and read on until one starts after the query end, without
+ * any locking. Nested intervals are held in a {@code StripedNCList}.
+ * <p>
+ * Adding a top level interval must check that it neither contains nor is
+ * contained by its neighbours; this check, and the insertion into the skip
+ * list, are made holding a lock (for a time of O(log N)), so that two
+ * intervals added concurrently can't both pass the check and yet be nested.
+ * Removing an interval from the top level takes no lock. Adding to, removing
+ * from or querying the nested intervals holds the locks described in
+ * {@code StripedNCList}.
+ * <p>
+ * A query, iterator or {@code size} made while the store is being modified
+ * reflects the state of the store at some point during the operation: it
+ * always finds intervals that were present throughout, and may or may not find
+ * those added or removed concurrently.
+ * 
+ * @param <T>
+ *          any type providing <code>getBegin()</code> and <code>getEnd()</code>
+ */
+public class ConcurrentIntervalStore<T extends IntervalI>
+        extends AbstractCollection<T> implements IntervalStoreI<T>
+{
+  /**
+   * A top level interval, with its position and order of addition
+   */
+  private static final class Entry<T> implements Comparable<Entry<T>>
+  {
+    final int begin;
+
+    final int end;
+
+    final long seq;
+
+    final T value;
+
+    Entry(int begin, int end, long seq, T value)
+    {
+      this.begin = begin;
+      this.end = end;
+      this.seq = seq;
+      this.value = value;
+    }
+
+    @Override
+    public int compareTo(Entry<T> o)
+    {
+      int compare = Integer.compare(end, o.end);
+      if (compare == 0)
+      {
+        compare = Integer.compare(begin, o.begin);
+      }
+      return compare != 0 ? compare : Long.compare(seq, o.seq);
+    }
+
+    /**
+     * Answers true if this entry properly contains the other, else false
+     * 
+     * @param o
+     * @return
+     */
+    boolean properlyContains(Entry<T> o)
+    {
+      return begin <= o.begin && end >= o.end
+              && (begin != o.begin || end != o.end);
+    }
+
+    @Override
+    public String toString()
+    {
+      return String.valueOf(value);
+    }
+  }
+
+  private final ConcurrentSkipListSet<Entry<T>> topLevel = new ConcurrentSkipListSet<>();
+
+  /*
+   * the number of top level intervals (as ConcurrentSkipListSet.size()
+   * is not a constant time operation)
+   */
+  private final AtomicInteger topLevelSize = new AtomicInteger();
+
+  /*
+   * sequence number of the last top level interval added
+   */
+  private long sequence;
+
+  /*
+   * lock held while checking and adding a top level interval 
+   */
+  private final Object addLock = new Object();
+
+  private final StripedNCList<T> nested;
+
+  /**
+   * Constructor
+   */
+  public ConcurrentIntervalStore()
+  {
+    nested = new StripedNCList<>();
+  }
+
+  /**
+   * Constructor given a list of intervals. Note that the list may get sorted as
+   * a side-effect of calling this constructor.
+   * 
+   * @param intervals
+   */
+  public ConcurrentIntervalStore(List<T> intervals)
+  {
+    /*
+     * partition into top level intervals (with any co-located 
+     * intervals) and the nested intervals within them
+     */
+    List<IntervalI> sublists = new NCListBuilder<T>()
+            .partitionNestedSublists(intervals);
+    List<T> nestedIntervals = new ArrayList<>();
+    for (IntervalI subrange : sublists)
+    {
+      IntervalI root = intervals.get(subrange.getBegin());
+      for (int i = subrange.getBegin(); i <= subrange.getEnd(); i++)
+      {
+        T t = intervals.get(i);
+        if (root.equalsInterval(t))
+        {
+          topLevel.add(new Entry<>(t.getBegin(), t.getEnd(), ++sequence, t));
+          topLevelSize.incrementAndGet();
+        }
+        else
+        {
+          nestedIntervals.add(t);
+        }
+      }
+    }
+    nested = new StripedNCList<>(nestedIntervals);
+  }
+
+  @Override
+  public boolean add(T interval)
+  {
+    return add(interval, true);
+  }
+
+  /**
+   * Adds the interval to the store, unless <code>allowDuplicates</code> is
+   * false and the store already contains it. Adds with
+   * <code>allowDuplicates</code> false are made one at a time, so that the test
+   * for containment and the addition are atomic with respect to each other.
+   */
+  @Override
+  public boolean add(T interval, boolean allowDuplicates)
+  {
+    if (interval == null)
+    {
+      return false;
+    }
+    if (allowDuplicates)
+    {
+      if (!addTopLevel(interval))
+      {
+        nested.add(interval);
+      }
+      return true;
+    }
+
+    synchronized (this)
+    {
+      if (contains(interval))
+      {
+        return false;
+      }
+      if (!addTopLevel(interval))
+      {
+        nested.add(interval);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Adds the interval to the top level, after any co-located intervals, and
+   * answers true, unless it contains, or is contained by, one of its
+   * neighbours, in which case answers false. As no top level interval contains
+   * another, the only neighbours that need to be checked are the preceding
+   * interval, and the first following one that is not co-located.
+   * <p>
+   * Top level intervals are only added holding a lock, so the check sees all
+   * other additions. Any concurrent removals can only remove neighbours, so
+   * can't invalidate the check.
+   * 
+   * @param interval
+   * @return
+   */
+  protected boolean addTopLevel(T interval)
+  {
+    int begin = interval.getBegin();
+    int end = interval.getEnd();
+    synchronized (addLock)
+    {
+      /*
+       * the new entry sorts after any co-located ones; the preceding
+       * entry is the last one before them
+       */
+      Entry<T> entry = new Entry<>(begin, end, sequence + 1, interval);
+      Entry<T> preceding = topLevel
+              .lower(new Entry<>(begin, end, Long.MIN_VALUE, null));
+      Entry<T> following = topLevel.higher(entry);
+      if (preceding != null && (preceding.properlyContains(entry)
+              || entry.properlyContains(preceding)))
+      {
+        return false;
+      }
+      if (following != null && (following.properlyContains(entry)
+              || entry.properlyContains(following)))
+      {
+        return false;
+      }
+
+      sequence++;
+      topLevel.add(entry);
+      topLevelSize.incrementAndGet();
+      return true;
+    }
+  }
+
+  /**
+   * Removes the first interval found that is equal to the given one. Top level
+   * intervals are removed without locking; if two threads try to remove the
+   * same interval, only one succeeds.
+   */
+  @Override
+  public boolean remove(Object o)
+  {
+    if (!(o instanceof IntervalI))
+    {
+      return false;
+    }
+    IntervalI interval = (IntervalI) o;
+    for (Entry<T> entry : colocated(interval))
+    {
+      if (entry.value.equals(o) && topLevel.remove(entry))
+      {
+        topLevelSize.decrementAndGet();
+        return true;
+      }
+    }
+    return nested.remove(o);
+  }
+
+  /**
+   * Answers a view of the top level entries with the same start and end
+   * position as the given interval
+   * 
+   * @param interval
+   * @return
+   */
+  private Iterable<Entry<T>> colocated(IntervalI interval)
+  {
+    int begin = interval.getBegin();
+    int end = interval.getEnd();
+    return topLevel.subSet(new Entry<>(begin, end, Long.MIN_VALUE, null),
+            new Entry<>(begin, end, Long.MAX_VALUE, null));
+  }
+
+  @Override
+  public boolean contains(Object o)
+  {
+    if (!(o instanceof IntervalI))
+    {
+      return false;
+    }
+    for (Entry<T> entry : colocated((IntervalI) o))
+    {
+      if (entry.value.equals(o))
+      {
+        return true;
+      }
+    }
+    return nested.contains(o);
+  }
+
+  /**
+   * Removes all intervals from the store. Intervals added concurrently may or
+   * may not be removed.
+   */
+  @Override
+  public void clear()
+  {
+    for (Entry<T> entry : topLevel)
+    {
+      if (topLevel.remove(entry))
+      {
+        topLevelSize.decrementAndGet();
+      }
+    }
+    nested.clear();
+  }
+
+  @Override
+  public int size()
+  {
+    return topLevelSize.get() + nested.size();
+  }
+
+  /**
+   * Answers a view of the top level entries from the first that ends at or
+   * after the given position
+   * 
+   * @param from
+   * @return
+   */
+  private Iterable<Entry<T>> topLevelFrom(long from)
+  {
+    int end = (int) Math.max(Integer.MIN_VALUE,
+            Math.min(from, Integer.MAX_VALUE));
+    return topLevel
+            .tailSet(new Entry<>(Integer.MIN_VALUE, end, Long.MIN_VALUE,
+                    null));
+  }
+
+  @Override
+  public List<T> findOverlaps(long from, long to)
+  {
+    return findOverlaps(from, to, new ArrayList<>());
+  }
+
+  @Override
+  public List<T> findOverlaps(long from, long to, List<T> result)
+  {
+    if (result == null)
+    {
+      result = new ArrayList<>();
+    }
+    if (from > to)
+    {
+      return result;
+    }
+    for (Entry<T> entry : topLevelFrom(from))
+    {
+      if (entry.begin > to)
+      {
+        break;
+      }
+      result.add(entry.value);
+    }
+    nested.findOverlaps(from, to, result);
+    return result;
+  }
+
+  @Override
+  public void forEachOverlap(long from, long to,
+          Consumer<? super T> action)
+  {
+    visitOverlaps(from, to, t -> {
+      action.accept(t);
+      return true;
+    });
+  }
+
+  @Override
+  public boolean visitOverlaps(long from, long to,
+          Predicate<? super T> visitor)
+  {
+    if (from > to)
+    {
+      return true;
+    }
+    for (Entry<T> entry : topLevelFrom(from))
+    {
+      if (entry.begin > to)
+      {
+        break;
+      }
+      if (!visitor.test(entry.value))
+      {
+        return false;
+      }
+    }
+    return nested.visitOverlaps(from, to, visitor);
+  }
+
+  @Override
+  public int countOverlaps(long from, long to)
+  {
+    if (from > to)
+    {
+      return 0;
+    }
+    int count = 0;
+    for (Entry<T> entry : topLevelFrom(from))
+    {
+      if (entry.begin > to)
+      {
+        break;
+      }
+      count++;
+    }
+    return count + nested.countOverlaps(from, to);
+  }
+
+  /**
+   * Answers an iterator over a copy of the intervals in the store, top level
+   * intervals first, then nested ones. The iterator does not support the
+   * optional <code>remove</code> operation.
+   */
+  @Override
+  public Iterator<T> iterator()
+  {
+    List<T> copy = new ArrayList<>(size());
+    for (Entry<T> entry : topLevel)
+    {
+      copy.add(entry.value);
+    }
+    copy.addAll(nested);
+    return Collections.unmodifiableList(copy).iterator();
+  }
+
+  /**
+   * Answers 0 if the store is empty, 1 if there are only top level intervals,
+   * else 1 plus the depth of the nested intervals
+   */
+  @Override
+  public int getDepth()
+  {
+    return (topLevel.isEmpty() ? 0 : 1) + nested.getDepth();
+  }
+
+  /**
+   * Answers true if no top level interval contains another, and the nested
+   * intervals are validly structured, else false. For use in testing and
+   * debugging; should only be called when the store is not being modified.
+   * 
+   * @return
+   */
+  public boolean isValid()
+  {
+    Entry<T> previous = null;
+    int count = 0;
+    for (Entry<T> entry : topLevel)
+    {
+      if (previous != null && (entry.begin < previous.begin
+              || previous.properlyContains(entry)
+              || entry.properlyContains(previous)))
+      {
+        System.err.println("Top level intervals out of order or nested: "
+                + previous + ", " + entry);
+        return false;
+      }
+      previous = entry;
+      count++;
+    }
+    if (count != topLevelSize.get())
+    {
+      System.err.println("Top level size " + topLevelSize.get()
+              + " but counted " + count);
+      return false;
+    }
+    return nested.isValid();
+  }
+
+  @Override
+  public String prettyPrint()
+  {
+    String pp = topLevel.toString();
+    if (!nested.isEmpty())
+    {
+      pp += System.lineSeparator() + nested.prettyPrint();
+    }
+    return pp;
+  }
+
+  @Override
+  public String toString()
+  {
+    String s = topLevel.toString();
+    if (!nested.isEmpty())
+    {
+      s += System.lineSeparator() + nested.toString();
+    }
+    return s;
+  }
+}
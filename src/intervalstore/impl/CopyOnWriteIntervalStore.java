@@ -0,0 +1,328 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import intervalstore.api.IntervalI;
+import intervalstore.api.IntervalStoreI;
+
+/**
+ * A thread-safe store for data that is read much more often than it is
+ * modified, in which queries never block.
+ * <p>
+ * Queries are made on an immutable {@code FrozenIntervalStore} snapshot, held
+ * in a single volatile field. Modifications are made, one thread at a time, to
+ * a private {@code IntervalStore}, which is then frozen to make a new snapshot,
+ * and the snapshot published by replacing the field's value. A query (or
+ * iterator) started before a modification therefore continues to see the
+ * previous snapshot, and a query never sees a partial modification.
+ * <p>
+ * Making a snapshot takes time proportional to the size of the store, so
+ * changes should be made in batches, using {@link #update(Consumer)}, where
+ * possible; the whole batch is published as a single new snapshot. A change
+ * that leaves the store unmodified publishes no snapshot, and one that leaves
+ * the nested intervals unmodified copies only the non-nested intervals.
+ * 
+ * @param <T>
+ *          any type providing <code>getBegin()</code> and <code>getEnd()</code>
+ */
+public class CopyOnWriteIntervalStore<T extends IntervalI>
+        extends AbstractCollection<T> implements IntervalStoreI<T>
+{
+  /*
+   * the store to which modifications are made; only 
+   * accessed by a thread holding the lock on this object;
+   * null after a failed change, until rebuilt from the snapshot
+   */
+  private IntervalStore<T> master;
+
+  /*
+   * the current snapshot of the master store, on which queries are made
+   */
+  private volatile FrozenIntervalStore<T> snapshot;
+
+  /*
+   * the master store's nested modification count when the snapshot was
+   * made, or -1 if the snapshot's nested intervals can't be reused
+   */
+  private int snapshotNestedModCount;
+
+  /**
+   * Constructor
+   */
+  public CopyOnWriteIntervalStore()
+  {
+    this(new ArrayList<>());
+  }
+
+  /**
+   * Constructor given a list of intervals. Note that the list may get sorted as
+   * a side-effect of calling this constructor.
+   * 
+   * @param intervals
+   */
+  public CopyOnWriteIntervalStore(List<T> intervals)
+  {
+    master = new IntervalStore<>(intervals);
+    snapshot = master.freeze();
+    snapshotNestedModCount = master.getNestedModCount();
+  }
+
+  /**
+   * Applies a batch of changes to the store, and publishes the result as a new
+   * snapshot for queries. Queries made while the changes are applied see the
+   * store as it was before the batch. The store passed to {@code changes} is
+   * only valid for the duration of the call, and should not be retained.
+   * <p>
+   * If {@code changes} throws an exception, none of the batch is applied, and
+   * the exception is rethrown.
+   * 
+   * @param changes
+   */
+  public void update(Consumer<? super IntervalStoreI<T>> changes)
+  {
+    apply(store -> {
+      changes.accept(store);
+      return true;
+    });
+  }
+
+  /**
+   * Applies a change to the master store, and publishes a new snapshot if the
+   * change answers true (that it modified the store); then answers the result
+   * of the change.
+   * <p>
+   * If the change throws an exception or error, the master store is discarded,
+   * and rebuilt from the current snapshot before the next change, so that the
+   * failed change is never published.
+   * <p>
+   * If the nested intervals are unchanged since the last snapshot, the new
+   * snapshot shares them, so that only the non-nested intervals are copied.
+   * 
+   * @param change
+   * @return
+   */
+  private synchronized boolean apply(Predicate<IntervalStore<T>> change)
+  {
+    if (master == null)
+    {
+      /*
+       * the rebuilt store may divide nested from non-nested
+       * intervals differently to the snapshot
+       */
+      master = new IntervalStore<>(new ArrayList<>(snapshot));
+      snapshotNestedModCount = -1;
+    }
+
+    boolean changed;
+    boolean completed = false;
+    try
+    {
+      changed = change.test(master);
+      completed = true;
+    } finally
+    {
+      if (!completed)
+      {
+        master = null;
+      }
+    }
+
+    if (changed)
+    {
+      int nestedModCount = master.getNestedModCount();
+      snapshot = nestedModCount == snapshotNestedModCount
+              ? master.freeze(snapshot)
+              : master.freeze();
+      snapshotNestedModCount = nestedModCount;
+    }
+    return changed;
+  }
+
+  /**
+   * Answers the current snapshot of the store. Subsequent modifications are not
+   * reflected in the snapshot.
+   * 
+   * @return
+   */
+  public FrozenIntervalStore<T> freeze()
+  {
+    return snapshot;
+  }
+
+  @Override
+  public boolean add(T interval)
+  {
+    return add(interval, true);
+  }
+
+  @Override
+  public boolean add(T interval, boolean allowDuplicates)
+  {
+    return apply(store -> store.add(interval, allowDuplicates));
+  }
+
+  /**
+   * Adds all the intervals, publishing a single new snapshot
+   */
+  @Override
+  public boolean addAll(Collection<? extends T> intervals)
+  {
+    return apply(store -> store.addAll(intervals));
+  }
+
+  @Override
+  public boolean remove(Object o)
+  {
+    return apply(store -> store.remove(o));
+  }
+
+  /**
+   * Removes all instances of the given intervals, publishing a single new
+   * snapshot
+   */
+  @Override
+  public boolean removeAll(Collection<?> intervals)
+  {
+    return apply(store -> {
+      boolean changed = false;
+      for (Object o : intervals)
+      {
+        while (store.remove(o))
+        {
+          changed = true;
+        }
+      }
+      return changed;
+    });
+  }
+
+  @Override
+  public void clear()
+  {
+    apply(store -> {
+      boolean changed = !store.isEmpty();
+      store.clear();
+      return changed;
+    });
+  }
+
+  @Override
+  public List<T> findOverlaps(long from, long to)
+  {
+    return snapshot.findOverlaps(from, to);
+  }
+
+  @Override
+  public List<T> findOverlaps(long from, long to, List<T> result)
+  {
+    return snapshot.findOverlaps(from, to, result);
+  }
+
+  @Override
+  public void forEachOverlap(long from, long to,
+          Consumer<? super T> action)
+  {
+    snapshot.forEachOverlap(from, to, action);
+  }
+
+  @Override
+  public boolean visitOverlaps(long from, long to,
+          Predicate<? super T> visitor)
+  {
+    return snapshot.visitOverlaps(from, to, visitor);
+  }
+
+  /**
+   * Answers an iterator over the intervals that overlap the given range in the
+   * current snapshot, so unaffected by subsequent modifications
+   */
+  @Override
+  public Iterator<T> overlapIterator(long from, long to)
+  {
+    return snapshot.overlapIterator(from, to);
+  }
+
+  @Override
+  public int countOverlaps(long from, long to)
+  {
+    return snapshot.countOverlaps(from, to);
+  }
+
+  @Override
+  public boolean contains(Object entry)
+  {
+    return snapshot.contains(entry);
+  }
+
+  @Override
+  public int size()
+  {
+    return snapshot.size();
+  }
+
+  /**
+   * Answers an iterator over the intervals in the current snapshot, so
+   * unaffected by subsequent modifications. The iterator does not support the
+   * optional <code>remove</code> operation.
+   */
+  @Override
+  public Iterator<T> iterator()
+  {
+    return snapshot.iterator();
+  }
+
+  @Override
+  public int getDepth()
+  {
+    return snapshot.getDepth();
+  }
+
+  @Override
+  public String prettyPrint()
+  {
+    return snapshot.prettyPrint();
+  }
+
+  @Override
+  public String toString()
+  {
+    return snapshot.toString();
+  }
+}
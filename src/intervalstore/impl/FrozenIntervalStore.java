@@ -0,0 +1,611 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.IntBuffer;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import intervalstore.api.IntervalI;
+import intervalstore.api.IntervalStoreI;
+import intervalstore.api.PayloadCodec;
+import intervalstore.impl.BinarySearcher.Compare;
+
+/**
+ * An immutable, read-only snapshot of an {@code IntervalStore}, optimised for
+ * overlap queries. The non-nested intervals are held in start position order
+ * in an array, with their start and end positions in parallel primitive
+ * arrays; any nested intervals are held in a {@code FrozenNCList}.
+ * <p>
+ * Instances are created by {@link IntervalStore#freeze()}. Queries return the
+ * same results, in the same order, as the store from which the snapshot was
+ * made. Methods that would modify the collection throw
+ * {@code UnsupportedOperationException}.
+ * 
+ * @param <T>
+ *          any type providing <code>getBegin()</code> and <code>getEnd()</code>
+ */
+public class FrozenIntervalStore<T extends IntervalI>
+        extends AbstractCollection<T> implements IntervalStoreI<T>
+{
+  /**
+   * An iterator over the non-nested, then the nested, intervals in the store.
+   * The iterator does not support the optional <code>remove</code> operation.
+   */
+  private class FrozenStoreIterator implements Iterator<T>
+  {
+    int next = 0;
+
+    Iterator<T> nestedIterator = nested == null ? null : nested.iterator();
+
+    @Override
+    public boolean hasNext()
+    {
+      return next < nonNested.length
+              || (nestedIterator != null && nestedIterator.hasNext());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T next()
+    {
+      if (next < nonNested.length)
+      {
+        return (T) nonNested[next++];
+      }
+      if (nestedIterator != null)
+      {
+        return nestedIterator.next();
+      }
+      throw new NoSuchElementException();
+    }
+  }
+
+  /**
+   * An iterator over the intervals in the store that overlap a given range, in
+   * the same order as they are found by <code>findOverlaps</code>, finding
+   * each one only when it is requested. The iterator does not support the
+   * optional <code>remove</code> operation.
+   */
+  private class OverlapIterator implements Iterator<T>
+  {
+    final long from;
+
+    final long to;
+
+    int next;
+
+    Iterator<T> nestedIterator;
+
+    OverlapIterator(long from, long to)
+    {
+      this.from = from;
+      this.to = to;
+      next = BinarySearcher.findFirst(ends, 0, ends.length, Compare.GE,
+              from);
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+      if (next < nonNested.length && begins[next] <= to)
+      {
+        return true;
+      }
+      if (nestedIterator == null)
+      {
+        nestedIterator = nested == null ? Collections.emptyIterator()
+                : nested.overlapIterator(from, to);
+      }
+      return nestedIterator.hasNext();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T next()
+    {
+      if (!hasNext())
+      {
+        throw new NoSuchElementException();
+      }
+      if (nestedIterator == null)
+      {
+        return (T) nonNested[next++];
+      }
+      return nestedIterator.next();
+    }
+  }
+
+  private static final String READ_ONLY = "FrozenIntervalStore is read-only";
+
+  /*
+   * non-nested intervals in start position order, with their start and
+   * end positions (both in ascending order, as there is no containment)
+   */
+  private final Object[] nonNested;
+
+  private final int[] begins;
+
+  private final int[] ends;
+
+  /*
+   * null, or the nested intervals
+   */
+  private final FrozenNCList<T> nested;
+
+  /**
+   * Constructor given the (ordered) non-nested intervals and (possibly null)
+   * NCList of nested intervals of an {@code IntervalStore}. Each interval is
+   * copied once, with no sorting.
+   * 
+   * @param nonNestedIntervals
+   * @param nestedIntervals
+   */
+  FrozenIntervalStore(List<T> nonNestedIntervals,
+          NCList<T> nestedIntervals)
+  {
+    this(nonNestedIntervals,
+            nestedIntervals == null || nestedIntervals.isEmpty() ? null
+                    : new FrozenNCList<>(nestedIntervals));
+  }
+
+  /**
+   * Constructor given the (ordered) non-nested intervals of an
+   * {@code IntervalStore}, and a snapshot of the same store whose nested
+   * intervals are unchanged, and so are shared rather than copied
+   * 
+   * @param nonNestedIntervals
+   * @param previous
+   */
+  FrozenIntervalStore(List<T> nonNestedIntervals,
+          FrozenIntervalStore<T> previous)
+  {
+    this(nonNestedIntervals, previous.nested);
+  }
+
+  /**
+   * Constructor given the (ordered) non-nested intervals, and the frozen
+   * nested intervals (or null)
+   * 
+   * @param nonNestedIntervals
+   * @param nested
+   */
+  private FrozenIntervalStore(List<T> nonNestedIntervals,
+          FrozenNCList<T> nested)
+  {
+    int n = nonNestedIntervals.size();
+    nonNested = new Object[n];
+    begins = new int[n];
+    ends = new int[n];
+    int i = 0;
+    for (T interval : nonNestedIntervals)
+    {
+      nonNested[i] = interval;
+      begins[i] = interval.getBegin();
+      ends[i] = interval.getEnd();
+      i++;
+    }
+    this.nested = nested;
+  }
+
+  /**
+   * Constructor that reads the arrays written by {@code write}, including those
+   * of the nested intervals (if any), but not the payloads
+   * 
+   * @param in
+   * @throws IOException
+   */
+  private FrozenIntervalStore(DataInput in) throws IOException
+  {
+    int n = StoreFormat.readCount(in);
+    begins = StoreFormat.readInts(in, n);
+    ends = StoreFormat.readInts(in, n);
+    StoreFormat.checkOrder(IntBuffer.wrap(begins), IntBuffer.wrap(ends));
+    nonNested = new Object[n];
+    nested = in.readBoolean() ? new FrozenNCList<>(in) : null;
+  }
+
+  /**
+   * Writes this store in binary form, so that it may be reconstructed by
+   * {@link #read(InputStream, PayloadCodec)} without sorting or rebuilding the
+   * containment tree. The codec writes any data held by the intervals other
+   * than their start and end positions. The stream is flushed but not closed.
+   * 
+   * @param out
+   * @param codec
+   * @throws IOException
+   */
+  @SuppressWarnings("unchecked")
+  public void write(OutputStream out, PayloadCodec<? super T> codec)
+          throws IOException
+  {
+    DataOutputStream data = StoreFormat.dataOutput(out);
+    StoreFormat.writeHeader(data, StoreFormat.FROZEN_STORE);
+    data.writeInt(nonNested.length);
+    StoreFormat.writeInts(data, begins);
+    StoreFormat.writeInts(data, ends);
+    data.writeBoolean(nested != null);
+    if (nested != null)
+    {
+      nested.writeArrays(data);
+    }
+    for (Object interval : nonNested)
+    {
+      codec.write((T) interval, data);
+    }
+    if (nested != null)
+    {
+      nested.writePayloads(data, codec);
+    }
+    data.flush();
+  }
+
+  /**
+   * Reads a store that was written by
+   * {@link #write(OutputStream, PayloadCodec)}, using the codec to reconstruct
+   * the stored intervals. The stream is not closed, and may have been read
+   * beyond the end of the store's data.
+   * 
+   * @param in
+   * @param codec
+   * @return
+   * @throws IOException
+   *           if the stream does not hold a store in the current format
+   */
+  public static <T extends IntervalI> FrozenIntervalStore<T> read(
+          InputStream in, PayloadCodec<? extends T> codec)
+          throws IOException
+  {
+    DataInput data = StoreFormat.dataInput(in);
+    StoreFormat.readHeader(data, StoreFormat.FROZEN_STORE);
+    FrozenIntervalStore<T> store = new FrozenIntervalStore<>(data);
+    Object[] nonNested = store.nonNested;
+    for (int i = 0; i < nonNested.length; i++)
+    {
+      nonNested[i] = codec.read(store.begins[i], store.ends[i], data);
+    }
+    if (store.nested != null)
+    {
+      store.nested.readPayloads(data, codec);
+    }
+    return store;
+  }
+
+  /**
+   * Answers the start positions of the non-nested intervals (not a copy)
+   * 
+   * @return
+   */
+  int[] getBegins()
+  {
+    return begins;
+  }
+
+  /**
+   * Answers the end positions of the non-nested intervals (not a copy)
+   * 
+   * @return
+   */
+  int[] getEnds()
+  {
+    return ends;
+  }
+
+  /**
+   * Answers the nested intervals, or null if there are none
+   * 
+   * @return
+   */
+  FrozenNCList<T> getNested()
+  {
+    return nested;
+  }
+
+  @Override
+  public List<T> findOverlaps(long from, long to)
+  {
+    return findOverlaps(from, to, new ArrayList<>());
+  }
+
+  @Override
+  public List<T> findOverlaps(long from, long to, List<T> result)
+  {
+    if (result == null)
+    {
+      result = new ArrayList<>();
+    }
+
+    findNonNestedOverlaps(from, to, result, null, null);
+
+    if (nested != null)
+    {
+      nested.findOverlaps(from, to, result);
+    }
+
+    return result;
+  }
+
+  @Override
+  public void forEachOverlap(long from, long to,
+          Consumer<? super T> action)
+  {
+    findNonNestedOverlaps(from, to, null, action, null);
+
+    if (nested != null)
+    {
+      nested.forEachOverlap(from, to, action);
+    }
+  }
+
+  @Override
+  public boolean visitOverlaps(long from, long to,
+          Predicate<? super T> visitor)
+  {
+    if (!findNonNestedOverlaps(from, to, null, null, visitor))
+    {
+      return false;
+    }
+
+    return nested == null ? true : nested.visitOverlaps(from, to, visitor);
+  }
+
+  @Override
+  public Iterator<T> overlapIterator(long from, long to)
+  {
+    return new OverlapIterator(from, to);
+  }
+
+  /**
+   * Answers the number of stored intervals that overlap the given range,
+   * without visiting them where possible
+   */
+  @Override
+  public int countOverlaps(long from, long to)
+  {
+    int len = nonNested.length;
+    int first = BinarySearcher.findFirst(ends, 0, len, Compare.GE, from);
+    int last = BinarySearcher.findFirst(begins, first, len, Compare.GT, to);
+    int count = last - first;
+
+    return nested == null ? count : count + nested.countOverlaps(from, to);
+  }
+
+  /**
+   * Searches for non-nested intervals that overlap the target range, and either
+   * adds them to {@code result}, or passes them to {@code action}, or to
+   * {@code visitor} until it returns false (exactly one of these should be
+   * non-null). Answers false if the visitor stopped the search, else true.
+   * <p>
+   * As end positions are in ascending order, every interval from the first that
+   * ends at or after {@code from}, up to the last that starts at or before
+   * {@code to}, is an overlap.
+   * 
+   * @param from
+   * @param to
+   * @param result
+   * @param action
+   * @param visitor
+   * @return
+   */
+  @SuppressWarnings("unchecked")
+  protected boolean findNonNestedOverlaps(long from, long to,
+          List<T> result, Consumer<? super T> action,
+          Predicate<? super T> visitor)
+  {
+    int len = nonNested.length;
+    int i = BinarySearcher.findFirst(ends, 0, len, Compare.GE, from);
+    while (i < len && begins[i] <= to)
+    {
+      T interval = (T) nonNested[i];
+      if (result != null)
+      {
+        result.add(interval);
+      }
+      else if (action != null)
+      {
+        action.accept(interval);
+      }
+      else if (!visitor.test(interval))
+      {
+        return false;
+      }
+      i++;
+    }
+    return true;
+  }
+
+  @Override
+  public boolean contains(Object entry)
+  {
+    if (!(entry instanceof IntervalI))
+    {
+      return false;
+    }
+    IntervalI interval = (IntervalI) entry;
+    int begin = interval.getBegin();
+
+    /*
+     * search the non-nested intervals with the same start position
+     */
+    int len = nonNested.length;
+    int i = BinarySearcher.findFirst(begins, 0, len, Compare.GE, begin);
+    while (i < len && begins[i] == begin)
+    {
+      if (entry.equals(nonNested[i]))
+      {
+        return true;
+      }
+      i++;
+    }
+
+    return nested == null ? false : nested.contains(entry);
+  }
+
+  @Override
+  public int size()
+  {
+    return nonNested.length + (nested == null ? 0 : nested.size());
+  }
+
+  /**
+   * Answers 0 if the store is empty, 1 if there are only top level intervals,
+   * else 1 plus the depth of the nested intervals
+   */
+  @Override
+  public int getDepth()
+  {
+    if (size() == 0)
+    {
+      return 0;
+    }
+    return (nonNested.length == 0 ? 0 : 1)
+            + (nested == null ? 0 : nested.getDepth());
+  }
+
+  /**
+   * Answers an iterator over the intervals in the store, with no particular
+   * ordering guaranteed. The iterator does not support the optional
+   * <code>remove</code> operation (throws
+   * <code>UnsupportedOperationException</code> if attempted).
+   */
+  @Override
+  public Iterator<T> iterator()
+  {
+    return new FrozenStoreIterator();
+  }
+
+  /**
+   * Throws UnsupportedOperationException as this collection is read-only
+   */
+  @Override
+  public boolean add(T entry)
+  {
+    throw new UnsupportedOperationException(READ_ONLY);
+  }
+
+  /**
+   * Throws UnsupportedOperationException as this collection is read-only
+   */
+  @Override
+  public boolean add(T entry, boolean allowDuplicates)
+  {
+    throw new UnsupportedOperationException(READ_ONLY);
+  }
+
+  /**
+   * Throws UnsupportedOperationException as this collection is read-only
+   */
+  @Override
+  public boolean addAll(Collection<? extends T> c)
+  {
+    throw new UnsupportedOperationException(READ_ONLY);
+  }
+
+  /**
+   * Throws UnsupportedOperationException as this collection is read-only
+   */
+  @Override
+  public boolean remove(Object o)
+  {
+    throw new UnsupportedOperationException(READ_ONLY);
+  }
+
+  /**
+   * Throws UnsupportedOperationException as this collection is read-only
+   */
+  @Override
+  public void clear()
+  {
+    throw new UnsupportedOperationException(READ_ONLY);
+  }
+
+  @Override
+  public String prettyPrint()
+  {
+    String pp = Arrays.toString(nonNested);
+    if (nested != null)
+    {
+      pp += System.lineSeparator() + nested.prettyPrint();
+    }
+    return pp;
+  }
+
+  @Override
+  public String toString()
+  {
+    String s = Arrays.toString(nonNested);
+    if (nested != null)
+    {
+      s = s + System.lineSeparator() + nested.toString();
+    }
+    return s;
+  }
+
+  /**
+   * Answers true if the snapshot is validly constructed, else false. Provided
+   * for use in verification by test classes.
+   * 
+   * @return
+   */
+  public boolean isValid()
+  {
+    for (int i = 0; i < nonNested.length; i++)
+    {
+      IntervalI interval = (IntervalI) nonNested[i];
+      if (interval.getBegin() != begins[i] || interval.getEnd() != ends[i])
+      {
+        System.err.println("nonNested changed : " + interval.toString());
+        return false;
+      }
+      if (i > 0 && (begins[i] < begins[i - 1] || ends[i] < ends[i - 1]))
+      {
+        System.err.println("nonNested wrong order or nested : "
+                + nonNested[i - 1].toString() + ", " + interval.toString());
+        return false;
+      }
+    }
+    return nested == null ? true : nested.isValid();
+  }
+}
@@ -0,0 +1,621 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import intervalstore.api.IntervalI;
+import intervalstore.api.IntervalStoreI;
+import intervalstore.api.PayloadCodec;
+
+/**
+ * An immutable, read-only implementation of NCList, in which the containment
+ * tree is held in parallel primitive arrays rather than as a tree of
+ * {@code NCNode} and {@code NCList} objects.
+ * <p>
+ * Each 'block' of the arrays holds the (contiguous) sibling intervals of one
+ * list of the tree, in start position order; the top level list is the block
+ * at the start of the arrays, and the blocks of contained intervals follow in
+ * depth-first order of their containing intervals. For the interval at index
+ * {@code i}:
+ * <ul>
+ * <li>{@code begins[i]} and {@code ends[i]} are its start and end
+ * positions</li>
+ * <li>{@code childOffsets[i]} is the index of the first interval it encloses
+ * (if any)</li>
+ * <li>{@code childCounts[i]} is the number of intervals it directly
+ * encloses</li>
+ * <li>{@code payloads[i]} is the stored interval object</li>
+ * </ul>
+ * Queries walk the array indices (see {@code NCListLayout}), with no recursion
+ * and no dereferencing of the stored objects except for those that are found.
+ * <p>
+ * Methods that would modify the collection throw
+ * {@code UnsupportedOperationException}.
+ * 
+ * @param <T>
+ *          any type providing <code>getBegin()</code> and <code>getEnd()</code>
+ */
+public class FrozenNCList<T extends IntervalI> extends AbstractCollection<T>
+        implements IntervalStoreI<T>
+{
+  /**
+   * An iterator over the stored intervals, in the order in which they are held
+   * in the arrays. The iterator does not support the optional
+   * <code>remove</code> operation.
+   */
+  private class FrozenIterator implements Iterator<T>
+  {
+    int next = 0;
+
+    @Override
+    public boolean hasNext()
+    {
+      return next < payloads.length;
+    }
+
+    @Override
+    public T next()
+    {
+      if (next >= payloads.length)
+      {
+        throw new NoSuchElementException();
+      }
+      return get(next++);
+    }
+  }
+
+  /**
+   * An iterator over the intervals that overlap a given range, in the same
+   * order as they are found by <code>findOverlaps</code>, finding each one only
+   * when it is requested. The iterator does not support the optional
+   * <code>remove</code> operation.
+   */
+  private class OverlapIterator implements Iterator<T>
+  {
+    final NCListLayout.OverlapCursor cursor;
+
+    /**
+     * Constructor given the range to find overlaps for
+     * 
+     * @param from
+     * @param to
+     */
+    OverlapIterator(long from, long to)
+    {
+      cursor = layout.new OverlapCursor(from, to);
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+      return cursor.hasNext();
+    }
+
+    @Override
+    public T next()
+    {
+      return get(cursor.next());
+    }
+  }
+
+  private static final String READ_ONLY = "FrozenNCList is read-only";
+
+  /*
+   * the start and end positions and containment tree of the intervals
+   */
+  private final NCListLayout layout;
+
+  /*
+   * the stored intervals, at the same index as their begin and end
+   */
+  private final Object[] payloads;
+
+  /*
+   * receivers of the intervals found by each kind of query, given the
+   * caller's list, action, visitor or entry; they are created once, so
+   * that queries allocate no callback
+   */
+  private final NCListLayout.Hits<List<T>> adder = (i, count, list) -> {
+    list.add(get(i));
+    return true;
+  };
+
+  private final NCListLayout.Hits<Consumer<? super T>> acceptor = (i,
+          count, action) -> {
+    action.accept(get(i));
+    return true;
+  };
+
+  private final NCListLayout.Hits<Predicate<? super T>> visitor = (i,
+          count, test) -> test.test(get(i));
+
+  private final NCListLayout.Hits<Object> matcher = (i, count,
+          entry) -> entry.equals(get(i));
+
+  /**
+   * Constructor given a list of intervals. Note that the list may get sorted as
+   * a side-effect of calling this constructor.
+   * <p>
+   * We assume here that for each interval, begin &lt;= end. Behaviour for
+   * reverse ordered intervals is undefined.
+   * 
+   * @param intervals
+   */
+  public FrozenNCList(List<T> intervals)
+  {
+    /*
+     * sort by start ascending, length descending, so that
+     * contained intervals follow their containing interval
+     */
+    NCListBuilder.sort(intervals);
+
+    int n = intervals.size();
+    int[] sortedBegins = new int[n];
+    int[] sortedEnds = new int[n];
+    for (int i = 0; i < n; i++)
+    {
+      T interval = intervals.get(i);
+      sortedBegins[i] = interval.getBegin();
+      sortedEnds[i] = interval.getEnd();
+    }
+    int[] positions = new int[n];
+    layout = NCListLayout.build(sortedBegins, sortedEnds, positions);
+    payloads = new Object[n];
+    for (int i = 0; i < n; i++)
+    {
+      payloads[positions[i]] = intervals.get(i);
+    }
+  }
+
+  /**
+   * Constructor that copies the contents of an NCList, whose tree is already
+   * ordered and partitioned, so no sorting is needed; the copy is made in a
+   * single depth-first pass over the tree, giving the same array layout as
+   * would be built from a list of the same intervals
+   * 
+   * @param ncl
+   */
+  @SuppressWarnings("unchecked")
+  FrozenNCList(NCList<T> ncl)
+  {
+    int n = ncl.size();
+    payloads = new Object[n];
+    if (n == 0)
+    {
+      layout = NCListLayout.EMPTY;
+      return;
+    }
+    int[] begins = new int[n];
+    int[] ends = new int[n];
+    int[] childOffsets = new int[n];
+    int[] childCounts = new int[n];
+    int[] cumulativeSizes = new int[n];
+    List<NCNode<T>> topLevel = ncl.getSubranges();
+    int topLevelCount = topLevel.size();
+
+    /*
+     * stack of lists of nodes being copied, with the index of the next node
+     * to copy from each list, and the array offset of the block for the list;
+     * the block for the nodes in a list is allocated when its parent is copied
+     */
+    List<?>[] lists = new List<?>[16];
+    int[] indices = new int[16];
+    int[] offsets = new int[16];
+    lists[0] = topLevel;
+    int stackSize = 1;
+    int nextBlock = topLevelCount;
+    int maxDepth = 1;
+
+    while (stackSize > 0)
+    {
+      int top = stackSize - 1;
+      List<NCNode<T>> nodes = (List<NCNode<T>>) lists[top];
+      int index = indices[top];
+      if (index == nodes.size())
+      {
+        lists[top] = null;
+        stackSize--;
+        continue;
+      }
+      indices[top]++;
+
+      NCNode<T> node = nodes.get(index);
+      T region = node.getRegion();
+      int pos = offsets[top] + index;
+      begins[pos] = region.getBegin();
+      ends[pos] = region.getEnd();
+      payloads[pos] = region;
+      cumulativeSizes[pos] = node.size()
+              + (index == 0 ? 0 : cumulativeSizes[pos - 1]);
+
+      NCList<T> subregions = node.getSubRegions();
+      if (subregions != null && !subregions.isEmpty())
+      {
+        List<NCNode<T>> children = subregions.getSubranges();
+        childOffsets[pos] = nextBlock;
+        childCounts[pos] = children.size();
+        if (stackSize == lists.length)
+        {
+          lists = Arrays.copyOf(lists, 2 * stackSize);
+          indices = Arrays.copyOf(indices, 2 * stackSize);
+          offsets = Arrays.copyOf(offsets, 2 * stackSize);
+        }
+        lists[stackSize] = children;
+        indices[stackSize] = 0;
+        offsets[stackSize] = nextBlock;
+        stackSize++;
+        nextBlock += children.size();
+        maxDepth = Math.max(maxDepth, stackSize);
+      }
+    }
+    layout = new NCListLayout(begins, ends, childOffsets, childCounts,
+            cumulativeSizes, topLevelCount, maxDepth);
+  }
+
+  /**
+   * Constructor that reads the arrays written by {@code writeArrays}, and
+   * checks that they form a valid tree; the payloads should then be read by
+   * {@code readPayloads}
+   * 
+   * @param in
+   * @throws IOException
+   */
+  FrozenNCList(DataInput in) throws IOException
+  {
+    int n = StoreFormat.readCount(in);
+    int topLevelCount = StoreFormat.readCount(in);
+    int depth = StoreFormat.readCount(in);
+    StoreFormat.checkCounts(n, topLevelCount, depth);
+    int[] begins = StoreFormat.readInts(in, n);
+    int[] ends = StoreFormat.readInts(in, n);
+    int[] childOffsets = StoreFormat.readInts(in, n);
+    int[] childCounts = StoreFormat.readInts(in, n);
+    int[] cumulativeSizes = StoreFormat.readInts(in, n);
+    layout = new NCListLayout(begins, ends, childOffsets, childCounts,
+            cumulativeSizes, topLevelCount, depth);
+    StoreFormat.checkNesting(layout);
+    payloads = new Object[n];
+  }
+
+  /**
+   * Writes this list in binary form, so that it may be reconstructed by
+   * {@link #read(InputStream, PayloadCodec)} without sorting or rebuilding the
+   * tree. The codec writes any data held by the intervals other than their
+   * start and end positions. The stream is flushed but not closed.
+   * 
+   * @param out
+   * @param codec
+   * @throws IOException
+   */
+  public void write(OutputStream out, PayloadCodec<? super T> codec)
+          throws IOException
+  {
+    DataOutputStream data = StoreFormat.dataOutput(out);
+    StoreFormat.writeHeader(data, StoreFormat.FROZEN_NCLIST);
+    writeArrays(data);
+    writePayloads(data, codec);
+    data.flush();
+  }
+
+  /**
+   * Reads a list that was written by
+   * {@link #write(OutputStream, PayloadCodec)}, using the codec to reconstruct
+   * the stored intervals. The stream is not closed, and may have been read
+   * beyond the end of the list's data.
+   * 
+   * @param in
+   * @param codec
+   * @return
+   * @throws IOException
+   *           if the stream does not hold a list in the current format
+   */
+  public static <T extends IntervalI> FrozenNCList<T> read(InputStream in,
+          PayloadCodec<? extends T> codec) throws IOException
+  {
+    DataInput data = StoreFormat.dataInput(in);
+    StoreFormat.readHeader(data, StoreFormat.FROZEN_NCLIST);
+    FrozenNCList<T> ncl = new FrozenNCList<>(data);
+    ncl.readPayloads(data, codec);
+    return ncl;
+  }
+
+  /**
+   * Writes the counts, start and end positions and tree structure
+   * 
+   * @param out
+   * @throws IOException
+   */
+  void writeArrays(DataOutput out) throws IOException
+  {
+    out.writeInt(payloads.length);
+    out.writeInt(layout.topLevelCount);
+    out.writeInt(layout.depth);
+    StoreFormat.writeInts(out, layout.begins.array());
+    StoreFormat.writeInts(out, layout.ends.array());
+    StoreFormat.writeInts(out, layout.childOffsets.array());
+    StoreFormat.writeInts(out, layout.childCounts.array());
+    StoreFormat.writeInts(out, layout.cumulativeSizes.array());
+  }
+
+  /**
+   * Writes the data of each stored interval, in array order
+   * 
+   * @param out
+   * @param codec
+   * @throws IOException
+   */
+  @SuppressWarnings("unchecked")
+  void writePayloads(DataOutput out, PayloadCodec<? super T> codec)
+          throws IOException
+  {
+    for (Object payload : payloads)
+    {
+      codec.write((T) payload, out);
+    }
+  }
+
+  /**
+   * Reads the data of each stored interval, in array order
+   * 
+   * @param in
+   * @param codec
+   * @throws IOException
+   */
+  void readPayloads(DataInput in, PayloadCodec<? extends T> codec)
+          throws IOException
+  {
+    for (int i = 0; i < payloads.length; i++)
+    {
+      payloads[i] = codec.read(layout.begins.get(i), layout.ends.get(i),
+              in);
+    }
+  }
+
+  /**
+   * Answers the positions and containment tree of the intervals, for making
+   * stores that hold them in other forms
+   * 
+   * @return
+   */
+  NCListLayout getLayout()
+  {
+    return layout;
+  }
+
+  /**
+   * Answers the stored interval at the given index of the arrays
+   * 
+   * @param i
+   * @return
+   */
+  @SuppressWarnings("unchecked")
+  private T get(int i)
+  {
+    return (T) payloads[i];
+  }
+
+  @Override
+  public List<T> findOverlaps(long from, long to)
+  {
+    return findOverlaps(from, to, new ArrayList<>());
+  }
+
+  @Override
+  public List<T> findOverlaps(long from, long to, List<T> result)
+  {
+    if (result == null)
+    {
+      result = new ArrayList<>();
+    }
+    layout.findOverlaps(from, to, adder, result, 0);
+    return result;
+  }
+
+  @Override
+  public void forEachOverlap(long from, long to,
+          Consumer<? super T> action)
+  {
+    layout.findOverlaps(from, to, acceptor, action, 0);
+  }
+
+  @Override
+  public boolean visitOverlaps(long from, long to,
+          Predicate<? super T> visitor)
+  {
+    return layout.findOverlaps(from, to, this.visitor, visitor, 0) >= 0;
+  }
+
+  @Override
+  public Iterator<T> overlapIterator(long from, long to)
+  {
+    return new OverlapIterator(from, to);
+  }
+
+  /**
+   * Answers the number of stored intervals that overlap the from-to range.
+   * Intervals that lie wholly within the range are counted together with all
+   * the intervals they enclose, without visiting them.
+   */
+  @Override
+  public int countOverlaps(long from, long to)
+  {
+    return layout.countOverlaps(from, to);
+  }
+
+  /**
+   * Answers true if the store contains an interval equal to the given entry
+   * (by object equals test), else false. Only blocks enclosed by an interval
+   * that contains the entry's extent are searched.
+   */
+  @Override
+  public boolean contains(Object entry)
+  {
+    if (!(entry instanceof IntervalI))
+    {
+      return false;
+    }
+    IntervalI interval = (IntervalI) entry;
+    return layout.contains(interval.getBegin(), interval.getEnd(), matcher,
+            entry);
+  }
+
+  @Override
+  public int size()
+  {
+    return payloads.length;
+  }
+
+  /**
+   * Answers 0 if the store is empty, 1 if there are no nested intervals, else
+   * the greatest number of intervals that enclose each other (including the
+   * outermost)
+   */
+  @Override
+  public int getDepth()
+  {
+    return layout.depth;
+  }
+
+  /**
+   * Answers an iterator over the stored intervals, with no particular ordering
+   * guaranteed. The iterator does not support the optional <code>remove</code>
+   * operation (throws <code>UnsupportedOperationException</code> if
+   * attempted).
+   */
+  @Override
+  public Iterator<T> iterator()
+  {
+    return new FrozenIterator();
+  }
+
+  /**
+   * Throws UnsupportedOperationException as this collection is read-only
+   */
+  @Override
+  public boolean add(T entry)
+  {
+    throw new UnsupportedOperationException(READ_ONLY);
+  }
+
+  /**
+   * Throws UnsupportedOperationException as this collection is read-only
+   */
+  @Override
+  public boolean add(T entry, boolean allowDuplicates)
+  {
+    throw new UnsupportedOperationException(READ_ONLY);
+  }
+
+  /**
+   * Throws UnsupportedOperationException as this collection is read-only
+   */
+  @Override
+  public boolean addAll(Collection<? extends T> c)
+  {
+    throw new UnsupportedOperationException(READ_ONLY);
+  }
+
+  /**
+   * Throws UnsupportedOperationException as this collection is read-only
+   */
+  @Override
+  public boolean remove(Object o)
+  {
+    throw new UnsupportedOperationException(READ_ONLY);
+  }
+
+  /**
+   * Throws UnsupportedOperationException as this collection is read-only
+   */
+  @Override
+  public void clear()
+  {
+    throw new UnsupportedOperationException(READ_ONLY);
+  }
+
+  /**
+   * Formats the tree as a bracketed list e.g.
+   * 
+   * <pre>
+   * [1-100 [10-30 [10-20]], 15-30 [20-20]]
+   * </pre>
+   * 
+   * in the same format as {@code NCList.toString()}
+   */
+  @Override
+  public String toString()
+  {
+    StringBuilder sb = new StringBuilder(10 * size() + 2);
+    layout.appendTo(sb, this::get);
+    return sb.toString();
+  }
+
+  /**
+   * Answers the stored intervals as an indented list, in the same format as
+   * {@code NCList.prettyPrint()}
+   */
+  @Override
+  public String prettyPrint()
+  {
+    StringBuilder sb = new StringBuilder(512);
+    layout.prettyPrint(sb, this::get);
+    sb.append(System.lineSeparator());
+    return sb.toString();
+  }
+
+  /**
+   * Answers true if the arrays satisfy the rules of construction of an NCList,
+   * and hold the current start and end positions of the stored intervals, else
+   * false. For use in testing and debugging.
+   * 
+   * @return
+   */
+  public boolean isValid()
+  {
+    return layout.isValid(this::get);
+  }
+}
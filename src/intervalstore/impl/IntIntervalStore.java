@@ -0,0 +1,367 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import intervalstore.impl.BinarySearcher.Compare;
+
+/**
+ * A store of intervals, each of which is held only as its start and end
+ * position and an <code>int</code> id (for example, a row number), so that no
+ * object is created for each interval, either when it is added or when it is
+ * found by a query.
+ * <p>
+ * Intervals are added to primitive arrays. When the store is queried after
+ * intervals have been added, it is (re)built in the same way as a bulk loaded
+ * {@code IntervalStore} (see {@code NCListBuilder}): the intervals are sorted
+ * by start ascending, length descending (preserving the order of addition of
+ * co-located intervals), partitioned into non-nested intervals and nested
+ * ones, and the nested intervals arranged as a containment tree in the array
+ * layout of {@code FrozenNCList}. Queries find the ids of overlapping intervals
+ * in the same order as an {@code IntervalStore} of the same intervals.
+ * <p>
+ * This makes loading, then querying, efficient; but alternating adds and
+ * queries rebuilds the store each time. This class is not thread-safe, as a
+ * query may rebuild the store.
+ */
+public class IntIntervalStore
+{
+  /*
+   * intervals as added (but reordered when the store is built)
+   */
+  private int[] addedBegins = new int[16];
+
+  private int[] addedEnds = new int[16];
+
+  private int[] addedIds = new int[16];
+
+  private int size;
+
+  /*
+   * the number of added intervals when the store was last built
+   */
+  private int builtSize;
+
+  /*
+   * non-nested intervals in start position order
+   */
+  private int nonNestedCount;
+
+  private int[] nonNestedBegins = new int[0];
+
+  private int[] nonNestedEnds = new int[0];
+
+  private int[] nonNestedIds = new int[0];
+
+  /*
+   * nested intervals, in blocks of siblings as for FrozenNCList,
+   * and their ids at the same index
+   */
+  private NCListLayout nested = NCListLayout.EMPTY;
+
+  private int[] ids = new int[0];
+
+  /*
+   * callbacks for the ids of nested overlaps, held here so that queries
+   * don't create them
+   */
+  private final NCListLayout.Hits<IntConsumer> acceptor = (pos, count,
+          action) -> {
+    action.accept(ids[pos]);
+    return true;
+  };
+
+  private final NCListLayout.Hits<int[]> writer = (pos, count, result) -> {
+    if (count < result.length)
+    {
+      result[count] = ids[pos];
+    }
+    return true;
+  };
+
+  /**
+   * Adds an interval with the given start and end position and id. We assume
+   * that begin &lt;= end. Behaviour for reverse ordered intervals is
+   * undefined.
+   * 
+   * @param begin
+   * @param end
+   * @param id
+   */
+  public void add(int begin, int end, int id)
+  {
+    if (size == addedBegins.length)
+    {
+      int newLength = size + (size >> 1);
+      addedBegins = Arrays.copyOf(addedBegins, newLength);
+      addedEnds = Arrays.copyOf(addedEnds, newLength);
+      addedIds = Arrays.copyOf(addedIds, newLength);
+    }
+    addedBegins[size] = begin;
+    addedEnds[size] = end;
+    addedIds[size] = id;
+    size++;
+  }
+
+  /**
+   * Answers the number of intervals in the store
+   * 
+   * @return
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Removes all intervals from the store
+   */
+  public void clear()
+  {
+    size = 0;
+    build();
+  }
+
+  /**
+   * Passes the id of each interval that overlaps the from-to range to the
+   * action, non-nested intervals first, then nested ones in depth-first order,
+   * which is the same order as they would be found in an
+   * {@code IntervalStore}
+   * 
+   * @param from
+   * @param to
+   * @param action
+   */
+  public void forEachOverlap(long from, long to, IntConsumer action)
+  {
+    ensureBuilt();
+    int i = BinarySearcher.findFirst(nonNestedEnds, 0, nonNestedCount,
+            Compare.GE, from);
+    while (i < nonNestedCount && nonNestedBegins[i] <= to)
+    {
+      action.accept(nonNestedIds[i]);
+      i++;
+    }
+    nested.findOverlaps(from, to, acceptor, action, 0);
+  }
+
+  /**
+   * Writes the ids of intervals that overlap the from-to range to
+   * {@code result}, from index 0, in the same order as they would be found in
+   * an {@code IntervalStore}, and answers the number of overlaps. If this is
+   * more than the length of {@code result}, only as many ids as it will hold
+   * are written, and the caller may retry with a larger array.
+   * 
+   * @param from
+   * @param to
+   * @param result
+   * @return
+   */
+  public int findOverlaps(long from, long to, int[] result)
+  {
+    ensureBuilt();
+    int i = BinarySearcher.findFirst(nonNestedEnds, 0, nonNestedCount,
+            Compare.GE, from);
+    int count = 0;
+    while (i < nonNestedCount && nonNestedBegins[i] <= to)
+    {
+      if (count < result.length)
+      {
+        result[count] = nonNestedIds[i];
+      }
+      count++;
+      i++;
+    }
+    return nested.findOverlaps(from, to, writer, result, count);
+  }
+
+  /**
+   * Answers the number of intervals that overlap the from-to range. Nested
+   * intervals that lie wholly within the range are counted together with all
+   * those they enclose, without visiting them.
+   * 
+   * @param from
+   * @param to
+   * @return
+   */
+  public int countOverlaps(long from, long to)
+  {
+    ensureBuilt();
+    int first = BinarySearcher.findFirst(nonNestedEnds, 0, nonNestedCount,
+            Compare.GE, from);
+    int last = BinarySearcher.findFirst(nonNestedBegins, first,
+            nonNestedCount, Compare.GT, to);
+    return last - first + nested.countOverlaps(from, to);
+  }
+
+  /**
+   * Answers 0 if the store is empty, 1 if there are no nested intervals, else
+   * 1 plus the greatest number of nested intervals that enclose each other
+   * 
+   * @return
+   */
+  public int getDepth()
+  {
+    ensureBuilt();
+    if (size == 0)
+    {
+      return 0;
+    }
+    return (nonNestedCount == 0 ? 0 : 1) + nested.depth;
+  }
+
+  /**
+   * Rebuilds the store if intervals have been added since it was last built
+   */
+  private void ensureBuilt()
+  {
+    if (builtSize != size)
+    {
+      build();
+    }
+  }
+
+  /**
+   * Sorts the added intervals by start ascending, length descending (unless
+   * already in that order), and builds the arrays of non-nested and nested
+   * intervals, as for a bulk loaded {@code IntervalStore}
+   */
+  private void build()
+  {
+    builtSize = size;
+    if (!NCListBuilder.isSorted(addedBegins, addedEnds, size))
+    {
+      sort();
+    }
+
+    /*
+     * partition into subranges, each of a root interval and the following
+     * intervals that it properly contains; the root and any intervals
+     * co-located with it are non-nested, and the others nested
+     */
+    int[] sublists = NCListBuilder.partitionSortedSublists(addedBegins,
+            addedEnds, size);
+    nonNestedBegins = new int[size];
+    nonNestedEnds = new int[size];
+    nonNestedIds = new int[size];
+    nonNestedCount = 0;
+    int[] nestedIndices = new int[size];
+    int nestedCount = 0;
+    for (int s = 0; s < sublists.length - 1; s++)
+    {
+      int root = sublists[s];
+      for (int i = root; i < sublists[s + 1]; i++)
+      {
+        int begin = addedBegins[i];
+        int end = addedEnds[i];
+        if (begin == addedBegins[root] && end == addedEnds[root])
+        {
+          nonNestedBegins[nonNestedCount] = begin;
+          nonNestedEnds[nonNestedCount] = end;
+          nonNestedIds[nonNestedCount] = addedIds[i];
+          nonNestedCount++;
+        }
+        else
+        {
+          nestedIndices[nestedCount++] = i;
+        }
+      }
+    }
+    nonNestedBegins = Arrays.copyOf(nonNestedBegins, nonNestedCount);
+    nonNestedEnds = Arrays.copyOf(nonNestedEnds, nonNestedCount);
+    nonNestedIds = Arrays.copyOf(nonNestedIds, nonNestedCount);
+
+    /*
+     * arrange the nested intervals as a containment tree,
+     * and place their ids in the same order
+     */
+    int[] nestedBegins = new int[nestedCount];
+    int[] nestedEnds = new int[nestedCount];
+    for (int i = 0; i < nestedCount; i++)
+    {
+      nestedBegins[i] = addedBegins[nestedIndices[i]];
+      nestedEnds[i] = addedEnds[nestedIndices[i]];
+    }
+    int[] positions = new int[nestedCount];
+    nested = NCListLayout.build(nestedBegins, nestedEnds, positions);
+    ids = new int[nestedCount];
+    for (int i = 0; i < nestedCount; i++)
+    {
+      ids[positions[i]] = addedIds[nestedIndices[i]];
+    }
+  }
+
+  /**
+   * Sorts the added intervals by start ascending, length descending, with a
+   * stable sort of their indices, so that co-located intervals stay in the
+   * order in which they were added; then rearranges the added arrays into the
+   * sorted order
+   */
+  private void sort()
+  {
+    int[] order = NCListBuilder.sortedOrder(addedBegins, addedEnds, size);
+    int[] sortedBegins = new int[addedBegins.length];
+    int[] sortedEnds = new int[addedBegins.length];
+    int[] sortedIds = new int[addedBegins.length];
+    for (int i = 0; i < size; i++)
+    {
+      sortedBegins[i] = addedBegins[order[i]];
+      sortedEnds[i] = addedEnds[order[i]];
+      sortedIds[i] = addedIds[order[i]];
+    }
+    addedBegins = sortedBegins;
+    addedEnds = sortedEnds;
+    addedIds = sortedIds;
+  }
+
+  /**
+   * Answers true if the built arrays satisfy the rules of construction of the
+   * store, else false. For use in testing and debugging.
+   * 
+   * @return
+   */
+  public boolean isValid()
+  {
+    ensureBuilt();
+    for (int i = 1; i < nonNestedCount; i++)
+    {
+      if (nonNestedBegins[i] < nonNestedBegins[i - 1]
+              || nonNestedEnds[i] < nonNestedEnds[i - 1])
+      {
+        return false;
+      }
+    }
+    return nonNestedCount + nested.size() == size && nested.isValid(null);
+  }
+}
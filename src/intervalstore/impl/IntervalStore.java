@@ -33,9 +33,16 @@ package intervalstore.impl;
 
 import java.util.AbstractCollection;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import intervalstore.api.IntervalI;
 import intervalstore.api.IntervalStoreI;
@@ -45,6 +52,10 @@ import intervalstore.impl.BinarySearcher.Compare;
  * A collection class to store interval-associated data, with O(log N)
  * performance for overlap queries, insertion and deletion (where N is the size
  * of the store). Accepts duplicate entries but not null values.
+ * <p>
+ * This class does no locking, so is not thread-safe if the store is modified
+ * while in use by other threads. See {@link ConcurrencyPolicy} for thread-safe
+ * alternatives.
  * 
  * @author gmcarstairs
  *
@@ -56,36 +67,33 @@ public class IntervalStore<T extends IntervalI>
 {
   /**
    * An iterator over the intervals held in this store, with no particular
-   * ordering guaranteed. The iterator does not support the optional
-   * <code>remove</code> operation (throws
+   * ordering guaranteed. The top level intervals are visited by an iterator
+   * over their chunks, then any nested intervals by a single NCList iterator,
+   * so no objects are created per interval visited. The iterator does not
+   * support the optional <code>remove</code> operation (throws
    * <code>UnsupportedOperationException</code> if attempted).
    * 
    * @author gmcarstairs
-   *
-   * @param <V>
    */
-  private class IntervalIterator<V extends IntervalI> implements Iterator<V>
+  private class IntervalIterator implements Iterator<T>
   {
     /*
      * iterator over top level non-nested intervals
      */
-    Iterator<? extends IntervalI> topLevelIterator;
+    Iterator<T> nonNestedIterator;
 
     /*
      * iterator over NCList (if any)
      */
-    Iterator<? extends IntervalI> nestedIterator;
+    Iterator<T> nestedIterator;
 
     /**
-     * Constructor initialises iterators over the top level list and any nested
-     * NCList
-     * 
-     * @param intervalStore
+     * Constructor initialises iterators over the non-nested intervals and any
+     * nested NCList
      */
-    public IntervalIterator(
-            IntervalStore<? extends IntervalI> intervalStore)
+    IntervalIterator()
     {
-      topLevelIterator = nonNested.iterator();
+      nonNestedIterator = nonNested.iterator();
       if (nested != null)
       {
         nestedIterator = nested.iterator();
@@ -95,41 +103,136 @@ public class IntervalStore<T extends IntervalI>
     @Override
     public boolean hasNext()
     {
-      return topLevelIterator.hasNext() ? true
-              : (nestedIterator != null && nestedIterator.hasNext());
+      return nonNestedIterator.hasNext()
+              || (nestedIterator != null && nestedIterator.hasNext());
     }
 
     @Override
-    public V next()
+    public T next()
     {
-      if (topLevelIterator.hasNext())
+      if (nonNestedIterator.hasNext())
       {
-        return (V) topLevelIterator.next();
+        return nonNestedIterator.next();
       }
       if (nestedIterator != null)
       {
-        return (V) nestedIterator.next();
+        return nestedIterator.next();
       }
       throw new NoSuchElementException();
     }
 
   }
 
-  private List<T> nonNested;
+  /**
+   * An iterator over the intervals in the store that overlap a given range, in
+   * the same order as they are found by <code>findOverlaps</code>, finding
+   * each one only when it is requested. The iterator does not support the
+   * optional <code>remove</code> operation.
+   */
+  private class OverlapIterator implements Iterator<T>
+  {
+    final long from;
+
+    final long to;
+
+    /*
+     * iterator over non-nested intervals, from the first that may overlap
+     */
+    final Iterator<T> nonNestedIterator;
+
+    /*
+     * the next non-nested interval, if it overlaps, else null
+     */
+    T nextNonNested;
+
+    /*
+     * iterator over overlaps in the NCList (if any), created 
+     * once non-nested overlaps are exhausted
+     */
+    Iterator<T> nestedIterator;
+
+    /**
+     * Constructor given the range to find overlaps for
+     * 
+     * @param from
+     * @param to
+     */
+    OverlapIterator(long from, long to)
+    {
+      this.from = from;
+      this.to = to;
+      nonNestedIterator = nonNested
+              .iterator(nonNested.findFirstEnding(from));
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+      if (nestedIterator == null && nextNonNested == null
+              && nonNestedIterator.hasNext())
+      {
+        T t = nonNestedIterator.next();
+        if (t.getBegin() <= to)
+        {
+          nextNonNested = t;
+        }
+      }
+      if (nextNonNested != null)
+      {
+        return true;
+      }
+      if (nestedIterator == null)
+      {
+        nestedIterator = nested == null ? Collections.emptyIterator()
+                : nested.overlapIterator(from, to);
+      }
+      return nestedIterator.hasNext();
+    }
+
+    @Override
+    public T next()
+    {
+      if (!hasNext())
+      {
+        throw new NoSuchElementException();
+      }
+      if (nextNonNested != null)
+      {
+        T t = nextNonNested;
+        nextNonNested = null;
+        return t;
+      }
+      return nestedIterator.next();
+    }
+  }
+
+  /*
+   * top level intervals, none of which contains another, in start order;
+   * held in chunks so that insertion does not shift all following entries
+   */
+  private ChunkedIntervalList<T> nonNested;
 
   private NCList<T> nested;
 
+  /*
+   * incremented on each change to the nested intervals, so that a frozen
+   * copy of them may be reused until they are changed
+   */
+  private int nestedModCount;
+
   /**
    * Constructor
    */
   public IntervalStore()
   {
-    nonNested = new ArrayList<>();
+    nonNested = new ChunkedIntervalList<>();
   }
 
   /**
    * Constructor given a list of intervals. Note that the list may get sorted as
-   * a side-effect of calling this constructor.
+   * a side-effect of calling this constructor. If the intervals are already
+   * sorted by start ascending, length descending (as, for example, when read
+   * from a position-sorted file), the list is not modified.
    */
   public IntervalStore(List<T> intervals)
   {
@@ -143,12 +246,93 @@ public class IntervalStore<T extends IntervalI>
     List<IntervalI> sublists = new NCListBuilder<T>()
             .partitionNestedSublists(intervals);
 
-    /*
-     * add all 'subrange root intervals' (and any co-located intervals)
-     * to our top level list of 'non-nested' intervals; 
-     * put aside any left over for our NCList
-     */
-    List<T> nested = new ArrayList<>();
+    List<T> nestedIntervals = partition(intervals, sublists);
+    if (!nestedIntervals.isEmpty())
+    {
+      this.nested = new NCList<>(nestedIntervals);
+    }
+  }
+
+  /**
+   * Constructor given a list of intervals, which are loaded using up to
+   * <code>parallelism</code> threads. The intervals are sorted with
+   * <code>Arrays.parallelSort</code>, and the top level subranges of the
+   * nested intervals (if any) are built concurrently, in a
+   * <code>ForkJoinPool</code> created for the purpose and shut down on
+   * completion. The store built is the same as by the single-threaded
+   * constructor. Note that the list gets sorted as a side-effect of calling
+   * this constructor, unless it is already sorted by start ascending, length
+   * descending.
+   * 
+   * @param intervals
+   * @param parallelism
+   * @throws IllegalArgumentException
+   *           if parallelism is less than 1
+   */
+  public IntervalStore(List<T> intervals, int parallelism)
+  {
+    this();
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try
+    {
+      if (!intervals.isEmpty())
+      {
+        pool.invoke(ForkJoinTask.adapt(() -> loadInParallel(intervals)));
+      }
+    } finally
+    {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Sorts the intervals in parallel, and builds the store from them. This
+   * should be called from a task running in the ForkJoinPool to use.
+   * 
+   * @param intervals
+   */
+  @SuppressWarnings("unchecked")
+  private void loadInParallel(List<T> intervals)
+  {
+    if (!NCListBuilder.isSorted(intervals))
+    {
+      IntervalI[] sorted = intervals
+              .toArray(new IntervalI[intervals.size()]);
+      Arrays.parallelSort(sorted, IntervalI.COMPARE_BEGIN_ASC_END_DESC);
+      ListIterator<T> it = intervals.listIterator();
+      for (IntervalI interval : sorted)
+      {
+        it.next();
+        it.set((T) interval);
+      }
+    }
+
+    List<IntervalI> sublists = new NCListBuilder<T>()
+            .partitionSortedSublists(intervals);
+
+    List<T> nestedIntervals = partition(intervals, sublists);
+    if (!nestedIntervals.isEmpty())
+    {
+      this.nested = new NCList<>();
+      this.nested.buildSortedInParallel(nestedIntervals);
+    }
+  }
+
+  /**
+   * Adds all 'subrange root intervals' (and any co-located intervals) to the
+   * top level list of 'non-nested' intervals, and answers a list of any left
+   * over, for the NCList of nested intervals
+   * 
+   * @param intervals
+   *          intervals sorted by start ascending, length descending
+   * @param sublists
+   *          the start-end indices of the partition of intervals into
+   *          subranges
+   * @return
+   */
+  private List<T> partition(List<T> intervals, List<IntervalI> sublists)
+  {
+    List<T> nestedIntervals = new ArrayList<>();
 
     for (IntervalI subrange : sublists)
     {
@@ -163,16 +347,12 @@ public class IntervalStore<T extends IntervalI>
         }
         else
         {
-          nested.add(t);
+          nestedIntervals.add(t);
         }
         listIndex++;
       }
     }
-
-    if (!nested.isEmpty())
-    {
-      this.nested = new NCList<>(nested);
-    }
+    return nestedIntervals;
   }
 
   /**
@@ -212,7 +392,7 @@ public class IntervalStore<T extends IntervalI>
   @Override
   public boolean contains(Object entry)
   {
-    if (listContains(nonNested, entry))
+    if (nonNestedContains(entry))
     {
       return true;
     }
@@ -222,55 +402,73 @@ public class IntervalStore<T extends IntervalI>
 
   protected boolean addNonNestedInterval(T entry)
   {
-    synchronized (nonNested)
+    /*
+     * fast path for adding in start position order: append if the new
+     * interval follows, overlaps or matches the last one, fail if the last
+     * one encloses it
+     */
+    int count = nonNested.size();
+    if (count > 0)
     {
-      /*
-       * find the first stored interval which doesn't precede the new one
-       */
-      int insertPosition = BinarySearcher.findFirst(nonNested, true,
-              Compare.GE, entry.getBegin());
+      T last = nonNested.get(count - 1);
+      if (last.equalsInterval(entry) || (entry.getBegin() > last.getBegin()
+              && entry.getEnd() > last.getEnd()))
+      {
+        nonNested.add(entry);
+        return true;
+      }
+      if (last.properlyContainsInterval(entry))
+      {
+        return false;
+      }
+    }
 
-      /*
-       * fail if the new interval is enclosed by the one before it
-       */
-      if (insertPosition > 0)
+    /*
+     * find the first stored interval which doesn't precede the new one
+     */
+    int insertPosition = nonNested.findFirst(true, Compare.GE,
+            entry.getBegin());
+
+    /*
+     * fail if the new interval is enclosed by the one before it
+     */
+    if (insertPosition > 0)
+    {
+      if (nonNested.get(insertPosition - 1).properlyContainsInterval(entry))
       {
-        if (nonNested.get(insertPosition - 1).properlyContainsInterval(entry))
-        {
-          return false;
-        }
+        return false;
       }
+    }
 
-      /*
-       * traverse any co-located intervals and add this one on the end;
-       * fail if we detect interval enclosure of the new interval by 
-       * one after it, or vice versa
-       */
-      while (insertPosition < nonNested.size())
+    /*
+     * traverse any co-located intervals and add this one on the end;
+     * fail if we detect interval enclosure of the new interval by 
+     * one after it, or vice versa
+     */
+    while (insertPosition < nonNested.size())
+    {
+      T following = nonNested.get(insertPosition);
+      if (entry.properlyContainsInterval(following)
+              || following.properlyContainsInterval(entry))
       {
-        T following = nonNested.get(insertPosition);
-        if (entry.properlyContainsInterval(following)
-                || following.properlyContainsInterval(entry))
-        {
-          return false;
-        }
-        if (following.equalsInterval(entry))
-        {
-          insertPosition++;
-        }
-        else
-        {
-          break;
-        }
+        return false;
+      }
+      if (following.equalsInterval(entry))
+      {
+        insertPosition++;
       }
+      else
+      {
+        break;
+      }
+    }
 
-      /*
-       * checks passed - add the interval (after any for the same start-end)
-       */
-      nonNested.add(insertPosition, entry);
+    /*
+     * checks passed - add the interval (after any for the same start-end)
+     */
+    nonNested.add(insertPosition, entry);
 
-      return true;
-    }
+    return true;
   }
 
   @Override
@@ -297,6 +495,107 @@ public class IntervalStore<T extends IntervalI>
     return result;
   }
 
+  /**
+   * Performs the action for each stored interval that overlaps the given range,
+   * in the same order as they would be returned by {@code findOverlaps},
+   * without creating any objects
+   */
+  @Override
+  public void forEachOverlap(long from, long to,
+          Consumer<? super T> action)
+  {
+    forEachNonNestedOverlap(from, to, action);
+
+    if (nested != null)
+    {
+      nested.forEachOverlap(from, to, action);
+    }
+  }
+
+  /**
+   * Calls the visitor for each stored interval that overlaps the given range,
+   * in the same order as they would be returned by {@code findOverlaps}, until
+   * the visitor returns false, without creating any objects
+   */
+  @Override
+  public boolean visitOverlaps(long from, long to,
+          Predicate<? super T> visitor)
+  {
+    if (!visitNonNestedOverlaps(from, to, visitor))
+    {
+      return false;
+    }
+
+    return nested == null ? true : nested.visitOverlaps(from, to, visitor);
+  }
+
+  /**
+   * Answers an iterator over the stored intervals that overlap the given range,
+   * in the same order as they would be returned by {@code findOverlaps},
+   * finding each one only as it is requested. The behaviour of the iterator is
+   * undefined if the store is modified while it is in use.
+   */
+  @Override
+  public Iterator<T> overlapIterator(long from, long to)
+  {
+    return new OverlapIterator(from, to);
+  }
+
+  /**
+   * Answers the number of stored intervals that overlap the given range. The
+   * non-nested intervals are counted by binary search, and nested intervals
+   * that lie wholly within the range are counted without being searched.
+   */
+  @Override
+  public int countOverlaps(long from, long to)
+  {
+    int count = countNonNestedOverlaps(from, to);
+    if (nested != null)
+    {
+      count += nested.countOverlaps(from, to);
+    }
+    return count;
+  }
+
+  /**
+   * Answers a read-only snapshot of the store, optimised for overlap queries
+   * and with a more compact memory footprint. The snapshot is made in a single
+   * pass over the stored intervals, which are already ordered, so no sorting is
+   * required. Subsequent changes to this store are not reflected in the
+   * snapshot.
+   * 
+   * @return
+   */
+  public FrozenIntervalStore<T> freeze()
+  {
+    return new FrozenIntervalStore<>(nonNested, nested);
+  }
+
+  /**
+   * Answers a snapshot as for {@link #freeze()}, but sharing the nested
+   * intervals of {@code previous}, so that only the non-nested intervals are
+   * copied. The previous snapshot must have been made from this store, with no
+   * change to its nested intervals since, as shown by
+   * {@link #getNestedModCount()}.
+   * 
+   * @param previous
+   * @return
+   */
+  FrozenIntervalStore<T> freeze(FrozenIntervalStore<T> previous)
+  {
+    return new FrozenIntervalStore<>(nonNested, previous);
+  }
+
+  /**
+   * Answers a count that changes whenever the nested intervals are changed
+   * 
+   * @return
+   */
+  int getNestedModCount()
+  {
+    return nestedModCount;
+  }
+
   @Override
   public String prettyPrint()
   {
@@ -351,7 +650,7 @@ public class IntervalStore<T extends IntervalI>
   }
 
   @Override
-  public synchronized boolean remove(Object o)
+  public boolean remove(Object o)
   {
     if (o == null)
     {
@@ -373,6 +672,10 @@ public class IntervalStore<T extends IntervalI>
       if (!removed && nested != null)
       {
         removed = nested.remove(entry);
+        if (removed)
+        {
+          nestedModCount++;
+        }
       }
 
       return removed;
@@ -397,7 +700,7 @@ public class IntervalStore<T extends IntervalI>
      * start position is not less than the target range start
      * (NB inequality test ensures the first match if any is found)
      */
-    int startIndex = BinarySearcher.findFirst(nonNested, true, Compare.GE,
+    int startIndex = nonNested.findFirst(true, Compare.GE,
             entry.getBegin());
 
     /*
@@ -442,13 +745,14 @@ public class IntervalStore<T extends IntervalI>
    * Adds one interval to the NCList that can manage nested intervals (creating
    * the NCList if necessary)
    */
-  protected synchronized void addNestedInterval(T interval)
+  protected void addNestedInterval(T interval)
   {
     if (nested == null)
     {
       nested = new NCList<>();
     }
     nested.add(interval);
+    nestedModCount++;
   }
 
   /**
@@ -474,6 +778,39 @@ public class IntervalStore<T extends IntervalI>
      */
     int pos = BinarySearcher.findFirst(intervals, true, Compare.GE,
             interval.getBegin());
+    return listContains(intervals, pos, interval);
+  }
+
+  /**
+   * Answers true if the non-nested intervals include the entry, else false
+   * 
+   * @param entry
+   * @return
+   */
+  private boolean nonNestedContains(Object entry)
+  {
+    if (!(entry instanceof IntervalI))
+    {
+      return false;
+    }
+    IntervalI interval = (IntervalI) entry;
+    int pos = nonNested.findFirst(true, Compare.GE, interval.getBegin());
+    return listContains(nonNested, pos, interval);
+  }
+
+  /**
+   * Answers true if the list contains the interval at or after index
+   * {@code pos}, which is that of the first entry in the list that does not
+   * start before it
+   * 
+   * @param intervals
+   * @param pos
+   * @param interval
+   * @return
+   */
+  private boolean listContains(List<T> intervals, int pos,
+          IntervalI interval)
+  {
     int len = intervals.size();
     while (pos < len)
     {
@@ -500,7 +837,7 @@ public class IntervalStore<T extends IntervalI>
   @Override
   public Iterator<T> iterator()
   {
-    return new IntervalIterator<>(this);
+    return new IntervalIterator();
   }
 
   @Override
@@ -508,6 +845,7 @@ public class IntervalStore<T extends IntervalI>
   {
     this.nonNested.clear();
     this.nested = new NCList<>();
+    nestedModCount++;
   }
 
   /**
@@ -521,28 +859,60 @@ public class IntervalStore<T extends IntervalI>
   protected void findNonNestedOverlaps(long from, long to,
           List<T> result)
   {
-    /*
-     * find the first interval whose end position is
-     * after the target range start
-     */
-    int startIndex = BinarySearcher.findFirst(nonNested, false, Compare.GE,
-            (int) from);
+    nonNested.findOverlaps(from, to, result);
+  }
 
-    final int startIndex1 = startIndex;
-    int i = startIndex1;
-    while (i < nonNested.size())
+  /**
+   * Answers the number of non-nested intervals that overlap the target range.
+   * As non-nested intervals are ordered by both start and end position, these
+   * are all those from the first that ends at or after {@code from} to the last
+   * that starts at or before {@code to}.
+   * 
+   * @param from
+   * @param to
+   * @return
+   */
+  protected int countNonNestedOverlaps(long from, long to)
+  {
+    if (from > Integer.MAX_VALUE || to < Integer.MIN_VALUE)
     {
-      T sf = nonNested.get(i);
-      if (sf.getBegin() > to)
-      {
-        break;
-      }
-      if (sf.getBegin() <= to && sf.getEnd() >= from)
-      {
-        result.add(sf);
-      }
-      i++;
+      return 0;
     }
+    int first = nonNested.findFirst(false, Compare.GE,
+            (int) Math.max(from, Integer.MIN_VALUE));
+    int last = to >= Integer.MAX_VALUE ? nonNested.size()
+            : nonNested.findFirst(true, Compare.GT, (int) to);
+    return Math.max(0, last - first);
+  }
+
+  /**
+   * Performs the action for non-nested intervals that lie within the target
+   * range
+   * 
+   * @param from
+   * @param to
+   * @param action
+   */
+  protected void forEachNonNestedOverlap(long from, long to,
+          Consumer<? super T> action)
+  {
+    nonNested.forEachOverlap(from, to, action);
+  }
+
+  /**
+   * Calls the visitor for non-nested intervals that lie within the target
+   * range, until the visitor returns false. Answers false if the visitor
+   * stopped the search, else true.
+   * 
+   * @param from
+   * @param to
+   * @param visitor
+   * @return
+   */
+  protected boolean visitNonNestedOverlaps(long from, long to,
+          Predicate<? super T> visitor)
+  {
+    return nonNested.visitOverlaps(from, to, visitor);
   }
 
   @Override
@@ -0,0 +1,242 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntFunction;
+
+import intervalstore.api.IntervalI;
+import intervalstore.api.PayloadCodec;
+
+/**
+ * A read-only store whose start and end positions and nesting structure are
+ * held in a memory-mapped file, as written by
+ * {@link FrozenIntervalStore#write(OutputStream, PayloadCodec)}, and are
+ * queried in place. Opening a store maps the file without reading it, so takes
+ * much the same time for any size of file. The mapped pages are not part of the
+ * Java heap, and are shared (through the page cache) by all processes that map
+ * the same file.
+ * <p>
+ * The stored intervals are not read from the file. Each is identified by its
+ * position in the order of the iterator of the frozen store that was written
+ * (non-nested intervals in start position order, then nested intervals), and
+ * is obtained, when it is found by a query, by calling the {@code resolver}
+ * function with this id. Intervals are not cached, so the resolver is called
+ * each time an interval is found.
+ * <p>
+ * Opening a store checks the file header and counts, but not (unless asked to)
+ * the nesting structure, so the file is trusted to be as written: a corrupted
+ * file may fail with {@code IndexOutOfBoundsException} when queried. Use
+ * {@link #open(Path, IntFunction, boolean)} to check the structure, in time
+ * proportional to the number of nested intervals, when opening a file from an
+ * untrusted source.
+ * <p>
+ * Queries return the same results, in the same order, as the frozen store that
+ * was written. Methods that would modify the collection throw
+ * {@code UnsupportedOperationException}. The file mapping is released when the
+ * store is garbage collected.
+ * 
+ * @param <T>
+ *          any type providing <code>getBegin()</code> and <code>getEnd()</code>
+ */
+public class MappedIntervalStore<T extends IntervalI>
+        extends BufferIntervalStore<T>
+{
+  /**
+   * Opens a store written by
+   * {@link FrozenIntervalStore#write(OutputStream, PayloadCodec)} to the given
+   * file. The {@code resolver} answers the stored interval for an id, which is
+   * its position in the iteration order of the frozen store that was written.
+   * The file is closed on return, but remains mapped while the store is in use.
+   * The nesting structure held in the file is not checked, so that opening
+   * takes much the same time for any size of file.
+   * 
+   * @param file
+   * @param resolver
+   * @return
+   * @throws IOException
+   *           if the file does not hold a store in the current format
+   * @see #open(Path, IntFunction, boolean)
+   */
+  public static <T extends IntervalI> MappedIntervalStore<T> open(Path file,
+          IntFunction<? extends T> resolver) throws IOException
+  {
+    return open(file, resolver, false);
+  }
+
+  /**
+   * Opens a store as for {@link #open(Path, IntFunction)}, optionally first
+   * checking that the intervals and nesting structure held in the file are
+   * valid, so that queries of a corrupted file can't read outside the mapped
+   * arrays or answer wrong results. The check reads all of the mapped arrays.
+   * 
+   * @param file
+   * @param resolver
+   * @param verify
+   *          if true, check the intervals and nesting structure
+   * @return
+   * @throws IOException
+   *           if the file does not hold a store in the current format, or (if
+   *           verified) its intervals or nesting structure are invalid
+   */
+  public static <T extends IntervalI> MappedIntervalStore<T> open(Path file,
+          IntFunction<? extends T> resolver, boolean verify)
+          throws IOException
+  {
+    try (FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.READ))
+    {
+      return map(channel, resolver, verify);
+    }
+  }
+
+  /**
+   * Constructor given the mapped buffers
+   */
+  private MappedIntervalStore(IntFunction<? extends T> resolver,
+          IntBuffer nonNestedBegins, IntBuffer nonNestedEnds,
+          NCListLayout nested)
+  {
+    super(resolver, nonNestedBegins, nonNestedEnds, nested);
+  }
+
+  /**
+   * Reads the file header and counts, maps the arrays of positions and nesting
+   * structure, optionally checks the nesting structure, and answers a store
+   * that queries them
+   * 
+   * @param channel
+   * @param resolver
+   * @param verify
+   * @return
+   * @throws IOException
+   */
+  private static <T extends IntervalI> MappedIntervalStore<T> map(
+          FileChannel channel, IntFunction<? extends T> resolver,
+          boolean verify) throws IOException
+  {
+    DataInput header = read(channel, 0, 4 * Integer.BYTES);
+    StoreFormat.readHeader(header, StoreFormat.FROZEN_STORE);
+    int nonNestedCount = StoreFormat.readCount(header);
+    long position = 4 * Integer.BYTES;
+    IntBuffer nonNestedBegins = mapInts(channel, position, nonNestedCount);
+    position += Integer.BYTES * (long) nonNestedCount;
+    IntBuffer nonNestedEnds = mapInts(channel, position, nonNestedCount);
+    position += Integer.BYTES * (long) nonNestedCount;
+
+    if (!read(channel, position, 1).readBoolean())
+    {
+      return new MappedIntervalStore<>(resolver, nonNestedBegins,
+              nonNestedEnds, NCListLayout.EMPTY);
+    }
+    position++;
+    DataInput counts = read(channel, position, 3 * Integer.BYTES);
+    int nestedCount = StoreFormat.readCount(counts);
+    int topLevelCount = StoreFormat.readCount(counts);
+    int depth = StoreFormat.readCount(counts);
+    StoreFormat.checkCounts(nestedCount, topLevelCount, depth);
+    position += 3 * Integer.BYTES;
+    long length = Integer.BYTES * (long) nestedCount;
+    NCListLayout nested = new NCListLayout(
+            mapInts(channel, position, nestedCount),
+            mapInts(channel, position + length, nestedCount),
+            mapInts(channel, position + 2 * length, nestedCount),
+            mapInts(channel, position + 3 * length, nestedCount),
+            mapInts(channel, position + 4 * length, nestedCount),
+            topLevelCount, depth);
+    if (verify)
+    {
+      StoreFormat.checkOrder(nonNestedBegins, nonNestedEnds);
+      StoreFormat.checkNesting(nested);
+    }
+    return new MappedIntervalStore<>(resolver, nonNestedBegins,
+            nonNestedEnds, nested);
+  }
+
+  /**
+   * Reads the given number of bytes from the given position of the file
+   * 
+   * @param channel
+   * @param position
+   * @param length
+   * @return
+   * @throws IOException
+   */
+  private static DataInput read(FileChannel channel, long position,
+          int length) throws IOException
+  {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining())
+    {
+      if (channel.read(buffer, position + buffer.position()) < 0)
+      {
+        throw new EOFException();
+      }
+    }
+    return new DataInputStream(new ByteArrayInputStream(buffer.array()));
+  }
+
+  /**
+   * Maps {@code count} int values from the given position of the file
+   * 
+   * @param channel
+   * @param position
+   * @param count
+   * @return
+   * @throws IOException
+   */
+  private static IntBuffer mapInts(FileChannel channel, long position,
+          int count) throws IOException
+  {
+    long length = Integer.BYTES * (long) count;
+    if (length > Integer.MAX_VALUE)
+    {
+      throw new IOException("Too many intervals to map: " + count);
+    }
+    if (position + length > channel.size())
+    {
+      throw new EOFException();
+    }
+    return channel.map(MapMode.READ_ONLY, position, length).asIntBuffer();
+  }
+}
@@ -33,10 +33,13 @@ package intervalstore.impl;
 
 import java.util.AbstractCollection;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import intervalstore.api.IntervalI;
 import intervalstore.impl.BinarySearcher.Compare;
@@ -50,72 +53,195 @@ import intervalstore.impl.BinarySearcher.Compare;
  * - Alexander V. Alekseyenko, Christopher J. Lee
  * https://doi.org/10.1093/bioinformatics/btl647
  * </pre>
+ * 
+ * This class does no locking, so is not thread-safe if modified while in use
+ * by other threads.
  */
 public class NCList<T extends IntervalI> extends AbstractCollection<T>
 {
   /**
-   * A depth-first iterator over the elements stored in the NCList
+   * A depth-first iterator over the elements stored in a list of NCNodes
+   * (and their contained subregions). A single iterator object walks the
+   * whole tree, using a stack of the lists of nodes being visited, and the
+   * index of the next node in each list, so no further objects are created
+   * as the iteration proceeds. The iterator does not support the optional
+   * <code>remove</code> operation.
    */
-  private class NCListIterator implements Iterator<T>
+  static class NCListIterator<T extends IntervalI> implements Iterator<T>
   {
-    int subrangeIndex;
+    List<?>[] lists = new List<?>[4];
+
+    int[] indices = new int[4];
 
-    Iterator<T> nodeIterator;
+    int depth;
 
     /**
-     * Constructor bootstraps a pointer to an iterator over the first subrange
-     * (if any)
+     * Constructor given the top level list of nodes to iterate over
+     * 
+     * @param nodes
      */
-    NCListIterator()
+    NCListIterator(List<NCNode<T>> nodes)
     {
-      subrangeIndex = nextSubrange(-1);
+      push(nodes);
     }
 
     /**
-     * Moves the subrange iterator to the next subrange, and answers its index
-     * in the list of subranges. If there are no more, sets the iterator to null
-     * and answers -1.
+     * Adds a (non-empty) list of nodes to the stack of lists being visited
      * 
-     * @return
+     * @param nodes
      */
-    private int nextSubrange(int after)
+    private void push(List<NCNode<T>> nodes)
     {
-      int nextIndex = after + 1;
-      if (nextIndex < subranges.size())
+      if (nodes.isEmpty())
       {
-        nodeIterator = subranges.get(nextIndex).iterator();
-        return nextIndex;
+        return;
+      }
+      if (depth == lists.length)
+      {
+        lists = Arrays.copyOf(lists, 2 * depth);
+        indices = Arrays.copyOf(indices, 2 * depth);
       }
-      nodeIterator = null;
-      return -1;
+      lists[depth] = nodes;
+      indices[depth] = 0;
+      depth++;
     }
 
     @Override
     public boolean hasNext()
     {
-      return nodeIterator != null && nodeIterator.hasNext();
+      return depth > 0;
     }
 
     /**
-     * Answers the next element returned by the current NCNode's iterator, and
-     * advances the iterator (to the next NCNode if necessary)
+     * Answers the region of the next node, and pushes its subregions (if any)
+     * onto the stack to be visited next. Lists that have been visited fully
+     * are popped off the stack, so that <code>hasNext</code> is a simple test.
      */
     @Override
+    @SuppressWarnings("unchecked")
     public T next()
     {
-      if (nodeIterator == null || !nodeIterator.hasNext())
+      if (depth == 0)
       {
         throw new NoSuchElementException();
       }
-      T result = nodeIterator.next();
+      List<NCNode<T>> nodes = (List<NCNode<T>>) lists[depth - 1];
+      NCNode<T> node = nodes.get(indices[depth - 1]++);
+      while (depth > 0 && indices[depth - 1] == lists[depth - 1].size())
+      {
+        lists[--depth] = null;
+      }
+      NCList<T> subregions = node.getSubRegions();
+      if (subregions != null)
+      {
+        push(subregions.subranges);
+      }
+      return node.getRegion();
+    }
+  }
 
-      if (!nodeIterator.hasNext())
+  /**
+   * An iterator over the intervals that overlap a given range, in the same
+   * (depth-first) order as they are found by <code>findOverlaps</code>. Each
+   * overlap is found only when the previous one has been returned, using a
+   * stack of the lists of subranges being searched, and the index of the next
+   * candidate in each list. The iterator does not support the optional
+   * <code>remove</code> operation.
+   */
+  private class OverlapIterator implements Iterator<T>
+  {
+    final long from;
+
+    final long to;
+
+    List<?>[] lists = new List<?>[4];
+
+    int[] indices = new int[4];
+
+    int depth;
+
+    T next;
+
+    /**
+     * Constructor given the range to find overlaps for
+     * 
+     * @param from
+     * @param to
+     */
+    OverlapIterator(long from, long to)
+    {
+      this.from = from;
+      this.to = to;
+      push(subranges, findFirstOverlap(from));
+      next = findNext();
+    }
+
+    /**
+     * Adds a list of subranges, and the index of the first that may overlap,
+     * to the stack of lists to search
+     * 
+     * @param nodes
+     * @param index
+     */
+    private void push(NCNodeList<T> nodes, int index)
+    {
+      if (depth == lists.length)
       {
-        subrangeIndex = nextSubrange(subrangeIndex);
+        lists = Arrays.copyOf(lists, 2 * depth);
+        indices = Arrays.copyOf(indices, 2 * depth);
       }
-      return result;
+      lists[depth] = nodes;
+      indices[depth] = index;
+      depth++;
+    }
+
+    /**
+     * Answers the next overlapping interval, or null if there are no more. The
+     * contained intervals of the interval found (if any) are pushed onto the
+     * stack to be searched next.
+     * 
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private T findNext()
+    {
+      while (depth > 0)
+      {
+        NCNodeList<T> nodes = (NCNodeList<T>) lists[depth - 1];
+        int index = indices[depth - 1];
+        if (index < nodes.size() && nodes.getBegin(index) <= to)
+        {
+          indices[depth - 1]++;
+          NCNode<T> node = nodes.get(index);
+          NCList<T> subregions = node.getSubRegions();
+          if (subregions != null)
+          {
+            push(subregions.subranges, subregions.findFirstOverlap(from));
+          }
+          return node.getRegion();
+        }
+        lists[--depth] = null;
+      }
+      return null;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+      return next != null;
     }
 
+    @Override
+    public T next()
+    {
+      if (next == null)
+      {
+        throw new NoSuchElementException();
+      }
+      T result = next;
+      next = findNext();
+      return result;
+    }
   }
 
   /*
@@ -127,19 +253,20 @@ public class NCList<T extends IntervalI> extends AbstractCollection<T>
    * a list, in start position order, of sublists of ranges ordered so 
    * that each contains (or is the same as) the one that follows it
    */
-  private List<NCNode<T>> subranges;
+  private NCNodeList<T> subranges;
 
   /**
    * Default constructor
    */
   public NCList()
   {
-    subranges = new ArrayList<>();
+    subranges = new NCNodeList<>();
   }
 
   /**
    * Constructor given a list of things that are each located on a contiguous
-   * interval. Note that the constructor may reorder the list.
+   * interval. Note that the constructor may reorder the list, unless it is
+   * already sorted by start ascending, length descending.
    * <p>
    * We assume here that for each range, start &lt;= end. Behaviour for reverse
    * ordered ranges is undefined.
@@ -153,78 +280,190 @@ public class NCList<T extends IntervalI> extends AbstractCollection<T>
   }
 
   /**
-   * Sorts and groups ranges into sublists where each sublist represents an
-   * interval and its contained subintervals
+   * Sorts the ranges, then builds the tree of NCNodes in a single pass over
+   * the sorted list. Sorting by start ascending, length descending, places
+   * each range after any range that contains it, so a stack of the ranges
+   * that contain the current one is all that is needed to find its parent
+   * node. Co-located ranges are stored as siblings in the order in which they
+   * are listed.
    * 
    * @param ranges
    */
   protected void build(List<T> ranges)
   {
-    /*
-     * sort and partition into subranges 
-     * which have no mutual containment
-     */
-    List<IntervalI> sublists = partitionNestedSublists(ranges);
+    NCListBuilder.sort(ranges);
+    buildSorted(ranges);
+  }
+
+  /**
+   * Builds the tree of NCNodes from ranges that are already sorted by start
+   * ascending, length descending (as by <code>build</code>)
+   * 
+   * @param ranges
+   */
+  void buildSorted(List<T> ranges)
+  {
+    final int count = ranges.size();
 
     /*
-     * convert each subrange to an NCNode consisting of a range and
-     * (possibly) its contained NCList
+     * the stack of 'open' ranges, each properly containing the next, 
+     * with the list of its subregions (if any found yet), 
+     * and its index in the sorted list of ranges
      */
-    for (IntervalI sublist : sublists)
+    Object[] openRanges = new Object[16];
+    Object[] openSubregions = new Object[16];
+    int[] openIndices = new int[16];
+    int depth = 0;
+
+    for (int i = 0; i <= count; i++)
     {
-      subranges.add(new NCNode<>(
-              ranges.subList(sublist.getBegin(), sublist.getEnd() + 1)));
+      T range = i < count ? ranges.get(i) : null;
+
+      /*
+       * close any open ranges that do not contain this one (or all of them 
+       * at the end of the list), and add them to their parent's subregions;
+       * ranges following a range in sorted order, up to the point it is 
+       * closed, are exactly those that it contains
+       */
+      while (depth > 0 && (range == null || !((IntervalI) openRanges[depth
+              - 1]).properlyContainsInterval(range)))
+      {
+        depth--;
+        @SuppressWarnings("unchecked")
+        NCList<T> subregions = (NCList<T>) openSubregions[depth];
+        if (subregions != null)
+        {
+          subregions.size = i - openIndices[depth] - 1;
+        }
+        @SuppressWarnings("unchecked")
+        NCNode<T> node = new NCNode<>((T) openRanges[depth], subregions);
+        openRanges[depth] = null;
+        openSubregions[depth] = null;
+
+        NCList<T> parent = this;
+        if (depth > 0)
+        {
+          @SuppressWarnings("unchecked")
+          NCList<T> parentSubregions = (NCList<T>) openSubregions[depth - 1];
+          if (parentSubregions == null)
+          {
+            parentSubregions = new NCList<>();
+            openSubregions[depth - 1] = parentSubregions;
+          }
+          parent = parentSubregions;
+        }
+        parent.subranges.add(node);
+      }
+
+      if (range != null)
+      {
+        if (depth == openRanges.length)
+        {
+          openRanges = Arrays.copyOf(openRanges, 2 * depth);
+          openSubregions = Arrays.copyOf(openSubregions, 2 * depth);
+          openIndices = Arrays.copyOf(openIndices, 2 * depth);
+        }
+        openRanges[depth] = range;
+        openIndices[depth] = i;
+        depth++;
+      }
     }
 
-    size = ranges.size();
+    size = count;
   }
 
   /**
-   * Sorts and traverses the ranges to identify sublists, whose start intervals
-   * are overlapping or disjoint but not mutually contained. Answers a list of
-   * start-end indices of the sorted list of ranges.
+   * Builds the tree of NCNodes from ranges that are already sorted by start
+   * ascending, length descending. The top level subranges are independent of
+   * each other, so they are built concurrently, as fork/join tasks in the pool
+   * of the calling thread (or the common pool, if not called from a fork/join
+   * task).
    * 
    * @param ranges
-   * @return
    */
-  protected List<IntervalI> partitionNestedSublists(List<T> ranges)
+  void buildSortedInParallel(List<T> ranges)
   {
-    List<IntervalI> sublists = new ArrayList<>();
+    List<IntervalI> sublists = new NCListBuilder<T>()
+            .partitionSortedSublists(ranges);
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    NCNode<T>[] nodes = new NCNode[sublists.size()];
+    new BuildTask<>(ranges, sublists, nodes, 0, nodes.length).invoke();
+    subranges = new NCNodeList<>(nodes);
+    size = ranges.size();
+  }
 
-    if (ranges.isEmpty())
-    {
-      return sublists;
-    }
+  /**
+   * A task that builds the NCNodes for a run of top level subranges, splitting
+   * the work in two while it covers more than a threshold number of intervals
+   */
+  private static class BuildTask<T extends IntervalI> extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
 
     /*
-     * sort by start ascending, length descending, so that
-     * contained intervals follow their containing interval
+     * the number of intervals below which nodes are built in the current task
      */
-    Collections.sort(ranges, IntervalI.COMPARE_BEGIN_ASC_END_DESC);
+    private static final int THRESHOLD = 8192;
 
-    int listStartIndex = 0;
+    private final List<T> ranges;
 
-    IntervalI lastParent = ranges.get(0);
-    boolean first = true;
+    private final List<IntervalI> sublists;
+
+    private final NCNode<T>[] nodes;
+
+    private final int fromIndex;
+
+    private final int toIndex;
+
+    /**
+     * Constructor given the sorted ranges, their partition into top level
+     * subranges (as start-end indices of ranges), the array to add the built
+     * nodes to, and the (inclusive, exclusive) indices of the subranges to
+     * build
+     * 
+     * @param ranges
+     * @param sublists
+     * @param nodes
+     * @param fromIndex
+     * @param toIndex
+     */
+    BuildTask(List<T> ranges, List<IntervalI> sublists, NCNode<T>[] nodes,
+            int fromIndex, int toIndex)
+    {
+      this.ranges = ranges;
+      this.sublists = sublists;
+      this.nodes = nodes;
+      this.fromIndex = fromIndex;
+      this.toIndex = toIndex;
+    }
 
-    for (int i = 0; i < ranges.size(); i++)
+    @Override
+    protected void compute()
     {
-      IntervalI nextInterval = ranges.get(i);
-      if (!first && !lastParent.properlyContainsInterval(nextInterval))
+      int intervalCount = sublists.get(toIndex - 1).getEnd()
+              - sublists.get(fromIndex).getBegin() + 1;
+      if (toIndex - fromIndex > 1 && intervalCount > THRESHOLD)
       {
-        /*
-         * this interval is not properly contained in the parent; 
-         * close off the last sublist
-         */
-        sublists.add(new Range(listStartIndex, i - 1));
-        listStartIndex = i;
-        lastParent = nextInterval;
+        int mid = (fromIndex + toIndex) >>> 1;
+        invokeAll(new BuildTask<>(ranges, sublists, nodes, fromIndex, mid),
+                new BuildTask<>(ranges, sublists, nodes, mid, toIndex));
+        return;
       }
-      first = false;
-    }
 
-    sublists.add(new Range(listStartIndex, ranges.size() - 1));
-    return sublists;
+      for (int i = fromIndex; i < toIndex; i++)
+      {
+        IntervalI sublist = sublists.get(i);
+        int first = sublist.getBegin();
+        int last = sublist.getEnd();
+        NCList<T> subregions = null;
+        if (last > first)
+        {
+          subregions = new NCList<>();
+          subregions.buildSorted(ranges.subList(first + 1, last + 1));
+        }
+        nodes[i] = new NCNode<>(ranges.get(first), subregions);
+      }
+    }
   }
 
   /**
@@ -233,7 +472,7 @@ public class NCList<T extends IntervalI> extends AbstractCollection<T>
    * @param entry
    */
   @Override
-  public synchronized boolean add(final T entry)
+  public boolean add(final T entry)
   {
     final NCNode<T> newNode = new NCNode<>(entry);
     addNode(newNode);
@@ -265,6 +504,31 @@ public class NCList<T extends IntervalI> extends AbstractCollection<T>
      * 6) spans two subranges - insert between them
      */
 
+    /*
+     * fast path for adding in start position order:
+     * - follows, overlaps or matches the last subrange - add on end of list
+     * - enclosed by the last subrange only - add recursively to it
+     */
+    int count = subranges.size();
+    if (count > 0)
+    {
+      int lastBegin = subranges.getBegin(count - 1);
+      int lastEnd = subranges.getEnd(count - 1);
+      if ((start == lastBegin && end == lastEnd)
+              || (start > lastBegin && end > lastEnd))
+      {
+        subranges.add(newNode);
+        return;
+      }
+      NCNode<T> last = subranges.get(count - 1);
+      if (last.properlyContainsInterval(newNode)
+              && (count == 1 || subranges.getEnd(count - 2) < end))
+      {
+        last.addNode(newNode);
+        return;
+      }
+    }
+
     /*
      * find the first subrange whose end does not precede entry's start
      */
@@ -383,15 +647,14 @@ public class NCList<T extends IntervalI> extends AbstractCollection<T>
 
     for (int i = candidateIndex; i < subranges.size(); i++)
     {
-      NCNode<T> candidate = subranges.get(i);
-      if (candidate.getBegin() > to)
+      if (subranges.getBegin(i) > to)
       {
         /*
          * we are past the end of our target range
          */
         break;
       }
-      if (candidate.contains(interval))
+      if (subranges.get(i).contains(interval))
       {
         return true;
       }
@@ -411,7 +674,7 @@ public class NCList<T extends IntervalI> extends AbstractCollection<T>
    *           if any of the subranges is not contained by the node's start-end
    *           range
    */
-  protected synchronized void push(NCNode<T> node, final int i,
+  protected void push(NCNode<T> node, final int i,
           final int j)
   {
     for (int k = i; k <= j; k++)
@@ -448,8 +711,8 @@ public class NCList<T extends IntervalI> extends AbstractCollection<T>
   }
 
   /**
-   * Recursively searches the NCList adding any items that overlap the from-to
-   * range to the result list
+   * Searches the NCList adding any items that overlap the from-to range to the
+   * result list
    * 
    * @param from
    * @param to
@@ -457,25 +720,222 @@ public class NCList<T extends IntervalI> extends AbstractCollection<T>
    */
   protected void findOverlaps(long from, long to, List<T> result)
   {
+    findOverlaps(from, to, result, null, null);
+  }
+
+  /**
+   * Performs the action for each contained interval that overlaps the given
+   * range, in the same order as they would be returned by
+   * {@code findOverlaps}, without creating any objects
+   * 
+   * @param from
+   * @param to
+   * @param action
+   */
+  public void forEachOverlap(long from, long to,
+          Consumer<? super T> action)
+  {
+    findOverlaps(from, to, null, action, null);
+  }
+
+  /**
+   * Calls the visitor for each contained interval that overlaps the given
+   * range, in the same order as they would be returned by
+   * {@code findOverlaps}, until the visitor returns false. Answers false if the
+   * visitor stopped the search, else true. No objects are created.
+   * 
+   * @param from
+   * @param to
+   * @param visitor
+   * @return
+   */
+  public boolean visitOverlaps(long from, long to,
+          Predicate<? super T> visitor)
+  {
+    return findOverlaps(from, to, null, null, visitor);
+  }
+
+  /**
+   * Searches the NCList for intervals that overlap the from-to range, depth
+   * first, and either adds them to the result list, performs the action on
+   * them, or calls the visitor for them (whichever is not null, in that order
+   * of preference). Answers false if the visitor stopped the search, else true.
+   * <p>
+   * The search is iterative, not recursive, so deeply nested data can't
+   * overflow the call stack. The list of subranges being searched, and the
+   * index of the next candidate in it, are saved on an explicit stack when the
+   * search descends into the subregions of an overlapping node. The stack is
+   * only created if needed, and is never larger than the depth of nesting.
+   * 
+   * @param from
+   * @param to
+   * @param result
+   * @param action
+   * @param visitor
+   * @return
+   */
+  private boolean findOverlaps(long from, long to, List<T> result,
+          Consumer<? super T> action, Predicate<? super T> visitor)
+  {
+    NCNodeList<T> nodes = subranges;
+
     /*
      * find the first sublist that might overlap, i.e. 
      * the first whose end position is >= from
      */
-    int candidateIndex = findFirstOverlap(from);
+    int i = findFirstOverlap(from);
 
-    for (int i = candidateIndex; i < subranges.size(); i++)
+    List<?>[] lists = null;
+    int[] indices = null;
+    int depth = 0;
+
+    while (true)
     {
-      NCNode<T> candidate = subranges.get(i);
-      if (candidate.getBegin() > to)
+      if (i < nodes.size() && nodes.getBegin(i) <= to)
       {
+        NCNode<T> node = nodes.get(i++);
+        T region = node.getRegion();
+        if (result != null)
+        {
+          result.add(region);
+        }
+        else if (action != null)
+        {
+          action.accept(region);
+        }
+        else if (!visitor.test(region))
+        {
+          return false;
+        }
+
         /*
-         * we are past the end of our target range
+         * search the node's contained intervals next, 
+         * resuming with its next sibling afterwards
          */
-        break;
+        NCList<T> subregions = node.getSubRegions();
+        if (subregions != null)
+        {
+          if (lists == null)
+          {
+            lists = new List<?>[8];
+            indices = new int[8];
+          }
+          else if (depth == lists.length)
+          {
+            lists = Arrays.copyOf(lists, 2 * depth);
+            indices = Arrays.copyOf(indices, 2 * depth);
+          }
+          lists[depth] = nodes;
+          indices[depth] = i;
+          depth++;
+          nodes = subregions.subranges;
+          i = subregions.findFirstOverlap(from);
+        }
+      }
+      else if (depth == 0)
+      {
+        return true;
+      }
+      else
+      {
+        /*
+         * past the end of the target range (or the end of the list);
+         * resume searching the parent list
+         */
+        depth--;
+        @SuppressWarnings("unchecked")
+        NCNodeList<T> parent = (NCNodeList<T>) lists[depth];
+        nodes = parent;
+        i = indices[depth];
       }
-      candidate.findOverlaps(from, to, result);
     }
+  }
 
+  /**
+   * Answers an iterator over the contained intervals that overlap the given
+   * range, in the same order as they would be returned by
+   * {@code findOverlaps}, finding each one only as it is requested. The
+   * behaviour of the iterator is undefined if the NCList is modified while it
+   * is in use.
+   * 
+   * @param from
+   * @param to
+   * @return
+   */
+  public Iterator<T> overlapIterator(long from, long to)
+  {
+    return new OverlapIterator(from, to);
+  }
+
+  /**
+   * Answers the number of contained intervals that overlap the given range.
+   * Any subrange that lies wholly within the range is counted together with
+   * all the intervals it contains, without searching them. As for
+   * {@code findOverlaps}, the search uses an explicit stack rather than
+   * recursion.
+   * 
+   * @param from
+   * @param to
+   * @return
+   */
+  public int countOverlaps(long from, long to)
+  {
+    int count = 0;
+    NCNodeList<T> nodes = subranges;
+    int i = findFirstOverlap(from);
+
+    List<?>[] lists = null;
+    int[] indices = null;
+    int depth = 0;
+
+    while (true)
+    {
+      if (i < nodes.size() && nodes.getBegin(i) <= to)
+      {
+        boolean inside = nodes.getBegin(i) >= from && nodes.getEnd(i) <= to;
+        NCNode<T> node = nodes.get(i++);
+        NCList<T> subregions = node.getSubRegions();
+        if (inside)
+        {
+          count += node.size();
+        }
+        else if (subregions == null)
+        {
+          count++;
+        }
+        else
+        {
+          count++;
+          if (lists == null)
+          {
+            lists = new List<?>[8];
+            indices = new int[8];
+          }
+          else if (depth == lists.length)
+          {
+            lists = Arrays.copyOf(lists, 2 * depth);
+            indices = Arrays.copyOf(indices, 2 * depth);
+          }
+          lists[depth] = nodes;
+          indices[depth] = i;
+          depth++;
+          nodes = subregions.subranges;
+          i = subregions.findFirstOverlap(from);
+        }
+      }
+      else if (depth == 0)
+      {
+        return count;
+      }
+      else
+      {
+        depth--;
+        @SuppressWarnings("unchecked")
+        NCNodeList<T> parent = (NCNodeList<T>) lists[depth];
+        nodes = parent;
+        i = indices[depth];
+      }
+    }
   }
 
   /**
@@ -489,8 +949,7 @@ public class NCList<T extends IntervalI> extends AbstractCollection<T>
    */
   protected int findFirstOverlap(final long from)
   {
-    return BinarySearcher.findFirst(subranges, false, Compare.GE,
-            (int) from);
+    return subranges.findFirst(false, Compare.GE, (int) from);
   }
 
   /**
@@ -635,8 +1094,7 @@ public class NCList<T extends IntervalI> extends AbstractCollection<T>
   }
 
   /**
-   * Answers a list of all entries stored, in no guaranteed order. This method
-   * is not synchronized, so is not thread-safe.
+   * Answers a list of all entries stored, in no guaranteed order
    */
   public List<T> getEntries()
   {
@@ -661,12 +1119,12 @@ public class NCList<T extends IntervalI> extends AbstractCollection<T>
   /**
    * Removes the first interval <code>I</code>found that is equal to T
    * (<code>I.equals(T)</code>). Answers true if an interval is removed, false
-   * if no match is found. This method is synchronized so thread-safe.
+   * if no match is found.
    * 
    * @param entry
    * @return
    */
-  public synchronized boolean remove(T entry)
+  public boolean remove(T entry)
   {
     if (entry == null)
     {
@@ -676,14 +1134,14 @@ public class NCList<T extends IntervalI> extends AbstractCollection<T>
 
     for (; i < subranges.size(); i++)
     {
-      NCNode<T> subrange = subranges.get(i);
-      if (subrange.getBegin() > entry.getBegin())
+      if (subranges.getBegin(i) > entry.getBegin())
       {
         /*
          * not found
          */
         return false;
       }
+      NCNode<T> subrange = subranges.get(i);
       NCList<T> subRegions = subrange.getSubRegions();
 
       if (subrange.getRegion().equals(entry))
@@ -715,6 +1173,17 @@ public class NCList<T extends IntervalI> extends AbstractCollection<T>
     return false;
   }
 
+  /**
+   * Answers the top level subranges of this NCList, in start position order.
+   * The list is the one held by this object, so should not be modified.
+   * 
+   * @return
+   */
+  List<NCNode<T>> getSubranges()
+  {
+    return subranges;
+  }
+
   /**
    * Answers the depth of interval nesting of this object, where 1 means there
    * are no nested sub-intervals
@@ -740,11 +1209,11 @@ public class NCList<T extends IntervalI> extends AbstractCollection<T>
   @Override
   public Iterator<T> iterator()
   {
-    return new NCListIterator();
+    return new NCListIterator<>(subranges);
   }
 
   @Override
-  public synchronized void clear()
+  public void clear()
   {
     subranges.clear();
     size = 0;
@@ -32,6 +32,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package intervalstore.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -64,13 +65,81 @@ public class NCListBuilder<T extends IntervalI>
    */
   List<IntervalI> partitionNestedSublists(List<T> ranges)
   {
-    List<IntervalI> sublists = new ArrayList<>();
-  
     /*
      * sort by start ascending, length descending, so that
      * contained intervals follow their containing interval
+     * (unless they are already in that order)
      */
-    Collections.sort(ranges, IntervalI.COMPARE_BEGIN_ASC_END_DESC);
+    sort(ranges);
+
+    return partitionSortedSublists(ranges);
+  }
+
+  /**
+   * Sorts the ranges by start ascending, length descending, unless they are
+   * already in that order, in which case the list is left unchanged
+   * 
+   * @param ranges
+   */
+  static void sort(List<? extends IntervalI> ranges)
+  {
+    if (!isSorted(ranges))
+    {
+      Collections.sort(ranges, IntervalI.COMPARE_BEGIN_ASC_END_DESC);
+    }
+  }
+
+  /**
+   * Answers true if the ranges are ordered by start ascending, length
+   * descending (as by <code>IntervalI.COMPARE_BEGIN_ASC_END_DESC</code>), else
+   * false. This takes a single pass over the list, so is much quicker than
+   * sorting data that is already sorted, as is often the case when it is read
+   * from a file or database.
+   * 
+   * @param ranges
+   * @return
+   */
+  static boolean isSorted(List<? extends IntervalI> ranges)
+  {
+    int size = ranges.size();
+    if (size < 2)
+    {
+      return true;
+    }
+    IntervalI previous = ranges.get(0);
+    int lastBegin = previous.getBegin();
+    int lastEnd = previous.getEnd();
+    for (int i = 1; i < size; i++)
+    {
+      IntervalI next = ranges.get(i);
+      int begin = next.getBegin();
+      int end = next.getEnd();
+      if (begin < lastBegin || (begin == lastBegin && end > lastEnd))
+      {
+        return false;
+      }
+      lastBegin = begin;
+      lastEnd = end;
+    }
+    return true;
+  }
+
+  /**
+   * Traverses ranges, which must already be sorted by start ascending, length
+   * descending, to identify sublists whose start intervals are overlapping or
+   * disjoint but not mutually contained. Answers a list of start-end indices of
+   * the list of ranges.
+   * 
+   * @param ranges
+   * @return
+   */
+  List<IntervalI> partitionSortedSublists(List<T> ranges)
+  {
+    List<IntervalI> sublists = new ArrayList<>();
+    if (ranges.isEmpty())
+    {
+      return sublists;
+    }
   
     int listStartIndex = 0;
   
@@ -96,4 +165,134 @@ public class NCListBuilder<T extends IntervalI>
     sublists.add(new Range(listStartIndex, ranges.size() - 1));
     return sublists;
   }
+
+  /**
+   * Compares the intervals at indices {@code i} and {@code j} of the arrays of
+   * start and end positions by start ascending, end descending (as by
+   * <code>IntervalI.COMPARE_BEGIN_ASC_END_DESC</code>)
+   * 
+   * @param begins
+   * @param ends
+   * @param i
+   * @param j
+   * @return
+   */
+  static int compare(int[] begins, int[] ends, int i, int j)
+  {
+    int ret = Integer.compare(begins[i], begins[j]);
+    return ret == 0 ? Integer.compare(ends[j], ends[i]) : ret;
+  }
+
+  /**
+   * Answers true if the first {@code size} intervals of the arrays of start and
+   * end positions are ordered by start ascending, length descending, else false
+   * 
+   * @param begins
+   * @param ends
+   * @param size
+   * @return
+   */
+  static boolean isSorted(int[] begins, int[] ends, int size)
+  {
+    for (int i = 1; i < size; i++)
+    {
+      if (compare(begins, ends, i - 1, i) > 0)
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Answers the indices of the first {@code size} intervals of the arrays of
+   * start and end positions, ordered by start ascending, length descending.
+   * The (merge) sort is stable, so that co-located intervals stay in index
+   * order.
+   * 
+   * @param begins
+   * @param ends
+   * @param size
+   * @return
+   */
+  static int[] sortedOrder(int[] begins, int[] ends, int size)
+  {
+    int[] order = new int[size];
+    for (int i = 0; i < size; i++)
+    {
+      order[i] = i;
+    }
+    int[] work = new int[size];
+    for (int width = 1; width < size; width *= 2)
+    {
+      for (int lo = 0; lo < size; lo += 2 * width)
+      {
+        int mid = Math.min(lo + width, size);
+        int hi = Math.min(lo + 2 * width, size);
+        int i = lo;
+        int j = mid;
+        for (int k = lo; k < hi; k++)
+        {
+          if (i < mid && (j >= hi
+                  || compare(begins, ends, order[i], order[j]) <= 0))
+          {
+            work[k] = order[i++];
+          }
+          else
+          {
+            work[k] = order[j++];
+          }
+        }
+      }
+      int[] swap = order;
+      order = work;
+      work = swap;
+    }
+    return order;
+  }
+
+  /**
+   * Answers true if the interval at index {@code i} of the arrays of start and
+   * end positions properly contains the interval at index {@code j}, that is,
+   * contains it and is not co-located with it
+   * 
+   * @param begins
+   * @param ends
+   * @param i
+   * @param j
+   * @return
+   */
+  static boolean properlyContains(int[] begins, int[] ends, int i, int j)
+  {
+    return begins[i] <= begins[j] && ends[i] >= ends[j]
+            && (begins[i] != begins[j] || ends[i] != ends[j]);
+  }
+
+  /**
+   * Traverses the first {@code size} intervals of the arrays of start and end
+   * positions, which must already be sorted by start ascending, length
+   * descending, to identify sublists whose start intervals are overlapping or
+   * disjoint but not mutually contained, as
+   * {@link #partitionSortedSublists(List)} does for a list. Answers the start
+   * index of each sublist, followed by {@code size}.
+   * 
+   * @param begins
+   * @param ends
+   * @param size
+   * @return
+   */
+  static int[] partitionSortedSublists(int[] begins, int[] ends, int size)
+  {
+    int[] starts = new int[size + 1];
+    int count = 0;
+    for (int i = 0; i < size; i++)
+    {
+      if (i == 0 || !properlyContains(begins, ends, starts[count - 1], i))
+      {
+        starts[count++] = i;
+      }
+    }
+    starts[count++] = size;
+    return Arrays.copyOf(starts, count);
+  }
 }
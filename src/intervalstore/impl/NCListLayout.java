@@ -0,0 +1,818 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+
+import intervalstore.api.IntervalI;
+import intervalstore.impl.BinarySearcher.Compare;
+
+/**
+ * The containment tree of a set of intervals, held in parallel
+ * {@code IntBuffer}s in the layout described for {@code FrozenNCList}, and the
+ * queries on it. The buffers may wrap arrays on the heap, or be views of a
+ * memory-mapped file or of off-heap memory, so that {@code FrozenNCList},
+ * {@code IntIntervalStore} and the stores that extend
+ * {@code BufferIntervalStore} all query the tree in the same way.
+ * <p>
+ * Queries find the index in the buffers of each interval, in the same
+ * (depth-first) order as the intervals would be found by {@code NCList}, and
+ * leave it to the caller to map the index to whatever it holds for the
+ * interval.
+ */
+final class NCListLayout
+{
+  /**
+   * Receives the index of each interval found by a query, together with a
+   * context object given to the query (such as the list to add the interval
+   * to, or an action to pass it to). A store can create one {@code Hits} for
+   * each kind of query, and pass the caller's list, action or visitor as the
+   * context, so that queries allocate no object for the callback.
+   * 
+   * @param <C>
+   *          the type of the context object
+   */
+  interface Hits<C>
+  {
+    /**
+     * Receives the index of an interval that was found, the number of
+     * intervals found before it, and the context given to the query. Answers
+     * false to stop the query, else true.
+     * 
+     * @param index
+     * @param count
+     * @param context
+     * @return
+     */
+    boolean hit(int index, int count, C context);
+  }
+
+  /**
+   * An iterator over the indices of the intervals that overlap a given range,
+   * in the same order as they are found by {@code findOverlaps}, finding each
+   * one only when it is requested
+   */
+  final class OverlapCursor
+  {
+    private final long from;
+
+    private final long to;
+
+    /*
+     * stack of (resume position, block end) of enclosing blocks
+     */
+    private int[] stack;
+
+    private int stackSize;
+
+    /*
+     * position of the next interval (if any), and the end of its block
+     */
+    private int pos;
+
+    private int blockEnd;
+
+    /**
+     * Constructor given the range to find overlaps for
+     * 
+     * @param from
+     * @param to
+     */
+    OverlapCursor(long from, long to)
+    {
+      this.from = from;
+      this.to = to;
+      blockEnd = topLevelCount;
+      pos = findFirstOverlap(0, blockEnd, from);
+      findNext();
+    }
+
+    /**
+     * Moves {@code pos} to the next overlapping interval (if there is one),
+     * returning to enclosing blocks as enclosed blocks are finished
+     */
+    private void findNext()
+    {
+      while (pos >= blockEnd || begins.get(pos) > to)
+      {
+        if (stackSize == 0)
+        {
+          pos = blockEnd = 0;
+          return;
+        }
+        blockEnd = stack[--stackSize];
+        pos = stack[--stackSize];
+      }
+    }
+
+    boolean hasNext()
+    {
+      return pos < blockEnd;
+    }
+
+    /**
+     * Answers the index of the next overlapping interval
+     * 
+     * @return
+     * @throws NoSuchElementException
+     *           if there are no more overlaps
+     */
+    int next()
+    {
+      if (pos >= blockEnd)
+      {
+        throw new NoSuchElementException();
+      }
+      int result = pos;
+
+      /*
+       * descend into the enclosed block if it has overlaps,
+       * else move to the next sibling
+       */
+      int count = childCounts.get(pos);
+      if (count > 0)
+      {
+        int childStart = childOffsets.get(pos);
+        int childEnd = childStart + count;
+        int first = findFirstOverlap(childStart, childEnd, from);
+        if (first < childEnd && begins.get(first) <= to)
+        {
+          stack = push(stack, stackSize, pos + 1, blockEnd);
+          stackSize += 2;
+          pos = first;
+          blockEnd = childEnd;
+          return result;
+        }
+      }
+      pos++;
+      findNext();
+      return result;
+    }
+  }
+
+  static final NCListLayout EMPTY = new NCListLayout(new int[0],
+          new int[0], new int[0], new int[0], new int[0], 0, 0);
+
+  /*
+   * start and end positions of the intervals, in array (not sorted) order
+   */
+  final IntBuffer begins;
+
+  final IntBuffer ends;
+
+  /*
+   * index of the first directly enclosed interval, and count
+   * of directly enclosed intervals, for each interval
+   */
+  final IntBuffer childOffsets;
+
+  final IntBuffer childCounts;
+
+  /*
+   * for each interval, the total number of intervals in its subtree
+   * (itself and all those it encloses), and in the subtrees of
+   * the intervals that precede it in the same block
+   */
+  final IntBuffer cumulativeSizes;
+
+  /*
+   * the number of intervals in the top level (not enclosed) block
+   */
+  final int topLevelCount;
+
+  /*
+   * the maximum depth of nesting of intervals (1 for no nesting)
+   */
+  final int depth;
+
+  /**
+   * Constructor given the buffers, each of which holds one value for each
+   * interval, up to its limit
+   * 
+   * @param begins
+   * @param ends
+   * @param childOffsets
+   * @param childCounts
+   * @param cumulativeSizes
+   * @param topLevelCount
+   * @param depth
+   */
+  NCListLayout(IntBuffer begins, IntBuffer ends, IntBuffer childOffsets,
+          IntBuffer childCounts, IntBuffer cumulativeSizes,
+          int topLevelCount, int depth)
+  {
+    this.begins = begins;
+    this.ends = ends;
+    this.childOffsets = childOffsets;
+    this.childCounts = childCounts;
+    this.cumulativeSizes = cumulativeSizes;
+    this.topLevelCount = topLevelCount;
+    this.depth = depth;
+  }
+
+  /**
+   * Constructor given arrays, which are wrapped (not copied)
+   * 
+   * @param begins
+   * @param ends
+   * @param childOffsets
+   * @param childCounts
+   * @param cumulativeSizes
+   * @param topLevelCount
+   * @param depth
+   */
+  NCListLayout(int[] begins, int[] ends, int[] childOffsets,
+          int[] childCounts, int[] cumulativeSizes, int topLevelCount,
+          int depth)
+  {
+    this(IntBuffer.wrap(begins), IntBuffer.wrap(ends),
+            IntBuffer.wrap(childOffsets), IntBuffer.wrap(childCounts),
+            IntBuffer.wrap(cumulativeSizes), topLevelCount, depth);
+  }
+
+  /**
+   * Answers the layout of intervals whose start and end positions are given,
+   * which must be sorted by start ascending, length descending. On return,
+   * {@code positions[i]} is the index at which interval {@code i} is placed,
+   * so that the caller may place whatever it holds for the intervals in the
+   * same order.
+   * <p>
+   * We assume here that for each interval, begin &lt;= end. Behaviour for
+   * reverse ordered intervals is undefined.
+   * 
+   * @param sortedBegins
+   * @param sortedEnds
+   * @param positions
+   * @return
+   */
+  static NCListLayout build(int[] sortedBegins, int[] sortedEnds,
+          int[] positions)
+  {
+    int n = sortedBegins.length;
+    if (n == 0)
+    {
+      return EMPTY;
+    }
+
+    /*
+     * identify the parent (immediately enclosing interval) of each interval,
+     * using a stack of the currently open enclosing intervals; an interval
+     * that none of them properly contains is a top level root
+     */
+    int[] parents = new int[n];
+    int[] counts = new int[n];
+    int[] stack = new int[16];
+    int stackSize = 0;
+    int topLevelCount = 0;
+    int depth = 1;
+    for (int i = 0; i < n; i++)
+    {
+      while (stackSize > 0 && !NCListBuilder.properlyContains(sortedBegins,
+              sortedEnds, stack[stackSize - 1], i))
+      {
+        stackSize--;
+      }
+      if (stackSize == 0)
+      {
+        parents[i] = -1;
+        topLevelCount++;
+      }
+      else
+      {
+        int parent = stack[stackSize - 1];
+        parents[i] = parent;
+        counts[parent]++;
+      }
+      if (stackSize == stack.length)
+      {
+        stack = Arrays.copyOf(stack, 2 * stackSize);
+      }
+      stack[stackSize++] = i;
+      depth = Math.max(depth, stackSize);
+    }
+
+    /*
+     * count the intervals in the subtree of each interval; as intervals
+     * follow their parent in sorted order, a backwards pass suffices
+     */
+    int[] sizes = new int[n];
+    for (int i = n - 1; i >= 0; i--)
+    {
+      sizes[i]++;
+      if (parents[i] != -1)
+      {
+        sizes[parents[i]] += sizes[i];
+      }
+    }
+
+    /*
+     * allocate a block for the children of each interval, in depth-first
+     * (i.e. sorted) order of the intervals; then place each interval in the
+     * next free position of its parent's block (or of the top level block)
+     */
+    int[] blockStarts = new int[n];
+    int nextBlock = topLevelCount;
+    for (int i = 0; i < n; i++)
+    {
+      if (counts[i] > 0)
+      {
+        blockStarts[i] = nextBlock;
+        nextBlock += counts[i];
+      }
+    }
+    int[] begins = new int[n];
+    int[] ends = new int[n];
+    int[] childOffsets = new int[n];
+    int[] childCounts = new int[n];
+    int[] cumulativeSizes = new int[n];
+    int[] filled = new int[n];
+    int topLevelFilled = 0;
+    for (int i = 0; i < n; i++)
+    {
+      int parent = parents[i];
+      int blockStart = parent == -1 ? 0 : blockStarts[parent];
+      int pos = parent == -1 ? topLevelFilled++
+              : blockStarts[parent] + filled[parent]++;
+      cumulativeSizes[pos] = sizes[i]
+              + (pos == blockStart ? 0 : cumulativeSizes[pos - 1]);
+      begins[pos] = sortedBegins[i];
+      ends[pos] = sortedEnds[i];
+      childCounts[pos] = counts[i];
+      childOffsets[pos] = blockStarts[i];
+      positions[i] = pos;
+    }
+
+    return new NCListLayout(begins, ends, childOffsets, childCounts,
+            cumulativeSizes, topLevelCount, depth);
+  }
+
+  /**
+   * Pushes a (resume position, block end) pair onto the stack, which is
+   * created or grown as needed, and answers the stack. It is first sized for
+   * the depth of the tree, so that queries that find only top level intervals
+   * create no objects, and typically grows no further; but it is grown rather
+   * than trusting the depth, which may have been read from a file.
+   * 
+   * @param stack
+   * @param stackSize
+   * @param pos
+   * @param blockEnd
+   * @return
+   */
+  private int[] push(int[] stack, int stackSize, int pos, int blockEnd)
+  {
+    if (stack == null)
+    {
+      stack = new int[2 * depth + 2];
+    }
+    else if (stackSize + 2 > stack.length)
+    {
+      stack = Arrays.copyOf(stack, 2 * stack.length);
+    }
+    stack[stackSize] = pos;
+    stack[stackSize + 1] = blockEnd;
+    return stack;
+  }
+
+  /**
+   * Answers the number of intervals
+   * 
+   * @return
+   */
+  int size()
+  {
+    return begins.limit();
+  }
+
+  /**
+   * Answers the index of the first interval in the block from {@code start}
+   * (inclusive) to {@code end} (exclusive) whose end position is not before
+   * {@code from}, or {@code end} if there is none. This relies on end positions
+   * being in ascending order within the block, as they must be for intervals
+   * that are not mutually contained.
+   * 
+   * @param start
+   * @param end
+   * @param from
+   * @return
+   */
+  private int findFirstOverlap(int start, int end, long from)
+  {
+    return BinarySearcher.findFirst(ends, start, end, Compare.GE, from);
+  }
+
+  /**
+   * Searches for intervals that overlap the from-to range, and passes the index
+   * of each, with the context, to {@code hits} until it returns false. The
+   * count passed with the first interval found is {@code found}, which may be
+   * the number of intervals that the caller found before this search. Answers
+   * {@code found} plus the number of intervals found, or -1 if the search was
+   * stopped.
+   * <p>
+   * The search is iterative, using a stack of (resume position, block end)
+   * pairs to return to an enclosing block when an enclosed one is finished.
+   * The stack is only created if overlapping nested intervals are found, so
+   * queries that find only top level intervals create no objects.
+   * 
+   * @param from
+   * @param to
+   * @param hits
+   * @param context
+   * @param found
+   * @return
+   */
+  <C> int findOverlaps(long from, long to, Hits<? super C> hits, C context,
+          int found)
+  {
+    if (topLevelCount == 0)
+    {
+      return found;
+    }
+
+    int[] stack = null;
+    int stackSize = 0;
+    int blockEnd = topLevelCount;
+    int pos = findFirstOverlap(0, blockEnd, from);
+
+    while (true)
+    {
+      if (pos < blockEnd && begins.get(pos) <= to)
+      {
+        if (!hits.hit(pos, found++, context))
+        {
+          return -1;
+        }
+        int childCount = childCounts.get(pos);
+        if (childCount > 0)
+        {
+          int childStart = childOffsets.get(pos);
+          int childEnd = childStart + childCount;
+          int first = findFirstOverlap(childStart, childEnd, from);
+          if (first < childEnd && begins.get(first) <= to)
+          {
+            stack = push(stack, stackSize, pos + 1, blockEnd);
+            stackSize += 2;
+            pos = first;
+            blockEnd = childEnd;
+            continue;
+          }
+        }
+        pos++;
+      }
+      else if (stackSize > 0)
+      {
+        blockEnd = stack[--stackSize];
+        pos = stack[--stackSize];
+      }
+      else
+      {
+        return found;
+      }
+    }
+  }
+
+  /**
+   * Answers the number of intervals that overlap the from-to range. Within each
+   * block searched, intervals that lie wholly within the range are counted
+   * together with all the intervals they enclose, from the cumulative subtree
+   * sizes, without visiting them; only blocks enclosed by intervals that partly
+   * overlap the range are searched.
+   * 
+   * @param from
+   * @param to
+   * @return
+   */
+  int countOverlaps(long from, long to)
+  {
+    if (topLevelCount == 0)
+    {
+      return 0;
+    }
+
+    /*
+     * stack of (start, end) of blocks still to be searched
+     * (the order in which they are searched doesn't matter)
+     */
+    int[] blocks = new int[2 * depth + 2];
+    blocks[0] = 0;
+    blocks[1] = topLevelCount;
+    int stackSize = 2;
+    int count = 0;
+
+    while (stackSize > 0)
+    {
+      int blockEnd = blocks[--stackSize];
+      int blockStart = blocks[--stackSize];
+
+      /*
+       * overlapping intervals are those in [first, last); 
+       * of these, those in [firstInside, lastInside) lie inside from-to
+       */
+      int first = findFirstOverlap(blockStart, blockEnd, from);
+      int last = BinarySearcher.findFirst(begins, first, blockEnd,
+              Compare.GT, to);
+      int firstInside = BinarySearcher.findFirst(begins, first, last,
+              Compare.GE, from);
+      int lastInside = BinarySearcher.findFirst(ends, firstInside, last,
+              Compare.GT, to);
+      if (firstInside < lastInside)
+      {
+        count += cumulativeSizes.get(lastInside - 1)
+                - (firstInside == blockStart ? 0
+                        : cumulativeSizes.get(firstInside - 1));
+      }
+      else
+      {
+        firstInside = lastInside = last;
+      }
+
+      for (int i = first; i < last; i++)
+      {
+        if (i == firstInside)
+        {
+          i = lastInside - 1;
+          continue;
+        }
+        count++;
+        int childCount = childCounts.get(i);
+        if (childCount > 0)
+        {
+          if (stackSize + 2 > blocks.length)
+          {
+            blocks = Arrays.copyOf(blocks, 2 * blocks.length);
+          }
+          int childStart = childOffsets.get(i);
+          blocks[stackSize++] = childStart;
+          blocks[stackSize++] = childStart + childCount;
+        }
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Answers true if {@code matches} returns true for the index of any interval
+   * with the given start and end positions (passed with a count of 0 and the
+   * context), else false. Only blocks enclosed by an interval that contains
+   * the from-to range are searched.
+   * 
+   * @param from
+   * @param to
+   * @param matches
+   * @param context
+   * @return
+   */
+  <C> boolean contains(int from, int to, Hits<? super C> matches,
+          C context)
+  {
+    if (topLevelCount == 0)
+    {
+      return false;
+    }
+
+    int[] stack = null;
+    int stackSize = 0;
+    int blockEnd = topLevelCount;
+    int pos = findFirstOverlap(0, blockEnd, to);
+
+    while (true)
+    {
+      if (pos < blockEnd && begins.get(pos) <= from)
+      {
+        if (ends.get(pos) >= to)
+        {
+          if (begins.get(pos) == from && ends.get(pos) == to
+                  && matches.hit(pos, 0, context))
+          {
+            return true;
+          }
+          int count = childCounts.get(pos);
+          if (count > 0)
+          {
+            stack = push(stack, stackSize, pos + 1, blockEnd);
+            stackSize += 2;
+            pos = childOffsets.get(pos);
+            blockEnd = pos + count;
+            pos = findFirstOverlap(pos, blockEnd, to);
+            continue;
+          }
+        }
+        pos++;
+      }
+      else if (stackSize > 0)
+      {
+        blockEnd = stack[--stackSize];
+        pos = stack[--stackSize];
+      }
+      else
+      {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Appends the tree to the string builder as a bracketed list e.g.
+   * 
+   * <pre>
+   * [1-100 [10-30 [10-20]], 15-30 [20-20]]
+   * </pre>
+   * 
+   * in the same format as {@code NCList.toString()}, using {@code intervals}
+   * to answer the interval at each index
+   * 
+   * @param sb
+   * @param intervals
+   */
+  void appendTo(StringBuilder sb, IntFunction<?> intervals)
+  {
+    appendBlock(sb, 0, topLevelCount, intervals);
+  }
+
+  /**
+   * Appends the intervals in the given block (and those they enclose) to the
+   * string builder, as a bracketed list
+   * 
+   * @param sb
+   * @param start
+   * @param end
+   * @param intervals
+   */
+  private void appendBlock(StringBuilder sb, int start, int end,
+          IntFunction<?> intervals)
+  {
+    sb.append("[");
+    for (int i = start; i < end; i++)
+    {
+      if (i > start)
+      {
+        sb.append(", ");
+      }
+      sb.append(intervals.apply(i).toString());
+      int count = childCounts.get(i);
+      if (count > 0)
+      {
+        sb.append(" ");
+        int childStart = childOffsets.get(i);
+        appendBlock(sb, childStart, childStart + count, intervals);
+      }
+    }
+    sb.append("]");
+  }
+
+  /**
+   * Appends the tree to the string builder as an indented list, in the same
+   * format as {@code NCList.prettyPrint()}, using {@code intervals} to answer
+   * the interval at each index
+   * 
+   * @param sb
+   * @param intervals
+   */
+  void prettyPrint(StringBuilder sb, IntFunction<?> intervals)
+  {
+    prettyPrint(sb, 0, topLevelCount, 0, intervals);
+  }
+
+  /**
+   * @param sb
+   * @param start
+   * @param end
+   * @param offset
+   * @param intervals
+   */
+  private void prettyPrint(StringBuilder sb, int start, int end,
+          int offset, IntFunction<?> intervals)
+  {
+    for (int i = start; i < end; i++)
+    {
+      if (i > start)
+      {
+        sb.append(System.lineSeparator());
+      }
+      for (int j = 0; j < offset; j++)
+      {
+        sb.append(" ");
+      }
+      sb.append(intervals.apply(i).toString());
+      int count = childCounts.get(i);
+      if (count > 0)
+      {
+        sb.append(System.lineSeparator());
+        int childStart = childOffsets.get(i);
+        prettyPrint(sb, childStart, childStart + count, offset + 2,
+                intervals);
+      }
+    }
+  }
+
+  /**
+   * Answers true if the buffers satisfy the rules of construction of an
+   * NCList, and (if {@code intervals} is not null) the interval it answers for
+   * each index has the start and end positions held for it, else false. For
+   * use in testing and debugging.
+   * 
+   * @param intervals
+   * @return
+   */
+  boolean isValid(IntFunction<? extends IntervalI> intervals)
+  {
+    return isValid(0, topLevelCount, Integer.MIN_VALUE, Integer.MAX_VALUE,
+            intervals);
+  }
+
+  /**
+   * Answers true if the intervals in the given block lie within the given
+   * bounds, are ordered by start position ascending without mutual
+   * containment, and the same holds for the blocks that they enclose
+   * 
+   * @param start
+   * @param end
+   * @param from
+   * @param to
+   * @param intervals
+   * @return
+   */
+  private boolean isValid(int start, int end, int from, int to,
+          IntFunction<? extends IntervalI> intervals)
+  {
+    for (int i = start; i < end; i++)
+    {
+      int begin = begins.get(i);
+      int finish = ends.get(i);
+      if (begin > finish || begin < from || finish > to)
+      {
+        System.err.println("error in NCList: range "
+                + describe(i, intervals) + " outside " + from + "-" + to);
+        return false;
+      }
+      if (intervals != null && (intervals.apply(i).getBegin() != begin
+              || intervals.apply(i).getEnd() != finish))
+      {
+        System.err.println("error in NCList: range "
+                + describe(i, intervals) + " was changed");
+        return false;
+      }
+      if (i > start
+              && (begin < begins.get(i - 1) || finish < ends.get(i - 1)))
+      {
+        System.err.println("error in NCList: range "
+                + describe(i, intervals) + " out of order or nested with "
+                + describe(i - 1, intervals));
+        return false;
+      }
+      int count = childCounts.get(i);
+      if (count > 0 && !isValid(childOffsets.get(i),
+              childOffsets.get(i) + count, begin, finish, intervals))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Answers the interval at the given index as a string, for an error message
+   * 
+   * @param i
+   * @param intervals
+   * @return
+   */
+  private String describe(int i, IntFunction<? extends IntervalI> intervals)
+  {
+    return intervals == null ? begins.get(i) + "-" + ends.get(i)
+            : intervals.apply(i).toString();
+  }
+}
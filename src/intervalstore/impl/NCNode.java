@@ -31,9 +31,9 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package intervalstore.impl;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.NoSuchElementException;
 
 import intervalstore.api.IntervalI;
 
@@ -45,47 +45,6 @@ import intervalstore.api.IntervalI;
  */
 class NCNode<T extends IntervalI> implements IntervalI
 {
-  /**
-   * A depth-first iterator over the intervals stored in the NCNode. The
-   * optional <code>remove</code> operation is not supported.
-   * 
-   * @author gmcarstairs
-   *
-   */
-  private class NCNodeIterator implements Iterator<T>
-  {
-    boolean first = true;
-    Iterator<T> subregionIterator;
-
-    @Override
-    public boolean hasNext()
-    {
-      return first
-              || (subregionIterator != null && subregionIterator.hasNext());
-    }
-
-    /**
-     * Answers the next interval - initially the top level interval for this
-     * node, thereafter the intervals returned by the NCList's iterator
-     */
-    @Override
-    public T next()
-    {
-      if (first)
-      {
-        subregionIterator = subregions == null ? null
-                : subregions.iterator();
-        first = false;
-        return region;
-      }
-      if (subregionIterator == null || !subregionIterator.hasNext())
-      {
-        throw new NoSuchElementException();
-      }
-      return subregionIterator.next();
-    }
-  }
-
   private T region;
 
   /*
@@ -116,6 +75,19 @@ class NCNode<T extends IntervalI> implements IntervalI
     }
   }
 
+  /**
+   * Constructor given a range, and an NCList of the ranges it contains (which
+   * may be null)
+   * 
+   * @param range
+   * @param subregions
+   */
+  NCNode(T range, NCList<T> subregions)
+  {
+    this.region = range;
+    this.subregions = subregions;
+  }
+
   /**
    * Constructor given a single range
    * 
@@ -173,25 +145,6 @@ class NCNode<T extends IntervalI> implements IntervalI
     }
   }
 
-  /**
-   * Add any ranges that overlap the from-to range to the result list
-   * 
-   * @param from
-   * @param to
-   * @param result
-   */
-  void findOverlaps(long from, long to, List<T> result)
-  {
-    if (region.getBegin() <= to && region.getEnd() >= from)
-    {
-      result.add(region);
-      if (subregions != null)
-      {
-        subregions.findOverlaps(from, to, result);
-      }
-    }
-  }
-
   /**
    * Add one node to this node's subregions.
    * 
@@ -199,7 +152,7 @@ class NCNode<T extends IntervalI> implements IntervalI
    * @throws IllegalArgumentException
    *           if the added node is not contained by the node's start-end range
    */
-  synchronized void addNode(NCNode<T> entry)
+  void addNode(NCNode<T> entry)
   {
     if (!region.containsInterval(entry))
     {
@@ -328,7 +281,7 @@ class NCNode<T extends IntervalI> implements IntervalI
    */
   public Iterator<T> iterator()
   {
-    return new NCNodeIterator();
+    return new NCList.NCListIterator<>(Collections.singletonList(this));
   }
 
   /**
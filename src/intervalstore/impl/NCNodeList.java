@@ -0,0 +1,229 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import intervalstore.api.IntervalI;
+import intervalstore.impl.BinarySearcher.Compare;
+
+/**
+ * The list of the subranges of an {@code NCList}, which holds the start and
+ * end positions of the nodes alongside them in arrays of <code>int</code>. The
+ * nodes are ordered by start position, and (as none contains another) also by
+ * end position, so binary searches, and the scans of overlap queries, read
+ * only contiguous <code>int</code> values, and the nodes (and the intervals
+ * they hold) are read only for the intervals that overlap.
+ * <p>
+ * The positions are copied when a node is added, which assumes that the
+ * position of an interval does not change while it is stored.
+ * 
+ * @param <T>
+ */
+class NCNodeList<T extends IntervalI> extends AbstractList<NCNode<T>>
+        implements RandomAccess
+{
+  private static final NCNode<?>[] NO_NODES = new NCNode<?>[0];
+
+  private static final int[] NO_POSITIONS = new int[0];
+
+  private NCNode<?>[] nodes;
+
+  private int[] begins;
+
+  private int[] ends;
+
+  private int size;
+
+  /**
+   * Constructs an empty list
+   */
+  NCNodeList()
+  {
+    nodes = NO_NODES;
+    begins = NO_POSITIONS;
+    ends = NO_POSITIONS;
+  }
+
+  /**
+   * Constructs a list of the given nodes, which must be ordered by start
+   * position. The array is held by the list, so should not be modified by the
+   * caller.
+   * 
+   * @param nodes
+   */
+  NCNodeList(NCNode<T>[] nodes)
+  {
+    this.nodes = nodes;
+    size = nodes.length;
+    begins = new int[size];
+    ends = new int[size];
+    for (int i = 0; i < size; i++)
+    {
+      begins[i] = nodes[i].getBegin();
+      ends[i] = nodes[i].getEnd();
+    }
+  }
+
+  @Override
+  public int size()
+  {
+    return size;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public NCNode<T> get(int index)
+  {
+    checkIndex(index, size);
+    return (NCNode<T>) nodes[index];
+  }
+
+  /**
+   * Answers the start position of the node at the given position in the list
+   * (which must be in the range 0 to size-1)
+   * 
+   * @param index
+   * @return
+   */
+  int getBegin(int index)
+  {
+    return begins[index];
+  }
+
+  /**
+   * Answers the end position of the node at the given position in the list
+   * (which must be in the range 0 to size-1)
+   * 
+   * @param index
+   * @return
+   */
+  int getEnd(int index)
+  {
+    return ends[index];
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public NCNode<T> set(int index, NCNode<T> element)
+  {
+    checkIndex(index, size);
+    NCNode<T> old = (NCNode<T>) nodes[index];
+    nodes[index] = element;
+    begins[index] = element.getBegin();
+    ends[index] = element.getEnd();
+    return old;
+  }
+
+  @Override
+  public void add(int index, NCNode<T> element)
+  {
+    checkIndex(index, size + 1);
+    if (size == nodes.length)
+    {
+      int newLength = Math.max(4, size + (size >> 1));
+      nodes = Arrays.copyOf(nodes, newLength);
+      begins = Arrays.copyOf(begins, newLength);
+      ends = Arrays.copyOf(ends, newLength);
+    }
+    int moved = size - index;
+    System.arraycopy(nodes, index, nodes, index + 1, moved);
+    System.arraycopy(begins, index, begins, index + 1, moved);
+    System.arraycopy(ends, index, ends, index + 1, moved);
+    nodes[index] = element;
+    begins[index] = element.getBegin();
+    ends[index] = element.getEnd();
+    size++;
+    modCount++;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public NCNode<T> remove(int index)
+  {
+    checkIndex(index, size);
+    NCNode<T> old = (NCNode<T>) nodes[index];
+    int moved = size - index - 1;
+    System.arraycopy(nodes, index + 1, nodes, index, moved);
+    System.arraycopy(begins, index + 1, begins, index, moved);
+    System.arraycopy(ends, index + 1, ends, index, moved);
+    nodes[--size] = null;
+    modCount++;
+    return old;
+  }
+
+  @Override
+  public void clear()
+  {
+    nodes = NO_NODES;
+    begins = NO_POSITIONS;
+    ends = NO_POSITIONS;
+    size = 0;
+    modCount++;
+  }
+
+  /**
+   * Answers the position of the first node for which the test is true, or the
+   * size of the list if there is none. The list must be ordered consistent with
+   * the test, as for {@link BinarySearcher#findFirst(List, boolean, Compare, int)}.
+   * 
+   * @param compareBegin
+   *          if true, test start positions, else end positions
+   * @param comp
+   * @param compareTo
+   * @return
+   */
+  int findFirst(boolean compareBegin, Compare comp, int compareTo)
+  {
+    return BinarySearcher.findFirst(compareBegin ? begins : ends, 0, size,
+            comp, compareTo);
+  }
+
+  /**
+   * Throws IndexOutOfBoundsException if index is not in the range 0 to
+   * length-1
+   * 
+   * @param index
+   * @param length
+   */
+  private static void checkIndex(int index, int length)
+  {
+    if (index < 0 || index >= length)
+    {
+      throw new IndexOutOfBoundsException(
+              "Index " + index + " out of bounds for length " + length);
+    }
+  }
+}
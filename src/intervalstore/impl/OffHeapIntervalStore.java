@@ -0,0 +1,151 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.function.IntFunction;
+
+import intervalstore.api.IntervalI;
+
+/**
+ * A read-only store whose start and end positions and nesting structure are
+ * held off the Java heap, in direct buffers, and are queried in place. Where an
+ * {@code IntervalStore} holds a tree of {@code NCNode} and {@code NCList}
+ * objects, and a {@code FrozenIntervalStore} several arrays of the same size as
+ * the store, this store adds only a few small objects to the heap that is
+ * scanned by the garbage collector, whatever its size.
+ * <p>
+ * A store is made from a {@code FrozenIntervalStore}, and holds its stored
+ * intervals either in a single array, or (if a {@code resolver} function is
+ * given) not at all. In the latter case each interval is identified by its
+ * position in the iteration order of the frozen store, and is obtained, when it
+ * is found by a query, by calling the resolver with this id.
+ * <p>
+ * Queries return the same results, in the same order, as the frozen store.
+ * Methods that would modify the collection throw
+ * {@code UnsupportedOperationException}. When the store is no longer needed,
+ * call {@link #close()}, after which any query throws
+ * {@code IllegalStateException}. This drops the store's references to the
+ * off-heap memory, which is then freed when the (small) buffer objects are
+ * garbage collected.
+ * 
+ * @param <T>
+ *          any type providing <code>getBegin()</code> and <code>getEnd()</code>
+ */
+public class OffHeapIntervalStore<T extends IntervalI>
+        extends BufferIntervalStore<T> implements AutoCloseable
+{
+  /**
+   * Answers an off-heap copy of the frozen store, which holds the stored
+   * intervals in an array
+   * 
+   * @param frozen
+   * @return
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends IntervalI> OffHeapIntervalStore<T> of(
+          FrozenIntervalStore<T> frozen)
+  {
+    Object[] intervals = frozen.toArray();
+    return of(frozen, id -> (T) intervals[id]);
+  }
+
+  /**
+   * Answers an off-heap copy of the frozen store's positions and nesting
+   * structure. The {@code resolver} answers the stored interval for an id,
+   * which is its position in the iteration order of the frozen store.
+   * 
+   * @param frozen
+   * @param resolver
+   * @return
+   */
+  public static <T extends IntervalI> OffHeapIntervalStore<T> of(
+          FrozenIntervalStore<T> frozen, IntFunction<? extends T> resolver)
+  {
+    FrozenNCList<T> frozenNested = frozen.getNested();
+    NCListLayout nested = NCListLayout.EMPTY;
+    if (frozenNested != null)
+    {
+      NCListLayout layout = frozenNested.getLayout();
+      nested = new NCListLayout(copy(layout.begins), copy(layout.ends),
+              copy(layout.childOffsets), copy(layout.childCounts),
+              copy(layout.cumulativeSizes), layout.topLevelCount,
+              layout.depth);
+    }
+    return new OffHeapIntervalStore<>(resolver,
+            copy(IntBuffer.wrap(frozen.getBegins())),
+            copy(IntBuffer.wrap(frozen.getEnds())), nested);
+  }
+
+  /**
+   * Answers a direct (off-heap) buffer holding a copy of the values
+   * 
+   * @param values
+   * @return
+   */
+  private static IntBuffer copy(IntBuffer values)
+  {
+    int n = values.limit();
+    if (n > Integer.MAX_VALUE / Integer.BYTES)
+    {
+      throw new IllegalArgumentException(
+              "Too many intervals to copy off-heap: " + n);
+    }
+    IntBuffer buffer = ByteBuffer.allocateDirect(n * Integer.BYTES)
+            .order(ByteOrder.nativeOrder()).asIntBuffer();
+    buffer.put(values.duplicate()).flip();
+    return buffer;
+  }
+
+  /**
+   * Constructor given the off-heap buffers
+   */
+  private OffHeapIntervalStore(IntFunction<? extends T> resolver,
+          IntBuffer nonNestedBegins, IntBuffer nonNestedEnds,
+          NCListLayout nested)
+  {
+    super(resolver, nonNestedBegins, nonNestedEnds, nested);
+  }
+
+  /**
+   * Releases the store, after which any query throws
+   * {@code IllegalStateException}. This should not be called while the store
+   * is in use by other threads. Closing a closed store has no effect.
+   */
+  @Override
+  public void close()
+  {
+    release();
+  }
+}
@@ -31,13 +31,36 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package intervalstore.impl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+
 import intervalstore.api.IntervalI;
+import intervalstore.api.PayloadCodec;
 
 /**
  * An immutable data bean that models a start-end range
  */
 public class Range implements IntervalI
 {
+  /**
+   * A codec for writing ranges to, and reading them from, the binary form of a
+   * frozen store; as a range holds no data other than its start and end
+   * positions, nothing is written for it
+   */
+  public static final PayloadCodec<Range> CODEC = new PayloadCodec<Range>()
+  {
+    @Override
+    public void write(Range range, DataOutput out)
+    {
+    }
+
+    @Override
+    public Range read(int begin, int end, DataInput in)
+    {
+      return new Range(begin, end);
+    }
+  };
+
   public final int start;
 
   public final int end;
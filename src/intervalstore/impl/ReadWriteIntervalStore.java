@@ -0,0 +1,418 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import intervalstore.api.IntervalI;
+import intervalstore.api.IntervalStoreI;
+
+/**
+ * A thread-safe {@code IntervalStore}, guarded by a {@code StampedLock}, for
+ * use where many threads query the store while others modify it.
+ * <p>
+ * Modifications take the write lock. The queries {@code findOverlaps},
+ * {@code countOverlaps}, {@code contains} and {@code size} first try an
+ * optimistic read, which takes no lock and so does not block other readers;
+ * if a modification was made while the query ran, any results it found are
+ * discarded, and the query is repeated holding the read lock. Queries that
+ * call back to client code ({@code forEachOverlap}, {@code visitOverlaps})
+ * always hold the read lock, as the callbacks could not be undone. Iterators
+ * are over a copy of the data, taken holding the read lock, so are not
+ * affected by later modifications.
+ * <p>
+ * The lock is not reentrant, so callbacks should not modify the store.
+ * 
+ * @param <T>
+ *          any type providing <code>getBegin()</code> and <code>getEnd()</code>
+ */
+public class ReadWriteIntervalStore<T extends IntervalI>
+        extends AbstractCollection<T> implements IntervalStoreI<T>
+{
+  private final IntervalStore<T> store;
+
+  private final StampedLock lock = new StampedLock();
+
+  /**
+   * Constructor
+   */
+  public ReadWriteIntervalStore()
+  {
+    store = new IntervalStore<>();
+  }
+
+  /**
+   * Constructor given a list of intervals. Note that the list may get sorted as
+   * a side-effect of calling this constructor.
+   * 
+   * @param intervals
+   */
+  public ReadWriteIntervalStore(List<T> intervals)
+  {
+    store = new IntervalStore<>(intervals);
+  }
+
+  @Override
+  public boolean add(T interval)
+  {
+    return add(interval, true);
+  }
+
+  @Override
+  public boolean add(T interval, boolean allowDuplicates)
+  {
+    long stamp = lock.writeLock();
+    try
+    {
+      return store.add(interval, allowDuplicates);
+    } finally
+    {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Adds all the intervals, holding the write lock once for all of them
+   */
+  @Override
+  public boolean addAll(Collection<? extends T> intervals)
+  {
+    long stamp = lock.writeLock();
+    try
+    {
+      return store.addAll(intervals);
+    } finally
+    {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public boolean remove(Object o)
+  {
+    long stamp = lock.writeLock();
+    try
+    {
+      return store.remove(o);
+    } finally
+    {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public void clear()
+  {
+    long stamp = lock.writeLock();
+    try
+    {
+      store.clear();
+    } finally
+    {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public List<T> findOverlaps(long from, long to)
+  {
+    return findOverlaps(from, to, new ArrayList<>());
+  }
+
+  /**
+   * Adds stored intervals that overlap the given range to the result list. If
+   * an optimistic read fails validation, any results it added are removed from
+   * the list before the query is repeated under the read lock.
+   */
+  @Override
+  public List<T> findOverlaps(long from, long to, List<T> result)
+  {
+    if (result == null)
+    {
+      result = new ArrayList<>();
+    }
+    int resultSize = result.size();
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0L)
+    {
+      try
+      {
+        store.findOverlaps(from, to, result);
+      } catch (RuntimeException e)
+      {
+        /*
+         * an exception is expected if the store was modified mid-query;
+         * if it was not, it is a genuine error
+         */
+        if (lock.validate(stamp))
+        {
+          throw e;
+        }
+      }
+      if (lock.validate(stamp))
+      {
+        return result;
+      }
+      if (result.size() > resultSize)
+      {
+        result.subList(resultSize, result.size()).clear();
+      }
+    }
+
+    stamp = lock.readLock();
+    try
+    {
+      return store.findOverlaps(from, to, result);
+    } finally
+    {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public int countOverlaps(long from, long to)
+  {
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0L)
+    {
+      try
+      {
+        int count = store.countOverlaps(from, to);
+        if (lock.validate(stamp))
+        {
+          return count;
+        }
+      } catch (RuntimeException e)
+      {
+        if (lock.validate(stamp))
+        {
+          throw e;
+        }
+      }
+    }
+
+    stamp = lock.readLock();
+    try
+    {
+      return store.countOverlaps(from, to);
+    } finally
+    {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public boolean contains(Object entry)
+  {
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0L)
+    {
+      try
+      {
+        boolean contains = store.contains(entry);
+        if (lock.validate(stamp))
+        {
+          return contains;
+        }
+      } catch (RuntimeException e)
+      {
+        if (lock.validate(stamp))
+        {
+          throw e;
+        }
+      }
+    }
+
+    stamp = lock.readLock();
+    try
+    {
+      return store.contains(entry);
+    } finally
+    {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public int size()
+  {
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0L)
+    {
+      int size = store.size();
+      if (lock.validate(stamp))
+      {
+        return size;
+      }
+    }
+
+    stamp = lock.readLock();
+    try
+    {
+      return store.size();
+    } finally
+    {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Performs the action for each stored interval that overlaps the given range,
+   * holding the read lock
+   */
+  @Override
+  public void forEachOverlap(long from, long to,
+          Consumer<? super T> action)
+  {
+    long stamp = lock.readLock();
+    try
+    {
+      store.forEachOverlap(from, to, action);
+    } finally
+    {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Calls the visitor for each stored interval that overlaps the given range,
+   * until the visitor returns false, holding the read lock
+   */
+  @Override
+  public boolean visitOverlaps(long from, long to,
+          Predicate<? super T> visitor)
+  {
+    long stamp = lock.readLock();
+    try
+    {
+      return store.visitOverlaps(from, to, visitor);
+    } finally
+    {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Answers an iterator over the stored intervals that overlap the given range,
+   * as found when this method is called
+   */
+  @Override
+  public Iterator<T> overlapIterator(long from, long to)
+  {
+    return Collections.unmodifiableList(findOverlaps(from, to)).iterator();
+  }
+
+  /**
+   * Answers an iterator over a copy of the intervals in the store, taken
+   * holding the read lock. The iterator does not support the optional
+   * <code>remove</code> operation.
+   */
+  @Override
+  public Iterator<T> iterator()
+  {
+    List<T> copy;
+    long stamp = lock.readLock();
+    try
+    {
+      copy = new ArrayList<>(store);
+    } finally
+    {
+      lock.unlockRead(stamp);
+    }
+    return Collections.unmodifiableList(copy).iterator();
+  }
+
+  /**
+   * Answers a read-only snapshot of the store, made holding the read lock
+   * 
+   * @return
+   * @see IntervalStore#freeze()
+   */
+  public FrozenIntervalStore<T> freeze()
+  {
+    long stamp = lock.readLock();
+    try
+    {
+      return store.freeze();
+    } finally
+    {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public int getDepth()
+  {
+    long stamp = lock.readLock();
+    try
+    {
+      return store.getDepth();
+    } finally
+    {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public String prettyPrint()
+  {
+    long stamp = lock.readLock();
+    try
+    {
+      return store.prettyPrint();
+    } finally
+    {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    long stamp = lock.readLock();
+    try
+    {
+      return store.toString();
+    } finally
+    {
+      lock.unlockRead(stamp);
+    }
+  }
+}
@@ -0,0 +1,407 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Constants and helper methods for the binary file format in which a frozen
+ * store is written, so that it can be read back without sorting or
+ * rebuilding its containment tree. All values are written big-endian, as by
+ * {@code DataOutput}. A file holds
+ * <ul>
+ * <li>a header of three <code>int</code> values: {@code MAGIC},
+ * {@code VERSION} and the type of store ({@code FROZEN_STORE} or
+ * {@code FROZEN_NCLIST})</li>
+ * <li>the arrays of start and end positions and of the nesting structure,
+ * after the counts that give their lengths</li>
+ * <li>the data of each stored interval, in array order, as written by a
+ * {@code PayloadCodec}</li>
+ * </ul>
+ * The fixed-size arrays all precede the payloads, so can be read in bulk.
+ */
+final class StoreFormat
+{
+  /*
+   * "ISTJ"
+   */
+  static final int MAGIC = 0x4953544a;
+
+  /*
+   * the current format version, to be incremented by any
+   * incompatible change to the file layout
+   */
+  static final int VERSION = 1;
+
+  /*
+   * store types
+   */
+  static final int FROZEN_STORE = 1;
+
+  static final int FROZEN_NCLIST = 2;
+
+  /*
+   * the number of int values copied at a time by readInts and writeInts
+   */
+  private static final int BUFFER_INTS = 16384;
+
+  private static final int BUFFER_SIZE = 65536;
+
+  private StoreFormat()
+  {
+  }
+
+  /**
+   * Answers a buffered {@code DataOutput} that writes to the stream. Callers
+   * should flush it when done.
+   * 
+   * @param out
+   * @return
+   */
+  static DataOutputStream dataOutput(OutputStream out)
+  {
+    return new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+  }
+
+  /**
+   * Answers a buffered {@code DataInput} that reads from the stream. Note this
+   * may read further from the stream than the data that is used.
+   * 
+   * @param in
+   * @return
+   */
+  static DataInputStream dataInput(InputStream in)
+  {
+    return new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+  }
+
+  /**
+   * Writes the file header for the given type of store
+   * 
+   * @param out
+   * @param storeType
+   * @throws IOException
+   */
+  static void writeHeader(DataOutput out, int storeType) throws IOException
+  {
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(storeType);
+  }
+
+  /**
+   * Reads the file header, and checks that it is for the current version of
+   * the format, and the given type of store
+   * 
+   * @param in
+   * @param storeType
+   * @throws IOException
+   *           if the header is not as expected
+   */
+  static void readHeader(DataInput in, int storeType) throws IOException
+  {
+    if (in.readInt() != MAGIC)
+    {
+      throw new IOException("Not an interval store file");
+    }
+    int version = in.readInt();
+    if (version != VERSION)
+    {
+      throw new IOException(
+              "Unsupported interval store file version " + version);
+    }
+    int type = in.readInt();
+    if (type != storeType)
+    {
+      throw new IOException(String.format(
+              "Interval store file is of type %d, expected %d", type,
+              storeType));
+    }
+  }
+
+  /**
+   * Reads a count (array length), and checks it is not negative
+   * 
+   * @param in
+   * @return
+   * @throws IOException
+   */
+  static int readCount(DataInput in) throws IOException
+  {
+    int count = in.readInt();
+    if (count < 0)
+    {
+      throw new IOException("Invalid count " + count);
+    }
+    return count;
+  }
+
+  /**
+   * Checks the counts of the nested intervals, top level intervals and depth
+   * of nesting of an NCList are consistent
+   * 
+   * @param n
+   * @param topLevelCount
+   * @param depth
+   * @throws IOException
+   */
+  static void checkCounts(int n, int topLevelCount, int depth)
+          throws IOException
+  {
+    if (topLevelCount > n || (n > 0 && (topLevelCount == 0 || depth == 0)))
+    {
+      throw new IOException(String.format(
+              "Invalid NCList of %d intervals, %d top level, depth %d", n,
+              topLevelCount, depth));
+    }
+  }
+
+  /**
+   * Checks that the start and end positions of non-nested intervals are valid,
+   * and both in ascending order, as queries rely on
+   * 
+   * @param begins
+   * @param ends
+   * @throws IOException
+   *           if any interval ends before it starts, or is out of order
+   */
+  static void checkOrder(IntBuffer begins, IntBuffer ends)
+          throws IOException
+  {
+    int n = begins.limit();
+    if (ends.limit() != n)
+    {
+      throw new IOException("Invalid interval end positions");
+    }
+    for (int i = 0; i < n; i++)
+    {
+      if (begins.get(i) > ends.get(i) || (i > 0
+              && (begins.get(i) < begins.get(i - 1)
+                      || ends.get(i) < ends.get(i - 1))))
+      {
+        throw new IOException("Invalid interval order at interval " + i);
+      }
+    }
+  }
+
+  /**
+   * Checks that an NCList in the layout of {@code FrozenNCList} is valid, so
+   * that queries stay within the arrays and answer correct results. That is,
+   * <ul>
+   * <li>the child blocks form a tree of the given depth, covering every
+   * interval once</li>
+   * <li>each block is ordered by start and end position, with no interval
+   * ending before it starts</li>
+   * <li>each interval lies within the interval that encloses it</li>
+   * <li>the cumulative sizes are the running totals of the subtree sizes of
+   * each block</li>
+   * </ul>
+   * As child blocks follow their parent in this layout, one forward pass
+   * checks the tree and positions, and one backward pass the sizes; but
+   * together they read every value in the arrays.
+   * 
+   * @param layout
+   * @throws IOException
+   *           if the layout is invalid
+   */
+  static void checkNesting(NCListLayout layout) throws IOException
+  {
+    int n = layout.size();
+    int topLevelCount = layout.topLevelCount;
+    IntBuffer begins = layout.begins;
+    IntBuffer ends = layout.ends;
+    IntBuffer childOffsets = layout.childOffsets;
+    IntBuffer childCounts = layout.childCounts;
+    IntBuffer cumulativeSizes = layout.cumulativeSizes;
+    if (ends.limit() != n || childOffsets.limit() != n
+            || childCounts.limit() != n || cumulativeSizes.limit() != n)
+    {
+      throw new IOException("Invalid NCList array lengths");
+    }
+
+    /*
+     * the nesting level of each interval, once reached from its parent,
+     * and whether it is the first in its block
+     */
+    int[] levels = new int[n];
+    boolean[] firsts = new boolean[n];
+    int maxLevel = 0;
+    for (int i = 0; i < topLevelCount; i++)
+    {
+      levels[i] = 1;
+      maxLevel = 1;
+      checkPositions(begins, ends, i, i == 0);
+    }
+    if (topLevelCount > 0)
+    {
+      firsts[0] = true;
+    }
+    for (int i = 0; i < n; i++)
+    {
+      int level = levels[i];
+      int offset = childOffsets.get(i);
+      int count = childCounts.get(i);
+      if (level == 0 || count < 0 || (count > 0
+              && (offset <= i || (long) offset + count > n)))
+      {
+        throw new IOException("Invalid NCList nesting at interval " + i);
+      }
+      for (int j = offset; j < offset + count; j++)
+      {
+        if (levels[j] != 0)
+        {
+          throw new IOException("Invalid NCList nesting at interval " + i);
+        }
+        levels[j] = level + 1;
+        checkPositions(begins, ends, j, j == offset);
+        if (begins.get(j) < begins.get(i) || ends.get(j) > ends.get(i))
+        {
+          throw new IOException("Invalid NCList nesting at interval " + j);
+        }
+      }
+      if (count > 0)
+      {
+        firsts[offset] = true;
+      }
+      maxLevel = Math.max(maxLevel, count > 0 ? level + 1 : level);
+    }
+    if (maxLevel != layout.depth)
+    {
+      throw new IOException(String.format(
+              "Invalid NCList depth %d, expected %d", layout.depth,
+              maxLevel));
+    }
+
+    /*
+     * children follow their parent, so have been checked by the time
+     * the parent's subtree size is
+     */
+    for (int i = n - 1; i >= 0; i--)
+    {
+      int count = childCounts.get(i);
+      long size = 1L + (firsts[i] ? 0 : cumulativeSizes.get(i - 1))
+              + (count == 0 ? 0
+                      : cumulativeSizes.get(childOffsets.get(i) + count - 1));
+      if (cumulativeSizes.get(i) != size)
+      {
+        throw new IOException("Invalid NCList size at interval " + i);
+      }
+    }
+  }
+
+  /**
+   * Checks that the interval at index {@code i} does not end before it starts,
+   * and (unless it is the first of its block) does not start or end before the
+   * interval before it
+   * 
+   * @param begins
+   * @param ends
+   * @param i
+   * @param first
+   * @throws IOException
+   */
+  private static void checkPositions(IntBuffer begins, IntBuffer ends, int i,
+          boolean first) throws IOException
+  {
+    if (begins.get(i) > ends.get(i) || (!first
+            && (begins.get(i) < begins.get(i - 1)
+                    || ends.get(i) < ends.get(i - 1))))
+    {
+      throw new IOException("Invalid NCList order at interval " + i);
+    }
+  }
+
+  /**
+   * Writes the values (without their count) in bulk
+   * 
+   * @param out
+   * @param values
+   * @throws IOException
+   */
+  static void writeInts(DataOutput out, int[] values) throws IOException
+  {
+    int n = values.length;
+    byte[] bytes = new byte[Math.min(n, BUFFER_INTS) * Integer.BYTES];
+    IntBuffer ints = ByteBuffer.wrap(bytes).asIntBuffer();
+    for (int done = 0; done < n;)
+    {
+      int count = Math.min(n - done, BUFFER_INTS);
+      ints.clear();
+      ints.put(values, done, count);
+      out.write(bytes, 0, count * Integer.BYTES);
+      done += count;
+    }
+  }
+
+  /**
+   * Reads the given number of values in bulk. The array is grown as the values
+   * are read, rather than allocated for {@code n} at the outset, so that a
+   * corrupt count fails with an {@code EOFException} at the end of the data,
+   * not by exhausting memory.
+   * 
+   * @param in
+   * @param n
+   * @return
+   * @throws IOException
+   */
+  static int[] readInts(DataInput in, int n) throws IOException
+  {
+    int[] values = new int[Math.min(n, BUFFER_INTS)];
+    byte[] bytes = new byte[values.length * Integer.BYTES];
+    IntBuffer ints = ByteBuffer.wrap(bytes).asIntBuffer();
+    for (int done = 0; done < n;)
+    {
+      int count = Math.min(n - done, BUFFER_INTS);
+      in.readFully(bytes, 0, count * Integer.BYTES);
+      if (done + count > values.length)
+      {
+        values = Arrays.copyOf(values,
+                (int) Math.min(n, 2L * values.length));
+      }
+      ints.clear();
+      ints.get(values, done, count);
+      done += count;
+    }
+    return values;
+  }
+}
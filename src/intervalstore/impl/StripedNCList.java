@@ -0,0 +1,813 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import intervalstore.api.IntervalI;
+import intervalstore.api.IntervalStoreI;
+import intervalstore.impl.BinarySearcher.Compare;
+
+/**
+ * A thread-safe NCList, for concurrent modification of different regions by
+ * multiple threads.
+ * <p>
+ * Each top level subrange (an interval and all the intervals nested within it)
+ * is a 'stripe', with its own read-write lock. The list of stripes is guarded
+ * by a further read-write lock for the structure as a whole. Queries hold the
+ * structure read lock, and the read lock of each stripe as it is searched.
+ * Adding an interval that nests inside a top level interval, or removing a
+ * nested interval, holds the structure read lock and the write lock of just
+ * the one stripe affected, so threads modifying different stripes do not block
+ * each other. Only a change to the top level intervals - adding one (which may
+ * enclose, and so merge, existing stripes) or removing one (which promotes its
+ * nested intervals) - takes the structure write lock.
+ * <p>
+ * Iterators are over a copy of the data, taken holding the read locks, so are
+ * not affected by later modifications.
+ * 
+ * @param <T>
+ *          any type providing <code>getBegin()</code> and <code>getEnd()</code>
+ */
+public class StripedNCList<T extends IntervalI> extends AbstractCollection<T>
+        implements IntervalStoreI<T>
+{
+  /**
+   * A top level interval and its nested intervals, held as an NCList with a
+   * single subrange, with the lock that guards them
+   */
+  private static class Stripe<T extends IntervalI> implements IntervalI
+  {
+    final NCNode<T> root;
+
+    final NCList<T> nodes = new NCList<>();
+
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    Stripe(NCNode<T> root)
+    {
+      this.root = root;
+      nodes.addNode(root);
+    }
+
+    @Override
+    public int getBegin()
+    {
+      return root.getBegin();
+    }
+
+    @Override
+    public int getEnd()
+    {
+      return root.getEnd();
+    }
+  }
+
+  /*
+   * top level stripes, in start position order; the list may only be
+   * modified by a thread holding the structure write lock
+   */
+  private final List<Stripe<T>> stripes = new ArrayList<>();
+
+  private final ReentrantReadWriteLock structureLock = new ReentrantReadWriteLock();
+
+  private final AtomicInteger size = new AtomicInteger();
+
+  /**
+   * Constructor
+   */
+  public StripedNCList()
+  {
+  }
+
+  /**
+   * Constructor given a list of intervals. Note that the list may get sorted as
+   * a side-effect of calling this constructor.
+   * 
+   * @param ranges
+   */
+  public StripedNCList(List<T> ranges)
+  {
+    NCList<T> ncList = new NCList<>(ranges);
+    for (NCNode<T> subrange : ncList.getSubranges())
+    {
+      stripes.add(new Stripe<>(subrange));
+    }
+    size.set(ncList.size());
+  }
+
+  @Override
+  public boolean add(T entry)
+  {
+    return add(entry, true);
+  }
+
+  /**
+   * Adds the entry, unless <code>allowDuplicates</code> is false and it is
+   * already contained in the store. Adding with <code>allowDuplicates</code>
+   * false holds the structure write lock, so that the test for containment and
+   * the addition are atomic.
+   */
+  @Override
+  public boolean add(T entry, boolean allowDuplicates)
+  {
+    if (entry == null)
+    {
+      return false;
+    }
+    if (allowDuplicates)
+    {
+      Lock readLock = structureLock.readLock();
+      readLock.lock();
+      try
+      {
+        Stripe<T> stripe = findEnclosingStripe(entry);
+        if (stripe != null)
+        {
+          stripe.lock.writeLock().lock();
+          try
+          {
+            stripe.nodes.add(entry);
+          } finally
+          {
+            stripe.lock.writeLock().unlock();
+          }
+          size.incrementAndGet();
+          return true;
+        }
+      } finally
+      {
+        readLock.unlock();
+      }
+    }
+
+    /*
+     * the entry is a new top level interval, or we must check for
+     * duplicates; the structure may have changed since we released
+     * the read lock, so addTopLevel() checks for an enclosing stripe again
+     */
+    Lock writeLock = structureLock.writeLock();
+    writeLock.lock();
+    try
+    {
+      if (!allowDuplicates && containsEntry(entry))
+      {
+        return false;
+      }
+      addTopLevel(new NCNode<>(entry));
+      size.incrementAndGet();
+      return true;
+    } finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Answers the stripe whose top level interval properly contains the given
+   * interval, or null if there is none. The caller should hold the structure
+   * lock.
+   * 
+   * @param interval
+   * @return
+   */
+  private Stripe<T> findEnclosingStripe(IntervalI interval)
+  {
+    int begin = interval.getBegin();
+    for (int i = findFirstStripe(begin); i < stripes.size(); i++)
+    {
+      Stripe<T> stripe = stripes.get(i);
+      if (stripe.getBegin() > begin)
+      {
+        break;
+      }
+      if (stripe.properlyContainsInterval(interval))
+      {
+        return stripe;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Adds a node, following the same rules as <code>NCList.addNode</code>: the
+   * node is added inside a stripe that encloses it, or as a new stripe, which
+   * encloses any stripes that it contains. The caller should hold the structure
+   * write lock.
+   * 
+   * @param node
+   */
+  private void addTopLevel(NCNode<T> node)
+  {
+    final long start = node.getBegin();
+    final long end = node.getEnd();
+
+    boolean enclosing = false;
+    int firstEnclosed = 0;
+    int lastEnclosed = 0;
+
+    for (int j = findFirstStripe(start); j < stripes.size(); j++)
+    {
+      Stripe<T> stripe = stripes.get(j);
+
+      if (stripe.equalsInterval(node))
+      {
+        /*
+         * add after any co-located intervals
+         */
+        continue;
+      }
+
+      if (end < stripe.getBegin() && !enclosing)
+      {
+        stripes.add(j, new Stripe<>(node));
+        return;
+      }
+
+      if (stripe.properlyContainsInterval(node))
+      {
+        stripe.nodes.addNode(node);
+        return;
+      }
+
+      if (start <= stripe.getBegin())
+      {
+        if (end >= stripe.getEnd())
+        {
+          if (!enclosing)
+          {
+            firstEnclosed = j;
+          }
+          lastEnclosed = j;
+          enclosing = true;
+          continue;
+        }
+        if (enclosing)
+        {
+          enclose(node, firstEnclosed, lastEnclosed);
+        }
+        else
+        {
+          stripes.add(j, new Stripe<>(node));
+        }
+        return;
+      }
+    }
+
+    if (enclosing)
+    {
+      enclose(node, firstEnclosed, lastEnclosed);
+    }
+    else
+    {
+      stripes.add(new Stripe<>(node));
+    }
+  }
+
+  /**
+   * Replaces stripes i to j (inclusive) with a new stripe for the node, which
+   * contains their top level intervals
+   * 
+   * @param node
+   * @param i
+   * @param j
+   */
+  private void enclose(NCNode<T> node, int i, int j)
+  {
+    for (int k = i; k <= j; k++)
+    {
+      node.addNode(stripes.get(k).root);
+    }
+    for (int k = j; k >= i; k--)
+    {
+      stripes.remove(k);
+    }
+    stripes.add(i, new Stripe<>(node));
+  }
+
+  /**
+   * Removes the first interval found that is equal to the entry. Removing a
+   * nested interval locks only the stripe that contains it; removing a top
+   * level interval holds the structure write lock, while its nested intervals
+   * (if any) are promoted.
+   */
+  @Override
+  public boolean remove(Object o)
+  {
+    if (!(o instanceof IntervalI))
+    {
+      return false;
+    }
+    IntervalI entry = (IntervalI) o;
+
+    Lock readLock = structureLock.readLock();
+    readLock.lock();
+    try
+    {
+      int begin = entry.getBegin();
+      for (int i = findFirstStripe(begin); i < stripes.size(); i++)
+      {
+        Stripe<T> stripe = stripes.get(i);
+        if (stripe.getBegin() > begin)
+        {
+          return false;
+        }
+        if (stripe.root.getRegion().equals(entry))
+        {
+          /*
+           * removing a top level interval - needs the write lock
+           */
+          break;
+        }
+        if (removeNested(stripe, entry, true))
+        {
+          return true;
+        }
+      }
+    } finally
+    {
+      readLock.unlock();
+    }
+
+    Lock writeLock = structureLock.writeLock();
+    writeLock.lock();
+    try
+    {
+      int begin = entry.getBegin();
+      for (int i = findFirstStripe(begin); i < stripes.size(); i++)
+      {
+        Stripe<T> stripe = stripes.get(i);
+        if (stripe.getBegin() > begin)
+        {
+          return false;
+        }
+        if (stripe.root.getRegion().equals(entry))
+        {
+          stripes.remove(i);
+          NCList<T> subRegions = stripe.root.getSubRegions();
+          if (subRegions != null)
+          {
+            for (NCNode<T> subrange : subRegions.getSubranges())
+            {
+              addTopLevel(subrange);
+            }
+          }
+          size.decrementAndGet();
+          return true;
+        }
+        if (removeNested(stripe, entry, false))
+        {
+          return true;
+        }
+      }
+      return false;
+    } finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Removes an entry (other than the top level interval) from the stripe,
+   * answering true if it is found and removed, else false. If
+   * <code>lock</code> is true, the stripe write lock is held while doing so.
+   * 
+   * @param stripe
+   * @param entry
+   * @param lock
+   * @return
+   */
+  @SuppressWarnings("unchecked")
+  private boolean removeNested(Stripe<T> stripe, IntervalI entry,
+          boolean lock)
+  {
+    if (!stripe.containsInterval(entry))
+    {
+      return false;
+    }
+    if (lock)
+    {
+      stripe.lock.writeLock().lock();
+    }
+    try
+    {
+      if (stripe.nodes.remove((T) entry))
+      {
+        size.decrementAndGet();
+        return true;
+      }
+      return false;
+    } catch (ClassCastException e)
+    {
+      return false;
+    } finally
+    {
+      if (lock)
+      {
+        stripe.lock.writeLock().unlock();
+      }
+    }
+  }
+
+  @Override
+  public void clear()
+  {
+    Lock writeLock = structureLock.writeLock();
+    writeLock.lock();
+    try
+    {
+      stripes.clear();
+      size.set(0);
+    } finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public int size()
+  {
+    return size.get();
+  }
+
+  @Override
+  public boolean contains(Object entry)
+  {
+    Lock readLock = structureLock.readLock();
+    readLock.lock();
+    try
+    {
+      return containsEntry(entry);
+    } finally
+    {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Answers true if the store contains the entry, else false. The caller should
+   * hold the structure lock.
+   * 
+   * @param entry
+   * @return
+   */
+  private boolean containsEntry(Object entry)
+  {
+    if (!(entry instanceof IntervalI))
+    {
+      return false;
+    }
+    IntervalI interval = (IntervalI) entry;
+    int to = interval.getEnd();
+    for (int i = findFirstStripe(interval.getBegin()); i < stripes.size(); i++)
+    {
+      Stripe<T> stripe = stripes.get(i);
+      if (stripe.getBegin() > to)
+      {
+        break;
+      }
+      stripe.lock.readLock().lock();
+      try
+      {
+        if (stripe.nodes.contains(interval))
+        {
+          return true;
+        }
+      } finally
+      {
+        stripe.lock.readLock().unlock();
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public List<T> findOverlaps(long from, long to)
+  {
+    return findOverlaps(from, to, new ArrayList<>());
+  }
+
+  @Override
+  public List<T> findOverlaps(long from, long to, List<T> result)
+  {
+    if (result == null)
+    {
+      result = new ArrayList<>();
+    }
+    Lock readLock = structureLock.readLock();
+    readLock.lock();
+    try
+    {
+      for (int i = findFirstStripe(from); i < stripes.size(); i++)
+      {
+        Stripe<T> stripe = stripes.get(i);
+        if (stripe.getBegin() > to)
+        {
+          break;
+        }
+        stripe.lock.readLock().lock();
+        try
+        {
+          stripe.nodes.findOverlaps(from, to, result);
+        } finally
+        {
+          stripe.lock.readLock().unlock();
+        }
+      }
+    } finally
+    {
+      readLock.unlock();
+    }
+    return result;
+  }
+
+  @Override
+  public void forEachOverlap(long from, long to,
+          Consumer<? super T> action)
+  {
+    visitOverlaps(from, to, t -> {
+      action.accept(t);
+      return true;
+    });
+  }
+
+  /**
+   * Calls the visitor for each stored interval that overlaps the given range,
+   * until the visitor returns false, holding the structure read lock, and the
+   * read lock of each stripe while it is searched
+   */
+  @Override
+  public boolean visitOverlaps(long from, long to,
+          Predicate<? super T> visitor)
+  {
+    Lock readLock = structureLock.readLock();
+    readLock.lock();
+    try
+    {
+      for (int i = findFirstStripe(from); i < stripes.size(); i++)
+      {
+        Stripe<T> stripe = stripes.get(i);
+        if (stripe.getBegin() > to)
+        {
+          break;
+        }
+        stripe.lock.readLock().lock();
+        try
+        {
+          if (!stripe.nodes.visitOverlaps(from, to, visitor))
+          {
+            return false;
+          }
+        } finally
+        {
+          stripe.lock.readLock().unlock();
+        }
+      }
+      return true;
+    } finally
+    {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public int countOverlaps(long from, long to)
+  {
+    int count = 0;
+    Lock readLock = structureLock.readLock();
+    readLock.lock();
+    try
+    {
+      for (int i = findFirstStripe(from); i < stripes.size(); i++)
+      {
+        Stripe<T> stripe = stripes.get(i);
+        if (stripe.getBegin() > to)
+        {
+          break;
+        }
+        stripe.lock.readLock().lock();
+        try
+        {
+          count += stripe.nodes.countOverlaps(from, to);
+        } finally
+        {
+          stripe.lock.readLock().unlock();
+        }
+      }
+    } finally
+    {
+      readLock.unlock();
+    }
+    return count;
+  }
+
+  /**
+   * Answers the index of the first stripe whose end is not before the given
+   * position. As top level intervals are not nested, this is the first that
+   * may overlap a range starting at that position.
+   * 
+   * @param from
+   * @return
+   */
+  private int findFirstStripe(long from)
+  {
+    return BinarySearcher.findFirst(stripes, false, Compare.GE, (int) from);
+  }
+
+  /**
+   * Answers an iterator over a copy of the intervals in the store. The iterator
+   * does not support the optional <code>remove</code> operation.
+   */
+  @Override
+  public Iterator<T> iterator()
+  {
+    List<T> copy = new ArrayList<>(size());
+    Lock readLock = structureLock.readLock();
+    readLock.lock();
+    try
+    {
+      for (Stripe<T> stripe : stripes)
+      {
+        stripe.lock.readLock().lock();
+        try
+        {
+          stripe.nodes.getEntries(copy);
+        } finally
+        {
+          stripe.lock.readLock().unlock();
+        }
+      }
+    } finally
+    {
+      readLock.unlock();
+    }
+    return Collections.unmodifiableList(copy).iterator();
+  }
+
+  /**
+   * Answers the depth of interval nesting, where 1 means there are no nested
+   * intervals
+   */
+  @Override
+  public int getDepth()
+  {
+    int depth = 0;
+    Lock readLock = structureLock.readLock();
+    readLock.lock();
+    try
+    {
+      for (Stripe<T> stripe : stripes)
+      {
+        stripe.lock.readLock().lock();
+        try
+        {
+          depth = Math.max(depth, stripe.nodes.getDepth());
+        } finally
+        {
+          stripe.lock.readLock().unlock();
+        }
+      }
+    } finally
+    {
+      readLock.unlock();
+    }
+    return depth;
+  }
+
+  /**
+   * Answers true if the structure is valid: top level intervals are in start
+   * order and not nested, each stripe is a valid NCList, and the size is the
+   * sum of the stripe sizes. For use in testing and debugging; should only be
+   * called when the store is not being modified.
+   * 
+   * @return
+   */
+  public boolean isValid()
+  {
+    int count = 0;
+    for (int i = 0; i < stripes.size(); i++)
+    {
+      Stripe<T> stripe = stripes.get(i);
+      if (i > 0)
+      {
+        Stripe<T> previous = stripes.get(i - 1);
+        if (stripe.getBegin() < previous.getBegin()
+                || previous.properlyContainsInterval(stripe)
+                || stripe.properlyContainsInterval(previous))
+        {
+          System.err.println("Stripes out of order or nested: "
+                  + previous.root + ", " + stripe.root);
+          return false;
+        }
+      }
+      if (stripe.nodes.getSubranges().size() != 1
+              || stripe.nodes.getSubranges().get(0) != stripe.root
+              || !stripe.nodes.isValid())
+      {
+        System.err.println("Invalid stripe " + stripe.root);
+        return false;
+      }
+      count += stripe.nodes.size();
+    }
+    if (count != size())
+    {
+      System.err.println("Size " + size() + " but counted " + count);
+      return false;
+    }
+    return true;
+  }
+
+  @Override
+  public String prettyPrint()
+  {
+    StringBuilder sb = new StringBuilder(512);
+    Lock readLock = structureLock.readLock();
+    readLock.lock();
+    try
+    {
+      for (Stripe<T> stripe : stripes)
+      {
+        stripe.lock.readLock().lock();
+        try
+        {
+          sb.append(stripe.nodes.prettyPrint());
+        } finally
+        {
+          stripe.lock.readLock().unlock();
+        }
+      }
+    } finally
+    {
+      readLock.unlock();
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public String toString()
+  {
+    StringBuilder sb = new StringBuilder(512).append('[');
+    Lock readLock = structureLock.readLock();
+    readLock.lock();
+    try
+    {
+      for (Stripe<T> stripe : stripes)
+      {
+        if (sb.length() > 1)
+        {
+          sb.append(", ");
+        }
+        stripe.lock.readLock().lock();
+        try
+        {
+          sb.append(stripe.root.toString());
+        } finally
+        {
+          stripe.lock.readLock().unlock();
+        }
+      }
+    } finally
+    {
+      readLock.unlock();
+    }
+    return sb.append(']').toString();
+  }
+}
@@ -0,0 +1,206 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import intervalstore.api.IntervalI;
+import intervalstore.api.IntervalStoreI;
+
+/**
+ * A thread-safe {@code IntervalStore}, in which every operation holds the
+ * lock on this object, so only one thread at a time may query or modify the
+ * store. This is the simplest concurrency policy, suitable where there is
+ * little contention; where many threads query the store, see
+ * {@code ReadWriteIntervalStore} or {@code CopyOnWriteIntervalStore}.
+ * <p>
+ * Iterators are over a copy of the data, taken holding the lock, so are not
+ * affected by later modifications.
+ * 
+ * @param <T>
+ *          any type providing <code>getBegin()</code> and <code>getEnd()</code>
+ */
+public class SynchronizedIntervalStore<T extends IntervalI>
+        extends AbstractCollection<T> implements IntervalStoreI<T>
+{
+  private final IntervalStore<T> store;
+
+  /**
+   * Constructor
+   */
+  public SynchronizedIntervalStore()
+  {
+    store = new IntervalStore<>();
+  }
+
+  /**
+   * Constructor given a list of intervals. Note that the list may get sorted as
+   * a side-effect of calling this constructor.
+   * 
+   * @param intervals
+   */
+  public SynchronizedIntervalStore(List<T> intervals)
+  {
+    store = new IntervalStore<>(intervals);
+  }
+
+  @Override
+  public synchronized boolean add(T interval)
+  {
+    return store.add(interval);
+  }
+
+  @Override
+  public synchronized boolean add(T interval, boolean allowDuplicates)
+  {
+    return store.add(interval, allowDuplicates);
+  }
+
+  @Override
+  public synchronized boolean addAll(Collection<? extends T> intervals)
+  {
+    return store.addAll(intervals);
+  }
+
+  @Override
+  public synchronized boolean remove(Object o)
+  {
+    return store.remove(o);
+  }
+
+  @Override
+  public synchronized void clear()
+  {
+    store.clear();
+  }
+
+  @Override
+  public List<T> findOverlaps(long from, long to)
+  {
+    return findOverlaps(from, to, new ArrayList<>());
+  }
+
+  @Override
+  public synchronized List<T> findOverlaps(long from, long to,
+          List<T> result)
+  {
+    return store.findOverlaps(from, to, result);
+  }
+
+  @Override
+  public synchronized void forEachOverlap(long from, long to,
+          Consumer<? super T> action)
+  {
+    store.forEachOverlap(from, to, action);
+  }
+
+  @Override
+  public synchronized boolean visitOverlaps(long from, long to,
+          Predicate<? super T> visitor)
+  {
+    return store.visitOverlaps(from, to, visitor);
+  }
+
+  /**
+   * Answers an iterator over the stored intervals that overlap the given range,
+   * as found when this method is called
+   */
+  @Override
+  public Iterator<T> overlapIterator(long from, long to)
+  {
+    return Collections.unmodifiableList(findOverlaps(from, to)).iterator();
+  }
+
+  @Override
+  public synchronized int countOverlaps(long from, long to)
+  {
+    return store.countOverlaps(from, to);
+  }
+
+  @Override
+  public synchronized boolean contains(Object entry)
+  {
+    return store.contains(entry);
+  }
+
+  @Override
+  public synchronized int size()
+  {
+    return store.size();
+  }
+
+  /**
+   * Answers an iterator over a copy of the intervals in the store. The iterator
+   * does not support the optional <code>remove</code> operation.
+   */
+  @Override
+  public synchronized Iterator<T> iterator()
+  {
+    return Collections.unmodifiableList(new ArrayList<>(store)).iterator();
+  }
+
+  /**
+   * Answers a read-only snapshot of the store
+   * 
+   * @return
+   * @see IntervalStore#freeze()
+   */
+  public synchronized FrozenIntervalStore<T> freeze()
+  {
+    return store.freeze();
+  }
+
+  @Override
+  public synchronized int getDepth()
+  {
+    return store.getDepth();
+  }
+
+  @Override
+  public synchronized String prettyPrint()
+  {
+    return store.prettyPrint();
+  }
+
+  @Override
+  public synchronized String toString()
+  {
+    return store.toString();
+  }
+}
@@ -87,4 +87,35 @@ public class BinarySearcherTest
     assertNotEquals(pos, 0);
     assertEquals(pos, ranges.size());
   }
+
+  /**
+   * Tests for the binary search for the first array value in a given range of
+   * indices that satisfies a given test
+   */
+  @Test(groups = "Functional")
+  public void testFindFirst_intArray()
+  {
+    int[] values = new int[] { 9, 1, 1, 3, 5, 8, 0 };
+
+    // first value >= 3 in [1, 6)
+    assertEquals(BinarySearcher.findFirst(values, 1, 6, Compare.GE, 3), 3);
+
+    // first value > 1 in [1, 6)
+    assertEquals(BinarySearcher.findFirst(values, 1, 6, Compare.GT, 1), 3);
+
+    // first value >= 1 in [1, 6)
+    assertEquals(BinarySearcher.findFirst(values, 1, 6, Compare.GE, 1), 1);
+
+    // first value > 8 in [1, 6) - none
+    assertEquals(BinarySearcher.findFirst(values, 1, 6, Compare.GT, 8), 6);
+
+    // compare to a value beyond the range of int
+    assertEquals(BinarySearcher.findFirst(values, 1, 6, Compare.GE,
+            Integer.MIN_VALUE - 1L), 1);
+    assertEquals(BinarySearcher.findFirst(values, 1, 6, Compare.GE,
+            Integer.MAX_VALUE + 1L), 6);
+
+    // empty range
+    assertEquals(BinarySearcher.findFirst(values, 3, 3, Compare.GE, 0), 3);
+  }
 }
@@ -0,0 +1,286 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import intervalstore.api.IntervalI;
+import intervalstore.impl.BinarySearcher.Compare;
+import junit.extensions.PA;
+
+public class ChunkedIntervalListTest
+{
+  /**
+   * Test that random inserts and removes (enough to split and merge chunks)
+   * give the same list as for ArrayList
+   */
+  @Test(groups = "Functional")
+  public void testAddRemove_compareToArrayList()
+  {
+    Random random = new Random(71);
+    ChunkedIntervalList<Range> chunked = new ChunkedIntervalList<>();
+    List<Range> expected = new ArrayList<>();
+
+    for (int i = 0; i < 20000; i++)
+    {
+      Range r = new Range(i, i);
+      int index = random.nextInt(expected.size() + 1);
+      chunked.add(index, r);
+      expected.add(index, r);
+    }
+    assertEquals(chunked.size(), 20000);
+    assertEquals(chunked, expected);
+
+    for (int i = 0; i < 19000; i++)
+    {
+      int index = random.nextInt(expected.size());
+      assertEquals(chunked.remove(index), expected.remove(index));
+      if (i % 100 == 0)
+      {
+        Range r = new Range(-i, -i);
+        index = random.nextInt(expected.size() + 1);
+        chunked.add(index, r);
+        expected.add(index, r);
+      }
+    }
+    assertEquals(chunked, expected);
+    for (int i = 0; i < expected.size(); i++)
+    {
+      assertEquals(chunked.get(i), expected.get(i));
+    }
+
+    chunked.clear();
+    assertTrue(chunked.isEmpty());
+    assertFalse(chunked.iterator().hasNext());
+    chunked.add(new Range(1, 2));
+    assertEquals(chunked.size(), 1);
+  }
+
+  /**
+   * Test that a list allocates its arrays only as entries are added, so that
+   * small lists (e.g. the non-nested intervals of many small stores) use
+   * little memory
+   */
+  @Test(groups = "Functional")
+  public void testCapacity_smallList()
+  {
+    ChunkedIntervalList<Range> chunked = new ChunkedIntervalList<>();
+    assertEquals(((IntervalI[][]) PA.getValue(chunked, "chunks")).length, 0);
+    assertEquals(((int[]) PA.getValue(chunked, "lastEnds")).length, 0);
+
+    chunked.add(new Range(1, 2));
+    chunked.add(new Range(3, 4));
+    IntervalI[][] chunks = (IntervalI[][]) PA.getValue(chunked, "chunks");
+    assertEquals(chunks.length, 1);
+    assertEquals(chunks[0].length, 4);
+    assertEquals(((int[][]) PA.getValue(chunked, "chunkBegins"))[0].length,
+            4);
+    assertEquals(((int[]) PA.getValue(chunked, "offsets")).length, 1);
+
+    /*
+     * a chunk grows by half as needed, up to the maximum chunk size
+     */
+    for (int i = 0; i < 3; i++)
+    {
+      chunked.add(new Range(5 + i, 6 + i));
+    }
+    chunks = (IntervalI[][]) PA.getValue(chunked, "chunks");
+    assertEquals(chunks[0].length, 6);
+    for (int i = 5; i < ChunkedIntervalList.MAX_CHUNK_SIZE + 1; i++)
+    {
+      chunked.add(new Range(5 + i, 6 + i));
+    }
+    chunks = (IntervalI[][]) PA.getValue(chunked, "chunks");
+    assertEquals(chunks.length, 2);
+    assertEquals(chunks[0].length, ChunkedIntervalList.MAX_CHUNK_SIZE);
+    assertEquals(chunks[1].length, 4);
+
+    chunked.clear();
+    assertEquals(((IntervalI[][]) PA.getValue(chunked, "chunks")).length, 0);
+  }
+
+  @Test(groups = "Functional")
+  public void testGet_outOfBounds()
+  {
+    ChunkedIntervalList<Range> chunked = new ChunkedIntervalList<>();
+    chunked.add(new Range(1, 2));
+    try
+    {
+      chunked.get(1);
+      fail("expected exception");
+    } catch (IndexOutOfBoundsException e)
+    {
+      // expected
+    }
+    try
+    {
+      chunked.add(3, new Range(3, 4));
+      fail("expected exception");
+    } catch (IndexOutOfBoundsException e)
+    {
+      // expected
+    }
+  }
+
+  /**
+   * Test that findFirst gives the same result as a binary search of an
+   * ArrayList
+   */
+  @Test(groups = "Functional")
+  public void testFindFirst()
+  {
+    ChunkedIntervalList<Range> chunked = new ChunkedIntervalList<>();
+    List<Range> list = new ArrayList<>();
+    assertEquals(BinarySearcher.findFirst(chunked, true, Compare.GE, 10),
+            0);
+
+    /*
+     * intervals ordered by start and end, with some co-located
+     */
+    for (int i = 0; i < 3000; i++)
+    {
+      Range r = new Range(i * 3 / 2, i * 3 / 2 + 4);
+      chunked.add(r);
+      list.add(r);
+    }
+    for (int pos = -5; pos < 4600; pos++)
+    {
+      assertEquals(BinarySearcher.findFirst(chunked, true, Compare.GE, pos),
+              BinarySearcher.findFirst(list, true, Compare.GE, pos));
+      assertEquals(BinarySearcher.findFirst(chunked, false, Compare.GE, pos),
+              BinarySearcher.findFirst(list, false, Compare.GE, pos));
+      assertEquals(BinarySearcher.findFirst(chunked, true, Compare.GT, pos),
+              BinarySearcher.findFirst(list, true, Compare.GT, pos));
+    }
+  }
+
+  /**
+   * Test that the start and end positions held for each chunk are kept in
+   * step with its entries when inserting, removing or replacing entries
+   * splits and merges chunks
+   */
+  @Test(groups = "Functional")
+  public void testFindFirst_afterInsertRemoveSet()
+  {
+    Random random = new Random(29);
+    ChunkedIntervalList<Range> chunked = new ChunkedIntervalList<>();
+    List<Range> list = new ArrayList<>();
+    for (int i = 0; i < 5000; i++)
+    {
+      int begin = random.nextInt(100000);
+      Range r = new Range(begin, begin + 10);
+      int index = BinarySearcher.findFirst(list, true, Compare.GT, begin);
+      chunked.add(index, r);
+      list.add(index, r);
+    }
+    for (int i = 0; i < 4000; i++)
+    {
+      int index = random.nextInt(list.size());
+      if (i % 3 == 0)
+      {
+        Range r = new Range(list.get(index).getBegin(),
+                list.get(index).getEnd());
+        chunked.set(index, r);
+        list.set(index, r);
+      }
+      else
+      {
+        chunked.remove(index);
+        list.remove(index);
+      }
+    }
+    assertEquals(chunked, list);
+    for (int pos = -5; pos < 100020; pos += 3)
+    {
+      assertEquals(BinarySearcher.findFirst(chunked, true, Compare.GT, pos),
+              BinarySearcher.findFirst(list, true, Compare.GT, pos));
+      assertEquals(BinarySearcher.findFirst(chunked, false, Compare.GE, pos),
+              BinarySearcher.findFirst(list, false, Compare.GE, pos));
+    }
+  }
+
+  @Test(groups = "Functional")
+  public void testFindOverlaps()
+  {
+    ChunkedIntervalList<Range> chunked = new ChunkedIntervalList<>();
+    for (int i = 0; i < 3000; i++)
+    {
+      chunked.add(new Range(i * 10, i * 10 + 15));
+    }
+    for (int from = -20; from < 30100; from += 7)
+    {
+      int to = from + from % 50;
+      List<Range> expected = new ArrayList<>();
+      for (Range r : chunked)
+      {
+        if (r.getBegin() <= to && r.getEnd() >= from)
+        {
+          expected.add(r);
+        }
+      }
+      List<Range> found = new ArrayList<>();
+      chunked.findOverlaps(from, to, found);
+      assertEquals(found, expected);
+
+      List<Range> visited = new ArrayList<>();
+      chunked.forEachOverlap(from, to, visited::add);
+      assertEquals(visited, expected);
+    }
+  }
+
+  @Test(groups = "Functional")
+  public void testIterator_fromIndex()
+  {
+    ChunkedIntervalList<Range> chunked = new ChunkedIntervalList<>();
+    for (int i = 0; i < 2000; i++)
+    {
+      chunked.add(new Range(i, i));
+    }
+    Iterator<Range> it = chunked.iterator(1500);
+    for (int i = 1500; i < 2000; i++)
+    {
+      assertEquals(it.next().getBegin(), i);
+    }
+    assertFalse(it.hasNext());
+    assertFalse(chunked.iterator(2000).hasNext());
+  }
+}
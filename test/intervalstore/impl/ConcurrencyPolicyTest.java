@@ -0,0 +1,167 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import intervalstore.api.IntervalStoreI;
+
+public class ConcurrencyPolicyTest
+{
+  @Test(groups = "Functional")
+  public void testCreateStore()
+  {
+    assertTrue(ConcurrencyPolicy.UNSYNCHRONIZED
+            .createStore() instanceof IntervalStore);
+    assertTrue(ConcurrencyPolicy.COARSE_LOCK
+            .createStore() instanceof SynchronizedIntervalStore);
+    assertTrue(ConcurrencyPolicy.READ_WRITE_LOCK
+            .createStore() instanceof ReadWriteIntervalStore);
+    assertTrue(ConcurrencyPolicy.COPY_ON_WRITE
+            .createStore() instanceof CopyOnWriteIntervalStore);
+    assertTrue(ConcurrencyPolicy.CONCURRENT
+            .createStore() instanceof ConcurrentIntervalStore);
+
+    Range r1 = new Range(10, 20);
+    Range r2 = new Range(12, 15);
+    Range r3 = new Range(18, 30);
+    for (ConcurrencyPolicy policy : ConcurrencyPolicy.values())
+    {
+      IntervalStoreI<Range> store = policy
+              .createStore(new ArrayList<>(Arrays.asList(r3, r2, r1)));
+      assertEquals(store.size(), 3, policy.name());
+      assertEquals(store.getDepth(), 2, policy.name());
+      assertEquals(store.findOverlaps(14, 18), Arrays.asList(r1, r3, r2),
+              policy.name());
+      assertTrue(store.remove(r1));
+      assertEquals(store.findOverlaps(14, 18), Arrays.asList(r3, r2),
+              policy.name());
+    }
+  }
+
+  @DataProvider(name = "threadSafePolicies")
+  public Object[][] getThreadSafePolicies()
+  {
+    return new Object[][] { { ConcurrencyPolicy.COARSE_LOCK },
+        { ConcurrencyPolicy.READ_WRITE_LOCK },
+        { ConcurrencyPolicy.COPY_ON_WRITE },
+        { ConcurrencyPolicy.CONCURRENT } };
+  }
+
+  /**
+   * Test that queries made while another thread adds and removes intervals
+   * always find exactly those intervals that were present throughout
+   * 
+   * @param policy
+   * @throws InterruptedException
+   */
+  @Test(groups = "Functional", dataProvider = "threadSafePolicies")
+  public void testConcurrentReadWrite(ConcurrencyPolicy policy)
+          throws InterruptedException
+  {
+    Random random = new Random(83);
+    List<SimpleFeature> stable = new ArrayList<>();
+    for (int i = 0; i < 10000; i++)
+    {
+      int begin = random.nextInt(100000);
+      int end = begin + random.nextInt(random.nextInt(10) == 0 ? 2000 : 50);
+      stable.add(new SimpleFeature(begin, end, "stable"));
+    }
+    IntervalStore<SimpleFeature> reference = new IntervalStore<>(
+            new ArrayList<>(stable));
+    IntervalStoreI<SimpleFeature> store = policy
+            .createStore(new ArrayList<>(stable));
+
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Thread writer = new Thread(() -> {
+      Random r = new Random(84);
+      List<SimpleFeature> churn = new ArrayList<>();
+      for (int i = 0; i < 2000; i++)
+      {
+        int begin = r.nextInt(100000);
+        int end = begin + r.nextInt(r.nextInt(10) == 0 ? 2000 : 50);
+        SimpleFeature sf = new SimpleFeature(begin, end, "churn" + i);
+        store.add(sf);
+        churn.add(sf);
+        if (churn.size() > 100 && !store.remove(churn.remove(0)))
+        {
+          failure.compareAndSet(null,
+                  new AssertionError("failed to remove churn interval"));
+        }
+      }
+    });
+
+    Thread reader = new Thread(() -> {
+      Random r = new Random(85);
+      try
+      {
+        while (writer.isAlive())
+        {
+          int from = r.nextInt(100000);
+          int to = from + r.nextInt(2000);
+          int stableCount = 0;
+          for (SimpleFeature sf : store.findOverlaps(from, to))
+          {
+            assertTrue(sf.getBegin() <= to && sf.getEnd() >= from);
+            if ("stable".equals(sf.getDescription()))
+            {
+              stableCount++;
+            }
+          }
+          assertEquals(stableCount, reference.countOverlaps(from, to));
+        }
+      } catch (Throwable e)
+      {
+        failure.compareAndSet(null, e);
+      }
+    });
+
+    writer.start();
+    reader.start();
+    writer.join();
+    reader.join();
+
+    assertNull(failure.get());
+    assertEquals(store.size(), stable.size() + 100);
+  }
+}
@@ -0,0 +1,211 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import static intervalstore.impl.StoreFixtures.randomFeature;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class ConcurrentIntervalStoreTest
+{
+  /**
+   * Test that adding and removing intervals gives the same query results, in
+   * the same order, as for IntervalStore
+   */
+  @Test(groups = "Functional")
+  public void testAddRemove_compareToIntervalStore()
+  {
+    Random random = new Random(61);
+    IntervalStore<SimpleFeature> store = new IntervalStore<>();
+    ConcurrentIntervalStore<SimpleFeature> concurrent = new ConcurrentIntervalStore<>();
+    List<SimpleFeature> added = new ArrayList<>();
+    for (int i = 0; i < 2000; i++)
+    {
+      SimpleFeature sf = randomFeature(random, 0, i);
+      store.add(sf);
+      concurrent.add(sf);
+      added.add(sf);
+    }
+    assertTrue(concurrent.isValid());
+    assertEquals(concurrent.size(), 2000);
+    assertEquals(concurrent.getDepth(), store.getDepth());
+    assertEquals(concurrent.toString(), store.toString());
+
+    for (int i = 0; i < 200; i++)
+    {
+      int from = random.nextInt(11000);
+      int to = from + random.nextInt(200);
+      List<SimpleFeature> expected = store.findOverlaps(from, to);
+      assertEquals(concurrent.findOverlaps(from, to), expected);
+      assertEquals(concurrent.countOverlaps(from, to), expected.size());
+      List<SimpleFeature> visited = new ArrayList<>();
+      concurrent.forEachOverlap(from, to, visited::add);
+      assertEquals(visited, expected);
+    }
+
+    Collections.shuffle(added, random);
+    for (int i = 0; i < 1000; i++)
+    {
+      SimpleFeature sf = added.get(i);
+      assertTrue(store.remove(sf));
+      assertTrue(concurrent.remove(sf));
+    }
+    assertTrue(concurrent.isValid());
+    assertEquals(concurrent.size(), 1000);
+    for (int i = 0; i < 2000; i++)
+    {
+      assertEquals(concurrent.contains(added.get(i)), i >= 1000);
+    }
+    assertEquals(concurrent.findOverlaps(0, 20000),
+            store.findOverlaps(0, 20000));
+  }
+
+  @Test(groups = "Functional")
+  public void testConstructor()
+  {
+    Random random = new Random(62);
+    List<SimpleFeature> features = new ArrayList<>();
+    for (int i = 0; i < 2000; i++)
+    {
+      features.add(randomFeature(random, 0, i));
+    }
+    IntervalStore<SimpleFeature> store = new IntervalStore<>(
+            new ArrayList<>(features));
+    ConcurrentIntervalStore<SimpleFeature> concurrent = new ConcurrentIntervalStore<>(
+            features);
+    assertTrue(concurrent.isValid());
+    assertEquals(concurrent.size(), 2000);
+    assertEquals(concurrent.toString(), store.toString());
+
+    /*
+     * intervals added later are added after any co-located intervals
+     */
+    SimpleFeature sf = features.get(0);
+    SimpleFeature copy = new SimpleFeature(sf.getBegin(), sf.getEnd(),
+            "copy");
+    concurrent.add(copy);
+    store.add(copy);
+    assertEquals(concurrent.findOverlaps(sf.getBegin(), sf.getBegin()),
+            store.findOverlaps(sf.getBegin(), sf.getBegin()));
+  }
+
+  /**
+   * Test that co-located intervals are returned in the order in which they
+   * were added
+   */
+  @Test(groups = "Functional")
+  public void testAdd_coLocated()
+  {
+    ConcurrentIntervalStore<Range> store = new ConcurrentIntervalStore<>();
+    Range r1 = new Range(10, 20);
+    Range r2 = new Range(10, 20);
+    Range r3 = new Range(10, 20);
+    Range r4 = new Range(5, 15);
+    store.add(r1);
+    store.add(r4);
+    store.add(r2);
+    store.add(r3);
+    List<Range> overlaps = store.findOverlaps(12, 12);
+    assertEquals(overlaps.size(), 4);
+    assertSame(overlaps.get(0), r4);
+    assertSame(overlaps.get(1), r1);
+    assertSame(overlaps.get(2), r2);
+    assertSame(overlaps.get(3), r3);
+
+    assertTrue(store.remove(new Range(10, 20)));
+    assertSame(store.findOverlaps(12, 12).get(1), r2);
+    assertFalse(store.add(new Range(10, 20), false));
+    assertEquals(store.size(), 3);
+
+    store.clear();
+    assertTrue(store.isEmpty());
+    assertTrue(store.findOverlaps(0, 100).isEmpty());
+  }
+
+  /**
+   * Test that threads adding intervals concurrently build a valid store
+   * containing all the intervals
+   * 
+   * @throws InterruptedException
+   */
+  @Test(groups = "Functional")
+  public void testConcurrentAdd() throws InterruptedException
+  {
+    ConcurrentIntervalStore<SimpleFeature> store = new ConcurrentIntervalStore<>();
+    List<List<SimpleFeature>> added = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++)
+    {
+      List<SimpleFeature> features = new ArrayList<>();
+      added.add(features);
+      final Random random = new Random(t);
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < 5000; i++)
+        {
+          SimpleFeature sf = randomFeature(random, 0, i);
+          store.add(sf);
+          features.add(sf);
+        }
+      }));
+    }
+    for (Thread thread : threads)
+    {
+      thread.start();
+    }
+    for (Thread thread : threads)
+    {
+      thread.join();
+    }
+
+    assertTrue(store.isValid());
+    assertEquals(store.size(), 20000);
+    IntervalStore<SimpleFeature> expected = new IntervalStore<>();
+    added.forEach(expected::addAll);
+    Random random = new Random(63);
+    for (int i = 0; i < 200; i++)
+    {
+      int from = random.nextInt(11000);
+      int to = from + random.nextInt(200);
+      assertEquals(store.countOverlaps(from, to),
+              expected.countOverlaps(from, to));
+    }
+  }
+}
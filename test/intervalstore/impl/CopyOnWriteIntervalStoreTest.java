@@ -0,0 +1,257 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.Test;
+
+public class CopyOnWriteIntervalStoreTest
+{
+  @Test(groups = "Functional")
+  public void testAddRemove()
+  {
+    CopyOnWriteIntervalStore<Range> store = new CopyOnWriteIntervalStore<>();
+    assertTrue(store.isEmpty());
+    Range r1 = new Range(10, 20);
+    Range r2 = new Range(12, 15);
+    Range r3 = new Range(12, 15);
+    assertTrue(store.add(r1));
+    assertTrue(store.add(r2));
+    assertFalse(store.add(r3, false));
+    assertTrue(store.add(r3, true));
+    assertEquals(store.size(), 3);
+    assertEquals(store.getDepth(), 2);
+    assertEquals(store.findOverlaps(14, 14), Arrays.asList(r1, r2, r3));
+    assertEquals(store.countOverlaps(16, 30), 1);
+
+    assertTrue(store.remove(r2));
+    assertFalse(store.remove(new Range(11, 15)));
+    assertEquals(store.findOverlaps(14, 14), Arrays.asList(r1, r3));
+
+    assertTrue(store.removeAll(Arrays.asList(r1, r3)));
+    assertTrue(store.isEmpty());
+
+    store.addAll(Arrays.asList(r1, r2));
+    store.clear();
+    assertTrue(store.isEmpty());
+  }
+
+  /**
+   * Test that a snapshot (or iterator) taken before an update does not see the
+   * update
+   */
+  @Test(groups = "Functional")
+  public void testUpdate_snapshotIsolation()
+  {
+    Range r1 = new Range(10, 20);
+    Range r2 = new Range(30, 40);
+    CopyOnWriteIntervalStore<Range> store = new CopyOnWriteIntervalStore<>(
+            new ArrayList<>(Arrays.asList(r1, r2)));
+    FrozenIntervalStore<Range> before = store.freeze();
+    Iterator<Range> it = store.iterator();
+
+    Range r3 = new Range(15, 35);
+    store.update(s -> {
+      s.add(r3);
+      s.remove(r1);
+    });
+
+    assertEquals(before.size(), 2);
+    assertEquals(before.findOverlaps(15, 15), Arrays.asList(r1));
+    assertSame(it.next(), r1);
+    assertSame(it.next(), r2);
+    assertFalse(it.hasNext());
+
+    FrozenIntervalStore<Range> after = store.freeze();
+    assertNotSame(after, before);
+    assertEquals(after.size(), 2);
+    assertEquals(store.findOverlaps(15, 15), Arrays.asList(r3));
+  }
+
+  /**
+   * Test that changes that leave the store unmodified publish no new snapshot,
+   * and that a snapshot sharing the previous nested intervals is correct
+   */
+  @Test(groups = "Functional")
+  public void testAdd_snapshotReuse()
+  {
+    Range r1 = new Range(10, 20);
+    Range r2 = new Range(12, 15);
+    CopyOnWriteIntervalStore<Range> store = new CopyOnWriteIntervalStore<>(
+            new ArrayList<>(Arrays.asList(r1, r2)));
+    FrozenIntervalStore<Range> before = store.freeze();
+
+    assertFalse(store.add(new Range(12, 15), false));
+    assertFalse(store.remove(new Range(11, 15)));
+    assertFalse(store.removeAll(Arrays.asList(new Range(1, 2))));
+    assertSame(store.freeze(), before);
+
+    /*
+     * a non-nested add reuses the nested intervals of the snapshot
+     */
+    Range r3 = new Range(30, 40);
+    assertTrue(store.add(r3));
+    assertNotSame(store.freeze(), before);
+    assertEquals(store.findOverlaps(0, 100), Arrays.asList(r1, r3, r2));
+    assertEquals(store.getDepth(), 2);
+
+    /*
+     * a nested add makes a new snapshot of the nested intervals
+     */
+    Range r4 = new Range(32, 35);
+    assertTrue(store.add(r4));
+    assertEquals(store.findOverlaps(0, 100), Arrays.asList(r1, r3, r2, r4));
+
+    store.clear();
+    FrozenIntervalStore<Range> empty = store.freeze();
+    store.clear();
+    assertSame(store.freeze(), empty);
+  }
+
+  /**
+   * Test that if a batch of changes fails, none of it is applied
+   */
+  @Test(groups = "Functional")
+  public void testUpdate_failure()
+  {
+    Range r1 = new Range(10, 20);
+    Range r2 = new Range(12, 15);
+    CopyOnWriteIntervalStore<Range> store = new CopyOnWriteIntervalStore<>(
+            new ArrayList<>(Arrays.asList(r1, r2)));
+    FrozenIntervalStore<Range> before = store.freeze();
+
+    try
+    {
+      store.update(s -> {
+        s.remove(r1);
+        s.add(new Range(30, 40));
+        throw new IllegalStateException("failed");
+      });
+      fail("expected exception");
+    } catch (IllegalStateException e)
+    {
+      // expected
+    }
+    assertSame(store.freeze(), before);
+
+    /*
+     * the next update should apply to the store as it was before the failure
+     */
+    Range r3 = new Range(50, 60);
+    store.add(r3);
+    assertEquals(store.size(), 3);
+    List<Range> all = store.findOverlaps(0, 100);
+    assertEquals(all, Arrays.asList(r1, r3, r2));
+  }
+
+  /**
+   * Test that queries made while another thread updates the store in batches
+   * see either all or none of each batch
+   * 
+   * @throws InterruptedException
+   */
+  @Test(groups = "Functional")
+  public void testConcurrentBatches() throws InterruptedException
+  {
+    final int batchSize = 20;
+    CopyOnWriteIntervalStore<SimpleFeature> store = new CopyOnWriteIntervalStore<>();
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    /*
+     * each batch adds intervals overlapping position 1000, and
+     * removes those of the batch before last
+     */
+    Thread writer = new Thread(() -> {
+      for (int batch = 0; batch < 300; batch++)
+      {
+        final int b = batch;
+        store.update(s -> {
+          for (int i = 0; i < batchSize; i++)
+          {
+            s.add(new SimpleFeature(1000 - i * b % 900, 1000 + i,
+                    "batch" + b));
+            if (b > 1)
+            {
+              s.remove(new SimpleFeature(1000 - i * (b - 2) % 900,
+                      1000 + i, "batch" + (b - 2)));
+            }
+          }
+        });
+      }
+    });
+
+    Thread reader = new Thread(() -> {
+      try
+      {
+        while (writer.isAlive())
+        {
+          Map<String, Integer> counts = new HashMap<>();
+          for (SimpleFeature sf : store.findOverlaps(1000, 1000))
+          {
+            counts.merge(sf.getDescription(), 1, Integer::sum);
+          }
+          for (int count : counts.values())
+          {
+            assertEquals(count, batchSize);
+          }
+          assertTrue(counts.size() <= 2);
+        }
+      } catch (Throwable e)
+      {
+        failure.compareAndSet(null, e);
+      }
+    });
+
+    writer.start();
+    reader.start();
+    writer.join();
+    reader.join();
+
+    assertNull(failure.get());
+    assertEquals(store.size(), 2 * batchSize);
+  }
+}
@@ -0,0 +1,414 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import static intervalstore.impl.FrozenStoreFixtures.add;
+import static intervalstore.impl.FrozenStoreFixtures.addMixed;
+import static intervalstore.impl.FrozenStoreFixtures.randomStore;
+import static intervalstore.impl.FrozenStoreFixtures.verifyMixed;
+import static intervalstore.impl.FrozenStoreFixtures.verifyQueries;
+import static intervalstore.impl.FrozenStoreFixtures.verifyReadOnly;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class FrozenIntervalStoreTest
+{
+  @Test(groups = "Functional")
+  public void testFreeze_empty()
+  {
+    FrozenIntervalStore<Range> frozen = new IntervalStore<Range>().freeze();
+    assertTrue(frozen.isEmpty());
+    assertTrue(frozen.isValid());
+    assertEquals(frozen.getDepth(), 0);
+    assertEquals(frozen.toString(), "[]");
+    assertTrue(frozen.findOverlaps(1, 10).isEmpty());
+    assertFalse(frozen.contains(new Range(1, 10)));
+    assertFalse(frozen.iterator().hasNext());
+  }
+
+  @Test(groups = "Functional")
+  public void testFindOverlaps_mixed()
+  {
+    IntervalStore<SimpleFeature> store = new IntervalStore<>();
+    List<SimpleFeature> sfs = addMixed(store);
+    FrozenIntervalStore<SimpleFeature> frozen = store.freeze();
+    assertTrue(frozen.isValid());
+    verifyMixed(frozen, sfs);
+
+    /*
+     * results are appended to any supplied list
+     */
+    List<SimpleFeature> result = new ArrayList<>();
+    result.add(sfs.get(5));
+    assertSame(frozen.findOverlaps(1, 9, result), result);
+    assertEquals(result.size(), 2);
+    assertSame(result.get(1), sfs.get(1));
+  }
+
+  @Test(groups = "Functional")
+  public void testFindOverlaps_colocated()
+  {
+    IntervalStore<SimpleFeature> store = new IntervalStore<>();
+    SimpleFeature sf0 = add(store, 5, 15, "sf0");
+    SimpleFeature sf1 = add(store, 10, 10, "sf1");
+    SimpleFeature sf2 = add(store, 10, 10, "sf2");
+    SimpleFeature sf3 = add(store, 10, 10, "sf3");
+    SimpleFeature sf4 = add(store, 20, 20, "sf4");
+    SimpleFeature sf5 = add(store, 20, 20, "sf5");
+    FrozenIntervalStore<SimpleFeature> frozen = store.freeze();
+
+    /*
+     * co-located features are found in the order they were added
+     */
+    List<SimpleFeature> overlaps = frozen.findOverlaps(10, 20);
+    assertEquals(overlaps.size(), 6);
+    assertSame(overlaps.get(0), sf0);
+    assertSame(overlaps.get(1), sf4);
+    assertSame(overlaps.get(2), sf5);
+    assertSame(overlaps.get(3), sf1);
+    assertSame(overlaps.get(4), sf2);
+    assertSame(overlaps.get(5), sf3);
+  }
+
+  @Test(groups = "Functional")
+  public void testVisitOverlaps()
+  {
+    IntervalStore<SimpleFeature> store = new IntervalStore<>();
+    SimpleFeature sf1 = add(store, 10, 50);
+    SimpleFeature sf2 = add(store, 20, 60);
+    SimpleFeature sf3 = add(store, 20, 30);
+    add(store, 25, 28);
+    FrozenIntervalStore<SimpleFeature> frozen = store.freeze();
+
+    /*
+     * stop the search after the first non-nested overlap
+     */
+    List<SimpleFeature> visited = new ArrayList<>();
+    assertFalse(frozen.visitOverlaps(25, 25, sf -> !visited.add(sf)));
+    assertEquals(visited.size(), 1);
+    assertSame(visited.get(0), sf1);
+
+    /*
+     * stop the search at the first nested overlap
+     */
+    visited.clear();
+    assertFalse(frozen.visitOverlaps(25, 25,
+            sf -> visited.add(sf) && sf != sf3));
+    assertEquals(visited.size(), 3);
+    assertSame(visited.get(1), sf2);
+    assertSame(visited.get(2), sf3);
+  }
+
+  @Test(groups = "Functional")
+  public void testContains()
+  {
+    IntervalStore<SimpleFeature> store = new IntervalStore<>();
+    SimpleFeature sf1 = add(store, 10, 20, "Pfam");
+    SimpleFeature sf2 = add(store, 10, 20, "Cath");
+    SimpleFeature sf3 = add(store, 12, 16, "Cath");
+    FrozenIntervalStore<SimpleFeature> frozen = store.freeze();
+
+    assertTrue(frozen.contains(sf1));
+    assertTrue(frozen.contains(sf2));
+    assertTrue(frozen.contains(sf3));
+    assertTrue(frozen.contains(new SimpleFeature(sf3)));
+    assertFalse(frozen.contains(new SimpleFeature(10, 20, "Other")));
+    assertFalse(frozen.contains(new SimpleFeature(12, 16, "Pfam")));
+    assertFalse(frozen.contains(null));
+    assertFalse(frozen.contains("10-20"));
+  }
+
+  @Test(groups = "Functional")
+  public void testIterator()
+  {
+    IntervalStore<Range> store = new IntervalStore<>();
+    Range range1 = new Range(11, 20);
+    Range range2 = new Range(15, 18);
+    Range range3 = new Range(4, 8);
+    store.add(range1);
+    store.add(range2);
+    store.add(range3);
+
+    Iterator<Range> it = store.freeze().iterator();
+    assertSame(it.next(), range3);
+    assertSame(it.next(), range1);
+    assertSame(it.next(), range2);
+    assertFalse(it.hasNext());
+    try
+    {
+      it.next();
+      fail("expected exception");
+    } catch (NoSuchElementException e)
+    {
+      // expected
+    }
+  }
+
+  @Test(groups = "Functional")
+  public void testToString()
+  {
+    IntervalStore<SimpleFeature> store = new IntervalStore<>();
+    add(store, 20, 30);
+    add(store, 25, 35);
+    add(store, 22, 28);
+    add(store, 22, 28);
+    add(store, 24, 26);
+    FrozenIntervalStore<SimpleFeature> frozen = store.freeze();
+    assertEquals(frozen.toString(), store.toString());
+    assertEquals(frozen.prettyPrint(), store.prettyPrint());
+    assertEquals(frozen.getDepth(), store.getDepth());
+  }
+
+  @Test(groups = "Functional")
+  public void testModify()
+  {
+    IntervalStore<Range> store = new IntervalStore<>();
+    Range r1 = new Range(1, 100);
+    store.add(r1);
+    FrozenIntervalStore<Range> frozen = store.freeze();
+    verifyReadOnly(frozen, r1);
+
+    /*
+     * changes to the store don't affect the snapshot
+     */
+    store.add(new Range(2, 3));
+    store.remove(r1);
+    assertEquals(frozen.size(), 1);
+    assertTrue(frozen.contains(r1));
+    assertEquals(frozen.findOverlaps(2, 2).size(), 1);
+  }
+
+  /**
+   * Verifies that queries of a snapshot of pseudo-randomly generated intervals
+   * give the same results, in the same order, as the store it was made from
+   */
+  @Test(groups = "Functional")
+  public void testFindOverlaps_pseudoRandom()
+  {
+    Random random = new Random(107);
+    for (int scale : new int[] { 10, 100, 1000 })
+    {
+      IntervalStore<SimpleFeature> store = randomStore(random, scale);
+      FrozenIntervalStore<SimpleFeature> frozen = store.freeze();
+      assertTrue(frozen.isValid());
+      assertEquals(frozen.size(), store.size());
+      assertEquals(frozen.getDepth(), store.getDepth());
+      verifyQueries(frozen, store, random, scale);
+
+      /*
+       * and the store's own queries agree with its findOverlaps
+       */
+      verifyQueries(store, store, random, scale);
+    }
+  }
+
+  /**
+   * Verifies that a store written in binary form and read back has the same
+   * structure, contents and query results as the original
+   */
+  @Test(groups = "Functional")
+  public void testWriteRead() throws IOException
+  {
+    Random random = new Random(211);
+    IntervalStore<SimpleFeature> store = new IntervalStore<>();
+    for (int i = 0; i < 2000; i++)
+    {
+      int r1 = random.nextInt(2001);
+      int r2 = random.nextInt(2001);
+      add(store, Math.min(r1, r2), Math.max(r1, r2),
+              i % 10 == 0 ? null : "sf" + i);
+    }
+    FrozenIntervalStore<SimpleFeature> frozen = store.freeze();
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    frozen.write(bytes, SimpleFeature.CODEC);
+    FrozenIntervalStore<SimpleFeature> read = FrozenIntervalStore.read(
+            new ByteArrayInputStream(bytes.toByteArray()),
+            SimpleFeature.CODEC);
+
+    assertTrue(read.isValid());
+    assertEquals(read.size(), frozen.size());
+    assertEquals(read.getDepth(), frozen.getDepth());
+    assertEquals(read.toString(), frozen.toString());
+    for (int i = 0; i < 100; i++)
+    {
+      int r1 = random.nextInt(2001);
+      int r2 = random.nextInt(2001);
+      int from = Math.min(r1, r2);
+      int to = Math.max(r1, r2);
+      assertEquals(read.findOverlaps(from, to),
+              frozen.findOverlaps(from, to));
+      assertEquals(read.countOverlaps(from, to),
+              frozen.countOverlaps(from, to));
+    }
+  }
+
+  @Test(groups = "Functional")
+  public void testWriteRead_empty() throws IOException
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new IntervalStore<Range>().freeze().write(bytes, Range.CODEC);
+    FrozenIntervalStore<Range> read = FrozenIntervalStore.read(
+            new ByteArrayInputStream(bytes.toByteArray()), Range.CODEC);
+    assertTrue(read.isEmpty());
+    assertTrue(read.isValid());
+    assertEquals(read.getDepth(), 0);
+    assertTrue(read.findOverlaps(1, 10).isEmpty());
+
+    /*
+     * non-nested intervals only
+     */
+    IntervalStore<Range> store = new IntervalStore<>();
+    store.add(new Range(10, 20));
+    store.add(new Range(15, 25));
+    bytes.reset();
+    store.freeze().write(bytes, Range.CODEC);
+    read = FrozenIntervalStore.read(
+            new ByteArrayInputStream(bytes.toByteArray()), Range.CODEC);
+    assertEquals(read.toString(), "[10-20, 15-25]");
+    assertEquals(read.getDepth(), 1);
+  }
+
+  /**
+   * Verifies that reading fails with IOException for data that is not a store
+   * in the current format, or is incomplete
+   */
+  @Test(groups = "Functional")
+  public void testRead_invalid() throws IOException
+  {
+    IntervalStore<Range> store = new IntervalStore<>();
+    store.add(new Range(10, 20));
+    store.add(new Range(12, 14));
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    store.freeze().write(bytes, Range.CODEC);
+    byte[] valid = bytes.toByteArray();
+
+    byte[] data = valid.clone();
+    data[0] = 'X';
+    assertReadFails(data, "Not an interval store file");
+
+    data = valid.clone();
+    data[7] = 99; // version
+    assertReadFails(data, "Unsupported interval store file version 99");
+
+    data = valid.clone();
+    data[11] = 2; // FrozenNCList
+    assertReadFails(data, "Interval store file is of type 2, expected 1");
+
+    /*
+     * nested 12-14 at index 0 claims one child, at index 0
+     */
+    data = valid.clone();
+    data[52] = 1; // childCounts[0]
+    assertReadFails(data, "Invalid NCList nesting at interval 0");
+
+    data = valid.clone();
+    data[36] = 2; // depth
+    assertReadFails(data, "Invalid NCList depth 2, expected 1");
+
+    data = valid.clone();
+    data[19] = 30; // non-nested 10-20 now starts at 30
+    assertReadFails(data, "Invalid interval order at interval 0");
+
+    data = valid.clone();
+    data[40] = 15; // nested 12-14 now starts at 15
+    assertReadFails(data, "Invalid NCList order at interval 0");
+
+    data = valid.clone();
+    data[56] = 2; // cumulativeSizes[0]
+    assertReadFails(data, "Invalid NCList size at interval 0");
+
+    /*
+     * nested 13-14 at index 1 is enclosed by 12-14 at index 0
+     */
+    store.add(new Range(13, 14));
+    bytes.reset();
+    store.freeze().write(bytes, Range.CODEC);
+    data = bytes.toByteArray();
+    data[44] = 11; // 13-14 now starts before 12-14
+    assertReadFails(data, "Invalid NCList nesting at interval 1");
+
+    /*
+     * a corrupt count fails at the end of the data, without first
+     * allocating an array of that size
+     */
+    data = valid.clone();
+    data[12] = 0x7f; // non-nested count
+    try
+    {
+      FrozenIntervalStore.read(new ByteArrayInputStream(data), Range.CODEC);
+      fail("expected EOFException");
+    } catch (EOFException e)
+    {
+      // expected
+    }
+
+    try
+    {
+      FrozenIntervalStore.read(
+              new ByteArrayInputStream(Arrays.copyOf(valid, 20)),
+              Range.CODEC);
+      fail("expected EOFException");
+    } catch (EOFException e)
+    {
+      // expected
+    }
+  }
+
+  private void assertReadFails(byte[] data, String message)
+  {
+    try
+    {
+      FrozenIntervalStore.read(new ByteArrayInputStream(data), Range.CODEC);
+      fail("expected IOException");
+    } catch (IOException e)
+    {
+      assertEquals(e.getMessage(), message);
+    }
+  }
+}
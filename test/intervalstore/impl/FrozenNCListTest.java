@@ -0,0 +1,384 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import junit.extensions.PA;
+
+public class FrozenNCListTest
+{
+  /**
+   * A basic sanity test of the constructor
+   */
+  @Test(groups = "Functional")
+  public void testConstructor()
+  {
+    List<Range> ranges = new ArrayList<>();
+    ranges.add(new Range(20, 20));
+    ranges.add(new Range(10, 20));
+    ranges.add(new Range(15, 30));
+    ranges.add(new Range(10, 30));
+    ranges.add(new Range(11, 19));
+    ranges.add(new Range(10, 20));
+    ranges.add(new Range(1, 100));
+
+    FrozenNCList<Range> ncl = new FrozenNCList<>(ranges);
+    String expected = "[1-100 [10-30 [10-20, 10-20 [11-19], 15-30 [20-20]]]]";
+    assertEquals(ncl.toString(), expected);
+    assertTrue(ncl.isValid());
+    assertEquals(ncl.size(), 7);
+    assertEquals(ncl.getDepth(), 4);
+
+    Collections.reverse(ranges);
+    ncl = new FrozenNCList<>(ranges);
+    assertEquals(ncl.toString(), expected);
+    assertTrue(ncl.isValid());
+  }
+
+  /**
+   * Test of the constructor that copies an NCList
+   */
+  @Test(groups = "Functional")
+  public void testConstructor_fromNCList()
+  {
+    NCList<Range> ncl = new NCList<>();
+    ncl.add(new Range(20, 20));
+    ncl.add(new Range(10, 20));
+    ncl.add(new Range(15, 30));
+    ncl.add(new Range(10, 30));
+    ncl.add(new Range(11, 19));
+    ncl.add(new Range(10, 20));
+    ncl.add(new Range(1, 100));
+    ncl.add(new Range(90, 110));
+
+    FrozenNCList<Range> frozen = new FrozenNCList<>(ncl);
+    assertEquals(frozen.toString(), ncl.toString());
+    assertTrue(frozen.isValid());
+    assertEquals(frozen.size(), ncl.size());
+    assertEquals(frozen.getDepth(), ncl.getDepth());
+    assertEquals(frozen.findOverlaps(19, 25), ncl.findOverlaps(19, 25));
+
+    /*
+     * the copy has the same layout as if constructed from a list
+     */
+    List<Range> ranges = ncl.getEntries();
+    assertEquals(PA.getValue(frozen, "payloads"),
+            PA.getValue(new FrozenNCList<>(ranges), "payloads"));
+
+    frozen = new FrozenNCList<>(new NCList<Range>());
+    assertTrue(frozen.isEmpty());
+    assertEquals(frozen.getDepth(), 0);
+  }
+
+  @Test(groups = "Functional")
+  public void testConstructor_empty()
+  {
+    FrozenNCList<Range> ncl = new FrozenNCList<>(new ArrayList<>());
+    assertTrue(ncl.isEmpty());
+    assertTrue(ncl.isValid());
+    assertEquals(ncl.getDepth(), 0);
+    assertEquals(ncl.toString(), "[]");
+    assertTrue(ncl.findOverlaps(1, 10).isEmpty());
+    assertFalse(ncl.contains(new Range(1, 10)));
+    assertFalse(ncl.iterator().hasNext());
+  }
+
+  @Test(groups = "Functional")
+  public void testFindOverlaps()
+  {
+    List<Range> ranges = new ArrayList<>();
+    ranges.add(new Range(20, 50));
+    ranges.add(new Range(30, 70));
+    ranges.add(new Range(1, 100));
+    ranges.add(new Range(70, 120));
+
+    FrozenNCList<Range> ncl = new FrozenNCList<>(ranges);
+
+    List<Range> overlaps = ncl.findOverlaps(121, 122);
+    assertEquals(overlaps.size(), 0);
+
+    overlaps = ncl.findOverlaps(21, 22);
+    assertEquals(overlaps.size(), 2);
+    assertEquals(overlaps.get(0).getBegin(), 1);
+    assertEquals(overlaps.get(0).getEnd(), 100);
+    assertEquals(overlaps.get(1).getBegin(), 20);
+    assertEquals(overlaps.get(1).getEnd(), 50);
+
+    overlaps = ncl.findOverlaps(110, 110);
+    assertEquals(overlaps.size(), 1);
+    assertEquals(overlaps.get(0).getBegin(), 70);
+    assertEquals(overlaps.get(0).getEnd(), 120);
+
+    /*
+     * results are appended to any supplied list
+     */
+    List<Range> result = new ArrayList<>();
+    result.add(ranges.get(0));
+    assertSame(ncl.findOverlaps(110, 110, result), result);
+    assertEquals(result.size(), 2);
+  }
+
+  @Test(groups = "Functional")
+  public void testContains()
+  {
+    List<SimpleFeature> features = new ArrayList<>();
+    SimpleFeature sf1 = new SimpleFeature(1, 100, "outer");
+    SimpleFeature sf2 = new SimpleFeature(10, 20, "inner");
+    SimpleFeature sf3 = new SimpleFeature(10, 20, "inner2");
+    SimpleFeature sf4 = new SimpleFeature(12, 14, "innermost");
+    features.add(sf4);
+    features.add(sf3);
+    features.add(sf2);
+    features.add(sf1);
+    FrozenNCList<SimpleFeature> ncl = new FrozenNCList<>(features);
+
+    assertTrue(ncl.contains(sf1));
+    assertTrue(ncl.contains(sf2));
+    assertTrue(ncl.contains(sf3));
+    assertTrue(ncl.contains(sf4));
+    assertTrue(ncl.contains(new SimpleFeature(sf4)));
+    assertFalse(ncl.contains(new SimpleFeature(12, 14, "other")));
+    assertFalse(ncl.contains(new SimpleFeature(1, 101, "outer")));
+    assertFalse(ncl.contains(null));
+    assertFalse(ncl.contains("12-14"));
+  }
+
+  @Test(groups = "Functional")
+  public void testIterator()
+  {
+    List<Range> ranges = new ArrayList<>();
+    Range r1 = new Range(1, 100);
+    Range r2 = new Range(10, 20);
+    Range r3 = new Range(30, 120);
+    ranges.add(r3);
+    ranges.add(r2);
+    ranges.add(r1);
+    FrozenNCList<Range> ncl = new FrozenNCList<>(ranges);
+
+    /*
+     * top level intervals are held before nested ones
+     */
+    Iterator<Range> it = ncl.iterator();
+    assertSame(it.next(), r1);
+    assertSame(it.next(), r3);
+    assertSame(it.next(), r2);
+    assertFalse(it.hasNext());
+    try
+    {
+      it.next();
+      fail("expected exception");
+    } catch (NoSuchElementException e)
+    {
+      // expected
+    }
+  }
+
+  @Test(groups = "Functional")
+  public void testModify()
+  {
+    List<Range> ranges = new ArrayList<>();
+    Range r1 = new Range(1, 100);
+    ranges.add(r1);
+    FrozenNCList<Range> ncl = new FrozenNCList<>(ranges);
+
+    try
+    {
+      ncl.add(new Range(2, 3));
+      fail("expected exception");
+    } catch (UnsupportedOperationException e)
+    {
+      // expected
+    }
+    try
+    {
+      ncl.add(new Range(2, 3), false);
+      fail("expected exception");
+    } catch (UnsupportedOperationException e)
+    {
+      // expected
+    }
+    try
+    {
+      ncl.remove(r1);
+      fail("expected exception");
+    } catch (UnsupportedOperationException e)
+    {
+      // expected
+    }
+    try
+    {
+      ncl.clear();
+      fail("expected exception");
+    } catch (UnsupportedOperationException e)
+    {
+      // expected
+    }
+    assertEquals(ncl.size(), 1);
+  }
+
+  /**
+   * Verifies that a list written in binary form and read back has the same
+   * structure, contents and query results as the original
+   */
+  @Test(groups = "Functional")
+  public void testWriteRead() throws IOException
+  {
+    Random random = new Random(223);
+    List<SimpleFeature> features = new ArrayList<>();
+    for (int i = 0; i < 1000; i++)
+    {
+      int r1 = random.nextInt(1001);
+      int r2 = random.nextInt(1001);
+      features.add(new SimpleFeature(Math.min(r1, r2), Math.max(r1, r2),
+              "sf" + i));
+    }
+    FrozenNCList<SimpleFeature> frozen = new FrozenNCList<>(features);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    frozen.write(bytes, SimpleFeature.CODEC);
+    FrozenNCList<SimpleFeature> read = FrozenNCList.read(
+            new ByteArrayInputStream(bytes.toByteArray()),
+            SimpleFeature.CODEC);
+
+    assertTrue(read.isValid());
+    assertEquals(read.size(), frozen.size());
+    assertEquals(read.getDepth(), frozen.getDepth());
+    assertEquals(read.toString(), frozen.toString());
+    for (int i = 0; i < 100; i++)
+    {
+      int r1 = random.nextInt(1001);
+      int r2 = random.nextInt(1001);
+      int from = Math.min(r1, r2);
+      int to = Math.max(r1, r2);
+      assertEquals(read.findOverlaps(from, to),
+              frozen.findOverlaps(from, to));
+    }
+
+    /*
+     * a FrozenNCList can't be read as a FrozenIntervalStore
+     */
+    try
+    {
+      FrozenIntervalStore.read(
+              new ByteArrayInputStream(bytes.toByteArray()),
+              SimpleFeature.CODEC);
+      fail("expected IOException");
+    } catch (IOException e)
+    {
+      assertEquals(e.getMessage(),
+              "Interval store file is of type 2, expected 1");
+    }
+  }
+
+  /**
+   * Verifies that queries of pseudo-randomly generated intervals give the same
+   * results, in the same order, as NCList
+   */
+  @Test(groups = "Functional")
+  public void testFindOverlaps_pseudoRandom()
+  {
+    Random random = new Random(107);
+    for (int scale : new int[] { 10, 100, 1000 })
+    {
+      List<SimpleFeature> features = new ArrayList<>();
+      for (int i = 0; i < scale; i++)
+      {
+        int r1 = random.nextInt(scale + 1);
+        int r2 = random.nextInt(scale + 1);
+        features.add(new SimpleFeature(Math.min(r1, r2), Math.max(r1, r2),
+                "sf" + i));
+      }
+      NCList<SimpleFeature> ncl = new NCList<>(new ArrayList<>(features));
+      FrozenNCList<SimpleFeature> frozen = new FrozenNCList<>(features);
+      assertTrue(frozen.isValid());
+      assertEquals(frozen.size(), ncl.size());
+      assertEquals(frozen.getDepth(), ncl.getDepth());
+      assertEquals(frozen.toString(), ncl.toString());
+
+      for (int i = 0; i < 100; i++)
+      {
+        int r1 = random.nextInt(2 * scale) - scale / 2;
+        int r2 = random.nextInt(2 * scale) - scale / 2;
+        int from = Math.min(r1, r2);
+        int to = Math.max(r1, r2);
+        List<SimpleFeature> expected = ncl.findOverlaps(from, to);
+        assertEquals(frozen.findOverlaps(from, to), expected);
+        assertEquals(frozen.countOverlaps(from, to), expected.size());
+        assertEquals(ncl.countOverlaps(from, to), expected.size());
+
+        List<SimpleFeature> visited = new ArrayList<>();
+        frozen.forEachOverlap(from, to, visited::add);
+        assertEquals(visited, expected);
+
+        visited.clear();
+        frozen.overlapIterator(from, to).forEachRemaining(visited::add);
+        assertEquals(visited, expected);
+        visited.clear();
+        ncl.overlapIterator(from, to).forEachRemaining(visited::add);
+        assertEquals(visited, expected);
+
+        /*
+         * visit just the first half of the overlaps
+         */
+        int half = expected.size() / 2;
+        if (half > 0)
+        {
+          visited.clear();
+          assertFalse(frozen.visitOverlaps(from, to,
+                  sf -> visited.add(sf) && visited.size() < half));
+          assertEquals(visited, expected.subList(0, half));
+        }
+      }
+      for (SimpleFeature sf : features)
+      {
+        assertTrue(frozen.contains(sf));
+      }
+    }
+  }
+}
@@ -0,0 +1,255 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import intervalstore.api.IntervalStoreI;
+
+/**
+ * Test data and checks shared by the tests of the frozen store and of the
+ * mapped and off-heap stores read from its file format
+ */
+final class FrozenStoreFixtures
+{
+  private FrozenStoreFixtures()
+  {
+  }
+
+  /**
+   * Adds a feature with the given positions to the store, and returns it
+   * 
+   * @param store
+   * @param from
+   * @param to
+   * @return
+   */
+  static SimpleFeature add(IntervalStore<SimpleFeature> store, int from,
+          int to)
+  {
+    return add(store, from, to, "desc");
+  }
+
+  /**
+   * Adds a feature with the given positions and description to the store, and
+   * returns it
+   * 
+   * @param store
+   * @param from
+   * @param to
+   * @param description
+   * @return
+   */
+  static SimpleFeature add(IntervalStore<SimpleFeature> store, int from,
+          int to, String description)
+  {
+    SimpleFeature sf = new SimpleFeature(from, to, description);
+    store.add(sf);
+    return sf;
+  }
+
+  /**
+   * Answers a store of <code>scale</code> features, each between two random
+   * positions in the range 0 to scale, with descriptions "sf0", "sf1"...
+   * 
+   * @param random
+   * @param scale
+   * @return
+   */
+  static IntervalStore<SimpleFeature> randomStore(Random random, int scale)
+  {
+    IntervalStore<SimpleFeature> store = new IntervalStore<>();
+    for (int i = 0; i < scale; i++)
+    {
+      int r1 = random.nextInt(scale + 1);
+      int r2 = random.nextInt(scale + 1);
+      add(store, Math.min(r1, r2), Math.max(r1, r2), "sf" + i);
+    }
+    return store;
+  }
+
+  /**
+   * Adds to the store the features 10-50, 1-15, 20-30, 40-100, 60-100, 70-70
+   * (in that order), of which 20-30, 60-100 and 70-70 are nested, and returns
+   * them in the order added
+   * 
+   * @param store
+   * @return
+   */
+  static List<SimpleFeature> addMixed(IntervalStore<SimpleFeature> store)
+  {
+    return Arrays.asList(add(store, 10, 50), add(store, 1, 15),
+            add(store, 20, 30), add(store, 40, 100), add(store, 60, 100),
+            add(store, 70, 70));
+  }
+
+  /**
+   * Verifies the results of queries of a store holding the features added by
+   * {@link #addMixed(IntervalStore)}
+   * 
+   * @param store
+   * @param sfs
+   */
+  static void verifyMixed(IntervalStoreI<SimpleFeature> store,
+          List<SimpleFeature> sfs)
+  {
+    assertEquals(store.size(), 6);
+    assertTrue(store.findOverlaps(200, 200).isEmpty());
+    assertSameElements(store.findOverlaps(1, 9), sfs.get(1));
+    assertSameElements(store.findOverlaps(30, 40), sfs.get(0), sfs.get(3),
+            sfs.get(2));
+    assertSameElements(store.findOverlaps(45, 60), sfs.get(0), sfs.get(3),
+            sfs.get(4));
+    assertSameElements(store.findOverlaps(20, 20), sfs.get(0), sfs.get(2));
+    assertSameElements(store.findOverlaps(68, 70), sfs.get(3), sfs.get(4),
+            sfs.get(5));
+    assertEquals(store.countOverlaps(70, 70), 3);
+  }
+
+  /**
+   * Verifies that random queries of the store give the same results, in the
+   * same order, as the same queries of the expected store, whether found as a
+   * list, counted, by action, visitor or iterator; and that the store contains
+   * each of the expected intervals
+   * 
+   * @param store
+   * @param expected
+   * @param random
+   * @param scale
+   *          the range of positions of the stored intervals
+   */
+  static void verifyQueries(IntervalStoreI<SimpleFeature> store,
+          IntervalStoreI<SimpleFeature> expected, Random random, int scale)
+  {
+    for (int i = 0; i < 100; i++)
+    {
+      int r1 = random.nextInt(2 * scale) - scale / 2;
+      int r2 = random.nextInt(2 * scale) - scale / 2;
+      int from = Math.min(r1, r2);
+      int to = Math.max(r1, r2);
+      List<SimpleFeature> overlaps = expected.findOverlaps(from, to);
+      assertEquals(store.findOverlaps(from, to), overlaps);
+      assertEquals(store.countOverlaps(from, to), overlaps.size());
+
+      List<SimpleFeature> visited = new ArrayList<>();
+      store.forEachOverlap(from, to, visited::add);
+      assertEquals(visited, overlaps);
+
+      visited.clear();
+      assertTrue(store.visitOverlaps(from, to, visited::add));
+      assertEquals(visited, overlaps);
+
+      visited.clear();
+      store.overlapIterator(from, to).forEachRemaining(visited::add);
+      assertEquals(visited, overlaps);
+
+      /*
+       * visit just the first half of the overlaps
+       */
+      int half = overlaps.size() / 2;
+      if (half > 0)
+      {
+        visited.clear();
+        assertFalse(store.visitOverlaps(from, to,
+                sf -> visited.add(sf) && visited.size() < half));
+        assertEquals(visited, overlaps.subList(0, half));
+      }
+    }
+    for (SimpleFeature sf : expected)
+    {
+      assertTrue(store.contains(sf));
+    }
+  }
+
+  /**
+   * Verifies that add, remove and clear of the store throw
+   * UnsupportedOperationException, leaving its size unchanged
+   * 
+   * @param store
+   * @param entry
+   */
+  static <T> void verifyReadOnly(Collection<T> store, T entry)
+  {
+    int size = store.size();
+    try
+    {
+      store.add(entry);
+      fail("expected exception");
+    } catch (UnsupportedOperationException e)
+    {
+      // expected
+    }
+    try
+    {
+      store.remove(entry);
+      fail("expected exception");
+    } catch (UnsupportedOperationException e)
+    {
+      // expected
+    }
+    try
+    {
+      store.clear();
+      fail("expected exception");
+    } catch (UnsupportedOperationException e)
+    {
+      // expected
+    }
+    assertEquals(store.size(), size);
+  }
+
+  /**
+   * Asserts that the list holds exactly the expected objects (not just equal
+   * ones), in order
+   * 
+   * @param list
+   * @param expected
+   */
+  static void assertSameElements(List<?> list, Object... expected)
+  {
+    assertEquals(list.size(), expected.length);
+    for (int i = 0; i < expected.length; i++)
+    {
+      assertSame(list.get(i), expected[i]);
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class IntIntervalStoreTest
+{
+  @Test(groups = "Functional")
+  public void testFindOverlaps()
+  {
+    IntIntervalStore store = new IntIntervalStore();
+    assertEquals(store.size(), 0);
+    assertEquals(store.getDepth(), 0);
+    assertEquals(store.findOverlaps(1, 100, new int[10]), 0);
+
+    store.add(10, 50, 1);
+    store.add(1, 15, 2);
+    store.add(20, 30, 3);
+    store.add(40, 100, 4);
+    store.add(60, 100, 5);
+    store.add(70, 70, 6);
+    store.add(20, 30, 7);
+    assertTrue(store.isValid());
+    assertEquals(store.size(), 7);
+    assertEquals(store.getDepth(), 3);
+
+    /*
+     * non-nested 1-15, 10-50, 40-100; nested 20-30 (twice), 60-100 [70-70]
+     */
+    int[] result = new int[10];
+    assertEquals(store.findOverlaps(16, 65, result), 5);
+    assertEquals(Arrays.copyOf(result, 5), new int[] { 1, 4, 3, 7, 5 });
+    assertEquals(store.countOverlaps(16, 65), 5);
+    assertEquals(store.findOverlaps(70, 70, result), 3);
+    assertEquals(Arrays.copyOf(result, 3), new int[] { 4, 5, 6 });
+    assertEquals(store.countOverlaps(70, 70), 3);
+    assertEquals(store.findOverlaps(101, 200, result), 0);
+
+    /*
+     * a result array too small is filled, and the total count returned
+     */
+    result = new int[2];
+    assertEquals(store.findOverlaps(16, 65, result), 5);
+    assertEquals(result, new int[] { 1, 4 });
+
+    List<Integer> ids = new ArrayList<>();
+    store.forEachOverlap(1, 20, ids::add);
+    assertEquals(ids, Arrays.asList(2, 1, 3, 7));
+
+    /*
+     * adding after querying rebuilds the store
+     */
+    store.add(25, 26, 8);
+    assertEquals(store.getDepth(), 3);
+    assertEquals(store.countOverlaps(25, 25), 4);
+
+    store.clear();
+    assertEquals(store.size(), 0);
+    assertEquals(store.countOverlaps(1, 100), 0);
+  }
+
+  /**
+   * Verifies that the same ids are found, in the same order, as for an
+   * IntervalStore of the same intervals
+   */
+  @Test(groups = "Functional")
+  public void testFindOverlaps_pseudoRandom()
+  {
+    Random random = new Random(107);
+    IntIntervalStore store = new IntIntervalStore();
+    List<SimpleFeature> features = new ArrayList<>();
+    for (int i = 0; i < 5000; i++)
+    {
+      int begin = random.nextInt(10000);
+      int end = begin + random.nextInt(random.nextBoolean() ? 20 : 500);
+      store.add(begin, end, i);
+      features.add(new SimpleFeature(begin, end, String.valueOf(i)));
+
+      if (i % 1000 == 999)
+      {
+        verifyOverlaps(store, new IntervalStore<>(features), random);
+      }
+    }
+  }
+
+  /**
+   * Verifies the results of random queries of an IntIntervalStore against
+   * those of an IntervalStore of the same intervals
+   * 
+   * @param store
+   * @param expected
+   * @param random
+   */
+  private void verifyOverlaps(IntIntervalStore store,
+          IntervalStore<SimpleFeature> expected, Random random)
+  {
+    assertTrue(store.isValid());
+    assertEquals(store.size(), expected.size());
+    assertEquals(store.getDepth(), expected.getDepth());
+    int[] result = new int[store.size()];
+    for (int i = 0; i < 200; i++)
+    {
+      int from = random.nextInt(10500);
+      int to = from + random.nextInt(1000);
+      List<SimpleFeature> overlaps = expected.findOverlaps(from, to);
+      int count = store.findOverlaps(from, to, result);
+      assertEquals(count, overlaps.size());
+      assertEquals(store.countOverlaps(from, to), count);
+      for (int j = 0; j < count; j++)
+      {
+        assertEquals(result[j],
+                Integer.parseInt(overlaps.get(j).getDescription()));
+      }
+    }
+  }
+}
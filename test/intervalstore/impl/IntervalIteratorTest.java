@@ -31,12 +31,15 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package intervalstore.impl;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.testng.annotations.Test;
@@ -89,4 +92,37 @@ public class IntervalIteratorTest
     assertSame(range4, it.next());
     assertFalse(it.hasNext());
   }
+
+  /**
+   * Tests iteration over intervals nested more deeply than the initial size of
+   * the iterator's stack, and with siblings at each level
+   */
+  @Test(groups = "Functional")
+  public void testNext_deepNesting()
+  {
+    IntervalStore<Range> store = new IntervalStore<>();
+    List<Range> visited = new ArrayList<>();
+    for (int i = 0; i < 10; i++)
+    {
+      Range range = new Range(i * 10, 200 - i * 10);
+      Range sibling = new Range(195 - i * 10, 196 - i * 10);
+      store.add(range);
+      store.add(sibling);
+    }
+    store.add(new Range(300, 400));
+    assertEquals(store.getDepth(), 11);
+
+    /*
+     * iterator should visit each interval once, depth first, in the
+     * same order as a full range overlap query
+     */
+    Iterator<Range> it = store.iterator();
+    while (it.hasNext())
+    {
+      visited.add(it.next());
+    }
+    assertEquals(visited.size(), 21);
+    assertEquals(visited, store.findOverlaps(0, 400));
+    assertFalse(it.hasNext());
+  }
 }
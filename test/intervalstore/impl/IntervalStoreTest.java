@@ -37,13 +37,21 @@ import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import org.testng.annotations.Test;
 
+import intervalstore.api.IntervalI;
 import junit.extensions.PA;
 
 public class IntervalStoreTest
@@ -93,6 +101,70 @@ public class IntervalStoreTest
     assertSame(nonNested2.get(5), r5);
   }
 
+  /**
+   * Test that loading in parallel builds the same store as the single-threaded
+   * constructor, including the order of co-located intervals
+   */
+  @Test(groups = "Functional")
+  public void testConstructor_parallel()
+  {
+    Random random = new Random(107);
+    List<SimpleFeature> features = new ArrayList<>();
+    for (int i = 0; i < 50000; i++)
+    {
+      int begin = random.nextInt(200000);
+      int end = begin + random.nextInt(random.nextInt(10) == 0 ? 5000 : 50);
+      features.add(new SimpleFeature(begin, end, "f" + i));
+      if (i % 100 == 0)
+      {
+        features.add(new SimpleFeature(begin, end, "copy of f" + i));
+      }
+    }
+
+    IntervalStore<SimpleFeature> store = new IntervalStore<>(
+            new ArrayList<>(features));
+    for (int parallelism : new int[] { 1, 4 })
+    {
+      List<SimpleFeature> list = new ArrayList<>(features);
+      IntervalStore<SimpleFeature> parallel = new IntervalStore<>(list,
+              parallelism);
+      assertTrue(parallel.isValid());
+      assertEquals(parallel.size(), features.size());
+      assertEquals(parallel.getDepth(), store.getDepth());
+      assertEquals(parallel.toString(), store.toString());
+      for (int from = 0; from < 200000; from += 997)
+      {
+        assertEquals(parallel.findOverlaps(from, from + 2000),
+                store.findOverlaps(from, from + 2000));
+      }
+    }
+
+    IntervalStore<SimpleFeature> empty = new IntervalStore<>(
+            new ArrayList<>(), 2);
+    assertTrue(empty.isEmpty());
+    assertTrue(empty.isValid());
+
+    try
+    {
+      new IntervalStore<>(features, 0);
+      fail("expected exception");
+    } catch (IllegalArgumentException e)
+    {
+      // expected
+    }
+  }
+
+  @Test(groups = "Functional")
+  public void testConstructor_emptyList()
+  {
+    IntervalStore<Range> store = new IntervalStore<>(new ArrayList<>());
+    assertTrue(store.isEmpty());
+    assertTrue(store.isValid());
+    assertNull(PA.getValue(store, "nested"));
+    store.add(new Range(10, 20));
+    assertEquals(store.size(), 1);
+  }
+
   @Test(groups = "Functional")
   public void testConstructor_nesting()
   {
@@ -398,6 +470,95 @@ public class IntervalStoreTest
     assertTrue(store.addNonNestedInterval(sf14));
   }
 
+  /**
+   * Test adding many non-nested intervals in random order (enough to fill and
+   * split several chunks of the non-nested list), then removing some of them
+   */
+  @Test(groups = "Functional")
+  public void testAddNonNestedInterval_randomOrder()
+  {
+    Random random = new Random(29);
+    List<Range> ranges = new ArrayList<>();
+    for (int i = 0; i < 5000; i++)
+    {
+      ranges.add(new Range(i * 10, i * 10 + 10 + random.nextInt(5)));
+    }
+    Collections.shuffle(ranges, random);
+
+    IntervalStore<Range> store = new IntervalStore<>();
+    for (Range r : ranges)
+    {
+      store.add(r);
+    }
+    IntervalStore<Range> bulkLoaded = new IntervalStore<>(
+            new ArrayList<>(ranges));
+    assertTrue(store.isValid());
+    assertEquals(store.toString(), bulkLoaded.toString());
+
+    for (int i = 0; i < 2500; i++)
+    {
+      assertTrue(store.remove(ranges.get(i)));
+    }
+    assertTrue(store.isValid());
+    assertEquals(store.size(), 2500);
+    for (int from = 0; from < 50000; from += 97)
+    {
+      int to = from + 20;
+      List<Range> expected = new ArrayList<>();
+      for (int i = 2500; i < 5000; i++)
+      {
+        Range r = ranges.get(i);
+        if (r.getBegin() <= to && r.getEnd() >= from)
+        {
+          expected.add(r);
+        }
+      }
+      expected.sort(IntervalI.COMPARE_BEGIN_ASC_END_DESC);
+      assertEquals(store.findOverlaps(from, to), expected);
+      assertEquals(store.countOverlaps(from, to), expected.size());
+    }
+  }
+
+  /**
+   * Test adding intervals in start position order, which mostly uses the
+   * append fast paths
+   */
+  @Test(groups = "Functional")
+  public void testAdd_sortedOrder()
+  {
+    Random random = new Random(41);
+    List<Range> ranges = new ArrayList<>();
+    for (int i = 0; i < 5000; i++)
+    {
+      int from = random.nextInt(50000);
+      ranges.add(new Range(from, from + random.nextInt(500)));
+    }
+    ranges.sort(IntervalI.COMPARE_BEGIN_ASC_END_DESC);
+
+    IntervalStore<Range> store = new IntervalStore<>();
+    for (Range r : ranges)
+    {
+      store.add(r);
+    }
+    assertTrue(store.isValid());
+    assertEquals(store.size(), ranges.size());
+    for (int from = 0; from < 50000; from += 397)
+    {
+      int to = from + 100;
+      List<Range> expected = new ArrayList<>();
+      for (Range r : ranges)
+      {
+        if (r.getBegin() <= to && r.getEnd() >= from)
+        {
+          expected.add(r);
+        }
+      }
+      List<Range> found = store.findOverlaps(from, to);
+      found.sort(IntervalI.COMPARE_BEGIN_ASC_END_DESC);
+      assertEquals(found, expected);
+    }
+  }
+
   @Test(groups = "Functional")
   public void testRemove()
   {
@@ -825,6 +986,214 @@ public class IntervalStoreTest
     assertEquals(store.getDepth(), 1);
   }
 
+  @Test(groups = "Functional")
+  public void testForEachOverlap()
+  {
+    IntervalStore<SimpleFeature> store = new IntervalStore<>();
+    add(store, 10, 50);
+    add(store, 1, 15);
+    add(store, 20, 30);
+    add(store, 40, 100);
+    add(store, 60, 100);
+    add(store, 70, 70);
+    add(store, 22, 28);
+
+    /*
+     * the action is performed for the same features, in the same order,
+     * as they are returned by findOverlaps
+     */
+    List<SimpleFeature> visited = new ArrayList<>();
+    store.forEachOverlap(200, 200, visited::add);
+    assertTrue(visited.isEmpty());
+    store.forEachOverlap(25, 70, visited::add);
+    assertEquals(visited.size(), 6);
+    assertEquals(visited, store.findOverlaps(25, 70));
+  }
+
+  @Test(groups = "Functional")
+  public void testVisitOverlaps()
+  {
+    IntervalStore<SimpleFeature> store = new IntervalStore<>();
+    add(store, 10, 50);
+    add(store, 1, 15);
+    add(store, 20, 30);
+    add(store, 40, 100);
+    add(store, 22, 28);
+    add(store, 24, 26);
+
+    /*
+     * visit all
+     */
+    List<SimpleFeature> visited = new ArrayList<>();
+    assertTrue(store.visitOverlaps(25, 45, sf -> visited.add(sf)));
+    assertEquals(visited, store.findOverlaps(25, 45));
+    assertEquals(visited.size(), 5);
+
+    /*
+     * stop after the second (non-nested) or fourth (nested) feature
+     */
+    for (int stopAfter : new int[] { 2, 4 })
+    {
+      visited.clear();
+      assertFalse(store.visitOverlaps(25, 45, sf -> {
+        visited.add(sf);
+        return visited.size() < stopAfter;
+      }));
+      assertEquals(visited,
+              store.findOverlaps(25, 45).subList(0, stopAfter));
+    }
+  }
+
+  @Test(groups = "Functional")
+  public void testOverlapIterator()
+  {
+    IntervalStore<SimpleFeature> store = new IntervalStore<>();
+    Iterator<SimpleFeature> it = store.overlapIterator(1, 100);
+    assertFalse(it.hasNext());
+
+    SimpleFeature sf1 = add(store, 10, 50);
+    SimpleFeature sf2 = add(store, 1, 15);
+    add(store, 20, 30);
+    SimpleFeature sf4 = add(store, 22, 28);
+    SimpleFeature sf5 = add(store, 24, 26);
+    add(store, 60, 100);
+
+    it = store.overlapIterator(12, 25);
+    assertSame(it.next(), sf2);
+    assertSame(it.next(), sf1);
+    assertTrue(it.hasNext());
+    it.next(); // 20-30
+    assertSame(it.next(), sf4);
+    assertSame(it.next(), sf5);
+    assertFalse(it.hasNext());
+    try
+    {
+      it.next();
+      fail("expected exception");
+    } catch (NoSuchElementException e)
+    {
+      // expected
+    }
+
+    /*
+     * iterator gives the same results, in the same order, as findOverlaps
+     */
+    for (int from = 0; from < 102; from += 3)
+    {
+      for (int to = from; to < 102; to += 5)
+      {
+        List<SimpleFeature> overlaps = new ArrayList<>();
+        store.overlapIterator(from, to).forEachRemaining(overlaps::add);
+        assertEquals(overlaps, store.findOverlaps(from, to));
+      }
+    }
+  }
+
+  /**
+   * Test that overlap iterator positions outside the range of int are clamped,
+   * not cast
+   */
+  @Test(groups = "Functional")
+  public void testOverlapIterator_longPositions()
+  {
+    IntervalStore<SimpleFeature> store = new IntervalStore<>();
+    SimpleFeature sf1 = add(store, -20, -10);
+    SimpleFeature sf2 = add(store, 10, 50);
+
+    /*
+     * (int) (2^32 + 20) would be 20
+     */
+    assertFalse(store.overlapIterator((1L << 32) + 20, Long.MAX_VALUE)
+            .hasNext());
+
+    /*
+     * (int) Long.MIN_VALUE would be 0
+     */
+    List<SimpleFeature> overlaps = new ArrayList<>();
+    store.overlapIterator(Long.MIN_VALUE, 20)
+            .forEachRemaining(overlaps::add);
+    assertEquals(overlaps, Arrays.asList(sf1, sf2));
+  }
+
+  @Test(groups = "Functional")
+  public void testOverlapSpliterator()
+  {
+    IntervalStore<SimpleFeature> store = new IntervalStore<>();
+    add(store, 10, 50);
+    add(store, 1, 15);
+    add(store, 20, 30);
+    add(store, 22, 28);
+    add(store, 24, 26);
+
+    List<SimpleFeature> overlaps = StreamSupport
+            .stream(store.overlapSpliterator(12, 25), false)
+            .collect(Collectors.toList());
+    assertEquals(overlaps, store.findOverlaps(12, 25));
+
+    /*
+     * only as many overlaps are found as are needed
+     */
+    assertEquals(StreamSupport.stream(store.overlapSpliterator(12, 25), false)
+            .limit(2).count(), 2L);
+  }
+
+  @Test(groups = "Functional")
+  public void testCountOverlaps()
+  {
+    IntervalStore<SimpleFeature> store = new IntervalStore<>();
+    assertEquals(store.countOverlaps(1, 100), 0);
+    add(store, 10, 50);
+    add(store, 1, 15);
+    add(store, 20, 30);
+    add(store, 40, 100);
+    add(store, 60, 100);
+    add(store, 70, 70);
+    add(store, 22, 28);
+    add(store, 24, 26);
+
+    assertEquals(store.countOverlaps(200, 200), 0);
+    assertEquals(store.countOverlaps(1, 9), 1);
+    assertEquals(store.countOverlaps(25, 25), 4);
+    assertEquals(store.countOverlaps(27, 70), 6);
+    assertEquals(store.countOverlaps(1, 100), 8);
+    assertEquals(store.countOverlaps(Long.MIN_VALUE, Long.MAX_VALUE), 8);
+
+    for (int from = 0; from < 102; from += 3)
+    {
+      for (int to = from; to < 102; to += 5)
+      {
+        assertEquals(store.countOverlaps(from, to),
+                store.findOverlaps(from, to).size());
+      }
+    }
+  }
+
+  @Test(groups = "Functional")
+  public void testFreeze()
+  {
+    IntervalStore<SimpleFeature> store = new IntervalStore<>();
+    SimpleFeature sf1 = add(store, 10, 20);
+    SimpleFeature sf2 = add(store, 15, 25);
+    SimpleFeature sf3 = add(store, 12, 18);
+
+    FrozenIntervalStore<SimpleFeature> frozen = store.freeze();
+    assertTrue(frozen.isValid());
+    assertEquals(frozen.size(), 3);
+    assertEquals(frozen.getDepth(), 2);
+    assertEquals(frozen.findOverlaps(16, 16), store.findOverlaps(16, 16));
+
+    /*
+     * the snapshot is not affected by changes to the store
+     */
+    store.remove(sf1);
+    SimpleFeature sf4 = add(store, 30, 40);
+    assertEquals(frozen.size(), 3);
+    assertTrue(frozen.contains(sf1));
+    assertTrue(frozen.contains(sf2));
+    assertTrue(frozen.contains(sf3));
+    assertFalse(frozen.contains(sf4));
+  }
+
   @Test(groups = "Functional")
   public void testFindOverlaps_resultsArg_mixed()
   {
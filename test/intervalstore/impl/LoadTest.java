@@ -35,11 +35,12 @@ import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.ZipInputStream;
 
 import org.testng.annotations.Test;
 
@@ -56,12 +57,12 @@ public class LoadTest
   /*
    * Ensembl and gnomAD variants on human BRAF gene 
    */
-  private static final String VARIANTS_FILENAME = "test/intervalstore/impl/brafVariants.csv";
+  private static final String VARIANTS_FILENAME = "test/intervalstore/impl/brafVariants.csv.zip";
 
   /*
    * Coding, non-coding and pseudo-gene start-end loci on each human chromosome 
    */
-  private static final String GENES_FILENAME = "test/intervalstore/impl/humanGenes.csv";
+  private static final String GENES_FILENAME = "test/intervalstore/impl/humanGenes.csv.zip";
 
   /**
    * This 'test' loads a file of variants interval data to an NCList then
@@ -75,13 +76,7 @@ public class LoadTest
   {
     System.out.println("\ntestNclistDepth_variants: start");
     List<SimpleFeature> intervals = new ArrayList<>();
-    File f = new File(VARIANTS_FILENAME);
-    if (!f.exists())
-    {
-      fail(VARIANTS_FILENAME + " not found - please unzip "
-              + VARIANTS_FILENAME + ".zip");
-    }
-    try (BufferedReader br = new BufferedReader(new FileReader(f)))
+    try (BufferedReader br = openZipped(VARIANTS_FILENAME))
     {
       int snvCount = 0;
 
@@ -130,13 +125,7 @@ public class LoadTest
   {
     System.out.println("\ntestNclistDepth_genes: start");
     List<SimpleFeature> intervals = new ArrayList<>();
-    File f = new File(GENES_FILENAME);
-    if (!f.exists())
-    {
-      fail(GENES_FILENAME + " not found - please unzip " + GENES_FILENAME
-              + ".zip");
-    }
-    try (BufferedReader br = new BufferedReader(new FileReader(f)))
+    try (BufferedReader br = openZipped(GENES_FILENAME))
     {
       String lastChr = null;
       String line = br.readLine();
@@ -179,6 +168,26 @@ public class LoadTest
     System.out.println("testNclistDepth_genes: end\n");
   }
 
+  /**
+   * Answers a reader of the (single) file in the given zip archive, so that
+   * the data files need not be unzipped before running these tests
+   * 
+   * @param zipFileName
+   * @return
+   * @throws IOException
+   */
+  protected BufferedReader openZipped(String zipFileName) throws IOException
+  {
+    ZipInputStream zis = new ZipInputStream(
+            new FileInputStream(zipFileName));
+    if (zis.getNextEntry() == null)
+    {
+      zis.close();
+      fail(zipFileName + " is empty");
+    }
+    return new BufferedReader(new InputStreamReader(zis));
+  }
+
   /**
    * Helper method that constructs an NCList from the given intervals, and
    * reports its size, width and depth
@@ -212,13 +221,7 @@ public class LoadTest
   public void testIntervalStoreDepth_genes() throws IOException
   {
     System.out.println("\ntestIntervalStoreDepth_genes: start");
-    File f = new File(GENES_FILENAME);
-    if (!f.exists())
-    {
-      fail(GENES_FILENAME + " not found - please unzip " + GENES_FILENAME
-              + ".zip");
-    }
-    try (BufferedReader br = new BufferedReader(new FileReader(f)))
+    try (BufferedReader br = openZipped(GENES_FILENAME))
     {
       String lastChr = null;
       IntervalStore<SimpleFeature> fs = new IntervalStore<>();
@@ -299,13 +302,7 @@ public class LoadTest
   {
     System.out.println("\ntestIntervalStoreDepth_variants: start");
     List<SimpleFeature> intervals = new ArrayList<>();
-    File f = new File(VARIANTS_FILENAME);
-    if (!f.exists())
-    {
-      fail(VARIANTS_FILENAME + " not found - please unzip "
-              + VARIANTS_FILENAME + ".zip");
-    }
-    try (BufferedReader br = new BufferedReader(new FileReader(f)))
+    try (BufferedReader br = openZipped(VARIANTS_FILENAME))
     {
       int snvCount = 0;
       int colocatedCount = 0;
@@ -0,0 +1,230 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import static intervalstore.impl.FrozenStoreFixtures.add;
+import static intervalstore.impl.FrozenStoreFixtures.addMixed;
+import static intervalstore.impl.FrozenStoreFixtures.randomStore;
+import static intervalstore.impl.FrozenStoreFixtures.verifyMixed;
+import static intervalstore.impl.FrozenStoreFixtures.verifyQueries;
+import static intervalstore.impl.FrozenStoreFixtures.verifyReadOnly;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class MappedIntervalStoreTest
+{
+  private Path file;
+
+  @BeforeMethod(alwaysRun = true)
+  public void setUp() throws IOException
+  {
+    file = Files.createTempFile("intervals", ".bin");
+  }
+
+  @AfterMethod(alwaysRun = true)
+  public void tearDown() throws IOException
+  {
+    Files.deleteIfExists(file);
+  }
+
+  /**
+   * Writes the frozen store to the test file, and opens it as a
+   * MappedIntervalStore that resolves ids to the intervals in the frozen store
+   * 
+   * @param frozen
+   * @return
+   * @throws IOException
+   */
+  private MappedIntervalStore<SimpleFeature> writeAndMap(
+          FrozenIntervalStore<SimpleFeature> frozen) throws IOException
+  {
+    try (OutputStream out = Files.newOutputStream(file))
+    {
+      frozen.write(out, SimpleFeature.CODEC);
+    }
+    List<SimpleFeature> byId = new ArrayList<>(frozen);
+    return MappedIntervalStore.open(file, byId::get);
+  }
+
+  @Test(groups = "Functional")
+  public void testOpen_empty() throws IOException
+  {
+    MappedIntervalStore<SimpleFeature> mapped = writeAndMap(
+            new IntervalStore<SimpleFeature>().freeze());
+    assertTrue(mapped.isEmpty());
+    assertTrue(mapped.isValid());
+    assertEquals(mapped.getDepth(), 0);
+    assertEquals(mapped.toString(), "[]");
+    assertTrue(mapped.findOverlaps(1, 10).isEmpty());
+    assertEquals(mapped.countOverlaps(1, 10), 0);
+    assertFalse(mapped.overlapIterator(1, 10).hasNext());
+    assertFalse(mapped.contains(new SimpleFeature(1, 10, "desc")));
+    assertFalse(mapped.iterator().hasNext());
+  }
+
+  @Test(groups = "Functional")
+  public void testFindOverlaps_mixed() throws IOException
+  {
+    IntervalStore<SimpleFeature> store = new IntervalStore<>();
+    List<SimpleFeature> sfs = addMixed(store);
+    FrozenIntervalStore<SimpleFeature> frozen = store.freeze();
+    MappedIntervalStore<SimpleFeature> mapped = writeAndMap(frozen);
+    assertTrue(mapped.isValid());
+    assertEquals(mapped.getDepth(), frozen.getDepth());
+    assertEquals(mapped.toString(), frozen.toString());
+    assertEquals(mapped.prettyPrint(), frozen.prettyPrint());
+    verifyMixed(mapped, sfs);
+
+    assertTrue(mapped.contains(sfs.get(0)));
+    assertTrue(mapped.contains(sfs.get(5)));
+    assertTrue(mapped.contains(new SimpleFeature(sfs.get(2))));
+    assertFalse(mapped.contains(new SimpleFeature(20, 30, "other")));
+    assertFalse(mapped.contains("not an interval"));
+
+    List<SimpleFeature> all = new ArrayList<>();
+    mapped.iterator().forEachRemaining(all::add);
+    assertEquals(all, new ArrayList<>(frozen));
+  }
+
+  /**
+   * Verifies that queries of a mapped store of pseudo-randomly generated
+   * intervals give the same results, in the same order, as the frozen store
+   * that was written
+   */
+  @Test(groups = "Functional")
+  public void testFindOverlaps_pseudoRandom() throws IOException
+  {
+    Random random = new Random(331);
+    for (int scale : new int[] { 10, 100, 1000 })
+    {
+      FrozenIntervalStore<SimpleFeature> frozen = randomStore(random, scale)
+              .freeze();
+      MappedIntervalStore<SimpleFeature> mapped = writeAndMap(frozen);
+      assertTrue(mapped.isValid());
+      assertEquals(mapped.size(), frozen.size());
+      assertEquals(mapped.getDepth(), frozen.getDepth());
+      assertEquals(mapped.toString(), frozen.toString());
+      verifyQueries(mapped, frozen, random, scale);
+    }
+  }
+
+  @Test(groups = "Functional")
+  public void testModify() throws IOException
+  {
+    IntervalStore<SimpleFeature> store = new IntervalStore<>();
+    SimpleFeature sf1 = add(store, 10, 20);
+    MappedIntervalStore<SimpleFeature> mapped = writeAndMap(store.freeze());
+    verifyReadOnly(mapped, sf1);
+  }
+
+  /**
+   * Verifies that opening fails with IOException for a file that is not a
+   * store in the current format, or is incomplete
+   */
+  @Test(groups = "Functional")
+  public void testOpen_invalid() throws IOException
+  {
+    Files.write(file, "not an interval store".getBytes());
+    try
+    {
+      MappedIntervalStore.open(file, id -> null);
+      fail("expected IOException");
+    } catch (IOException e)
+    {
+      assertEquals(e.getMessage(), "Not an interval store file");
+    }
+
+    IntervalStore<SimpleFeature> store = new IntervalStore<>();
+    add(store, 10, 20);
+    add(store, 12, 14);
+    writeAndMap(store.freeze());
+    byte[] bytes = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(bytes, 30));
+    try
+    {
+      MappedIntervalStore.open(file, id -> null);
+      fail("expected IOException");
+    } catch (IOException e)
+    {
+      // expected
+    }
+
+    /*
+     * nested 12-14 at index 0 claims one child, at index 0; this is 
+     * only detected if the nesting structure is verified
+     */
+    bytes[52] = 1; // childCounts[0]
+    Files.write(file, bytes);
+    assertEquals(MappedIntervalStore.open(file, id -> null).size(), 2);
+    try
+    {
+      MappedIntervalStore.open(file, id -> null, true);
+      fail("expected IOException");
+    } catch (IOException e)
+    {
+      assertEquals(e.getMessage(), "Invalid NCList nesting at interval 0");
+    }
+  }
+
+  /**
+   * Verifies that the nesting structure of a valid file passes the check made
+   * when opening with verification
+   */
+  @Test(groups = "Functional")
+  public void testOpen_verify() throws IOException
+  {
+    FrozenIntervalStore<SimpleFeature> frozen = randomStore(new Random(17),
+            1000).freeze();
+    writeAndMap(frozen);
+    List<SimpleFeature> byId = new ArrayList<>(frozen);
+    MappedIntervalStore<SimpleFeature> mapped = MappedIntervalStore
+            .open(file, byId::get, true);
+    assertEquals(mapped.getDepth(), frozen.getDepth());
+    assertEquals(mapped.findOverlaps(100, 200),
+            frozen.findOverlaps(100, 200));
+  }
+}
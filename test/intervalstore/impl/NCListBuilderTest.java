@@ -32,9 +32,15 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package intervalstore.impl;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 
 import org.testng.annotations.Test;
 
@@ -80,4 +86,93 @@ public class NCListBuilderTest
       // expected
     }
   }
+
+  @Test(groups = "Functional")
+  public void testIsSorted()
+  {
+    assertTrue(NCListBuilder.isSorted(new ArrayList<Range>()));
+    assertTrue(NCListBuilder.isSorted(Arrays.asList(new Range(10, 20))));
+
+    // start ascending, length descending
+    assertTrue(NCListBuilder.isSorted(Arrays.asList(new Range(10, 20),
+            new Range(10, 20), new Range(10, 15), new Range(11, 30))));
+
+    // start descending
+    assertFalse(NCListBuilder.isSorted(
+            Arrays.asList(new Range(11, 20), new Range(10, 20))));
+
+    // same start, length ascending
+    assertFalse(NCListBuilder.isSorted(
+            Arrays.asList(new Range(10, 15), new Range(10, 20))));
+  }
+
+  /**
+   * Test that bulk loading from already sorted intervals does not modify the
+   * list (so the list may be unmodifiable)
+   */
+  @Test(groups = "Functional")
+  public void testSort_alreadySorted()
+  {
+    List<Range> ranges = Collections.unmodifiableList(Arrays.asList(
+            new Range(10, 30), new Range(10, 20), new Range(10, 20),
+            new Range(12, 18), new Range(40, 50)));
+
+    NCList<Range> ncl = new NCList<>(ranges);
+    assertEquals(ncl.toString(), "[10-30 [10-20, 10-20 [12-18]], 40-50]");
+
+    IntervalStore<Range> store = new IntervalStore<>(ranges);
+    assertEquals(store.size(), 5);
+    assertTrue(store.isValid());
+    store = new IntervalStore<>(ranges, 2);
+    assertEquals(store.size(), 5);
+    assertTrue(store.isValid());
+
+    List<Range> unsorted = Collections.unmodifiableList(
+            Arrays.asList(new Range(40, 50), new Range(10, 30)));
+    try
+    {
+      new NCList<>(unsorted);
+      fail("expected exception");
+    } catch (UnsupportedOperationException e)
+    {
+      // expected - unsorted list has to be sorted
+    }
+  }
+
+  /**
+   * Test sorting and partitioning of intervals held as arrays of start and end
+   * positions
+   */
+  @Test(groups = "Functional")
+  public void testSortedOrder_arrays()
+  {
+    int[] begins = { 40, 10, 12, 10, 10, 60 };
+    int[] ends = { 50, 20, 18, 30, 20, 70 };
+    assertFalse(NCListBuilder.isSorted(begins, ends, 6));
+    assertTrue(NCListBuilder.isSorted(begins, ends, 1));
+
+    /*
+     * co-located 10-20 at 1 and 4 stay in that order; 
+     * 60-70 is beyond the size given, so not sorted
+     */
+    int[] order = NCListBuilder.sortedOrder(begins, ends, 5);
+    assertEquals(order, new int[] { 3, 1, 4, 2, 0 });
+
+    int[] sortedBegins = new int[5];
+    int[] sortedEnds = new int[5];
+    for (int i = 0; i < 5; i++)
+    {
+      sortedBegins[i] = begins[order[i]];
+      sortedEnds[i] = ends[order[i]];
+    }
+    assertTrue(NCListBuilder.isSorted(sortedBegins, sortedEnds, 5));
+
+    /*
+     * 10-30 properly contains the next three; 40-50 starts a new sublist
+     */
+    assertEquals(NCListBuilder.partitionSortedSublists(sortedBegins,
+            sortedEnds, 5), new int[] { 0, 4, 5 });
+    assertEquals(NCListBuilder.partitionSortedSublists(sortedBegins,
+            sortedEnds, 0), new int[] { 0 });
+  }
 }
@@ -0,0 +1,141 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class NCListLayoutTest
+{
+  /*
+   * intervals sorted by start ascending, length descending
+   */
+  private static final int[] BEGINS = { 1, 2, 3, 20, 21 };
+
+  private static final int[] ENDS = { 10, 5, 4, 30, 22 };
+
+  /**
+   * Answers the array indices of intervals that overlap from-to, in the order
+   * found
+   * 
+   * @param layout
+   * @param from
+   * @param to
+   * @return
+   */
+  private static List<Integer> findOverlaps(NCListLayout layout, long from,
+          long to)
+  {
+    List<Integer> found = new ArrayList<>();
+    layout.findOverlaps(from, to, (i, count, list) -> list.add(i), found,
+            0);
+    return found;
+  }
+
+  @Test(groups = "Functional")
+  public void testBuild()
+  {
+    int[] positions = new int[BEGINS.length];
+    NCListLayout layout = NCListLayout.build(BEGINS, ENDS, positions);
+
+    /*
+     * top level 1-10, 20-30; then the children of 1-10, 2-5, 20-30
+     * in depth-first order
+     */
+    assertEquals(positions, new int[] { 0, 2, 3, 1, 4 });
+    assertEquals(layout.begins.array(), new int[] { 1, 20, 2, 3, 21 });
+    assertEquals(layout.ends.array(), new int[] { 10, 30, 5, 4, 22 });
+    assertEquals(layout.childOffsets.array(), new int[] { 2, 4, 3, 0, 0 });
+    assertEquals(layout.childCounts.array(), new int[] { 1, 1, 1, 0, 0 });
+    assertEquals(layout.cumulativeSizes.array(),
+            new int[] { 3, 5, 2, 1, 1 });
+    assertEquals(layout.topLevelCount, 2);
+    assertEquals(layout.depth, 3);
+    assertEquals(layout.size(), 5);
+    assertTrue(layout.isValid(null));
+
+    assertEquals(findOverlaps(layout, 4, 21), Arrays.asList(0, 2, 3, 1, 4));
+    assertEquals(layout.countOverlaps(4, 21), 5);
+    assertEquals(layout.countOverlaps(2, 5), 3);
+    assertTrue(layout.contains(3, 4, (i, count, index) -> i == index, 3));
+    assertFalse(layout.contains(3, 5, (i, count, index) -> true, null));
+
+    StringBuilder sb = new StringBuilder();
+    layout.appendTo(sb, i -> layout.begins.get(i) + "-" + layout.ends.get(i));
+    assertEquals(sb.toString(), "[1-10 [2-5 [3-4]], 20-30 [21-22]]");
+  }
+
+  @Test(groups = "Functional")
+  public void testBuild_empty()
+  {
+    NCListLayout layout = NCListLayout.build(new int[0], new int[0],
+            new int[0]);
+    assertEquals(layout.size(), 0);
+    assertEquals(layout.depth, 0);
+    assertTrue(findOverlaps(layout, 0, 100).isEmpty());
+    assertEquals(layout.countOverlaps(0, 100), 0);
+    assertFalse(layout.new OverlapCursor(0, 100).hasNext());
+  }
+
+  /**
+   * Test that queries grow their stack rather than trusting the depth, which
+   * may have been read from a file
+   */
+  @Test(groups = "Functional")
+  public void testQueries_depthUnderstated()
+  {
+    NCListLayout built = NCListLayout.build(BEGINS, ENDS,
+            new int[BEGINS.length]);
+    NCListLayout layout = new NCListLayout(built.begins, built.ends,
+            built.childOffsets, built.childCounts, built.cumulativeSizes,
+            built.topLevelCount, 0);
+
+    assertEquals(findOverlaps(layout, 3, 3), Arrays.asList(0, 2, 3));
+    assertEquals(layout.countOverlaps(3, 3), 3);
+    assertTrue(layout.contains(3, 4, (i, count, index) -> true, null));
+
+    NCListLayout.OverlapCursor cursor = layout.new OverlapCursor(3, 3);
+    List<Integer> found = new ArrayList<>();
+    while (cursor.hasNext())
+    {
+      found.add(cursor.next());
+    }
+    assertEquals(found, Arrays.asList(0, 2, 3));
+  }
+}
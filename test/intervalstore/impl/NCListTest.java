@@ -43,6 +43,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Random;
 
 import org.testng.annotations.Test;
 
@@ -77,6 +78,69 @@ public class NCListTest
     assertTrue(ncl.isValid());
   }
 
+  /**
+   * Test that the bulk load constructor builds the same tree as recursively
+   * partitioning the sorted intervals, with correct sizes at each level
+   */
+  @Test(groups = "Functional")
+  public void testConstructor_pseudoRandom()
+  {
+    Random random = new Random(108);
+    for (int test = 0; test < 20; test++)
+    {
+      List<Range> ranges = new ArrayList<>();
+      for (int i = 0; i < 500; i++)
+      {
+        int begin = random.nextInt(1000);
+        ranges.add(new Range(begin, begin + random.nextInt(200)));
+      }
+
+      NCList<Range> ncl = new NCList<>(new ArrayList<>(ranges));
+      assertTrue(ncl.isValid());
+      assertEquals(ncl.size(), ranges.size());
+
+      assertEquals(ncl.toString(), partitionRecursively(ranges));
+
+      /*
+       * counting overlaps relies on the size of nested lists being correct
+       */
+      for (int from = 0; from < 1200; from += 37)
+      {
+        int to = from + random.nextInt(300);
+        assertEquals(ncl.countOverlaps(from, to),
+                ncl.findOverlaps(from, to).size());
+      }
+    }
+  }
+
+  /**
+   * Helper method that sorts and partitions intervals into nested sublists
+   * recursively, and answers the tree formatted as by NCList.toString()
+   * 
+   * @param ranges
+   * @return
+   */
+  private String partitionRecursively(List<Range> ranges)
+  {
+    List<IntervalI> sublists = new NCListBuilder<Range>()
+            .partitionNestedSublists(ranges);
+    StringBuilder sb = new StringBuilder("[");
+    for (IntervalI sublist : sublists)
+    {
+      if (sb.length() > 1)
+      {
+        sb.append(", ");
+      }
+      sb.append(ranges.get(sublist.getBegin()));
+      if (sublist.getEnd() > sublist.getBegin())
+      {
+        sb.append(" ").append(partitionRecursively(new ArrayList<>(
+                ranges.subList(sublist.getBegin() + 1, sublist.getEnd() + 1))));
+      }
+    }
+    return sb.append("]").toString();
+  }
+
   @Test(groups = "Functional")
   public void testFindOverlaps()
   {
@@ -104,6 +168,109 @@ public class NCListTest
     assertEquals(((IntervalI) overlaps.get(0)).getEnd(), 120);
   }
 
+  @Test(groups = "Functional")
+  public void testForEachOverlap_visitOverlaps()
+  {
+    List<Range> ranges = new ArrayList<>();
+    ranges.add(new Range(20, 50));
+    ranges.add(new Range(30, 70));
+    ranges.add(new Range(1, 100));
+    ranges.add(new Range(70, 120));
+    ranges.add(new Range(25, 40));
+
+    NCList<Range> ncl = new NCList<>(ranges);
+
+    List<Range> visited = new ArrayList<>();
+    ncl.forEachOverlap(121, 122, visited::add);
+    assertTrue(visited.isEmpty());
+
+    ncl.forEachOverlap(35, 70, visited::add);
+    assertEquals(visited, ncl.findOverlaps(35, 70));
+    assertEquals(visited.size(), 5);
+
+    visited.clear();
+    assertTrue(ncl.visitOverlaps(35, 70, r -> visited.add(r)));
+    assertEquals(visited, ncl.findOverlaps(35, 70));
+
+    /*
+     * stop after visiting 1-100, 20-50, 25-40
+     */
+    visited.clear();
+    assertFalse(ncl.visitOverlaps(35, 70, r -> {
+      visited.add(r);
+      return r.getEnd() != 40;
+    }));
+    assertEquals(visited, ncl.findOverlaps(35, 70).subList(0, 3));
+  }
+
+  /**
+   * Tests overlap queries on intervals nested too deeply to be searched
+   * recursively without risk of stack overflow
+   */
+  @Test(groups = "Functional")
+  public void testFindOverlaps_deepNesting()
+  {
+    final int depth = 100000;
+    NCList<Range> ncl = new NCList<>();
+
+    /*
+     * add innermost interval first, so that each one added
+     * encloses all the others (which is quick)
+     */
+    for (int i = 0; i < depth; i++)
+    {
+      ncl.add(new Range(depth - i, depth + i));
+    }
+    assertEquals(ncl.size(), depth);
+
+    List<Range> overlaps = ncl.findOverlaps(depth, depth);
+    assertEquals(overlaps.size(), depth);
+    assertEquals(overlaps.get(0), new Range(1, 2 * depth - 1));
+    assertEquals(overlaps.get(depth - 1), new Range(depth, depth));
+
+    List<Range> visited = new ArrayList<>();
+    ncl.forEachOverlap(depth, depth, visited::add);
+    assertEquals(visited, overlaps);
+
+    visited.clear();
+    assertFalse(ncl.visitOverlaps(depth, depth,
+            r -> visited.add(r) && visited.size() < 10));
+    assertEquals(visited, overlaps.subList(0, 10));
+
+    assertEquals(ncl.countOverlaps(depth, depth), depth);
+    assertEquals(ncl.countOverlaps(depth - 10, depth + 10), depth);
+    assertEquals(ncl.countOverlaps(2 * depth, 3 * depth), 0);
+  }
+
+  @Test(groups = "Functional")
+  public void testCountOverlaps()
+  {
+    List<Range> ranges = new ArrayList<>();
+    ranges.add(new Range(20, 50));
+    ranges.add(new Range(30, 70));
+    ranges.add(new Range(1, 100));
+    ranges.add(new Range(70, 120));
+    ranges.add(new Range(25, 40));
+    ranges.add(new Range(26, 30));
+    NCList<Range> ncl = new NCList<>(ranges);
+
+    assertEquals(ncl.countOverlaps(121, 122), 0);
+    assertEquals(ncl.countOverlaps(110, 110), 1);
+    assertEquals(ncl.countOverlaps(21, 22), 2);
+    // 20-50 and its contained ranges are counted without searching
+    assertEquals(ncl.countOverlaps(10, 60), 5);
+    assertEquals(ncl.countOverlaps(1, 120), 6);
+
+    for (int from = 0; from < 125; from += 3)
+    {
+      for (int to = from; to < 125; to += 7)
+      {
+        assertEquals(ncl.countOverlaps(from, to),
+                ncl.findOverlaps(from, to).size());
+      }
+    }
+  }
+
   @Test(groups = "Functional")
   public void testAdd_onTheEnd()
   {
@@ -118,6 +285,67 @@ public class NCListTest
     assertTrue(ncl.isValid());
   }
 
+  /**
+   * Test adding intervals in start position order, which mostly uses a fast
+   * path in addNode
+   */
+  @Test(groups = "Functional")
+  public void testAdd_sortedOrder()
+  {
+    Random random = new Random(53);
+    List<Range> ranges = new ArrayList<>();
+    for (int i = 0; i < 5000; i++)
+    {
+      int from = random.nextInt(50000);
+      ranges.add(new Range(from, from + random.nextInt(500)));
+    }
+    ranges.sort(IntervalI.COMPARE_BEGIN_ASC_END_DESC);
+
+    NCList<Range> ncl = new NCList<>();
+    for (Range r : ranges)
+    {
+      ncl.add(r);
+    }
+    assertTrue(ncl.isValid());
+    assertEquals(ncl.size(), ranges.size());
+    for (int from = 0; from < 50000; from += 397)
+    {
+      int to = from + 100;
+      List<Range> expected = new ArrayList<>();
+      for (Range r : ranges)
+      {
+        if (r.getBegin() <= to && r.getEnd() >= from)
+        {
+          expected.add(r);
+        }
+      }
+      List<Range> found = ncl.findOverlaps(from, to);
+      found.sort(IntervalI.COMPARE_BEGIN_ASC_END_DESC);
+      assertEquals(found, expected);
+    }
+  }
+
+  /**
+   * Test adding an interval enclosed by both the last and the previous
+   * subrange, which falls back from the fast path to add it to the first
+   */
+  @Test(groups = "Functional")
+  public void testAdd_insideLastTwo()
+  {
+    NCList<Range> ncl = new NCList<>();
+    ncl.add(new Range(10, 20));
+    ncl.add(new Range(15, 25));
+    ncl.add(new Range(16, 18));
+    assertEquals(ncl.toString(), "[10-20 [16-18], 15-25]");
+    assertTrue(ncl.isValid());
+
+    ncl.add(new Range(21, 24));
+    assertEquals(ncl.toString(), "[10-20 [16-18], 15-25 [21-24]]");
+    ncl.add(new Range(15, 25));
+    assertEquals(ncl.toString(), "[10-20 [16-18], 15-25 [21-24], 15-25]");
+    assertTrue(ncl.isValid());
+  }
+
   @Test(groups = "Functional")
   public void testAdd_inside()
   {
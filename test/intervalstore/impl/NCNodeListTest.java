@@ -0,0 +1,137 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import intervalstore.impl.BinarySearcher.Compare;
+
+public class NCNodeListTest
+{
+  /**
+   * Test that random inserts, removes and replacements give the same list,
+   * and the same start and end positions, as for an ArrayList
+   */
+  @Test(groups = "Functional")
+  public void testAddRemoveSet_compareToArrayList()
+  {
+    Random random = new Random(53);
+    NCNodeList<Range> nodes = new NCNodeList<>();
+    List<NCNode<Range>> expected = new ArrayList<>();
+
+    for (int i = 0; i < 2000; i++)
+    {
+      int begin = random.nextInt(10000);
+      NCNode<Range> node = new NCNode<>(new Range(begin, begin + 5));
+      int index = BinarySearcher.findFirst(expected, true, Compare.GT,
+              begin);
+      nodes.add(index, node);
+      expected.add(index, node);
+      if (i % 4 == 0)
+      {
+        index = random.nextInt(expected.size());
+        assertEquals(nodes.remove(index), expected.remove(index));
+      }
+      else if (i % 4 == 1)
+      {
+        index = random.nextInt(expected.size());
+        node = new NCNode<>(expected.get(index).getRegion());
+        nodes.set(index, node);
+        expected.set(index, node);
+      }
+    }
+    assertEquals(nodes, expected);
+    for (int i = 0; i < expected.size(); i++)
+    {
+      assertEquals(nodes.getBegin(i), expected.get(i).getBegin());
+      assertEquals(nodes.getEnd(i), expected.get(i).getEnd());
+    }
+    for (int pos = -5; pos < 10010; pos++)
+    {
+      assertEquals(BinarySearcher.findFirst(nodes, true, Compare.GT, pos),
+              BinarySearcher.findFirst(expected, true, Compare.GT, pos));
+      assertEquals(BinarySearcher.findFirst(nodes, false, Compare.GE, pos),
+              BinarySearcher.findFirst(expected, false, Compare.GE, pos));
+    }
+
+    nodes.clear();
+    assertTrue(nodes.isEmpty());
+    assertEquals(BinarySearcher.findFirst(nodes, false, Compare.GE, 10), 0);
+    nodes.add(new NCNode<>(new Range(1, 2)));
+    assertEquals(nodes.getEnd(0), 2);
+  }
+
+  @Test(groups = "Functional")
+  public void testConstructor_array()
+  {
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    NCNode<Range>[] array = new NCNode[] { new NCNode<>(new Range(1, 5)),
+        new NCNode<>(new Range(3, 8)) };
+    NCNodeList<Range> nodes = new NCNodeList<>(array);
+    assertEquals(nodes.size(), 2);
+    assertEquals(nodes.getBegin(1), 3);
+    assertEquals(nodes.getEnd(1), 8);
+    nodes.add(new NCNode<>(new Range(6, 9)));
+    assertEquals(nodes.toString(), "[1-5, 3-8, 6-9]");
+  }
+
+  @Test(groups = "Functional")
+  public void testGet_outOfBounds()
+  {
+    NCNodeList<Range> nodes = new NCNodeList<>();
+    nodes.add(new NCNode<>(new Range(1, 2)));
+    try
+    {
+      nodes.get(1);
+      fail("expected exception");
+    } catch (IndexOutOfBoundsException e)
+    {
+      // expected
+    }
+    try
+    {
+      nodes.add(3, new NCNode<>(new Range(3, 4)));
+      fail("expected exception");
+    } catch (IndexOutOfBoundsException e)
+    {
+      // expected
+    }
+  }
+}
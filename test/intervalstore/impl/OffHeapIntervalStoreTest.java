@@ -0,0 +1,177 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import static intervalstore.impl.FrozenStoreFixtures.add;
+import static intervalstore.impl.FrozenStoreFixtures.addMixed;
+import static intervalstore.impl.FrozenStoreFixtures.randomStore;
+import static intervalstore.impl.FrozenStoreFixtures.verifyMixed;
+import static intervalstore.impl.FrozenStoreFixtures.verifyQueries;
+import static intervalstore.impl.FrozenStoreFixtures.verifyReadOnly;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class OffHeapIntervalStoreTest
+{
+  @Test(groups = "Functional")
+  public void testOf_empty()
+  {
+    try (OffHeapIntervalStore<Range> store = OffHeapIntervalStore
+            .of(new IntervalStore<Range>().freeze()))
+    {
+      assertTrue(store.isEmpty());
+      assertTrue(store.isValid());
+      assertEquals(store.getDepth(), 0);
+      assertEquals(store.toString(), "[]");
+      assertTrue(store.findOverlaps(1, 10).isEmpty());
+      assertEquals(store.countOverlaps(1, 10), 0);
+      assertFalse(store.contains(new Range(1, 10)));
+      assertFalse(store.iterator().hasNext());
+    }
+  }
+
+  @Test(groups = "Functional")
+  public void testFindOverlaps_mixed()
+  {
+    IntervalStore<SimpleFeature> store = new IntervalStore<>();
+    List<SimpleFeature> sfs = addMixed(store);
+    FrozenIntervalStore<SimpleFeature> frozen = store.freeze();
+    try (OffHeapIntervalStore<SimpleFeature> offHeap = OffHeapIntervalStore
+            .of(frozen))
+    {
+      assertTrue(offHeap.isValid());
+      assertEquals(offHeap.getDepth(), frozen.getDepth());
+      assertEquals(offHeap.toString(), frozen.toString());
+      assertEquals(offHeap.prettyPrint(), frozen.prettyPrint());
+      verifyMixed(offHeap, sfs);
+      assertTrue(offHeap.contains(new SimpleFeature(sfs.get(5))));
+      assertFalse(offHeap.contains(new SimpleFeature(70, 70, "other")));
+    }
+  }
+
+  /**
+   * Verifies that queries of an off-heap copy of pseudo-randomly generated
+   * intervals, with the intervals resolved from a list, give the same results,
+   * in the same order, as the frozen store
+   */
+  @Test(groups = "Functional")
+  public void testFindOverlaps_pseudoRandom()
+  {
+    Random random = new Random(337);
+    for (int scale : new int[] { 10, 100, 1000 })
+    {
+      FrozenIntervalStore<SimpleFeature> frozen = randomStore(random, scale)
+              .freeze();
+      List<SimpleFeature> byId = new ArrayList<>(frozen);
+      try (OffHeapIntervalStore<SimpleFeature> offHeap = OffHeapIntervalStore
+              .of(frozen, byId::get))
+      {
+        assertTrue(offHeap.isValid());
+        assertEquals(offHeap.size(), frozen.size());
+        assertEquals(offHeap.getDepth(), frozen.getDepth());
+        assertEquals(offHeap.toString(), frozen.toString());
+        verifyQueries(offHeap, frozen, random, scale);
+      }
+    }
+  }
+
+  @Test(groups = "Functional")
+  public void testClose()
+  {
+    IntervalStore<Range> store = new IntervalStore<>();
+    store.add(new Range(10, 20));
+    store.add(new Range(12, 14));
+    OffHeapIntervalStore<Range> offHeap = OffHeapIntervalStore
+            .of(store.freeze());
+    assertEquals(offHeap.findOverlaps(13, 13).size(), 2);
+
+    offHeap.close();
+    try
+    {
+      offHeap.findOverlaps(13, 13);
+      fail("expected IllegalStateException");
+    } catch (IllegalStateException e)
+    {
+      assertEquals(e.getMessage(), "OffHeapIntervalStore is closed");
+    }
+    try
+    {
+      offHeap.countOverlaps(13, 13);
+      fail("expected IllegalStateException");
+    } catch (IllegalStateException e)
+    {
+      // expected
+    }
+    try
+    {
+      offHeap.size();
+      fail("expected IllegalStateException");
+    } catch (IllegalStateException e)
+    {
+      // expected
+    }
+
+    /*
+     * closing again has no effect
+     */
+    offHeap.close();
+  }
+
+  @Test(groups = "Functional")
+  public void testModify()
+  {
+    IntervalStore<Range> store = new IntervalStore<>();
+    Range r = new Range(10, 20);
+    store.add(r);
+    try (OffHeapIntervalStore<Range> offHeap = OffHeapIntervalStore
+            .of(store.freeze()))
+    {
+      verifyReadOnly(offHeap, r);
+      try
+      {
+        offHeap.add(r);
+        fail("expected exception");
+      } catch (UnsupportedOperationException e)
+      {
+        assertEquals(e.getMessage(), "OffHeapIntervalStore is read-only");
+      }
+    }
+  }
+}
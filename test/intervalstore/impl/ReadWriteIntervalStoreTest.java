@@ -0,0 +1,249 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.Test;
+
+public class ReadWriteIntervalStoreTest
+{
+  /**
+   * Test that queries give the same results as an unsynchronized store
+   */
+  @Test(groups = "Functional")
+  public void testQueries()
+  {
+    Random random = new Random(91);
+    List<SimpleFeature> features = new ArrayList<>();
+    for (int i = 0; i < 2000; i++)
+    {
+      int begin = random.nextInt(10000);
+      int end = begin + random.nextInt(random.nextInt(5) == 0 ? 1000 : 50);
+      features.add(new SimpleFeature(begin, end, "f" + i));
+    }
+    IntervalStore<SimpleFeature> store = new IntervalStore<>(
+            new ArrayList<>(features));
+    ReadWriteIntervalStore<SimpleFeature> rwStore = new ReadWriteIntervalStore<>(
+            new ArrayList<>(features));
+    assertEquals(rwStore.size(), 2000);
+    assertEquals(rwStore.getDepth(), store.getDepth());
+
+    for (int i = 0; i < 200; i++)
+    {
+      int from = random.nextInt(11000);
+      int to = from + random.nextInt(500);
+      List<SimpleFeature> expected = store.findOverlaps(from, to);
+      assertEquals(rwStore.findOverlaps(from, to), expected);
+      assertEquals(rwStore.countOverlaps(from, to), expected.size());
+
+      List<SimpleFeature> visited = new ArrayList<>();
+      rwStore.forEachOverlap(from, to, visited::add);
+      assertEquals(visited, expected);
+
+      List<SimpleFeature> iterated = new ArrayList<>();
+      rwStore.overlapIterator(from, to).forEachRemaining(iterated::add);
+      assertEquals(iterated, expected);
+    }
+
+    for (SimpleFeature sf : features)
+    {
+      assertTrue(rwStore.contains(sf));
+    }
+    assertFalse(rwStore.contains(new SimpleFeature(1, 2, "new")));
+  }
+
+  /**
+   * Test that findOverlaps appends to a supplied result list
+   */
+  @Test(groups = "Functional")
+  public void testFindOverlaps_resultList()
+  {
+    ReadWriteIntervalStore<Range> store = new ReadWriteIntervalStore<>();
+    Range r1 = new Range(10, 20);
+    Range r2 = new Range(12, 15);
+    Range r3 = new Range(30, 40);
+    store.add(r1);
+    store.add(r2);
+    store.add(r3);
+
+    List<Range> result = new ArrayList<>();
+    result.add(r3);
+    assertSame(store.findOverlaps(14, 16, result), result);
+    assertEquals(result.size(), 3);
+    assertSame(result.get(0), r3);
+    assertSame(result.get(1), r1);
+    assertSame(result.get(2), r2);
+
+    assertEquals(store.findOverlaps(21, 29, null).size(), 0);
+  }
+
+  @Test(groups = "Functional")
+  public void testAddRemove()
+  {
+    ReadWriteIntervalStore<Range> store = new ReadWriteIntervalStore<>();
+    Range r1 = new Range(10, 20);
+    Range r2 = new Range(10, 20);
+    assertTrue(store.add(r1));
+    assertFalse(store.add(r2, false));
+    assertTrue(store.add(r2, true));
+    assertEquals(store.size(), 2);
+
+    assertTrue(store.remove(r1));
+    assertEquals(store.size(), 1);
+    assertFalse(store.remove(new Range(11, 20)));
+    assertFalse(store.remove(null));
+
+    store.clear();
+    assertTrue(store.isEmpty());
+    assertTrue(store.findOverlaps(0, 100).isEmpty());
+  }
+
+  /**
+   * Test that the iterator is over a copy of the store, so unaffected by
+   * subsequent modifications
+   */
+  @Test(groups = "Functional")
+  public void testIterator()
+  {
+    ReadWriteIntervalStore<Range> store = new ReadWriteIntervalStore<>();
+    Range r1 = new Range(10, 20);
+    Range r2 = new Range(12, 15);
+    store.add(r1);
+    store.add(r2);
+
+    Iterator<Range> it = store.iterator();
+    store.remove(r1);
+    store.add(new Range(30, 40));
+    assertSame(it.next(), r1);
+    assertSame(it.next(), r2);
+    assertFalse(it.hasNext());
+  }
+
+  /**
+   * Test that queries made while another thread adds and removes intervals
+   * always find exactly those intervals that were present throughout
+   * 
+   * @throws InterruptedException
+   */
+  @Test(groups = "Functional")
+  public void testConcurrentReadWrite() throws InterruptedException
+  {
+    Random random = new Random(67);
+    List<SimpleFeature> stable = new ArrayList<>();
+    for (int i = 0; i < 20000; i++)
+    {
+      int begin = random.nextInt(200000);
+      int end = begin + random.nextInt(random.nextInt(10) == 0 ? 2000 : 50);
+      stable.add(new SimpleFeature(begin, end, "stable"));
+    }
+    IntervalStore<SimpleFeature> reference = new IntervalStore<>(
+            new ArrayList<>(stable));
+    ReadWriteIntervalStore<SimpleFeature> store = new ReadWriteIntervalStore<>(
+            new ArrayList<>(stable));
+
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Thread writer = new Thread(() -> {
+      Random r = new Random(68);
+      List<SimpleFeature> churn = new ArrayList<>();
+      for (int i = 0; i < 20000; i++)
+      {
+        int begin = r.nextInt(200000);
+        int end = begin + r.nextInt(r.nextInt(10) == 0 ? 2000 : 50);
+        SimpleFeature sf = new SimpleFeature(begin, end, "churn" + i);
+        store.add(sf);
+        churn.add(sf);
+        if (churn.size() > 500 && !store.remove(churn.remove(0)))
+        {
+          failure.compareAndSet(null,
+                  new AssertionError("failed to remove churn interval"));
+        }
+      }
+    });
+
+    List<Thread> readers = new ArrayList<>();
+    for (int t = 0; t < 2; t++)
+    {
+      final long seed = t;
+      readers.add(new Thread(() -> {
+        Random r = new Random(seed);
+        try
+        {
+          while (writer.isAlive())
+          {
+            int from = r.nextInt(200000);
+            int to = from + r.nextInt(2000);
+            int stableCount = 0;
+            for (SimpleFeature sf : store.findOverlaps(from, to))
+            {
+              assertTrue(sf.getBegin() <= to && sf.getEnd() >= from);
+              if ("stable".equals(sf.getDescription()))
+              {
+                stableCount++;
+              }
+            }
+            assertEquals(stableCount, reference.countOverlaps(from, to));
+            assertTrue(store.countOverlaps(from, to) >= stableCount);
+            assertTrue(store.contains(stable.get(r.nextInt(stable.size()))));
+          }
+        } catch (Throwable e)
+        {
+          failure.compareAndSet(null, e);
+        }
+      }));
+    }
+
+    writer.start();
+    for (Thread reader : readers)
+    {
+      reader.start();
+    }
+    writer.join();
+    for (Thread reader : readers)
+    {
+      reader.join();
+    }
+
+    assertNull(failure.get());
+    assertEquals(store.size(), stable.size() + 500);
+  }
+}
@@ -31,13 +31,42 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package intervalstore.impl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import intervalstore.api.IntervalI;
+import intervalstore.api.PayloadCodec;
 
 /**
  * A simplified feature instance sufficient for unit test purposes
  */
 public class SimpleFeature implements IntervalI
 {
+  /**
+   * A codec that writes and reads the (possibly null) description
+   */
+  static final PayloadCodec<SimpleFeature> CODEC = new PayloadCodec<SimpleFeature>()
+  {
+    @Override
+    public void write(SimpleFeature sf, DataOutput out) throws IOException
+    {
+      out.writeBoolean(sf.description != null);
+      if (sf.description != null)
+      {
+        out.writeUTF(sf.description);
+      }
+    }
+
+    @Override
+    public SimpleFeature read(int begin, int end, DataInput in)
+            throws IOException
+    {
+      String desc = in.readBoolean() ? in.readUTF() : null;
+      return new SimpleFeature(begin, end, desc);
+    }
+  };
+
   final private int begin;
 
   final private int end;
@@ -0,0 +1,226 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2018, Mungo Carstairs
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package intervalstore.impl;
+
+import static intervalstore.impl.StoreFixtures.randomFeature;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.Test;
+
+public class StripedNCListTest
+{
+  /**
+   * Answers a feature with random start and length, in the given region
+   * 
+   * @param random
+   * @param offset
+   * @param i
+   * @return
+   */
+  /**
+   * Test that adding and removing intervals one at a time gives the same
+   * structure, and the same query results, as for NCList
+   */
+  @Test(groups = "Functional")
+  public void testAddRemove_compareToNCList()
+  {
+    Random random = new Random(53);
+    NCList<SimpleFeature> ncl = new NCList<>();
+    StripedNCList<SimpleFeature> striped = new StripedNCList<>();
+    List<SimpleFeature> added = new ArrayList<>();
+
+    for (int i = 0; i < 2000; i++)
+    {
+      SimpleFeature sf = randomFeature(random, 0, i);
+      ncl.add(sf);
+      assertTrue(striped.add(sf));
+      added.add(sf);
+    }
+    assertTrue(striped.isValid());
+    assertEquals(striped.size(), 2000);
+    assertEquals(striped.toString(), ncl.toString());
+    assertEquals(striped.getDepth(), ncl.getDepth());
+
+    for (int i = 0; i < 200; i++)
+    {
+      int from = random.nextInt(11000);
+      int to = from + random.nextInt(200);
+      assertEquals(striped.findOverlaps(from, to),
+              ncl.findOverlaps(from, to));
+      assertEquals(striped.countOverlaps(from, to),
+              ncl.countOverlaps(from, to));
+    }
+
+    Collections.shuffle(added, random);
+    for (int i = 0; i < 1000; i++)
+    {
+      SimpleFeature sf = added.get(i);
+      assertTrue(ncl.remove(sf));
+      assertTrue(striped.remove(sf));
+      assertFalse(striped.contains(sf));
+    }
+    assertTrue(striped.isValid());
+    assertEquals(striped.size(), 1000);
+    assertEquals(striped.toString(), ncl.toString());
+    for (int i = 1000; i < 2000; i++)
+    {
+      assertTrue(striped.contains(added.get(i)));
+    }
+    assertFalse(striped.remove(new SimpleFeature(1, 2, "none")));
+  }
+
+  @Test(groups = "Functional")
+  public void testConstructor()
+  {
+    Random random = new Random(54);
+    List<SimpleFeature> features = new ArrayList<>();
+    for (int i = 0; i < 2000; i++)
+    {
+      features.add(randomFeature(random, 0, i));
+    }
+    NCList<SimpleFeature> ncl = new NCList<>(new ArrayList<>(features));
+    StripedNCList<SimpleFeature> striped = new StripedNCList<>(features);
+    assertTrue(striped.isValid());
+    assertEquals(striped.size(), 2000);
+    assertEquals(striped.toString(), ncl.toString());
+    assertEquals(striped.prettyPrint(), ncl.prettyPrint());
+  }
+
+  @Test(groups = "Functional")
+  public void testAdd_noDuplicates()
+  {
+    StripedNCList<Range> striped = new StripedNCList<>();
+    Range r1 = new Range(10, 20);
+    Range r2 = new Range(12, 15);
+    assertTrue(striped.add(r1, false));
+    assertTrue(striped.add(r2, false));
+    assertFalse(striped.add(new Range(10, 20), false));
+    assertFalse(striped.add(new Range(12, 15), false));
+    assertTrue(striped.add(new Range(12, 15), true));
+    assertEquals(striped.size(), 3);
+    assertFalse(striped.add(null));
+  }
+
+  /**
+   * Test that threads adding intervals to different regions, while other
+   * threads query them, build a valid store containing all the intervals
+   * 
+   * @throws InterruptedException
+   */
+  @Test(groups = "Functional")
+  public void testConcurrentAdd() throws InterruptedException
+  {
+    final int threadCount = 4;
+    final int perThread = 5000;
+    StripedNCList<SimpleFeature> striped = new StripedNCList<>();
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<List<SimpleFeature>> added = new ArrayList<>();
+    List<Thread> writers = new ArrayList<>();
+
+    for (int t = 0; t < threadCount; t++)
+    {
+      List<SimpleFeature> features = new ArrayList<>();
+      added.add(features);
+      final int offset = t * 20000;
+      final Random random = new Random(t);
+      writers.add(new Thread(() -> {
+        for (int i = 0; i < perThread; i++)
+        {
+          SimpleFeature sf = randomFeature(random, offset, i);
+          striped.add(sf);
+          features.add(sf);
+          if (i % 10 == 9)
+          {
+            SimpleFeature removed = features.remove(random.nextInt(i / 2));
+            if (!striped.remove(removed))
+            {
+              failure.compareAndSet(null,
+                      new AssertionError("failed to remove " + removed));
+            }
+          }
+        }
+      }));
+    }
+
+    Thread reader = new Thread(() -> {
+      try
+      {
+        while (writers.stream().anyMatch(Thread::isAlive))
+        {
+          for (SimpleFeature sf : striped.findOverlaps(5000, 25000))
+          {
+            assertTrue(sf.getBegin() <= 25000 && sf.getEnd() >= 5000);
+          }
+        }
+      } catch (Throwable e)
+      {
+        failure.compareAndSet(null, e);
+      }
+    });
+
+    for (Thread writer : writers)
+    {
+      writer.start();
+    }
+    reader.start();
+    for (Thread writer : writers)
+    {
+      writer.join();
+    }
+    reader.join();
+
+    assertNull(failure.get());
+    assertTrue(striped.isValid());
+    assertEquals(striped.size(), threadCount * perThread * 9 / 10);
+
+    List<SimpleFeature> expected = new ArrayList<>();
+    added.forEach(expected::addAll);
+    List<SimpleFeature> actual = new ArrayList<>(striped);
+    Comparator<SimpleFeature> byPosition = Comparator
+            .comparing(SimpleFeature::getBegin)
+            .thenComparing(SimpleFeature::getEnd)
+            .thenComparing(SimpleFeature::getDescription);
+    expected.sort(byPosition);
+    actual.sort(byPosition);
+    assertEquals(actual, expected);
+  }
+}